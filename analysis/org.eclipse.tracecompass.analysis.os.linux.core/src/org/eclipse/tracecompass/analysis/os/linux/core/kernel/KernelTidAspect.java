@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 École Polytechnique de Montréal
+ * Copyright (c) 2015, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -64,7 +64,7 @@ public final class KernelTidAspect extends LinuxTidAspect {
         if (analysis == null) {
             return null;
         }
-        long ts = event.getTimestamp().toNanos();
+        long ts = event.getTimestampNanos();
         while (block && !analysis.isQueryable(ts) && !monitor.isCanceled()) {
             Thread.sleep(100);
         }
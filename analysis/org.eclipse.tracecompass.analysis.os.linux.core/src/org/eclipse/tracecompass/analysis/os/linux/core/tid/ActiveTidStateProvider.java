@@ -94,7 +94,7 @@ class ActiveTidStateProvider extends AbstractTmfStateProvider {
         try {
             int nextTid = ((Long) event.getContent().getField(fNextTid).getValue()).intValue();
             final TmfStateValue value = TmfStateValue.newValueInt(nextTid);
-            ssb.modifyAttribute(event.getTimestamp().toNanos(), value, cpuQuark);
+            ssb.modifyAttribute(event.getTimestampNanos(), value, cpuQuark);
         } catch (StateValueTypeException e) {
             Activator.getDefault().logError(NonNullUtils.nullToEmptyString(e.getMessage()), e);
         }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -75,7 +75,7 @@ public final class KernelEventHandlerUtils {
      * @return the timestamp in long format
      */
     public static long getTimestamp(ITmfEvent event) {
-        return event.getTimestamp().toNanos();
+        return event.getTimestampNanos();
     }
 
     /**
@@ -130,7 +130,7 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
 
                 /* Record the event's data into the intial system call info */
                 // String syscallName = fLayout.getSyscallNameFromEvent(event);
-                long startTime = event.getTimestamp().toNanos();
+                long startTime = event.getTimestampNanos();
                 String syscallName = eventName.substring(layout.eventSyscallEntryPrefix().length());
 
                 SystemCall.InitialInfo newSysCall = new SystemCall.InitialInfo(startTime, syscallName.intern());
@@ -158,7 +158,7 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
                     return;
                 }
 
-                long endTime = event.getTimestamp().toNanos();
+                long endTime = event.getTimestampNanos();
                 ISegment syscall = new SystemCall(info, endTime);
                 getSegmentStore().add(syscall);
             }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -172,6 +172,29 @@ public class BufferedBlockingQueueTest {
         assertEquals(string, sb.toString());
     }
 
+    /**
+     * Test insertion of an array of elements that will require more than one
+     * input buffer.
+     */
+    @Test
+    public void testPutAll() {
+        String string = testString.substring(0, 222);
+        char[] chars = string.toCharArray();
+        Character[] elements = new Character[chars.length + 10];
+        for (int i = 0; i < chars.length; i++) {
+            elements[i] = chars[i];
+        }
+        charQueue.putAll(elements, chars.length);
+        assertEquals(chars.length, charQueue.size());
+        charQueue.flushInputBuffer();
+
+        StringBuilder sb = new StringBuilder();
+        while (!charQueue.isEmpty()) {
+            sb.append(charQueue.take());
+        }
+        assertEquals(string, sb.toString());
+    }
+
     /**
      * Test the state of the {@link BufferedBlockingQueue#isEmpty()} method at
      * various moments.
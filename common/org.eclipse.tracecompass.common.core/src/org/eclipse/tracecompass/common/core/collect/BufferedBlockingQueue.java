@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson, EfficiOS Inc., and others
+ * Copyright (c) 2015, 2016 Ericsson, EfficiOS Inc., and others
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -122,6 +122,36 @@ public class BufferedBlockingQueue<T> implements Iterable<T> {
         }
     }
 
+    /**
+     * Put the first elements of an array at the tail of the queue, in order.
+     * This is equivalent to calling {@link #put} for each of them, but the
+     * input lock is only taken once.
+     * <p>
+     * This method will block the caller if the output buffer is full, waiting
+     * for space to become available.
+     *
+     * @param elements
+     *            The elements to insert
+     * @param count
+     *            The number of elements of the array to insert
+     * @since 2.1
+     */
+    public void putAll(T[] elements, int count) {
+        fInputLock.lock();
+        try {
+            fSize.addAndGet(count);
+            for (int i = 0; i < count; i++) {
+                fInputBuffer.add(elements[i]);
+                fInputBufferSize++;
+                if (fInputBufferSize >= fChunkSize) {
+                    this.flushInputBuffer();
+                }
+            }
+        } finally {
+            fInputLock.unlock();
+        }
+    }
+
     /**
      * Flush the current input buffer, disregarding the expected buffer size
      * limit.
@@ -221,6 +221,36 @@ public class BitBufferIntTest {
         assertEquals(0x0102030405060708L, result);
     }
 
+    /**
+     * Test {@link BitBuffer#get} with an unaligned read in the last bytes of
+     * the buffer, where a whole 64-bit word cannot be loaded.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testGet_tail() throws CTFException {
+        fixture.position(16 * 8 - 13);
+        long result = fixture.get(13, false);
+        assertEquals(0xe0f, result);
+        assertEquals(16 * 8, fixture.position());
+    }
+
+    /**
+     * Test {@link BitBuffer#get} with an unaligned read in the last bytes of a
+     * little-endian buffer.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testGet_tailLE() throws CTFException {
+        fixture.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        fixture.position(16 * 8 - 13);
+        long result = fixture.get(13, true);
+        assertEquals(0x1e1, result);
+    }
+
     /**
      * Test {@link BitBuffer#getLong} with a little-endian buffer.
      *
@@ -16,6 +16,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
@@ -103,6 +105,132 @@ public class CTFTraceReaderTest {
         assertTrue(result);
     }
 
+    /**
+     * Run the boolean advance() method test. Test that the events of all the
+     * streams are merged in timestamp order.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testAdvance_ordered() throws CTFException {
+        long previous = fixture.getStartTime();
+        int count = 0;
+        do {
+            IEventDefinition current = fixture.getCurrentEventDef();
+            assertNotNull(current);
+            assertTrue(current.getTimestamp() >= previous);
+            previous = current.getTimestamp();
+            count++;
+        } while (fixture.advance());
+        assertFalse(fixture.hasMoreEvents());
+        assertTrue(count > 1);
+    }
+
+    /**
+     * Test that reading with parallel decoding returns the same events, in the
+     * same order, as reading on a single thread.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testAdvance_parallelDecoding() throws CTFException {
+        try (CTFTraceReader parallel = new CTFTraceReader(CtfTestTraceUtils.getTrace(testTrace))) {
+            parallel.setParallelDecoding(4);
+            do {
+                IEventDefinition expected = fixture.getCurrentEventDef();
+                IEventDefinition actual = parallel.getCurrentEventDef();
+                assertNotNull(expected);
+                assertNotNull(actual);
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                assertEquals(expected.getDeclaration().getName(), actual.getDeclaration().getName());
+                assertEquals(fixture.hasMoreEvents(), parallel.hasMoreEvents());
+            } while (fixture.advance() & parallel.advance());
+            assertFalse(fixture.hasMoreEvents());
+            assertFalse(parallel.hasMoreEvents());
+        }
+    }
+
+    /**
+     * Test that a packet filter with an end time stops the reading after the
+     * packets of the range, and returns the same events within the range.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testSetPacketFilter_end() throws CTFException {
+        long start = fixture.getStartTime();
+        long end = start + (fixture.getEndTime() - start) / 10;
+        int total = 0;
+        try (CTFTraceReader filtered = new CTFTraceReader(CtfTestTraceUtils.getTrace(testTrace))) {
+            filtered.setPacketFilter(Long.MIN_VALUE, end, null);
+            filtered.seek(0);
+            do {
+                IEventDefinition expected = fixture.getCurrentEventDef();
+                IEventDefinition actual = filtered.getCurrentEventDef();
+                assertNotNull(expected);
+                assertNotNull(actual);
+                if (expected.getTimestamp() > end) {
+                    break;
+                }
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                assertEquals(expected.getDeclaration().getName(), actual.getDeclaration().getName());
+                total++;
+            } while (fixture.advance() & filtered.advance());
+            assertTrue(total > 0);
+
+            /* Read the rest of the filtered packets, they are not all read */
+            int filteredCount = total;
+            while (filtered.advance()) {
+                filteredCount++;
+            }
+            int count = total;
+            while (fixture.advance()) {
+                count++;
+            }
+            assertTrue(filteredCount < count);
+        }
+    }
+
+    /**
+     * Test that an event filter returns the events of the filtered event
+     * types, in the same order, and only them.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testSetEventFilter() throws CTFException {
+        IEventDefinition first = fixture.getCurrentEventDef();
+        assertNotNull(first);
+        String name = first.getDeclaration().getName();
+        try (CTFTraceReader filtered = new CTFTraceReader(CtfTestTraceUtils.getTrace(testTrace))) {
+            filtered.setEventFilter(Collections.singleton(name));
+            filtered.seek(0);
+            int count = 0;
+            int total = 0;
+            do {
+                IEventDefinition expected = fixture.getCurrentEventDef();
+                assertNotNull(expected);
+                total++;
+                if (!expected.getDeclaration().getName().equals(name)) {
+                    continue;
+                }
+                IEventDefinition actual = filtered.getCurrentEventDef();
+                assertNotNull(actual);
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                assertEquals(name, actual.getDeclaration().getName());
+                count++;
+                filtered.advance();
+            } while (fixture.advance());
+            assertFalse(filtered.hasMoreEvents());
+            assertTrue(count > 0);
+            assertTrue(count < total);
+        }
+    }
+
     /**
      * Run the boolean advance() method test. Test advancing when we're at the
      * end, so we expect that there is no more events.
@@ -214,6 +214,41 @@ public class CTFTraceWriterTest {
             }
     }
 
+    /**
+     * Test various time ranges, removing the events after the end time
+     */
+    @Test
+    public void testKernelTraceTrimmed() {
+        try {
+            CTFTrace trace = CtfTestTraceUtils.getTrace(CtfTestTrace.KERNEL);
+            CTFTraceWriter ctfWriter = new CTFTraceWriter(checkNotNull(trace));
+            String traceName = createTraceName(fName + "_TRIMMED");
+            ctfWriter.copyPackets(fStartTime, fEndTime, traceName, true);
+
+            CTFTrace outTrace = new CTFTrace(traceName);
+            int count = 0;
+            long end = 0;
+            try (CTFTraceReader reader = new CTFTraceReader(outTrace)) {
+                while (reader.hasMoreEvents()) {
+                    count++;
+                    end = reader.getCurrentEventDef().getTimestamp();
+                    reader.advance();
+                }
+                end = outTrace.getClock().getClockOffset() + end;
+            }
+
+            assertTrue(toString(), count <= fNbEvents);
+            if (fEndTime == Long.MAX_VALUE) {
+                assertEquals(toString(), fNbEvents, count);
+            }
+            if (count > 0) {
+                assertTrue("last event time", end <= fEndTime);
+            }
+        } catch (CTFException e) {
+            fail(e.getMessage());
+        }
+    }
+
     private static File getChannelFile(String path, int id) {
         File channel = new File(path + Utils.SEPARATOR + "channel_" + String.valueOf(id));
         return channel;
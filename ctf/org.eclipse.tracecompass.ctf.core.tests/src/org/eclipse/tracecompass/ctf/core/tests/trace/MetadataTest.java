@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,11 +12,18 @@
 package org.eclipse.tracecompass.ctf.core.tests.trace;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -28,6 +35,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.ISimpleDatatypeDeclaration;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.ctf.core.trace.Metadata;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
@@ -274,6 +282,66 @@ public class MetadataTest {
         assertEquals("bozo_the_clown", eventDeclarations.get(1).getName());
     }
 
+    /**
+     * Test that parsing the same metadata text again, which is served by the
+     * cache of parsed metadata, gives the same declarations.
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testSameTextMD() throws CTFException {
+        CTFTrace first = testSingleFragment();
+        CTFTrace second = testSingleFragment();
+        assertEquals(Iterables.getOnlyElement(first.getEventDeclarations(0L)).getName(),
+                Iterables.getOnlyElement(second.getEventDeclarations(0L)).getName());
+    }
+
+    /**
+     * Test that the metadata appended to the metadata file of a trace is
+     * parsed when a reader of the trace is updated, once it is complete, and
+     * only once.
+     *
+     * @throws CTFException
+     *             won't happen
+     * @throws IOException
+     *             if the temporary trace cannot be written
+     */
+    @Test
+    public void testUpdateMetadata() throws CTFException, IOException {
+        Path dir = Files.createTempDirectory("ctf-metadata");
+        Path metadataFile = dir.resolve("metadata");
+        try {
+            Files.write(metadataFile, mdStart.getBytes(StandardCharsets.US_ASCII));
+            CTFTrace trace = new CTFTrace(dir.toFile());
+            assertEquals(1, trace.getEventDeclarations(0L).size());
+            assertFalse(trace.updateMetadata());
+
+            /* A declaration that is not completely written is not parsed */
+            int split = mdSecond.indexOf("fields");
+            Files.write(metadataFile, mdSecond.substring(0, split).getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            assertFalse(trace.updateMetadata());
+            assertEquals(1, trace.getEventDeclarations(0L).size());
+
+            Files.write(metadataFile, mdSecond.substring(split).getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+                reader.update();
+            }
+            final List<IEventDeclaration> eventDeclarations = new ArrayList<>(trace.getEventDeclarations(0L));
+            assertEquals(2, eventDeclarations.size());
+            assertEquals("bozo_the_clown", eventDeclarations.get(1).getName());
+            assertFalse(trace.updateMetadata());
+        } finally {
+            File[] files = dir.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Files.delete(file.toPath());
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
     /**
      * Run the ByteOrder getDetectedByteOrder() method test.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,13 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
@@ -145,6 +152,67 @@ public class VariantDeclarationTest {
         assertNotNull(result);
     }
 
+    /**
+     * Test that definitions of the same variant declaration can be created
+     * concurrently, as the packet decoder threads do.
+     *
+     * @throws InterruptedException
+     *             Should not happen
+     * @throws ExecutionException
+     *             Should not happen
+     */
+    @Test
+    public void testCreateDefinitionConcurrent() throws InterruptedException, ExecutionException {
+        EnumDeclaration tagDeclaration = new EnumDeclaration(IntegerDeclaration.UINT_8_DECL);
+        tagDeclaration.add(0, 0, "a");
+        tagDeclaration.add(1, 1, "b");
+        VariantDeclaration variantDeclaration = new VariantDeclaration();
+        variantDeclaration.setTag("tag");
+        variantDeclaration.addField("a", IntegerDeclaration.INT_32B_DECL);
+        variantDeclaration.addField("b", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        StructDeclaration structDeclaration = new StructDeclaration(8);
+        structDeclaration.addField("tag", tagDeclaration);
+        structDeclaration.addField("variant", variantDeclaration);
+
+        final int nbThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                final int selector = i % 2;
+                Callable<Void> decoder = () -> {
+                    for (int j = 0; j < 10000; j++) {
+                        ByteBuffer buffer = ByteBuffer.allocate(8);
+                        buffer.put((byte) selector);
+                        if (selector == 0) {
+                            buffer.putInt(j);
+                        } else {
+                            buffer.put(new byte[] { 'b', 0 });
+                        }
+                        buffer.flip();
+                        StructDefinition struct = structDeclaration.createDefinition(null, "", new BitBuffer(buffer));
+                        VariantDefinition variant = (VariantDefinition) struct.getDefinition("variant");
+                        assertNotNull(variant);
+                        if (selector == 0) {
+                            assertEquals("a", variant.getCurrentFieldName());
+                            assertEquals(j, ((IntegerDefinition) variant.getCurrentField()).getValue());
+                        } else {
+                            assertEquals("b", variant.getCurrentFieldName());
+                            assertEquals("b", ((StringDefinition) variant.getCurrentField()).getValue());
+                        }
+                    }
+                    return null;
+                };
+                results.add(executor.submit(decoder));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Run the boolean hasField(String) method test.
      */
@@ -54,6 +54,7 @@ public final class BitBuffer {
      */
     private long fPosition;
     private ByteOrder fByteOrder;
+    private boolean fIsBigEndian;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -110,7 +111,7 @@ public final class BitBuffer {
      *             raised if the buffer tries to read out of bounds
      */
     public int getInt() throws CTFException {
-        return getInt(BIT_INT, true);
+        return (int) get(BIT_INT, true);
     }
 
     /**
@@ -149,25 +150,36 @@ public final class BitBuffer {
         if (length > BIT_LONG) {
             throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
         }
-        if (length > BIT_INT) {
-            final int highShift = length - BIT_INT;
-            long a = getInt();
-            long b = getInt(highShift, false);
-            long retVal;
-            /* Cast the signed-extended int into a unsigned int. */
-            a &= INT_MASK;
-            b &= (1L << highShift) - 1L;
-
-            retVal = (fByteOrder == ByteOrder.BIG_ENDIAN) ? ((a << highShift) | b) : ((b << BIT_INT) | a);
-            /* sign extend */
-            if (signed) {
-                int signExtendBits = BIT_LONG - length;
-                retVal = (retVal << signExtendBits) >> signExtendBits;
-            }
-            return retVal;
+
+        /* Nothing to read. */
+        if (length <= 0) {
+            return 0;
+        }
+
+        /* Validate that the buffer has enough bits. */
+        if (!canRead(length)) {
+            throw new CTFException("Cannot read the integer, " + //$NON-NLS-1$
+                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
+                    "Requested:" + length + " Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        long retVal = getInt(length, signed);
-        return (signed ? retVal : (retVal & INT_MASK));
+
+        final long pos = fPosition;
+        long val;
+
+        /*
+         * Try a fast read when the position is byte-aligned by using
+         * java.nio.ByteBuffer's native methods. A faster alignment detection
+         * as the compiler cannot guaranty that pos is always positive.
+         */
+        if ((pos & (BIT_CHAR - 1)) == 0 && isNativeLength(length)) {
+            val = getAligned((int) (pos >>> 3), length, signed);
+        } else if (fIsBigEndian) {
+            val = getLongBE(pos, length, signed);
+        } else {
+            val = getLongLE(pos, length, signed);
+        }
+        fPosition = pos + length;
+        return val;
     }
 
     /**
@@ -191,200 +203,105 @@ public final class BitBuffer {
         fPosition += dst.length * BIT_CHAR;
     }
 
+    private static boolean isNativeLength(int length) {
+        return length == BIT_CHAR || length == BIT_SHORT || length == BIT_INT || length == BIT_LONG;
+    }
+
     /**
-     * Relative <i>get</i> method for reading integer of <i>length</i> bits.
-     *
-     * Reads <i>length</i> bits starting at the current position. The result is
-     * signed extended if <i>signed</i> is true. The current position is
-     * increased of <i>length</i> bits.
-     *
-     * @param length
-     *            The length in bits of this integer
-     * @param signed
-     *            The sign extended flag
-     * @return The int value read from the buffer
-     * @throws CTFException
-     *             An error occurred reading the data. When the buffer is read
-     *             beyond its end, this exception will be raised.
+     * Read a byte-aligned 8, 16, 32 or 64-bit integer with the native
+     * {@link ByteBuffer} accessors.
      */
-    private int getInt(int length, boolean signed) throws CTFException {
-
-        /* Nothing to read. */
-        if (length == 0) {
-            return 0;
+    private long getAligned(int byteIndex, int length, boolean signed) {
+        switch (length) {
+        case BIT_CHAR:
+            // Byte
+            long b = fBuffer.get(byteIndex);
+            return signed ? b : (b & BYTE_MASK);
+        case BIT_SHORT:
+            // Word
+            long s = fBuffer.getShort(byteIndex);
+            return signed ? s : (s & SHORT_MASK);
+        case BIT_INT:
+            // Double word
+            long i = fBuffer.getInt(byteIndex);
+            return signed ? i : (i & INT_MASK);
+        default:
+            // Quad word
+            return fBuffer.getLong(byteIndex);
         }
-
-        /* Validate that the buffer has enough bits. */
-        if (!canRead(length)) {
-            throw new CTFException("Cannot read the integer, " + //$NON-NLS-1$
-                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
-                    "Requested:" + length + " Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$ //$NON-NLS-2$
-        }
-
-        /* Get the value from the byte buffer. */
-        int val = 0;
-        boolean gotIt = false;
-
-        /*
-         * Try a fast read when the position is byte-aligned by using
-         * java.nio.ByteBuffer's native methods
-         */
-        /*
-         * A faster alignment detection as the compiler cannot guaranty that pos
-         * is always positive.
-         */
-        if ((fPosition & (BitBuffer.BIT_CHAR - 1)) == 0) {
-            switch (length) {
-            case BitBuffer.BIT_CHAR:
-                // Byte
-                val = fBuffer.get((int) (fPosition / BIT_CHAR));
-                if (!signed) {
-                    val = val & BYTE_MASK;
-                }
-                gotIt = true;
-                break;
-
-            case BitBuffer.BIT_SHORT:
-                // Word
-                val = fBuffer.getShort((int) (fPosition / BIT_CHAR));
-                if (!signed) {
-                    val = val & SHORT_MASK;
-                }
-                gotIt = true;
-                break;
-
-            case BitBuffer.BIT_INT:
-                // Double word
-                val = fBuffer.getInt((int) (fPosition / BIT_CHAR));
-                gotIt = true;
-                break;
-
-            default:
-                break;
-            }
-        }
-
-        /* When not byte-aligned, fall-back to a general decoder. */
-        if (!gotIt) {
-            // Nothing read yet: use longer methods
-            if (fByteOrder == ByteOrder.LITTLE_ENDIAN) {
-                val = getIntLE(fPosition, length, signed);
-            } else {
-                val = getIntBE(fPosition, length, signed);
-            }
-        }
-        fPosition += length;
-
-        return val;
     }
 
-    private int getIntBE(long index, int length, boolean signed) {
-        if ((length <= 0) || (length > BIT_INT)) {
-            throw new IllegalArgumentException("Length must be between 1-32 bits"); //$NON-NLS-1$
-        }
-        long end = index + length;
-        int startByte = (int) (index / BIT_CHAR);
-        int endByte = (int) ((end + (BIT_CHAR - 1)) / BIT_CHAR);
-        int currByte, lshift, cshift, mask, cmask, cache;
-        int value = 0;
+    /**
+     * Big-endian bit field decoder. The 64-bit word starting at the byte
+     * containing the first bit is loaded at once, the most significant bit of
+     * the word being the first bit of the buffer. The requested bits are then
+     * extracted with two shifts.
+     */
+    private long getLongBE(long index, int length, boolean signed) {
+        final int byteIndex = (int) (index >>> 3);
+        final int bitOffset = (int) (index & (BIT_CHAR - 1));
+        long word = (byteIndex + Long.BYTES <= fBuffer.limit()) ? fBuffer.getLong(byteIndex) : loadTailBE(byteIndex, bitOffset + length);
+        word <<= bitOffset;
+        if (bitOffset + length > BIT_LONG) {
+            /* The field spans a ninth byte, fetch its most significant bits */
+            word |= (fBuffer.get(byteIndex + Long.BYTES) & BYTE_MASK) >>> (BIT_CHAR - bitOffset);
+        }
+        final int shift = BIT_LONG - length;
+        return signed ? (word >> shift) : (word >>> shift);
+    }
 
-        currByte = startByte;
-        cache = fBuffer.get(currByte) & BYTE_MASK;
-        boolean isNeg = (cache & (1 << (BIT_CHAR - (index % BIT_CHAR) - 1))) != 0;
-        if (signed && isNeg) {
-            value = ~0;
-        }
-        if (startByte == (endByte - 1)) {
-            cmask = cache >>> ((BIT_CHAR - (end % BIT_CHAR)) % BIT_CHAR);
-            if (((length) % BIT_CHAR) > 0) {
-                mask = ~((~0) << length);
-                cmask &= mask;
-            }
-            value <<= length;
-            value |= cmask;
-            return value;
-        }
-        cshift = (int) (index % BIT_CHAR);
-        if (cshift > 0) {
-            mask = ~((~0) << (BIT_CHAR - cshift));
-            cmask = cache & mask;
-            lshift = BIT_CHAR - cshift;
-            value <<= lshift;
-            value |= cmask;
-            currByte++;
-        }
-        for (; currByte < (endByte - 1); currByte++) {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
-        }
-        lshift = (int) (end % BIT_CHAR);
-        if (lshift > 0) {
-            mask = ~((~0) << lshift);
-            cmask = fBuffer.get(currByte) & BYTE_MASK;
-            cmask >>>= BIT_CHAR - lshift;
-            cmask &= mask;
-            value <<= lshift;
-            value |= cmask;
+    /**
+     * Little-endian bit field decoder. The 64-bit word starting at the byte
+     * containing the first bit is loaded at once, the least significant bit of
+     * the word being the first bit of the buffer. The requested bits are then
+     * extracted with two shifts.
+     */
+    private long getLongLE(long index, int length, boolean signed) {
+        final int byteIndex = (int) (index >>> 3);
+        final int bitOffset = (int) (index & (BIT_CHAR - 1));
+        long word = (byteIndex + Long.BYTES <= fBuffer.limit()) ? fBuffer.getLong(byteIndex) : loadTailLE(byteIndex, bitOffset + length);
+        final int shift = BIT_LONG - length;
+        if (bitOffset + length > BIT_LONG) {
+            /* The field spans a ninth byte, fetch its least significant bits */
+            word >>>= bitOffset;
+            word |= (long) (fBuffer.get(byteIndex + Long.BYTES) & BYTE_MASK) << (BIT_LONG - bitOffset);
+            word <<= shift;
         } else {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
+            word <<= shift - bitOffset;
         }
-        return value;
+        return signed ? (word >> shift) : (word >>> shift);
     }
 
-    private int getIntLE(long index, int length, boolean signed) {
-        if ((length <= 0) || (length > BIT_INT)) {
-            throw new IllegalArgumentException("Length must be between 1-32 bits"); //$NON-NLS-1$
-        }
-        long end = index + length;
-        int startByte = (int) (index / BIT_CHAR);
-        int endByte = (int) ((end + (BIT_CHAR - 1)) / BIT_CHAR);
-        int currByte, lshift, cshift, mask, cmask, cache, mod;
-        int value = 0;
+    /**
+     * Load the bytes covering <i>bits</i> bits near the end of the buffer as
+     * the most significant bytes of a big-endian word. The other bytes read as
+     * zero.
+     */
+    private long loadTailBE(int byteIndex, int bits) {
+        final int end = byteIndex + ((bits + BIT_CHAR - 1) >>> 3);
+        long word = 0;
+        int shift = BIT_LONG - BIT_CHAR;
+        for (int i = byteIndex; i < end; i++) {
+            word |= (long) (fBuffer.get(i) & BYTE_MASK) << shift;
+            shift -= BIT_CHAR;
+        }
+        return word;
+    }
 
-        currByte = endByte - 1;
-        cache = fBuffer.get(currByte) & BYTE_MASK;
-        mod = (int) (end % BIT_CHAR);
-        lshift = (mod > 0) ? mod : BIT_CHAR;
-        boolean isNeg = (cache & (1 << (lshift - 1))) != 0;
-        if (signed && isNeg) {
-            value = ~0;
-        }
-        if (startByte == (endByte - 1)) {
-            cmask = cache >>> (index % BIT_CHAR);
-            if (((length) % BIT_CHAR) > 0) {
-                mask = ~((~0) << length);
-                cmask &= mask;
-            }
-            value <<= length;
-            value |= cmask;
-            return value;
-        }
-        cshift = (int) (end % BIT_CHAR);
-        if (cshift > 0) {
-            mask = ~((~0) << cshift);
-            cmask = cache & mask;
-            value <<= cshift;
-            value |= cmask;
-            currByte--;
-        }
-        for (; currByte >= (startByte + 1); currByte--) {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
-        }
-        lshift = (int) (index % BIT_CHAR);
-        if (lshift > 0) {
-            mask = ~((~0) << (BIT_CHAR - lshift));
-            cmask = fBuffer.get(currByte) & BYTE_MASK;
-            cmask >>>= lshift;
-            cmask &= mask;
-            value <<= (BIT_CHAR - lshift);
-            value |= cmask;
-        } else {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
-        }
-        return value;
+    /**
+     * Load the bytes covering <i>bits</i> bits near the end of the buffer as
+     * the least significant bytes of a little-endian word. The other bytes
+     * read as zero.
+     */
+    private long loadTailLE(int byteIndex, int bits) {
+        final int end = byteIndex + ((bits + BIT_CHAR - 1) >>> 3);
+        long word = 0;
+        int shift = 0;
+        for (int i = byteIndex; i < end; i++) {
+            word |= (long) (fBuffer.get(i) & BYTE_MASK) << shift;
+            shift += BIT_CHAR;
+        }
+        return word;
     }
 
     // ------------------------------------------------------------------------
@@ -600,6 +517,7 @@ public final class BitBuffer {
     public void setByteOrder(ByteOrder order) {
         if (!order.equals(fByteOrder)) {
             fByteOrder = order;
+            fIsBigEndian = (order == ByteOrder.BIG_ENDIAN);
             fBuffer.order(order);
         }
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -40,4 +40,17 @@ public interface ICompositeDefinition extends IDefinition {
      */
     List<@NonNull String> getFieldNames();
 
+    /**
+     * Gets the definition of a field from its position in
+     * {@link #getFieldNames()}, which avoids looking up its name
+     *
+     * @param index
+     *            the position of the field
+     * @return The definition of the field
+     * @since 2.1
+     */
+    default Definition getDefinition(int index) {
+        return getDefinition(getFieldNames().get(index));
+    }
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -130,6 +130,14 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
         return fDefinitionsMap.get(fieldName);
     }
 
+    /**
+     * @since 2.1
+     */
+    @Override
+    public Definition getDefinition(int index) {
+        return fDefinitions[index];
+    }
+
     @Override
     public @NonNull List<@NonNull String> getFieldNames() {
         return fFieldNames;
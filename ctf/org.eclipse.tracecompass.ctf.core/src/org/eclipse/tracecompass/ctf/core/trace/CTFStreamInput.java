@@ -18,6 +18,8 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -218,7 +220,7 @@ public class CTFStreamInput implements IDefinitionScope {
      * @throws CTFException
      *             If there was a problem reading the packed header
      */
-    public boolean addPacketHeaderIndex() throws CTFException {
+    public synchronized boolean addPacketHeaderIndex() throws CTFException {
         long currentPosBits = 0L;
         if (!fIndex.isEmpty()) {
             ICTFPacketDescriptor pos = fIndex.lastElement();
@@ -234,6 +236,29 @@ public class CTFStreamInput implements IDefinitionScope {
         return false;
     }
 
+    /**
+     * Index all the packets of this stream input that are not indexed yet and
+     * get their descriptors. Only the packet headers and contexts are read,
+     * the events are not decoded.
+     *
+     * @return the descriptors of all the packets, in file order
+     * @throws CTFException
+     *             If there was a problem reading a packet header
+     * @since 2.1
+     */
+    public synchronized List<ICTFPacketDescriptor> getPacketDescriptors() throws CTFException {
+        int size;
+        do {
+            size = fIndex.size();
+            /* Stop on a packet that is rejected by the index */
+        } while (addPacketHeaderIndex() && fIndex.size() > size);
+        List<ICTFPacketDescriptor> packets = new ArrayList<>(fIndex.size());
+        for (int i = 0; i < fIndex.size(); i++) {
+            packets.add(fIndex.getElement(i));
+        }
+        return packets;
+    }
+
     private long getStreamSizeBits() {
         return fFile.length() * Byte.SIZE;
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -18,12 +18,15 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
@@ -32,7 +35,11 @@ import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.DecodedPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.NullPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketDecoder;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketPrefetcher;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 
 /**
  * A CTF trace event reader. Reads the events of a trace file.
@@ -59,6 +66,16 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private final @Nullable FileChannel fFileChannel;
 
+    /**
+     * Background read-ahead of the next packets, null if disabled
+     */
+    private final @Nullable PacketPrefetcher fPrefetcher;
+
+    /**
+     * Parallel decoding of the next packets, null if disabled
+     */
+    private @Nullable PacketDecoder fDecoder;
+
     /**
      * The packet reader used to read packets from this trace file.
      */
@@ -82,6 +99,26 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private boolean fLive = false;
 
+    /**
+     * Packet filter: packets that end before the start time, that begin after
+     * the end time or that were not recorded on one of the CPUs are skipped
+     * without being decoded.
+     */
+    private long fFilterStart = Long.MIN_VALUE;
+    private long fFilterEnd = Long.MAX_VALUE;
+    private @Nullable Set<Integer> fFilterCpus = null;
+
+    /**
+     * Event filter: the events of the other event types are skipped once
+     * their header is read, and the packets are skipped altogether if the
+     * stream does not declare any of the event types. The declarations and
+     * their accepted flags are indexed by event id.
+     */
+    private @Nullable Set<String> fFilterEvents = null;
+    private @Nullable IEventDeclaration[] fFilterDeclarations = new IEventDeclaration[0];
+    private boolean[] fAcceptedEvents = new boolean[0];
+    private boolean fNoEventAccepted = false;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -96,11 +133,17 @@ public class CTFStreamInputReader implements AutoCloseable {
     public CTFStreamInputReader(CTFStreamInput streamInput) throws CTFException {
         fStreamInput = streamInput;
         fFile = fStreamInput.getFile();
+        FileChannel fileChannel;
         try {
-            fFileChannel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
+            fileChannel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
         } catch (IOException e) {
             throw new CTFIOException(e);
         }
+        fFileChannel = fileChannel;
+        int prefetchDepth = PacketPrefetcher.getDefaultDepth();
+        fPrefetcher = (prefetchDepth > 0) ? new PacketPrefetcher(fileChannel, prefetchDepth) : null;
+        int decodeDepth = PacketDecoder.getDefaultDepth();
+        fDecoder = (decodeDepth > 0) ? new PacketDecoder(decodeDepth) : null;
         try {
             /*
              * Get the iterator on the packet index.
@@ -130,19 +173,149 @@ public class CTFStreamInputReader implements AutoCloseable {
     }
 
     private IPacketReader getCurrentPacketReader(@Nullable ICTFPacketDescriptor packet) throws CTFException {
-        IPacketReader ctfPacketReader = NullPacketReader.INSTANCE;
-        if (packet != null) {
-            long size = packet.getContentSizeBits();
-            if (size < 0) {
-                throw new CTFIOException("Cannot have negative sized buffers."); //$NON-NLS-1$
+        if (packet == null) {
+            return NullPacketReader.INSTANCE;
+        }
+        IPacketReader packetReader = null;
+        PacketDecoder decoder = fDecoder;
+        if (decoder != null) {
+            packetReader = decoder.take(packet);
+        }
+        if (packetReader == null) {
+            checkPacketSize(packet);
+            packetReader = createPacketReader(packet, getPacketBuffer(packet.getOffsetBits(), packet.getContentSizeBits()));
+        }
+        if (decoder != null) {
+            decodeNextPackets(decoder);
+        } else {
+            prefetchNextPackets();
+        }
+        return packetReader;
+    }
+
+    private static void checkPacketSize(ICTFPacketDescriptor packet) throws CTFIOException {
+        if (packet.getContentSizeBits() < 0) {
+            throw new CTFIOException("Cannot have negative sized buffers."); //$NON-NLS-1$
+        }
+    }
+
+    private CTFPacketReader createPacketReader(ICTFPacketDescriptor packet, ByteBuffer buffer) throws CTFException {
+        BitBuffer bitBuffer = new BitBuffer(buffer);
+        bitBuffer.position(packet.getPayloadStartBits());
+        IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
+        CTFTrace trace = getStreamInput().getStream().getTrace();
+        return new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+    }
+
+    /**
+     * Read all the events of a packet, called from the decoder's worker
+     * threads. The packet is mapped directly, the prefetcher is only used by
+     * the reading thread.
+     */
+    private IPacketReader decodePacket(ICTFPacketDescriptor packet) throws CTFException {
+        checkPacketSize(packet);
+        CTFPacketReader packetReader = createPacketReader(packet, getByteBufferAt(packet.getOffsetBits(), packet.getContentSizeBits()));
+        List<IEventDefinition> events = new ArrayList<>();
+        while (packetReader.hasMoreEvents()) {
+            events.add(packetReader.readNextEvent());
+        }
+        return new DecodedPacketReader(packet, packetReader.getCPU(), events);
+    }
+
+    /**
+     * Get the size of the content of a packet up to its last event at or
+     * before a timestamp, used to trim the packet that ends a trace segment.
+     *
+     * @param packet
+     *            the packet to read
+     * @param endTime
+     *            the timestamp of the last event to keep, in cycles
+     * @return the size of the packet header, packet context and kept events,
+     *         in bits
+     * @throws CTFException
+     *             if the packet cannot be read
+     */
+    long getContentSizeBefore(ICTFPacketDescriptor packet, long endTime) throws CTFException {
+        checkPacketSize(packet);
+        CTFPacketReader packetReader = createPacketReader(packet, getByteBufferAt(packet.getOffsetBits(), packet.getContentSizeBits()));
+        long contentSize = packet.getPayloadStartBits();
+        /* The lost events record is synthetic, it has no content to keep */
+        while (packetReader.hasMoreEvents() && packetReader.getPosition() < packet.getContentSizeBits()) {
+            IEventDefinition event = packetReader.readNextEvent();
+            if (event.getTimestamp() > endTime) {
+                break;
+            }
+            contentSize = packetReader.getPosition();
+        }
+        return contentSize;
+    }
+
+    /**
+     * Schedule the decoding of the indexed packets that follow the current
+     * one. Live traces are not decoded ahead, their last packets may still be
+     * growing.
+     */
+    private void decodeNextPackets(PacketDecoder decoder) {
+        if (fLive) {
+            return;
+        }
+        StreamInputPacketIndex index = fStreamInput.getIndex();
+        int last = Math.min(fPacketIndex + decoder.getDepth(), index.size() - 1);
+        for (int i = fPacketIndex + 1; i <= last; i++) {
+            ICTFPacketDescriptor next = index.getElement(i);
+            if (!isPacketSkipped(next)) {
+                decoder.schedule(next, () -> decodePacket(next));
+            }
+        }
+    }
+
+    /**
+     * Get the buffer of a packet, from the prefetcher if it was read ahead,
+     * otherwise by mapping it now.
+     */
+    private ByteBuffer getPacketBuffer(long position, long size) throws CTFException {
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            ByteBuffer buffer = prefetcher.take(position, size);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return getByteBufferAt(position, size);
+    }
+
+    /**
+     * Schedule the read-ahead of the indexed packets that follow the current
+     * one.
+     */
+    private void prefetchNextPackets() {
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher == null) {
+            return;
+        }
+        StreamInputPacketIndex index = fStreamInput.getIndex();
+        int last = Math.min(fPacketIndex + prefetcher.getDepth(), index.size() - 1);
+        for (int i = fPacketIndex + 1; i <= last; i++) {
+            ICTFPacketDescriptor next = index.getElement(i);
+            if (!isPacketSkipped(next)) {
+                prefetcher.schedule(next.getOffsetBits(), next.getContentSizeBits());
             }
-            BitBuffer bitBuffer = new BitBuffer(getByteBufferAt(packet.getOffsetBits(), size));
-            bitBuffer.position(packet.getPayloadStartBits());
-            IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
-            CTFTrace trace = getStreamInput().getStream().getTrace();
-            ctfPacketReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
         }
-        return ctfPacketReader;
+    }
+
+    /**
+     * Cancel the pending read-ahead and decode-ahead of the packets that
+     * follow the current one, they are stale after a seek.
+     */
+    private void cancelReadAhead() {
+        PacketPrefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.cancel();
+        }
+        PacketDecoder decoder = fDecoder;
+        if (decoder != null) {
+            decoder.cancel();
+        }
     }
 
     /**
@@ -180,6 +353,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
+        cancelReadAhead();
         if (fFileChannel != null) {
             fFileChannel.close();
         }
@@ -256,6 +430,103 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fStreamInput.getStream().getEventDeclarations();
     }
 
+    /**
+     * Set the number of packets to decode ahead on worker threads. The events
+     * of those packets are kept in memory until they are read.
+     *
+     * @param packetsAhead
+     *            the number of packets to decode ahead, 0 to decode the
+     *            packets on the reading thread when they are reached
+     * @since 2.1
+     */
+    public void setParallelDecoding(int packetsAhead) {
+        PacketDecoder decoder = fDecoder;
+        if (decoder != null) {
+            if (decoder.getDepth() == packetsAhead) {
+                return;
+            }
+            decoder.cancel();
+        }
+        fDecoder = (packetsAhead > 0) ? new PacketDecoder(packetsAhead) : null;
+    }
+
+    /**
+     * Only read the packets that intersect a time range and, optionally, that
+     * were recorded on some CPUs. The other packets are skipped using the
+     * packet index, without being decoded. The events of the packets at the
+     * boundaries of the range are all returned, it is up to the caller to
+     * ignore the ones outside the range.
+     * <p>
+     * The filter applies when the reader moves to another packet, the caller
+     * should {@link #seek(long)} after setting it.
+     *
+     * @param startTime
+     *            the start of the range, in cycles
+     * @param endTime
+     *            the end of the range, in cycles
+     * @param cpus
+     *            the CPUs to read, or null to read all of them. Packets with
+     *            an unknown CPU are always read.
+     * @since 2.1
+     */
+    public void setPacketFilter(long startTime, long endTime, @Nullable Set<Integer> cpus) {
+        fFilterStart = startTime;
+        fFilterEnd = endTime;
+        fFilterCpus = cpus;
+    }
+
+    /**
+     * Only return the events of some event types. The events of the other
+     * event types are skipped as they are read. If the stream does not
+     * declare any of the event types, its packets are not read at all.
+     * <p>
+     * The filter applies to the next events read, the caller should
+     * {@link #seek(long)} after setting it.
+     *
+     * @param eventNames
+     *            the names of the event types to return, or null to return
+     *            all the events
+     * @since 2.1
+     */
+    public void setEventFilter(@Nullable Set<String> eventNames) {
+        fFilterEvents = eventNames;
+        if (eventNames == null) {
+            fFilterDeclarations = new IEventDeclaration[0];
+            fAcceptedEvents = new boolean[0];
+            fNoEventAccepted = false;
+            return;
+        }
+        @Nullable IEventDeclaration[] declarations = getEventDeclarations().toArray(new IEventDeclaration[0]);
+        boolean[] accepted = new boolean[declarations.length];
+        boolean noEventAccepted = !eventNames.contains(CTFStrings.LOST_EVENT_NAME);
+        for (int i = 0; i < accepted.length; i++) {
+            IEventDeclaration declaration = declarations[i];
+            accepted[i] = declaration != null && eventNames.contains(declaration.getName());
+            noEventAccepted &= !accepted[i];
+        }
+        fFilterDeclarations = declarations;
+        fAcceptedEvents = accepted;
+        fNoEventAccepted = noEventAccepted;
+    }
+
+    /**
+     * Is an event excluded by the event filter?
+     */
+    private boolean isEventSkipped(IEventDefinition event) {
+        Set<String> eventNames = fFilterEvents;
+        if (eventNames == null) {
+            return false;
+        }
+        IEventDeclaration declaration = event.getDeclaration();
+        Long id = declaration.getId();
+        boolean[] accepted = fAcceptedEvents;
+        if (id != null && id >= 0 && id < accepted.length && fFilterDeclarations[id.intValue()] == declaration) {
+            return !accepted[id.intValue()];
+        }
+        /* Lost events and declarations that are not in the stream */
+        return !eventNames.contains(declaration.getName());
+    }
+
     /**
      * Set the trace to live mode
      *
@@ -295,24 +566,29 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFResponse readNextEvent() throws CTFException {
+        while (true) {
+            /*
+             * Change packet if needed
+             */
+            if (!fPacketReader.hasMoreEvents()) {
+                final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
+                if (prevPacket != null || fLive) {
+                    goToNextPacket();
+                }
 
-        /*
-         * Change packet if needed
-         */
-        if (!fPacketReader.hasMoreEvents()) {
-            final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
-            if (prevPacket != null || fLive) {
-                goToNextPacket();
             }
 
-        }
-
-        /*
-         * If an event is available, read it.
-         */
-        if (fPacketReader.hasMoreEvents()) {
-            setCurrentEvent(fPacketReader.readNextEvent());
-            return CTFResponse.OK;
+            /*
+             * If an event is available, read it.
+             */
+            if (!fPacketReader.hasMoreEvents()) {
+                break;
+            }
+            IEventDefinition event = fPacketReader.readNextEvent();
+            if (!isEventSkipped(event)) {
+                setCurrentEvent(event);
+                return CTFResponse.OK;
+            }
         }
         this.setCurrentEvent(null);
         return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
@@ -326,20 +602,54 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private void goToNextPacket() throws CTFException {
         fPacketIndex++;
-        // did we already index the packet?
-        while (getPacketSize() < (fPacketIndex + 1)) {
-            // go to the next packet if there is one, index it at the same time
-            if (fStreamInput.addPacketHeaderIndex()) {
-                fPacketIndex = getPacketSize() - 1;
-            } else {
+        if (fNoEventAccepted) {
+            /* None of the packets has events of interest */
+            fPacketReader = NullPacketReader.INSTANCE;
+            return;
+        }
+        while (true) {
+            // did we already index the packet?
+            while (getPacketSize() < (fPacketIndex + 1)) {
+                // go to the next packet if there is one, index it at the same
+                // time
+                if (fStreamInput.addPacketHeaderIndex()) {
+                    fPacketIndex = getPacketSize() - 1;
+                } else {
+                    fPacketReader = NullPacketReader.INSTANCE;
+                    return;
+                }
+
+            }
+            ICTFPacketDescriptor packet = getPacket();
+            if (packet == null || !isPacketSkipped(packet)) {
+                fPacketReader = getCurrentPacketReader(packet);
+                return;
+            }
+            if (packet.getTimestampBegin() > fFilterEnd) {
+                /* Packets are in time order, none of the next ones is needed */
                 fPacketReader = NullPacketReader.INSTANCE;
                 return;
             }
-
+            fPacketIndex++;
         }
-        ICTFPacketDescriptor packet = getPacket();
-        fPacketReader = getCurrentPacketReader(packet);
+    }
 
+    /**
+     * Is a packet excluded by the packet filter?
+     */
+    private boolean isPacketSkipped(ICTFPacketDescriptor packet) {
+        if (fNoEventAccepted) {
+            return true;
+        }
+        if (packet.getTimestampEnd() < fFilterStart || packet.getTimestampBegin() > fFilterEnd) {
+            return true;
+        }
+        Set<Integer> cpus = fFilterCpus;
+        if (cpus == null) {
+            return false;
+        }
+        long cpu = packet.getTargetId();
+        return cpu != IPacketReader.UNKNOWN_CPU && !cpus.contains((int) cpu);
     }
 
     /**
@@ -407,6 +717,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     private void gotoPacket(long timestamp) throws CTFException {
+        cancelReadAhead();
         fPacketIndex = fStreamInput.getIndex().search(timestamp) - 1;
         /*
          * Switch to this packet.
@@ -437,6 +748,7 @@ public class CTFStreamInputReader implements AutoCloseable {
             return;
         }
 
+        cancelReadAhead();
         fPacketIndex = fStreamInput.getIndex().size() - 1;
         /*
          * Go to last indexed packet
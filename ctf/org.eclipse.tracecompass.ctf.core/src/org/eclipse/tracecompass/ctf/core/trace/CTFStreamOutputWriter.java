@@ -18,16 +18,21 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
-import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 
 /**
@@ -39,6 +44,10 @@ import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
  */
 public class CTFStreamOutputWriter {
 
+    private static final String CONTENT_SIZE = "content_size"; //$NON-NLS-1$
+    private static final String PACKET_SIZE = "packet_size"; //$NON-NLS-1$
+    private static final String TIMESTAMP_END = "timestamp_end"; //$NON-NLS-1$
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -96,6 +105,35 @@ public class CTFStreamOutputWriter {
      * @since 1.0
      */
     public void copyPackets(long startTime, long endTime) throws CTFException {
+        copyPackets(startTime, endTime, false);
+    }
+
+    /**
+     * Copies packets from the relevant input this input stream to a
+     * corresponding output stream based on a given time range. The following
+     * condition has to be met so that a packet is written to the output stream:
+     *
+     * startTime <= packet.getTimestampEnd() && packet.getTimestampStart() <= endTime
+     *
+     * The packets are transferred from file to file without being read. If
+     * requested, the packet that contains the end time is rewritten without
+     * its events after the end time, with its packet context updated
+     * accordingly. The packet that contains the start time is always copied
+     * whole: removing its first events would require re-encoding the others,
+     * their alignment and compact timestamps depend on what precedes them.
+     *
+     * @param startTime
+     *            the start time for packets to be written, in cycles
+     * @param endTime
+     *            the end time for packets to be written, in cycles
+     * @param trimEnd
+     *            true to remove the events after the end time from the last
+     *            packet
+     * @throws CTFException
+     *             if a reading or writing error occurs
+     * @since 2.1
+     */
+    public void copyPackets(long startTime, long endTime, boolean trimEnd) throws CTFException {
         CTFStreamInput streamInput = fStreamInput;
         if (streamInput == null) {
             throw new CTFIOException("StreamInput is null. Can't copy packets"); //$NON-NLS-1$
@@ -108,8 +146,15 @@ public class CTFStreamOutputWriter {
                 for (int i = 0; i < index.size(); i++) {
                     ICTFPacketDescriptor entry = index.getElement(i);
                     if ((entry.getTimestampEnd() >= startTime) && (entry.getTimestampBegin() <= endTime)) {
-                        ByteBuffer buffer = SafeMappedByteBuffer.map(source, MapMode.READ_ONLY, entry.getOffsetBytes(), entry.getPacketSizeBits() / Byte.SIZE);
-                        fStreamPacketOutputWriter.writePacket(buffer, fc);
+                        ByteBuffer trimmed = null;
+                        if (trimEnd && entry.getTimestampEnd() > endTime) {
+                            trimmed = trimPacket(streamInput, entry, endTime, source);
+                        }
+                        if (trimmed != null) {
+                            fStreamPacketOutputWriter.writePacket(trimmed, fc);
+                        } else {
+                            transferPacket(source, entry, fc);
+                        }
                         count++;
                     }
                 }
@@ -126,6 +171,125 @@ public class CTFStreamOutputWriter {
         }
     }
 
+    /**
+     * Copy a whole packet, the kernel can then move the data between the files
+     * without it going through the Java heap.
+     */
+    private static void transferPacket(FileChannel source, ICTFPacketDescriptor entry, FileChannel fc) throws IOException {
+        long position = entry.getOffsetBytes();
+        long remaining = entry.getPacketSizeBits() / Byte.SIZE;
+        while (remaining > 0) {
+            long transferred = source.transferTo(position, remaining, fc);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file at offset " + position); //$NON-NLS-1$
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    /**
+     * Read a packet without its events after a given time, and update its
+     * content size, packet size and end time.
+     *
+     * @return the trimmed packet, ready to be written, or null if its packet
+     *         context cannot be updated and the packet must be copied whole
+     */
+    private static @Nullable ByteBuffer trimPacket(CTFStreamInput streamInput, ICTFPacketDescriptor entry, long endTime, FileChannel source) throws CTFException, IOException {
+        long contentSizeBits;
+        try (CTFStreamInputReader reader = new CTFStreamInputReader(streamInput)) {
+            contentSizeBits = reader.getContentSizeBefore(entry, endTime);
+        }
+        long packetSizeBytes = (contentSizeBits + Byte.SIZE - 1) / Byte.SIZE;
+        ByteBuffer packet = checkNotNull(ByteBuffer.allocate((int) packetSizeBytes));
+        long position = entry.getOffsetBytes();
+        while (packet.hasRemaining()) {
+            if (source.read(packet, position + packet.position()) < 0) {
+                throw new IOException("Unexpected end of file at offset " + position); //$NON-NLS-1$
+            }
+        }
+        packet.flip();
+
+        /* Find the fields of the packet context */
+        CTFTrace trace = streamInput.getStream().getTrace();
+        StructDeclaration contextDecl = streamInput.getStream().getPacketContextDecl();
+        if (contextDecl == null) {
+            return null;
+        }
+        BitBuffer bitBuffer = new BitBuffer(checkNotNull(packet.duplicate()), trace.getByteOrder());
+        StructDeclaration headerDecl = trace.getPacketHeader();
+        if (headerDecl != null) {
+            headerDecl.createDefinition(trace, ILexicalScope.TRACE_PACKET_HEADER, bitBuffer);
+        }
+        bitBuffer.position(align(bitBuffer.position(), contextDecl.getAlignment()));
+        Map<String, Long> offsets = new HashMap<>();
+        for (String fieldName : contextDecl.getFieldsList()) {
+            IDeclaration field = contextDecl.getField(fieldName);
+            if (field == null) {
+                return null;
+            }
+            long offset = align(bitBuffer.position(), field.getAlignment());
+            bitBuffer.position(offset);
+            offsets.put(fieldName, offset);
+            field.createDefinition(streamInput, fieldName, bitBuffer);
+        }
+
+        long newEnd = Math.max(entry.getTimestampBegin(), Math.min(endTime, entry.getTimestampEnd()));
+        if (!canPatch(contextDecl, offsets, CONTENT_SIZE, contentSizeBits) ||
+                !canPatch(contextDecl, offsets, PACKET_SIZE, packetSizeBytes * Byte.SIZE)) {
+            return null;
+        }
+        patch(packet, contextDecl, offsets, CONTENT_SIZE, contentSizeBits);
+        patch(packet, contextDecl, offsets, PACKET_SIZE, packetSizeBytes * Byte.SIZE);
+        if (canPatch(contextDecl, offsets, TIMESTAMP_END, newEnd)) {
+            patch(packet, contextDecl, offsets, TIMESTAMP_END, newEnd);
+        }
+        return packet;
+    }
+
+    private static long align(long position, long alignment) {
+        long mask = alignment - 1;
+        return (position + mask) & ~mask;
+    }
+
+    /**
+     * Can a field of the packet context be overwritten in place? Only
+     * byte-aligned integers of whole bytes are supported, which is what the
+     * tracers write.
+     */
+    private static boolean canPatch(StructDeclaration contextDecl, Map<String, Long> offsets, String fieldName, long value) {
+        IDeclaration field = contextDecl.getField(fieldName);
+        Long offset = offsets.get(fieldName);
+        if (!(field instanceof IntegerDeclaration) || offset == null || offset % Byte.SIZE != 0) {
+            return false;
+        }
+        int length = ((IntegerDeclaration) field).getLength();
+        if (length != Byte.SIZE && length != Short.SIZE && length != Integer.SIZE && length != Long.SIZE) {
+            return false;
+        }
+        return length == Long.SIZE || (value >>> length) == 0;
+    }
+
+    private static void patch(ByteBuffer packet, StructDeclaration contextDecl, Map<String, Long> offsets, String fieldName, long value) {
+        IntegerDeclaration field = (IntegerDeclaration) contextDecl.getField(fieldName);
+        int index = (int) (checkNotNull(offsets.get(fieldName)) / Byte.SIZE);
+        ByteBuffer buffer = packet.duplicate().order(field.getByteOrder());
+        switch (field.getLength()) {
+        case Byte.SIZE:
+            buffer.put(index, (byte) value);
+            break;
+        case Short.SIZE:
+            buffer.putShort(index, (short) value);
+            break;
+        case Integer.SIZE:
+            buffer.putInt(index, (int) value);
+            break;
+        default:
+            buffer.putLong(index, value);
+            break;
+        }
+    }
+
     /**
      * Get the stream file to write.
      *
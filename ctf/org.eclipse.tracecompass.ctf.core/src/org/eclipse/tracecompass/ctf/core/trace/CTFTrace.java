@@ -141,6 +141,12 @@ public class CTFTrace implements IDefinitionScope {
 
     private final DeclarationScope fScope = new DeclarationScope(null, MetadataStrings.TRACE);
 
+    /**
+     * The metadata of a trace opened from a directory, kept to parse the
+     * metadata appended later
+     */
+    private Metadata fMetadata = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -180,6 +186,7 @@ public class CTFTrace implements IDefinitionScope {
 
         /* Open and parse the metadata file */
         metadata.parseFile();
+        fMetadata = metadata;
 
         init(path);
     }
@@ -191,6 +198,28 @@ public class CTFTrace implements IDefinitionScope {
         fPath = null;
     }
 
+    /**
+     * Parse the metadata that was appended to the metadata file since the
+     * trace was opened, for example when the trace is still being written.
+     * Only the new metadata is parsed, the declarations it contains (streams,
+     * events, clocks...) are added to the trace, up to the last one that is
+     * completely written. This is done by {@link CTFTraceReader#update()}
+     * before it looks for new stream inputs, and concurrent updates are
+     * serialized.
+     *
+     * @return true if there was new metadata, false otherwise
+     * @throws CTFException
+     *             If the new metadata could not be parsed
+     * @since 2.1
+     */
+    public boolean updateMetadata() throws CTFException {
+        Metadata metadata = fMetadata;
+        if (metadata == null) {
+            return false;
+        }
+        return metadata.parseFileUpdate();
+    }
+
     private void init(File path) throws CTFException {
 
         /* Open all the trace files */
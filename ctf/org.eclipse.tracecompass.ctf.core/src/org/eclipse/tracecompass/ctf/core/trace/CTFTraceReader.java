@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -23,10 +23,12 @@ import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputReaderLoserTree;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputReaderTimestampComparator;
 
 /**
@@ -57,9 +59,9 @@ public class CTFTraceReader implements AutoCloseable {
     private final List<CTFStreamInputReader> fStreamInputReaders = Collections.synchronizedList(new ArrayList<CTFStreamInputReader>());
 
     /**
-     * Priority queue to order the trace file readers by timestamp.
+     * Tournament tree to order the trace file readers by timestamp.
      */
-    private PriorityQueue<CTFStreamInputReader> fPrio;
+    private StreamInputReaderLoserTree fPrio;
 
     /**
      * Array to count the number of event per trace file.
@@ -81,6 +83,24 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private boolean fClosed = false;
 
+    /**
+     * Number of packets decoded ahead by worker threads, per stream. Negative
+     * if the default of the stream input readers is used.
+     */
+    private int fParallelDecoding = -1;
+
+    /**
+     * Packet filter applied to all the stream input readers
+     */
+    private long fFilterStart = Long.MIN_VALUE;
+    private long fFilterEnd = Long.MAX_VALUE;
+    private @Nullable Set<Integer> fFilterCpus = null;
+
+    /**
+     * Event filter applied to all the stream input readers
+     */
+    private @Nullable Set<String> fFilterEvents = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -129,6 +149,11 @@ public class CTFTraceReader implements AutoCloseable {
         CTFTraceReader newReader = null;
 
         newReader = new CTFTraceReader(fTrace);
+        if (fParallelDecoding >= 0) {
+            newReader.setParallelDecoding(fParallelDecoding);
+        }
+        newReader.setPacketFilter(fFilterStart, fFilterEnd, fFilterCpus);
+        newReader.setEventFilter(fFilterEvents);
         newReader.fStartTime = fStartTime;
         newReader.setEndTime(fEndTime);
         return newReader;
@@ -181,10 +206,21 @@ public class CTFTraceReader implements AutoCloseable {
     /**
      * Get the priority queue of this trace reader.
      *
-     * @return The priority queue of input readers
+     * @return A copy of the priority queue of input readers, modifying it does
+     *         not affect this trace reader
+     * @deprecated The readers are now merged with a tournament tree, use
+     *             {@link #getTopStream()} to get the next stream to read.
      */
+    @Deprecated
     protected PriorityQueue<CTFStreamInputReader> getPrio() {
-        return fPrio;
+        PriorityQueue<CTFStreamInputReader> prio = new PriorityQueue<>(Math.max(fPrio.size(), MIN_PRIO_SIZE),
+                new StreamInputReaderTimestampComparator());
+        for (CTFStreamInputReader reader : fPrio) {
+            if (reader.getCurrentEvent() != null) {
+                prio.add(reader);
+            }
+        }
+        return prio;
     }
 
     // ------------------------------------------------------------------------
@@ -233,12 +269,15 @@ public class CTFTraceReader implements AutoCloseable {
     }
 
     /**
-     * Update the priority queue to make it match the parent trace
+     * Update the priority queue to make it match the parent trace. The
+     * metadata appended to the trace's metadata file is parsed first, so that
+     * the streams and events it declares are known to the new readers.
      *
      * @throws CTFException
      *             An error occured
      */
     public void update() throws CTFException {
+        fTrace.updateMetadata();
         Set<CTFStreamInputReader> readers = new HashSet<>();
         for (ICTFStream stream : fTrace.getStreams()) {
             Set<CTFStreamInput> streamInputs = stream.getStreamInputs();
@@ -249,6 +288,11 @@ public class CTFTraceReader implements AutoCloseable {
                 try (CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput))) {
                     if (!fStreamInputReaders.contains(streamInputReader)) {
                         CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput));
+                        if (fParallelDecoding >= 0) {
+                            streamInputReaderToAdd.setParallelDecoding(fParallelDecoding);
+                        }
+                        streamInputReaderToAdd.setPacketFilter(fFilterStart, fFilterEnd, fFilterCpus);
+                        streamInputReaderToAdd.setEventFilter(fFilterEvents);
                         streamInputReaderToAdd.readNextEvent();
                         fStreamInputReaders.add(streamInputReaderToAdd);
                         readers.add(streamInputReaderToAdd);
@@ -288,20 +332,11 @@ public class CTFTraceReader implements AutoCloseable {
      *             if an error occurs
      */
     private void populateStreamInputReaderHeap() throws CTFException {
+        fPrio = new StreamInputReaderLoserTree(fStreamInputReaders.size());
         if (fStreamInputReaders.isEmpty()) {
-            fPrio = new PriorityQueue<>(MIN_PRIO_SIZE,
-                    new StreamInputReaderTimestampComparator());
             return;
         }
 
-        /*
-         * Create the priority queue with a size twice as bigger as the number
-         * of reader in order to avoid constant resizing.
-         */
-        fPrio = new PriorityQueue<>(
-                Math.max(fStreamInputReaders.size() * 2, MIN_PRIO_SIZE),
-                new StreamInputReaderTimestampComparator());
-
         int pos = 0;
 
         for (CTFStreamInputReader reader : fStreamInputReaders) {
@@ -343,9 +378,9 @@ public class CTFTraceReader implements AutoCloseable {
      */
     public boolean advance() throws CTFException {
         /*
-         * Remove the reader from the top of the priority queue.
+         * Get the reader from the top of the priority queue.
          */
-        CTFStreamInputReader top = fPrio.poll();
+        CTFStreamInputReader top = fPrio.peek();
 
         /*
          * If the queue was empty.
@@ -359,9 +394,9 @@ public class CTFTraceReader implements AutoCloseable {
         switch (top.readNextEvent()) {
         case OK: {
             /*
-             * Add it back in the queue.
+             * Replay its position in the queue.
              */
-            fPrio.add(top);
+            fPrio.updateTop();
             /*
              * We're in OK, there's a guaranteed top#getCurrentEvent() unless another
              * thread does something bad.
@@ -374,14 +409,18 @@ public class CTFTraceReader implements AutoCloseable {
             break;
         }
         case WAIT: {
-            fPrio.add(top);
+            /*
+             * Keep it on top, it will be polled again on the next advance.
+             */
             break;
         }
         case FINISH:
+            fPrio.removeTop();
             break;
         case ERROR:
         default:
             // something bad happend
+            fPrio.removeTop();
         }
         /*
          * If there is no reader in the queue, it means the trace reader reached
@@ -511,6 +550,76 @@ public class CTFTraceReader implements AutoCloseable {
         return fEndTime;
     }
 
+    /**
+     * Enable or disable the parallel decoding of the trace. When enabled, the
+     * next packets of every stream are decoded on worker threads while the
+     * current ones are being read, and the events are still returned in
+     * timestamp order. This is meant for reading a whole trace sequentially;
+     * the decoded events are kept in memory until they are read.
+     *
+     * @param packetsAhead
+     *            the number of packets to decode ahead for each stream, 0 to
+     *            decode all the events on the reading thread
+     * @since 2.1
+     */
+    public void setParallelDecoding(int packetsAhead) {
+        fParallelDecoding = Math.max(0, packetsAhead);
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setParallelDecoding(fParallelDecoding);
+            }
+        }
+    }
+
+    /**
+     * Restrict the reading to the packets that intersect a time range and,
+     * optionally, that were recorded on some CPUs. The other packets are
+     * skipped using the packet index, without being decoded, so reading a
+     * small window of a large trace costs in proportion to the window.
+     * <p>
+     * Events of the packets at the boundaries of the range can be outside of
+     * it, the caller should stop reading once past the end time. The filter
+     * applies to all the streams from the next {@link #seek(long)}.
+     *
+     * @param startTime
+     *            the start of the range, in cycles
+     * @param endTime
+     *            the end of the range, in cycles
+     * @param cpus
+     *            the CPUs to read, or null to read all of them
+     * @since 2.1
+     */
+    public void setPacketFilter(long startTime, long endTime, @Nullable Set<Integer> cpus) {
+        fFilterStart = startTime;
+        fFilterEnd = endTime;
+        fFilterCpus = cpus;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setPacketFilter(startTime, endTime, cpus);
+            }
+        }
+    }
+
+    /**
+     * Restrict the events returned to the ones of some event types. The other
+     * events are skipped by the stream input readers, and the streams that do
+     * not declare any of the event types are not read at all. The filter
+     * applies to all the streams from the next {@link #seek(long)}.
+     *
+     * @param eventNames
+     *            the names of the event types to return, or null to return
+     *            all the events
+     * @since 2.1
+     */
+    public void setEventFilter(@Nullable Set<String> eventNames) {
+        fFilterEvents = eventNames;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setEventFilter(eventNames);
+            }
+        }
+    }
+
     /**
      * Sets a trace to be live or not
      *
@@ -63,22 +63,53 @@ public class CTFTraceWriter {
      * on a given time range. The following condition has to be met so that
      * a packet is written to the output trace:
      *
-     * startTime <= packet.getTimestampBegin() <= endTime
+     * startTime <= packet.getTimestampEnd() && packet.getTimestampBegin() <= endTime
      *
      * @param startTime
-     *            start time of packets to be included in output trace
+     *            start time of packets to be included in output trace, in
+     *            nanoseconds
      * @param endTime
-     *            end time of packets to be included in the output trace
+     *            end time of packets to be included in the output trace, in
+     *            nanoseconds
      * @param newTracePath
      *            the path of the new trace to be written
      * @throws CTFException
      *            If a reading or writing error occurs
      */
     public void copyPackets(long startTime, long endTime, String newTracePath) throws CTFException {
+        copyPackets(startTime, endTime, newTracePath, false);
+    }
+
+    /**
+     * Copies packets from the relevant input to the output trace based on a
+     * given time range. The following condition has to be met so that a
+     * packet is written to the output trace:
+     *
+     * startTime <= packet.getTimestampEnd() && packet.getTimestampBegin() <= endTime
+     *
+     * The packets are copied as they are, without being decoded. If requested,
+     * the last packet of each stream is rewritten without its events after the
+     * end time.
+     *
+     * @param startTime
+     *            start time of packets to be included in output trace, in
+     *            nanoseconds
+     * @param endTime
+     *            end time of packets to be included in the output trace, in
+     *            nanoseconds
+     * @param newTracePath
+     *            the path of the new trace to be written
+     * @param trimEnd
+     *            true to remove the events after the end time
+     * @throws CTFException
+     *             If a reading or writing error occurs
+     * @since 2.1
+     */
+    public void copyPackets(long startTime, long endTime, String newTracePath, boolean trimEnd) throws CTFException {
         CTFTrace trace = fInTrace;
         if (trace != null) {
-            long adjustedStart = startTime - trace.getClock().getClockOffset();
-            long adjustedEnd = endTime - trace.getClock().getClockOffset();
+            long adjustedStart = trace.timestampNanoToCycles(startTime);
+            long adjustedEnd = trace.timestampNanoToCycles(endTime);
             File out = new File(newTracePath);
             if (out.exists()) {
                 throw new CTFIOException("Trace segment cannot be created since trace already exists: " + newTracePath); //$NON-NLS-1$
@@ -103,7 +134,7 @@ public class CTFTraceWriter {
                 Set<CTFStreamInput> inputs = stream.getStreamInputs();
                 for (CTFStreamInput s : inputs) {
                     CTFStreamOutputWriter streamOutputwriter = new CTFStreamOutputWriter(checkNotNull(s), out);
-                    streamOutputwriter.copyPackets(adjustedStart, adjustedEnd);
+                    streamOutputwriter.copyPackets(adjustedStart, adjustedEnd, trimEnd);
                 }
             }
         }
@@ -18,21 +18,23 @@ package org.eclipse.tracecompass.ctf.core.trace;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.UUID;
 
-import org.antlr.runtime.ANTLRReaderStream;
+import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.RecognitionException;
 import org.antlr.runtime.tree.CommonTree;
@@ -47,6 +49,9 @@ import org.eclipse.tracecompass.internal.ctf.core.event.metadata.IOStructGen;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * The CTF trace metadata TSDL file
  *
@@ -78,6 +83,22 @@ public class Metadata {
      */
     private static final int METADATA_PACKET_HEADER_SIZE = 37;
 
+    /**
+     * Maximum number of parsed metadata trees kept in the cache
+     */
+    private static final int AST_CACHE_SIZE = 16;
+
+    /**
+     * Parsed metadata trees, by hash of the metadata text. Reopening a trace,
+     * or opening several traces with the same metadata, then only walks the
+     * tree again instead of lexing and parsing the text. The trees are only
+     * read by the walk, so they can be shared.
+     */
+    private static final Cache<String, CommonTree> AST_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(AST_CACHE_SIZE)
+            .softValues()
+            .build();
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -94,6 +115,16 @@ public class Metadata {
 
     private IOStructGen fTreeParser;
 
+    /**
+     * Is the metadata file packet-based, as detected by {@link #parseFile()}
+     */
+    private boolean fPacketBased;
+
+    /**
+     * Position in the metadata file up to which the metadata was parsed
+     */
+    private long fMetadataPosition;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -149,18 +180,15 @@ public class Metadata {
      */
     public void parseFile() throws CTFException {
 
-        /*
-         * Reader. It will contain a StringReader if we are using packet-based
-         * metadata and it will contain a FileReader if we have text-based
-         * metadata.
-         */
-
         try (FileInputStream fis = new FileInputStream(getMetadataPath());
-                FileChannel metadataFileChannel = fis.getChannel();
-                /* Check if metadata is packet-based, if not it is text based */
-                Reader metadataTextInput = (isPacketBased(metadataFileChannel) ? readBinaryMetaData(metadataFileChannel) : new FileReader(fis.getFD()));) {
+                FileChannel metadataFileChannel = fis.getChannel();) {
 
-            readMetaDataText(metadataTextInput);
+            /* Check if metadata is packet-based, if not it is text based */
+            fPacketBased = isPacketBased(metadataFileChannel);
+            String metadataText = fPacketBased ? readBinaryMetaData(metadataFileChannel) : readTextMetaData(metadataFileChannel);
+            fMetadataPosition = metadataFileChannel.position();
+
+            readMetaDataText(metadataText);
 
         } catch (FileNotFoundException e) {
             throw new CTFException("Cannot find metadata file!", e); //$NON-NLS-1$
@@ -171,7 +199,133 @@ public class Metadata {
         }
     }
 
-    private Reader readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
+    /**
+     * Parse the metadata that was appended to the metadata file since it was
+     * last parsed, for example when the trace is still being written. Only
+     * the new packets (or the new text) are parsed, as a fragment that adds
+     * to the declarations already parsed. A packet, or a text declaration,
+     * that is not completely written yet is left for the next update. The
+     * updates are serialized, so that concurrent readers of the trace do not
+     * parse the same metadata twice.
+     *
+     * @return true if new metadata was parsed, false if there was none
+     * @throws CTFException
+     *             If there was a problem parsing the new metadata
+     */
+    synchronized boolean parseFileUpdate() throws CTFException {
+        if (fTreeParser == null) {
+            parseFile();
+            return true;
+        }
+        try (FileChannel metadataFileChannel = FileChannel.open(FileSystems.getDefault().getPath(getMetadataPath()), StandardOpenOption.READ)) {
+            if (metadataFileChannel.size() <= fMetadataPosition) {
+                return false;
+            }
+            metadataFileChannel.position(fMetadataPosition);
+            String metadataText;
+            if (fPacketBased) {
+                StringBuffer text = new StringBuffer();
+                while (hasCompletePacket(metadataFileChannel)) {
+                    readMetadataPacket(metadataFileChannel, text);
+                }
+                metadataText = text.toString();
+            } else {
+                ByteBuffer buffer = readRemaining(metadataFileChannel);
+                int length = getCompleteDeclarationsLength(buffer.array(), buffer.position());
+                metadataText = new String(buffer.array(), 0, length, Charset.defaultCharset());
+                metadataFileChannel.position(fMetadataPosition + length);
+            }
+            fMetadataPosition = metadataFileChannel.position();
+            if (metadataText.trim().isEmpty()) {
+                return false;
+            }
+            readMetaDataTextFragment(metadataText);
+            return true;
+        } catch (NoSuchFileException e) {
+            throw new CTFException("Cannot find metadata file!", e); //$NON-NLS-1$
+        } catch (IOException | ParseException e) {
+            throw new CTFException(e);
+        } catch (RecognitionException | RewriteCardinalityException e) {
+            throw new CtfAntlrException(e);
+        }
+    }
+
+    private static String readTextMetaData(FileChannel metadataFileChannel) throws IOException {
+        ByteBuffer buffer = readRemaining(metadataFileChannel);
+        return new String(buffer.array(), 0, buffer.position(), Charset.defaultCharset());
+    }
+
+    private static ByteBuffer readRemaining(FileChannel metadataFileChannel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (metadataFileChannel.size() - metadataFileChannel.position()));
+        while (buffer.hasRemaining() && metadataFileChannel.read(buffer) >= 0) {
+            // Read the rest of the file
+        }
+        return buffer;
+    }
+
+    /**
+     * Get the length of the text metadata up to the end of its last complete
+     * top-level declaration, which is the last semicolon outside of braces,
+     * comments and literals. The text after it may still be being written.
+     * The delimiters are all ASCII, so the bytes are scanned before decoding.
+     *
+     * @return the length in bytes of the complete declarations
+     */
+    private static int getCompleteDeclarationsLength(byte[] text, int length) {
+        int complete = 0;
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            byte c = text[i];
+            byte next = (i + 1 < length) ? text[i + 1] : 0;
+            if (c == '/' && next == '*') {
+                i += 2;
+                while (i < length && !(text[i] == '*' && i + 1 < length && text[i + 1] == '/')) {
+                    i++;
+                }
+                i += 2;
+                continue;
+            } else if (c == '/' && next == '/') {
+                while (i < length && text[i] != '\n') {
+                    i++;
+                }
+                continue;
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < length && text[i] != c) {
+                    i += (text[i] == '\\') ? 2 : 1;
+                }
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            } else if (c == ';' && depth == 0) {
+                complete = i + 1;
+            }
+            i++;
+        }
+        return complete;
+    }
+
+    /**
+     * Is there a metadata packet that is completely written at the current
+     * position of the channel?
+     */
+    private boolean hasCompletePacket(FileChannel metadataFileChannel) throws IOException {
+        long position = metadataFileChannel.position();
+        long remaining = metadataFileChannel.size() - position;
+        if (remaining < METADATA_PACKET_HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer headerByteBuffer = ByteBuffer.allocate(METADATA_PACKET_HEADER_SIZE);
+        metadataFileChannel.read(headerByteBuffer, position);
+        headerByteBuffer.position(0);
+        headerByteBuffer.order(fDetectedByteOrder);
+        MetadataPacketHeader header = new MetadataPacketHeader(headerByteBuffer);
+        return remaining >= header.getPacketSize() / BITS_PER_BYTE;
+    }
+
+    private String readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
         /* Create StringBuffer to receive metadata text */
         StringBuffer metadataText = new StringBuffer();
 
@@ -186,8 +340,7 @@ public class Metadata {
                     metadataText);
         }
 
-        /* Wrap the metadata string with a StringReader */
-        return new StringReader(metadataText.toString());
+        return metadataText.toString();
     }
 
     /**
@@ -246,10 +399,9 @@ public class Metadata {
      *             parsing a TSDL file
      */
     public void parseText(String data) throws CTFException {
-        Reader metadataTextInput = new StringReader(data);
         try {
-            readMetaDataText(metadataTextInput);
-        } catch (IOException | ParseException e) {
+            readMetaDataText(data);
+        } catch (ParseException e) {
             throw new CTFException(e);
         } catch (RecognitionException | RewriteCardinalityException e) {
             throw new CtfAntlrException(e);
@@ -257,8 +409,8 @@ public class Metadata {
 
     }
 
-    private void readMetaDataText(Reader metadataTextInput) throws IOException, RecognitionException, ParseException {
-        CommonTree tree = createAST(metadataTextInput);
+    private void readMetaDataText(String metadataText) throws RecognitionException, ParseException {
+        CommonTree tree = createAST(metadataText);
 
         /* Generate IO structures (declarations) */
         fTreeParser = new IOStructGen(tree, NonNullUtils.checkNotNull(fTrace));
@@ -281,35 +433,55 @@ public class Metadata {
      *             parsing a TSDL file
      */
     public void parseTextFragment(String dataFragment) throws CTFException {
-        Reader metadataTextInput = new StringReader(dataFragment);
         try {
-            readMetaDataTextFragment(metadataTextInput);
-        } catch (IOException | ParseException e) {
+            readMetaDataTextFragment(dataFragment);
+        } catch (ParseException e) {
             throw new CTFException(e);
         } catch (RecognitionException | RewriteCardinalityException e) {
             throw new CtfAntlrException(e);
         }
     }
 
-    private void readMetaDataTextFragment(Reader metadataTextInput) throws IOException, RecognitionException, ParseException {
-        CommonTree tree = createAST(metadataTextInput);
+    private void readMetaDataTextFragment(String metadataText) throws RecognitionException, ParseException {
+        CommonTree tree = createAST(metadataText);
         fTreeParser.setTree(tree);
         fTreeParser.generateFragment();
     }
 
-    private static CommonTree createAST(Reader metadataTextInput) throws IOException,
-            RecognitionException {
-        /* Create an ANTLR reader */
-        ANTLRReaderStream antlrStream;
-        antlrStream = new ANTLRReaderStream(metadataTextInput);
+    private static CommonTree createAST(String metadataText) throws RecognitionException {
+        String key = hash(metadataText);
+        if (key != null) {
+            CommonTree tree = AST_CACHE.getIfPresent(key);
+            if (tree != null) {
+                return tree;
+            }
+        }
 
         /* Parse the metadata text and get the AST */
-        CTFLexer ctfLexer = new CTFLexer(antlrStream);
+        CTFLexer ctfLexer = new CTFLexer(new ANTLRStringStream(metadataText));
         CommonTokenStream tokens = new CommonTokenStream(ctfLexer);
         CTFParser ctfParser = new CTFParser(tokens, false);
 
         parse_return pr = ctfParser.parse();
-        return pr.getTree();
+        CommonTree tree = pr.getTree();
+        if (key != null && tree != null) {
+            AST_CACHE.put(key, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Hash the metadata text, to use as a key of the tree cache
+     *
+     * @return the hash, or null if it could not be computed
+     */
+    private static String hash(String metadataText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+            return Base64.getEncoder().encodeToString(digest.digest(metadataText.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -40,12 +40,24 @@ public final class PointerListStringParser implements ICommonTreeParser {
      */
     @Override
     public StringBuilder parse(CommonTree pointers, ICommonTreeParserParameter param) {
-        StringBuilder sb = new StringBuilder();
-        List<CommonTree> pointerList = pointers.getChildren();
         if (pointers.getChildCount() == 0) {
-            return sb;
+            return new StringBuilder();
         }
+        List<CommonTree> pointerList = pointers.getChildren();
+        return parse(pointerList);
+    }
 
+    /**
+     * Creates the string representation of a list of pointer nodes, without
+     * requiring them to have a common parent.
+     *
+     * @param pointerList
+     *            The POINTER nodes
+     *
+     * @return A StringBuilder to which will be appended the string.
+     */
+    public StringBuilder parse(List<CommonTree> pointerList) {
+        StringBuilder sb = new StringBuilder();
         for (CommonTree pointer : pointerList) {
 
             sb.append(" *"); //$NON-NLS-1$
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -69,11 +69,11 @@ public final class TypeDeclarationStringParser implements ICommonTreeParser {
         StringBuilder sb = new StringBuilder();
         sb.append(TypeSpecifierListStringParser.INSTANCE.parse(typeSpecifierList, null));
         if (pointers != null) {
-            CommonTree temp = new CommonTree();
-            for (CommonTree pointer : pointers) {
-                temp.addChild(pointer);
-            }
-            sb.append(PointerListStringParser.INSTANCE.parse(temp, null));
+            /*
+             * Don't re-parent the pointer nodes under a temporary node, the
+             * tree can be shared by several traces.
+             */
+            sb.append(PointerListStringParser.INSTANCE.parse(pointers));
         }
         return sb.toString();
     }
@@ -112,6 +112,16 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         return (int) fPacketContext.getTargetId();
     }
 
+    /**
+     * Get the position of the reader in the packet
+     *
+     * @return the offset of the next event from the beginning of the packet,
+     *         in bits
+     */
+    public long getPosition() {
+        return fInput.position();
+    }
+
     @Override
     public boolean hasMoreEvents() {
         return fHasLost || (fInput.position() < fPacketContext.getContentSizeBits());
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
+
+/**
+ * Packet reader over the events of a packet that was already decoded, by a
+ * {@link PacketDecoder} worker for example.
+ */
+@NonNullByDefault
+public final class DecodedPacketReader implements IPacketReader {
+
+    private final ICTFPacketDescriptor fPacket;
+    private final int fCpu;
+    private final List<IEventDefinition> fEvents;
+    private int fNext = 0;
+
+    /**
+     * Constructor
+     *
+     * @param packet
+     *            the packet that was decoded
+     * @param cpu
+     *            the CPU of the packet
+     * @param events
+     *            the events of the packet, in the order they were read
+     */
+    public DecodedPacketReader(ICTFPacketDescriptor packet, int cpu, List<IEventDefinition> events) {
+        fPacket = packet;
+        fCpu = cpu;
+        fEvents = events;
+    }
+
+    @Override
+    public int getCPU() {
+        return fCpu;
+    }
+
+    @Override
+    public boolean hasMoreEvents() {
+        return fNext < fEvents.size();
+    }
+
+    @Override
+    public IEventDefinition readNextEvent() throws CTFException {
+        if (fNext >= fEvents.size()) {
+            throw new CTFIOException("No more events in packet at offset " + fPacket.getOffsetBytes()); //$NON-NLS-1$
+        }
+        return fEvents.get(fNext++);
+    }
+
+    @Override
+    public ICTFPacketDescriptor getCurrentPacket() {
+        return fPacket;
+    }
+
+    @Override
+    public @Nullable ICompositeDefinition getCurrentPacketEventHeader() {
+        if (fNext == 0) {
+            return null;
+        }
+        IEventDefinition current = fEvents.get(fNext - 1);
+        return (current instanceof EventDefinition) ? ((EventDefinition) current).getEventHeader() : null;
+    }
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
+
+/**
+ * <b><u>PacketDecoder</u></b>
+ * <p>
+ * Decodes the packets that follow the one being read on a pool of worker
+ * threads. CTF packets are self-contained, so the packets of all the streams
+ * of a trace can be decoded in parallel; each stream then consumes its decoded
+ * packets in order and the trace reader merges the streams by timestamp as
+ * usual, so the events are still delivered in order.
+ * <p>
+ * The workers always pick the pending packet with the smallest
+ * timestamp_begin, which is the packet the merge will need first.
+ * <p>
+ * Decoding ahead is disabled by default. It is enabled by setting the system
+ * property {@value #DECODE_AHEAD_PROPERTY} to the number of packets to decode
+ * ahead for each stream, or with
+ * {@link org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader#setParallelDecoding(int)}.
+ */
+@NonNullByDefault
+public class PacketDecoder {
+
+    /**
+     * System property holding the number of packets to decode ahead per
+     * stream
+     */
+    public static final String DECODE_AHEAD_PROPERTY = "org.eclipse.tracecompass.ctf.core.decodeAheadPackets"; //$NON-NLS-1$
+
+    private static final int DEFAULT_DEPTH = Math.max(0, Integer.getInteger(DECODE_AHEAD_PROPERTY, 0));
+
+    private static final int WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private static final ThreadPoolExecutor WORKER_POOL = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<Runnable>(),
+            r -> {
+                Thread thread = new Thread(r, "CTF Packet Decoder"); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        WORKER_POOL.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Decoding task, ordered by the start time of its packet
+     */
+    private static final class DecodeTask extends FutureTask<IPacketReader> implements Comparable<DecodeTask> {
+        private final ICTFPacketDescriptor fPacket;
+
+        public DecodeTask(ICTFPacketDescriptor packet, Callable<IPacketReader> decoder) {
+            super(decoder);
+            fPacket = packet;
+        }
+
+        @Override
+        public int compareTo(DecodeTask o) {
+            return Long.compareUnsigned(fPacket.getTimestampBegin(), o.fPacket.getTimestampBegin());
+        }
+    }
+
+    private final int fDepth;
+    private final Deque<DecodeTask> fPending = new ArrayDeque<>();
+
+    /**
+     * Get the decode-ahead depth configured for this session
+     *
+     * @return the number of packets to decode ahead per stream, 0 if it is
+     *         disabled
+     */
+    public static int getDefaultDepth() {
+        return DEFAULT_DEPTH;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param depth
+     *            the maximum number of packets to decode ahead
+     */
+    public PacketDecoder(int depth) {
+        fDepth = depth;
+    }
+
+    /**
+     * Get the maximum number of packets to decode ahead
+     *
+     * @return the depth of the decode-ahead
+     */
+    public int getDepth() {
+        return fDepth;
+    }
+
+    /**
+     * Request a packet to be decoded in the background. Packets must be
+     * scheduled in file order, a packet that is at or before the last
+     * scheduled one is ignored, as are packets beyond the decode-ahead depth.
+     *
+     * @param packet
+     *            the packet to decode
+     * @param decoder
+     *            the function decoding all the events of the packet
+     */
+    public synchronized void schedule(ICTFPacketDescriptor packet, Callable<IPacketReader> decoder) {
+        if (fPending.size() >= fDepth) {
+            return;
+        }
+        DecodeTask last = fPending.peekLast();
+        if (last != null && last.fPacket.getOffsetBits() >= packet.getOffsetBits()) {
+            return;
+        }
+        DecodeTask task = new DecodeTask(packet, decoder);
+        fPending.addLast(task);
+        WORKER_POOL.execute(task);
+    }
+
+    /**
+     * Get the reader of a decoded packet, waiting for it to be decoded if
+     * needed. The packets scheduled before it are discarded.
+     *
+     * @param packet
+     *            the packet to read
+     * @return the reader of the decoded packet, or null if the packet was not
+     *         scheduled or could not be decoded. The caller should then read
+     *         it itself.
+     */
+    public @Nullable IPacketReader take(ICTFPacketDescriptor packet) {
+        DecodeTask task = poll(packet.getOffsetBits());
+        if (task == null) {
+            return null;
+        }
+        /*
+         * Wait outside of the monitor, so that schedule() and cancel() are not
+         * blocked while the packet is being decoded
+         */
+        try {
+            return task.get();
+        } catch (ExecutionException | CancellationException e) {
+            /* The caller will decode it again and report the error */
+            Activator.logError("Failed to decode packet at offset " + packet.getOffsetBytes(), e); //$NON-NLS-1$
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Remove the task of a packet from the pending tasks, along with the tasks
+     * scheduled before it.
+     *
+     * @param offset
+     *            the offset of the packet, in bits
+     * @return the task of the packet, or null if it was not scheduled
+     */
+    private synchronized @Nullable DecodeTask poll(long offset) {
+        DecodeTask task = fPending.pollFirst();
+        while (task != null) {
+            long taskOffset = task.fPacket.getOffsetBits();
+            if (taskOffset == offset) {
+                return task;
+            }
+            task.cancel(false);
+            if (taskOffset > offset) {
+                /* We went back in the file, everything pending is stale */
+                cancel();
+                return null;
+            }
+            task = fPending.pollFirst();
+        }
+        return null;
+    }
+
+    /**
+     * Cancel all the pending decoding, for example after a seek or when the
+     * stream is closed.
+     */
+    public synchronized void cancel() {
+        for (DecodeTask task : fPending) {
+            task.cancel(false);
+        }
+        fPending.clear();
+    }
+}
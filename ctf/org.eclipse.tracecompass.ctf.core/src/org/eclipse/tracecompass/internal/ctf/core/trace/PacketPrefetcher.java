@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+
+/**
+ * <b><u>PacketPrefetcher</u></b>
+ * <p>
+ * Read-ahead of the packets of a stream file. The packets that follow the one
+ * being read are mapped and loaded in memory on a background I/O thread, so
+ * that the reader does not stall on a page fault storm at every packet
+ * boundary when the file is not in the page cache (cold cache, network file
+ * system).
+ * <p>
+ * Prefetching is disabled by default. It is enabled by setting the system
+ * property {@value #PREFETCH_PROPERTY} to the number of packets to read ahead
+ * for each stream.
+ */
+@NonNullByDefault
+public class PacketPrefetcher {
+
+    /**
+     * System property holding the number of packets to read ahead per stream
+     */
+    public static final String PREFETCH_PROPERTY = "org.eclipse.tracecompass.ctf.core.prefetchPackets"; //$NON-NLS-1$
+
+    private static final int DEFAULT_DEPTH = Math.max(0, Integer.getInteger(PREFETCH_PROPERTY, 0));
+
+    private static final int BITS_PER_BYTE = Byte.SIZE;
+
+    /**
+     * A single thread is shared by all the streams, the packets of the
+     * different streams are then requested in the order they are needed and
+     * the disk (or the server) is not flooded with parallel random reads.
+     */
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "CTF Packet Prefetcher"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final class PendingPacket {
+        private final long fOffsetBits;
+        private final long fSizeBits;
+        private final Future<ByteBuffer> fBuffer;
+
+        public PendingPacket(long offsetBits, long sizeBits, Future<ByteBuffer> buffer) {
+            fOffsetBits = offsetBits;
+            fSizeBits = sizeBits;
+            fBuffer = buffer;
+        }
+    }
+
+    private final FileChannel fFileChannel;
+    private final int fDepth;
+    private final Deque<PendingPacket> fPending = new ArrayDeque<>();
+
+    /**
+     * Get the read-ahead depth configured for this session
+     *
+     * @return the number of packets to prefetch per stream, 0 if prefetching
+     *         is disabled
+     */
+    public static int getDefaultDepth() {
+        return DEFAULT_DEPTH;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fileChannel
+     *            the channel of the stream file
+     * @param depth
+     *            the maximum number of packets to prefetch
+     */
+    public PacketPrefetcher(FileChannel fileChannel, int depth) {
+        fFileChannel = fileChannel;
+        fDepth = depth;
+    }
+
+    /**
+     * Get the maximum number of packets to prefetch
+     *
+     * @return the depth of the read-ahead
+     */
+    public int getDepth() {
+        return fDepth;
+    }
+
+    /**
+     * Request a packet to be mapped in the background. Packets must be
+     * scheduled in file order, a packet that is at or before the last
+     * scheduled one is ignored, as are packets beyond the read-ahead depth.
+     *
+     * @param offsetBits
+     *            the offset of the packet in the file, in bits
+     * @param sizeBits
+     *            the size of the packet, in bits
+     */
+    public synchronized void schedule(long offsetBits, long sizeBits) {
+        if (fPending.size() >= fDepth || sizeBits <= 0) {
+            return;
+        }
+        PendingPacket last = fPending.peekLast();
+        if (last != null && last.fOffsetBits >= offsetBits) {
+            return;
+        }
+        final long position = offsetBits / BITS_PER_BYTE;
+        final long size = (sizeBits + BITS_PER_BYTE - 1) / BITS_PER_BYTE;
+        Future<ByteBuffer> buffer = IO_EXECUTOR.submit(() -> {
+            ByteBuffer map = SafeMappedByteBuffer.map(fFileChannel, MapMode.READ_ONLY, position, size);
+            if (map instanceof MappedByteBuffer) {
+                /* Fault the pages in now, not when the packet gets decoded */
+                ((MappedByteBuffer) map).load();
+            }
+            return map;
+        });
+        fPending.addLast(new PendingPacket(offsetBits, sizeBits, buffer));
+    }
+
+    /**
+     * Get the buffer of a prefetched packet, waiting for it to be mapped if
+     * needed. The packets scheduled before it are discarded.
+     *
+     * @param offsetBits
+     *            the offset of the packet in the file, in bits
+     * @param sizeBits
+     *            the size of the packet, in bits
+     * @return the buffer of the packet, or null if the packet was not
+     *         prefetched or could not be mapped. The caller should then map it
+     *         itself.
+     */
+    public synchronized @Nullable ByteBuffer take(long offsetBits, long sizeBits) {
+        PendingPacket packet = fPending.pollFirst();
+        while (packet != null) {
+            if (packet.fOffsetBits == offsetBits && packet.fSizeBits == sizeBits) {
+                try {
+                    return packet.fBuffer.get();
+                } catch (ExecutionException | CancellationException e) {
+                    Activator.logError("Failed to prefetch packet at offset " + offsetBits / BITS_PER_BYTE, e); //$NON-NLS-1$
+                    return null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            if (packet.fOffsetBits > offsetBits) {
+                /* We went back in the file, everything pending is stale */
+                packet.fBuffer.cancel(false);
+                cancel();
+                return null;
+            }
+            packet.fBuffer.cancel(false);
+            packet = fPending.pollFirst();
+        }
+        return null;
+    }
+
+    /**
+     * Cancel all the pending reads, for example after a seek or when the
+     * stream is closed.
+     */
+    public synchronized void cancel() {
+        for (PendingPacket packet : fPending) {
+            packet.fBuffer.cancel(false);
+        }
+        fPending.clear();
+    }
+}
@@ -189,7 +189,7 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
         fTimestampBegin = entryToAdd.getTimestampBegin();
         fTimestampEnd = newTimestampEnd;
         fOffsetBits = entryToAdd.getOffsetBits();
-        fOffsetBytes = entryToAdd.getOffsetBits();
+        fOffsetBytes = entryToAdd.getOffsetBytes();
 
         // LTTng Specific
         fTarget = entryToAdd.getTarget();
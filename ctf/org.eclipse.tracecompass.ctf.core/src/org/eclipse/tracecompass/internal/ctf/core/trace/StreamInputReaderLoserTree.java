@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
+
+/**
+ * <b><u>StreamInputReaderLoserTree</u></b>
+ * <p>
+ * K-way merger of {@link CTFStreamInputReader}s ordered by the timestamp of
+ * their current event (smaller comes first). This is a tournament tree of
+ * losers: every internal node keeps the stream that lost the match played
+ * there, so advancing the winning stream only replays the matches on its path
+ * to the root, with one primitive comparison per level.
+ * <p>
+ * The timestamps are cached as longs when a stream is added or updated, their
+ * sign bit flipped so that unsigned CTF timestamps can be compared with signed
+ * arithmetic. Streams that are added are only arranged in the tree on the next
+ * access, so adding all the streams after a seek costs a single linear build.
+ */
+@NonNullByDefault
+public class StreamInputReaderLoserTree implements Iterable<CTFStreamInputReader> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    /** Key of the exhausted streams and of the padding leaves */
+    private static final long EXHAUSTED = Long.MAX_VALUE;
+
+    private @Nullable CTFStreamInputReader[] fReaders;
+    private long[] fKeys;
+    private boolean[] fDone;
+
+    /** Loser of the match played at each internal node, node 0 is unused */
+    private int[] fLosers;
+
+    /** Number of leaves in the tree, a power of two */
+    private int fLeaves;
+
+    /** Number of streams added since the last clear */
+    private int fCount;
+
+    /** Number of streams that are not exhausted */
+    private int fSize;
+
+    private int fWinner;
+    private boolean fDirty;
+
+    /**
+     * Constructor
+     *
+     * @param expectedSize
+     *            the expected number of streams, used for the initial capacity
+     */
+    public StreamInputReaderLoserTree(int expectedSize) {
+        int capacity = Math.max(expectedSize, MIN_CAPACITY);
+        fReaders = new @Nullable CTFStreamInputReader[capacity];
+        fKeys = new long[capacity];
+        fDone = new boolean[capacity];
+        fLosers = new int[0];
+    }
+
+    /**
+     * Add a stream to the tree. Its current event is used for ordering, a
+     * stream without a current event is ordered before all others.
+     *
+     * @param reader
+     *            the stream input reader to add
+     */
+    public void add(CTFStreamInputReader reader) {
+        if (fCount == fReaders.length) {
+            int capacity = fCount * 2;
+            fReaders = Arrays.copyOf(fReaders, capacity);
+            fKeys = Arrays.copyOf(fKeys, capacity);
+            fDone = Arrays.copyOf(fDone, capacity);
+        }
+        fReaders[fCount] = reader;
+        fKeys[fCount] = keyOf(reader);
+        fDone[fCount] = false;
+        fCount++;
+        fSize++;
+        fDirty = true;
+    }
+
+    /**
+     * Remove all the streams from the tree
+     */
+    public void clear() {
+        Arrays.fill(fReaders, 0, fCount, null);
+        fCount = 0;
+        fSize = 0;
+        fDirty = true;
+    }
+
+    /**
+     * Get the number of streams in the tree
+     *
+     * @return the number of streams that are not exhausted
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get the stream with the oldest current event, without removing it.
+     *
+     * @return the top stream, or null if the tree is empty
+     */
+    public @Nullable CTFStreamInputReader peek() {
+        if (fSize == 0) {
+            return null;
+        }
+        if (fDirty) {
+            build();
+        }
+        return fReaders[fWinner];
+    }
+
+    /**
+     * Re-order the top stream after its current event changed. If it has no
+     * current event anymore, it is removed from the tree.
+     */
+    public void updateTop() {
+        if (fSize == 0) {
+            return;
+        }
+        if (fDirty) {
+            build();
+        }
+        int winner = fWinner;
+        CTFStreamInputReader reader = fReaders[winner];
+        if (reader == null || reader.getCurrentEvent() == null) {
+            removeTop();
+            return;
+        }
+        fKeys[winner] = keyOf(reader);
+        replay(winner);
+    }
+
+    /**
+     * Remove the top stream from the tree
+     */
+    public void removeTop() {
+        if (fSize == 0) {
+            return;
+        }
+        if (fDirty) {
+            build();
+        }
+        int winner = fWinner;
+        fKeys[winner] = EXHAUSTED;
+        fDone[winner] = true;
+        fSize--;
+        replay(winner);
+    }
+
+    @Override
+    public Iterator<CTFStreamInputReader> iterator() {
+        List<CTFStreamInputReader> readers = new ArrayList<>(fSize);
+        for (int i = 0; i < fCount; i++) {
+            CTFStreamInputReader reader = fReaders[i];
+            if (!fDone[i] && reader != null) {
+                readers.add(reader);
+            }
+        }
+        return readers.iterator();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tournament
+    // ------------------------------------------------------------------------
+
+    private static long keyOf(CTFStreamInputReader reader) {
+        IEventDefinition event = reader.getCurrentEvent();
+        if (event == null) {
+            return Long.MIN_VALUE;
+        }
+        return event.getTimestamp() ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Does leaf a come before leaf b? Ties are resolved by insertion order so
+     * that the merge is deterministic.
+     */
+    private boolean beats(int a, int b) {
+        long ka = fKeys[a];
+        long kb = fKeys[b];
+        if (ka != kb) {
+            return ka < kb;
+        }
+        if (fDone[a] != fDone[b]) {
+            return fDone[b];
+        }
+        return a < b;
+    }
+
+    /**
+     * Play all the matches, bottom-up. Leaves past the last stream are
+     * exhausted padding.
+     */
+    private void build() {
+        int leaves = Integer.highestOneBit(Math.max(fCount, 1));
+        if (leaves < fCount) {
+            leaves <<= 1;
+        }
+        if (fReaders.length < leaves) {
+            fReaders = Arrays.copyOf(fReaders, leaves);
+            fKeys = Arrays.copyOf(fKeys, leaves);
+            fDone = Arrays.copyOf(fDone, leaves);
+        }
+        for (int i = fCount; i < leaves; i++) {
+            fKeys[i] = EXHAUSTED;
+            fDone[i] = true;
+        }
+        if (fLosers.length < leaves) {
+            fLosers = new int[leaves];
+        }
+        fLeaves = leaves;
+
+        int[] winners = new int[leaves * 2];
+        for (int i = 0; i < leaves; i++) {
+            winners[leaves + i] = i;
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            int left = winners[2 * node];
+            int right = winners[2 * node + 1];
+            if (beats(left, right)) {
+                winners[node] = left;
+                fLosers[node] = right;
+            } else {
+                winners[node] = right;
+                fLosers[node] = left;
+            }
+        }
+        fWinner = (leaves == 1) ? 0 : winners[1];
+        fDirty = false;
+    }
+
+    /**
+     * Replay the matches from a leaf up to the root, after its key changed.
+     * The leaf must be the current winner.
+     */
+    private void replay(int leaf) {
+        int winner = leaf;
+        for (int node = (fLeaves + leaf) >>> 1; node > 0; node >>>= 1) {
+            int loser = fLosers[node];
+            if (beats(loser, winner)) {
+                fLosers[node] = winner;
+                winner = loser;
+            }
+        }
+        fWinner = winner;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -17,18 +17,24 @@ package org.eclipse.tracecompass.tmf.ctf.core.tests.event;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
 import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEventFactory;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEventType;
 import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
 import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
 import org.junit.Before;
@@ -98,6 +104,56 @@ public class CtfTmfEventTest {
         assertEquals("Empty CTF event", result);
     }
 
+    /**
+     * Test reading the fields from their slots in the event type
+     */
+    @Test
+    public void testGetFieldSlot() {
+        ITmfEventType type = fixture.getType();
+        ITmfEventField content = fixture.getContent();
+        for (String name : content.getFieldNames()) {
+            int slot = type.getFieldSlot(name);
+            assertEquals(name, content.getField(name).getValue(), fixture.getFieldValue(slot));
+        }
+        int slot = type.getFieldSlot(VALID_FIELD);
+        assertEquals(((Long) content.getField(VALID_FIELD).getValue()).longValue(), fixture.getLongField(slot, -1));
+        assertEquals(-1, type.getFieldSlot("invalid"));
+        assertNull(fixture.getFieldValue(-1));
+        assertEquals(-1, fixture.getLongField(-1, -1));
+        assertNull(nullEvent.getFieldValue(0));
+    }
+
+    /**
+     * Test resolving the slots from the event types registered by the trace,
+     * they must match the content of the events, context fields included
+     */
+    @Test
+    public void testGetFieldSlotFromTraceTypes() {
+        CtfTmfTrace trace = CtfTmfTestTraceUtils.getTrace(testTrace);
+        try {
+            Map<String, CtfTmfEventType> types = new HashMap<>();
+            for (CtfTmfEventType type : trace.getContainedEventTypes()) {
+                types.put(type.getName(), type);
+            }
+            ITmfContext context = trace.seekEvent(0);
+            for (int i = 0; i < 1000; i++) {
+                ITmfEvent event = trace.getNext(context);
+                assertNotNull(event);
+                ITmfEventType type = types.get(event.getName());
+                assertNotNull(event.getName(), type);
+                assertSame(type, event.getType());
+                ITmfEventField content = event.getContent();
+                assertEquals(new ArrayList<>(content.getFieldNames()), new ArrayList<>(type.getFieldNames()));
+                for (String name : content.getFieldNames()) {
+                    assertEquals(name, content.getField(name).getValue(), event.getFieldValue(type.getFieldSlot(name)));
+                }
+            }
+            context.dispose();
+        } finally {
+            trace.dispose();
+        }
+    }
+
     /**
      * Run the ArrayList<String> getFieldNames() method test.
      */
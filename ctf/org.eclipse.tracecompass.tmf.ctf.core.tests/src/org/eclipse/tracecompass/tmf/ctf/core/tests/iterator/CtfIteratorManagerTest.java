@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIteratorManager;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link CtfIteratorManager}
+ */
+public class CtfIteratorManagerTest {
+
+    private static final @NonNull CtfTestTrace TEST_TRACE = CtfTestTrace.KERNEL;
+
+    private CtfTmfTrace fTrace;
+    private CtfIteratorManager fManager;
+
+    /**
+     * Setup the test
+     */
+    @Before
+    public void setUp() {
+        fTrace = CtfTmfTestTraceUtils.getTrace(TEST_TRACE);
+        fManager = new CtfIteratorManager(fTrace);
+    }
+
+    /**
+     * Tear down the test
+     */
+    @After
+    public void tearDown() {
+        fManager.dispose();
+        CtfTmfTestTraceUtils.dispose(TEST_TRACE);
+    }
+
+    /**
+     * Test that a context keeps its iterator
+     */
+    @Test
+    public void testHit() {
+        CtfTmfContext context = new CtfTmfContext(fTrace);
+        CtfIterator iterator = fManager.getIterator(context);
+        assertSame(iterator, fManager.getIterator(context));
+
+        Map<String, Long> statistics = fManager.getStatistics();
+        assertEquals(Long.valueOf(1), statistics.get(CtfIteratorManager.HITS));
+        assertEquals(Long.valueOf(1), statistics.get(CtfIteratorManager.MISSES));
+    }
+
+    /**
+     * Test that the iterator of a disposed context is reused instead of being
+     * closed
+     */
+    @Test
+    public void testReuse() {
+        CtfTmfContext first = new CtfTmfContext(fTrace);
+        CtfIterator iterator = fManager.getIterator(first);
+        fManager.removeIterator(first);
+        assertFalse(iterator.isClosed());
+
+        CtfTmfContext second = new CtfTmfContext(fTrace);
+        assertSame(iterator, fManager.getIterator(second));
+
+        CtfTmfContext third = new CtfTmfContext(fTrace);
+        assertNotSame(iterator, fManager.getIterator(third));
+
+        Map<String, Long> statistics = fManager.getStatistics();
+        assertEquals(Long.valueOf(3), statistics.get(CtfIteratorManager.MISSES));
+        assertEquals(Long.valueOf(1), statistics.get(CtfIteratorManager.REUSES));
+        assertEquals(Long.valueOf(0), statistics.get(CtfIteratorManager.EVICTIONS));
+    }
+
+    /**
+     * Test that the iterator of a context that is using it is not taken over,
+     * even when the budget of iterators is exhausted
+     */
+    @Test
+    public void testNoEvictionInUse() {
+        List<CtfTmfContext> contexts = new ArrayList<>();
+        List<CtfIterator> iterators = new ArrayList<>();
+        CtfTmfContext first = new CtfTmfContext(fTrace);
+        contexts.add(first);
+        iterators.add(fManager.getIterator(first));
+        int capacity = CtfIteratorManager.computeCapacity(iterators.get(0).getTrace());
+        for (int i = 1; i < capacity; i++) {
+            CtfTmfContext context = new CtfTmfContext(fTrace);
+            contexts.add(context);
+            iterators.add(fManager.getIterator(context));
+        }
+
+        /* All the iterators are in use, a new one is opened */
+        CtfIterator extra = fManager.getIterator(new CtfTmfContext(fTrace));
+        assertFalse(iterators.contains(extra));
+        assertEquals(Long.valueOf(0), fManager.getStatistics().get(CtfIteratorManager.EVICTIONS));
+
+        /* Once released, the iterator of the first context can be taken over */
+        fManager.releaseIterator(first);
+        assertSame(iterators.get(0), fManager.getIterator(new CtfTmfContext(fTrace)));
+        assertEquals(Long.valueOf(1), fManager.getStatistics().get(CtfIteratorManager.EVICTIONS));
+
+        /* The first context gets another iterator */
+        assertNotSame(iterators.get(0), fManager.getIterator(first));
+    }
+}
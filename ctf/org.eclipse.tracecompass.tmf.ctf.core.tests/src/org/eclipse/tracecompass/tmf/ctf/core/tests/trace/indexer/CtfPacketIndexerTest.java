@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.trace.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the packet-based indexer of CTF traces.
+ */
+public class CtfPacketIndexerTest {
+
+    private static final @NonNull CtfTestTrace TEST_TRACE = CtfTestTrace.KERNEL;
+
+    private CtfTmfTrace fTrace;
+
+    /**
+     * Setup the test
+     */
+    @Before
+    public void setUp() {
+        fTrace = CtfTmfTestTraceUtils.getTrace(TEST_TRACE);
+    }
+
+    /**
+     * Tear down the test
+     */
+    @After
+    public void tearDown() {
+        CtfTmfTestTraceUtils.dispose(TEST_TRACE);
+    }
+
+    /**
+     * Test that the time range of the trace is known once the packets are
+     * indexed, before the events are counted.
+     *
+     * @throws InterruptedException
+     *             if the request is interrupted
+     */
+    @Test
+    public void testTimeRangeBeforeCounting() throws InterruptedException {
+        fTrace.indexTrace(false);
+        Job.getJobManager().join(fTrace, null);
+        final ITmfTimestamp end = fTrace.getEndTime();
+        assertTrue(end.compareTo(fTrace.getStartTime()) > 0);
+
+        final ITmfTimestamp[] last = new ITmfTimestamp[1];
+        final long[] count = new long[1];
+        TmfEventRequest request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0,
+                ITmfEventRequest.ALL_DATA, ITmfEventRequest.ExecutionType.FOREGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                last[0] = event.getTimestamp();
+                count[0]++;
+            }
+        };
+        fTrace.sendRequest(request);
+        request.waitForCompletion();
+        assertEquals(TEST_TRACE.getNbEvents(), count[0]);
+        assertEquals(last[0], end);
+    }
+
+    /**
+     * Test seeking by timestamp while the events are being counted, the
+     * context must have a known rank
+     */
+    @Test
+    public void testSeekWhileIndexing() {
+        fTrace.indexTrace(false);
+        long start = fTrace.getStartTime().toNanos();
+        long end = fTrace.getEndTime().toNanos();
+        ITmfTimestamp target = TmfTimestamp.fromNanos(start + (end - start) / 2);
+        ITmfContext context = fTrace.seekEvent(target);
+        assertNotEquals(ITmfContext.UNKNOWN_RANK, context.getRank());
+        ITmfEvent event = fTrace.getNext(context);
+        assertNotNull(event);
+        assertTrue(event.getTimestamp().compareTo(target) >= 0);
+        context.dispose();
+    }
+}
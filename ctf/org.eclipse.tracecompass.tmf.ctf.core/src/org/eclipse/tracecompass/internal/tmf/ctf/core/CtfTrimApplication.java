@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.ctf.core;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+
+/**
+ * Headless application that writes the part of a CTF trace that is within a
+ * time range as a new trace, see {@link CtfTmfTrace#trim}.
+ * <p>
+ * Arguments: the trace directory, the directory of the new trace, and the
+ * start and end times in nanoseconds of the trace clock.
+ */
+public class CtfTrimApplication implements IApplication {
+
+    private static final Integer EXIT_ERROR = 1;
+
+    @Override
+    public Object start(IApplicationContext context) {
+        Object args = context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+        if (!(args instanceof String[]) || ((String[]) args).length != 4) {
+            System.err.println("Usage: <trace> <destination> <start ns> <end ns>"); //$NON-NLS-1$
+            return EXIT_ERROR;
+        }
+        String[] params = (String[]) args;
+        long start;
+        long end;
+        try {
+            start = Long.parseLong(params[2]);
+            end = Long.parseLong(params[3]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid time: " + e.getMessage()); //$NON-NLS-1$
+            return EXIT_ERROR;
+        }
+
+        CtfTmfTrace trace = new CtfTmfTrace();
+        try {
+            trace.initTrace(null, params[0], CtfTmfEvent.class);
+            trace.trim(start, end, params[1]);
+        } catch (TmfTraceException e) {
+            System.err.println("Error trimming trace " + params[0] + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+            return EXIT_ERROR;
+        } finally {
+            trace.dispose();
+        }
+        return IApplication.EXIT_OK;
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to do, the copy cannot be interrupted
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.indexer;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+
+/**
+ * Indexer of CTF traces that publishes their time range from the packet index
+ * of the streams.
+ * <p>
+ * This indexer does not avoid reading the whole trace: the rank checkpoints
+ * are still built by the {@link TmfBTreeTraceIndexer} request, which reads
+ * every event, and the number of events of the trace is only known once it is
+ * done. The packet contexts carry no event count, so the ranks cannot be
+ * derived from the packet index, and the seeks by rank or by timestamp go
+ * through the rank checkpoints.
+ * <p>
+ * What it adds is that, while the events are counted, the headers and
+ * contexts of all the packets are indexed by a background job. The trace then
+ * goes to its last event and the time range of the trace is published right
+ * away, so that views working on time ranges can be used before the count is
+ * done.
+ */
+public class CtfPacketIndexer extends TmfBTreeTraceIndexer {
+
+    private final CtfTmfTrace fCtfTrace;
+
+    private Job fPacketJob = null;
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace to index
+     * @param interval
+     *            the checkpoints interval
+     */
+    public CtfPacketIndexer(CtfTmfTrace trace, int interval) {
+        super(trace, interval);
+        fCtfTrace = trace;
+    }
+
+    @Override
+    public void buildIndex(long offset, TmfTimeRange range, boolean waitForCompletion) {
+        synchronized (this) {
+            if (fPacketJob == null && fCtfTrace.isComplete()) {
+                fPacketJob = new Job("Indexing packets of " + fCtfTrace.getName()) { //$NON-NLS-1$
+                    @Override
+                    protected IStatus run(IProgressMonitor monitor) {
+                        indexPackets(monitor);
+                        return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+                    }
+
+                    @Override
+                    public boolean belongsTo(Object family) {
+                        return family == fCtfTrace;
+                    }
+                };
+                fPacketJob.setSystem(true);
+                fPacketJob.schedule();
+            }
+        }
+        super.buildIndex(offset, range, waitForCompletion);
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            if (fPacketJob != null) {
+                fPacketJob.cancel();
+            }
+        }
+        super.dispose();
+    }
+
+    /**
+     * Read the packet index of all the streams, then publish the time range of
+     * the trace.
+     */
+    private void indexPackets(IProgressMonitor monitor) {
+        ITmfTimestamp end = null;
+        try (CtfIterator iterator = (CtfIterator) fCtfTrace.createIterator()) {
+            if (iterator == null) {
+                return;
+            }
+            CTFTrace trace = iterator.getTrace();
+            for (ICTFStream stream : trace.getStreams()) {
+                for (CTFStreamInput input : stream.getStreamInputs()) {
+                    if (monitor.isCanceled()) {
+                        return;
+                    }
+                    input.getPacketDescriptors();
+                }
+            }
+
+            /* The packets are indexed, going to the last event is cheap */
+            iterator.goToLastEvent();
+            IEventDefinition last = iterator.getCurrentEventDef();
+            if (last != null) {
+                end = fCtfTrace.createTimestamp(trace.timestampCyclesToNanos(last.getTimestamp()));
+            }
+        } catch (CTFException e) {
+            Activator.getDefault().logError("Error indexing the packets of trace " + fCtfTrace.getName(), e); //$NON-NLS-1$
+        }
+        ITmfTimestamp start = fCtfTrace.getStartTime();
+        if (monitor.isCanceled() || end == null || TmfTimestamp.BIG_BANG.equals(start) || end.compareTo(fCtfTrace.getEndTime()) <= 0) {
+            return;
+        }
+        fCtfTrace.broadcast(new TmfTraceUpdatedSignal(this, fCtfTrace, new TmfTimeRange(start, end), fCtfTrace.getNbEvents()));
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2012, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,8 +16,10 @@ package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.Objects;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
@@ -53,6 +55,14 @@ public class CtfIterator extends CTFTraceReader
     private CtfLocation fPreviousLocation;
     private CtfTmfEvent fPreviousEvent;
 
+    /* Packet filter, in nanoseconds */
+    private long fFilterStart = Long.MIN_VALUE;
+    private long fFilterEnd = Long.MAX_VALUE;
+    private @Nullable Set<Integer> fFilterCpus = null;
+
+    /* Event filter, by event type name */
+    private @Nullable Set<String> fFilterEvents = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -144,7 +154,7 @@ public class CtfIterator extends CTFTraceReader
      * @return CtfTmfEvent The current event
      */
     public synchronized CtfTmfEvent getCurrentEvent() {
-        final CTFStreamInputReader top = super.getPrio().peek();
+        final CTFStreamInputReader top = getTopStream();
         if (top != null) {
             if (!fCurLocation.equals(fPreviousLocation)) {
                 fPreviousLocation = fCurLocation;
@@ -162,7 +172,7 @@ public class CtfIterator extends CTFTraceReader
      * @return long The current timestamp location
      */
     public synchronized long getCurrentTimestamp() {
-        final CTFStreamInputReader top = super.getPrio().peek();
+        final CTFStreamInputReader top = getTopStream();
         if (top != null) {
             IEventDefinition currentEvent = top.getCurrentEvent();
             if (currentEvent != null) {
@@ -173,6 +183,55 @@ public class CtfIterator extends CTFTraceReader
         return 0;
     }
 
+    /**
+     * Restrict the packets read by this iterator to the ones that intersect a
+     * time range and, optionally, that were recorded on some CPUs. The other
+     * packets are skipped without being decoded.
+     * <p>
+     * If the filter changed, the location of the iterator is invalidated, the
+     * next seek will re-position all the streams.
+     *
+     * @param startTime
+     *            the start of the range in nanoseconds, or Long.MIN_VALUE
+     * @param endTime
+     *            the end of the range in nanoseconds, or Long.MAX_VALUE
+     * @param cpus
+     *            the CPUs to read, or null to read all of them
+     */
+    public synchronized void setPacketFilter(long startTime, long endTime, @Nullable Set<Integer> cpus) {
+        if (startTime == fFilterStart && endTime == fFilterEnd && Objects.equals(cpus, fFilterCpus)) {
+            return;
+        }
+        fFilterStart = startTime;
+        fFilterEnd = endTime;
+        fFilterCpus = cpus;
+        long start = (startTime == Long.MIN_VALUE) ? Long.MIN_VALUE : fTrace.timestampNanoToCycles(startTime);
+        long end = (endTime == Long.MAX_VALUE) ? Long.MAX_VALUE : fTrace.timestampNanoToCycles(endTime);
+        super.setPacketFilter(start, end, cpus);
+        fCurLocation = NULL_LOCATION;
+    }
+
+    /**
+     * Restrict the events returned by this iterator to the ones of some event
+     * types. The other events are skipped by the stream readers, without
+     * being returned.
+     * <p>
+     * If the filter changed, the location of the iterator is invalidated, the
+     * next seek will re-position all the streams.
+     *
+     * @param eventNames
+     *            the names of the event types to return, or null to return
+     *            all the events
+     */
+    public synchronized void setEventFilter(@Nullable Set<String> eventNames) {
+        if (Objects.equals(eventNames, fFilterEvents)) {
+            return;
+        }
+        fFilterEvents = eventNames;
+        super.setEventFilter(eventNames);
+        fCurLocation = NULL_LOCATION;
+    }
+
     /**
      * Seek this iterator to a given location.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,21 +12,27 @@
 
 package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocationInfo;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
 import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
 
+import com.google.common.collect.ImmutableMap;
+
 /**
  * A CTF trace iterator manager.
  *
@@ -43,20 +49,92 @@ public class CtfIteratorManager {
      */
     private static final int MAX_SIZE = 100;
 
-    /** The map of the cache */
-    private final Map<CtfTmfContext, CtfIterator> fMap;
+    /*
+     * Minimum cache size, even for traces with a lot of streams. Below this,
+     * the iterators of concurrent requests keep stealing each other's.
+     */
+    private static final int MIN_SIZE = 8;
+
+    /*
+     * Budget of file handles of the iterators of a trace. Each iterator keeps
+     * one file channel, and the mapped packets, of every stream file open.
+     */
+    private static final int FILE_HANDLE_BUDGET = 1000;
+
+    /** Statistics key of the lookups of contexts that had an iterator */
+    public static final String HITS = "hits"; //$NON-NLS-1$
+    /** Statistics key of the lookups of contexts that needed an iterator */
+    public static final String MISSES = "misses"; //$NON-NLS-1$
+    /** Statistics key of the misses served by an idle iterator */
+    public static final String REUSES = "reuses"; //$NON-NLS-1$
+    /** Statistics key of the misses served by evicting another context */
+    public static final String EVICTIONS = "evictions"; //$NON-NLS-1$
+
+    /**
+     * An iterator assigned to a context, when it was last used, and how many
+     * operations of the context are using it. An iterator that is in use is
+     * never taken over; -1 users marks an iterator that was taken over.
+     */
+    private static final class Assignment {
+        private final CtfIterator fIterator;
+        private final AtomicInteger fUsers = new AtomicInteger(1);
+        private volatile long fLastUse;
+
+        public Assignment(CtfIterator iterator, long lastUse) {
+            fIterator = iterator;
+            fLastUse = lastUse;
+        }
+
+        public boolean acquire() {
+            while (true) {
+                int users = fUsers.get();
+                if (users < 0) {
+                    return false;
+                }
+                if (fUsers.compareAndSet(users, users + 1)) {
+                    return true;
+                }
+            }
+        }
 
-    /** An array pointing to the same cache. this allows fast "random" accesses */
-    private final List<CtfTmfContext> fRandomAccess;
+        public void release() {
+            fUsers.decrementAndGet();
+        }
+
+        public boolean takeOver() {
+            return fUsers.compareAndSet(0, -1);
+        }
+    }
 
-    /** Lock for when we access the two previous data structures */
+    /**
+     * The iterators assigned to the contexts. It is read without the lock, so
+     * that a context that already has its iterator does not wait for the
+     * others.
+     */
+    private final Map<CtfTmfContext, Assignment> fMap;
+
+    /** Clock of the uses of the iterators, to find the least recently used */
+    private final AtomicLong fClock = new AtomicLong();
+
+    /**
+     * The iterators of the disposed contexts, kept open to be reset at the
+     * location of the next context instead of being re-created
+     */
+    private final List<CtfIterator> fIdle;
+
+    /** Lock for when we modify the two previous data structures */
     private final Lock fAccessLock = new ReentrantLock();
 
     /** The parent trace */
     private final CtfTmfTrace fTrace;
 
-    /** Random number generator */
-    private final Random fRnd;
+    /** Maximum number of iterators, computed when the first one is created */
+    private int fCapacity = -1;
+
+    private final LongAdder fHits = new LongAdder();
+    private long fMisses;
+    private long fReuses;
+    private long fEvictions;
 
     /**
      * Constructor
@@ -65,9 +143,8 @@ public class CtfIteratorManager {
      *            The trace whose iterators this manager will manage
      */
     public CtfIteratorManager(CtfTmfTrace trace) {
-        fMap = new HashMap<>();
-        fRandomAccess = new ArrayList<>();
-        fRnd = new Random(System.nanoTime());
+        fMap = new ConcurrentHashMap<>();
+        fIdle = new ArrayList<>();
         fTrace = trace;
     }
 
@@ -77,10 +154,18 @@ public class CtfIteratorManager {
      * trace. This failed since there is a limit to how many file handles we can
      * have opened simultaneously. Then a round-robin scheme was implemented,
      * this lead up to a two competing contexts syncing up and using the same
-     * file handler, causing horrible slowdowns. Now a random replacement
-     * algorithm is selected. This is the same as used by arm processors, and it
-     * works quite well when many cores so this looks promising for very
-     * multi-threaded systems.
+     * file handler, causing horrible slowdowns. Then a random replacement
+     * algorithm was used.
+     * <p>
+     * Now the iterators of the disposed contexts are kept aside and handed to
+     * the next contexts, the one closest to the location of the context is
+     * picked so that the seek is as short as possible (free if it is already
+     * there). When there is none and the budget of file handles is exhausted,
+     * the iterator of the least recently used context is taken over, unless
+     * that context is using it at the moment.
+     * <p>
+     * The returned iterator is reserved to the context until it calls
+     * {@link #releaseIterator(CtfTmfContext)}.
      *
      * @param context
      *            the context to look up
@@ -90,40 +175,84 @@ public class CtfIteratorManager {
         /*
          * if the element is in the map, we don't need to do anything else.
          */
-        CtfIterator iter = fMap.get(context);
-        if (iter == null) {
+        Assignment assignment = fMap.get(context);
+        if (assignment != null && assignment.acquire()) {
+            assignment.fLastUse = fClock.incrementAndGet();
+            fHits.increment();
+            return assignment.fIterator;
+        }
+
+        fAccessLock.lock();
+        try {
+            /*
+             * It may have been assigned since. The iterators are only taken
+             * over with the lock held, so this cannot fail.
+             */
+            assignment = fMap.get(context);
+            if (assignment != null && assignment.acquire()) {
+                assignment.fLastUse = fClock.incrementAndGet();
+                fHits.increment();
+                return assignment.fIterator;
+            }
+            fMisses++;
 
-            fAccessLock.lock();
-            try {
+            /*
+             * Assign an iterator to a context.
+             */
+            ITmfLocation location = context.getLocation();
+            CtfLocationInfo locationInfo = (location == null) ? null : (CtfLocationInfo) location.getLocationInfo();
+            CtfIterator iter = takeIdle(locationInfo);
+            if (iter != null) {
+                fReuses++;
+            } else if (fMap.size() < getCapacity()) {
                 /*
-                 * Assign an iterator to a context.
+                 * if we're not full yet, just add an element.
                  */
-                if (fRandomAccess.size() < MAX_SIZE) {
-                    /*
-                     * if we're not full yet, just add an element.
-                     */
-                    iter = (CtfIterator) fTrace.createIterator();
-                    addElement(context, iter);
-
-                } else {
-                    /*
-                     * if we're full, randomly replace an element
-                     */
-                    iter = replaceRandomElement(context);
+                iter = (CtfIterator) fTrace.createIterator();
+                if (fCapacity < 0) {
+                    fCapacity = computeCapacity(iter);
                 }
-                if (context.getLocation() != null) {
-                    final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
-                    iter.seek(location);
+            } else {
+                /*
+                 * if we're full, take over the least recently used one
+                 */
+                iter = takeLeastRecentlyUsed();
+                if (iter != null) {
+                    fEvictions++;
+                } else {
+                    /* All the iterators are in use, go over the budget */
+                    iter = (CtfIterator) fTrace.createIterator();
                 }
-            } finally {
-                fAccessLock.unlock();
             }
+            iter.setPacketFilter(context.getFilterStart(), context.getFilterEnd(), context.getFilterCpus());
+            iter.setEventFilter(context.getFilterEvents());
+            if (locationInfo != null) {
+                iter.seek(locationInfo);
+            }
+            fMap.put(context, new Assignment(iter, fClock.incrementAndGet()));
+            return iter;
+        } finally {
+            fAccessLock.unlock();
         }
-        return iter;
     }
 
     /**
-     * Remove an iterator from this manager
+     * Release the iterator of a context, obtained with
+     * {@link #getIterator(CtfTmfContext)}, so that it can be taken over.
+     *
+     * @param context
+     *            The context that is done with its iterator
+     */
+    public void releaseIterator(CtfTmfContext context) {
+        Assignment assignment = fMap.get(context);
+        if (assignment != null) {
+            assignment.release();
+        }
+    }
+
+    /**
+     * Remove an iterator from this manager. The iterator is kept open to be
+     * reused by another context.
      *
      * @param context
      *            The context of the iterator to remove
@@ -131,77 +260,147 @@ public class CtfIteratorManager {
     public void removeIterator(CtfTmfContext context) {
         fAccessLock.lock();
         try {
-            /* The try below is only to auto-call CtfIterator.close() */
-            try (CtfIterator removed = fMap.remove(context)) {
-                // try with resource
+            Assignment removed = fMap.remove(context);
+            if (removed != null && !removed.fIterator.isClosed()) {
+                fIdle.add(removed.fIterator);
             }
-            fRandomAccess.remove(context);
-
         } finally {
             fAccessLock.unlock();
         }
     }
 
     /**
-     * Add a pair of context and element to the hashmap and the arraylist.
+     * Get the statistics of this manager, with the keys {@link #HITS} (context
+     * that already had its iterator), {@link #MISSES} (context that needed an
+     * iterator), {@link #REUSES} (misses served by the iterator of a disposed
+     * context) and {@link #EVICTIONS} (misses served by the iterator of
+     * another context).
      *
-     * @param context
-     *            the context
-     * @param elem
-     *            the iterator
+     * @return the counts of each kind of lookup
      */
-    private void addElement(final CtfTmfContext context,
-            final CtfIterator elem) {
+    public Map<String, Long> getStatistics() {
         fAccessLock.lock();
         try {
-            fMap.put(context, elem);
-            fRandomAccess.add(context);
-
+            return ImmutableMap.of(HITS, fHits.sum(), MISSES, fMisses, REUSES, fReuses, EVICTIONS, fEvictions);
         } finally {
             fAccessLock.unlock();
         }
     }
 
+    private int getCapacity() {
+        return (fCapacity < 0) ? MAX_SIZE : fCapacity;
+    }
+
     /**
-     * Replace a random element
+     * Compute the maximum number of iterators of the trace, so that their file
+     * handles are within budget.
+     */
+    private static int computeCapacity(CtfIterator iter) {
+        return computeCapacity(iter.getTrace());
+    }
+
+    /**
+     * Compute the number of iterators that a manager keeps open for a trace,
+     * so that their file handles are within budget. Beyond that, the contexts
+     * of the trace take over each other's iterators.
      *
-     * @param context
-     *            the context to swap in
-     * @return the iterator of the removed elements.
+     * @param trace
+     *            The CTF trace
+     * @return The maximum number of iterators of the trace
      */
-    private CtfIterator replaceRandomElement(final CtfTmfContext context) {
-        /*
-         * This needs some explanation too: We need to select a random victim
-         * and remove it. The order of the elements is not important, so instead
-         * of just calling arraylist.remove(element) which has an O(n)
-         * complexity, we pick an random number. The element is swapped out of
-         * the array and removed and replaced in the hashmap.
-         */
-        fAccessLock.lock(); // just in case, should only be called when already locked
-        try {
-            final int size = fRandomAccess.size();
-            final int pos = fRnd.nextInt(size);
-            final CtfTmfContext victim = fRandomAccess.get(pos);
-            fRandomAccess.set(pos, context);
-            CtfIterator elem = checkNotNull(fMap.remove(victim));
-            if (elem.isClosed()) {
-                /*
-                 * In case the iterator streams have been closed, we need to
-                 * replace it by a fresh new one to access the trace. We also
-                 * report that as an error as it should not happen.
-                 */
-                Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + victim.getTrace()); //$NON-NLS-1$
+    public static int computeCapacity(CTFTrace trace) {
+        int files = 0;
+        for (ICTFStream stream : trace.getStreams()) {
+            files += stream.getStreamInputs().size();
+        }
+        return Math.max(MIN_SIZE, Math.min(MAX_SIZE, FILE_HANDLE_BUDGET / Math.max(files, 1)));
+    }
 
-                elem.dispose();
-                elem = (CtfIterator) fTrace.createIterator();
+    /**
+     * Take the idle iterator that is the closest to a location.
+     *
+     * @param location
+     *            the location to go to, null if unknown
+     * @return the iterator, or null if there is no idle iterator
+     */
+    private CtfIterator takeIdle(CtfLocationInfo location) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = fIdle.size() - 1; i >= 0; i--) {
+            CtfIterator iter = fIdle.get(i);
+            if (iter.isClosed()) {
+                fIdle.remove(i);
+                if (best > i) {
+                    best--;
+                }
+                continue;
+            }
+            if (location == null) {
+                best = i;
+                break;
             }
-            fMap.put(context, elem);
-            victim.dispose();
-            return elem;
+            CtfLocationInfo current = iter.getLocation().getLocationInfo();
+            if (current.equals(location)) {
+                best = i;
+                break;
+            }
+            long distance = Math.abs(current.getTimestamp() - location.getTimestamp());
+            if (distance < 0) {
+                /* Overflow */
+                distance = Long.MAX_VALUE;
+            }
+            if (best < 0 || distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        CtfIterator iter = fIdle.get(best);
+        /* Keep the list compact, the order of the idle iterators is not important */
+        int last = fIdle.size() - 1;
+        fIdle.set(best, fIdle.get(last));
+        fIdle.remove(last);
+        return iter;
+    }
 
-        } finally {
-            fAccessLock.unlock();
+    /**
+     * Take the iterator of the least recently used context that is not using
+     * it at the moment.
+     *
+     * @return the iterator, re-created if it was closed, or null if all the
+     *         iterators are in use
+     */
+    private CtfIterator takeLeastRecentlyUsed() {
+        Entry<CtfTmfContext, Assignment> eldest;
+        do {
+            eldest = null;
+            for (Entry<CtfTmfContext, Assignment> entry : fMap.entrySet()) {
+                Assignment assignment = entry.getValue();
+                if (assignment.fUsers.get() == 0 && (eldest == null || assignment.fLastUse < eldest.getValue().fLastUse)) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return null;
+            }
+            /* Its context may have started using it since */
+        } while (!eldest.getValue().takeOver());
+        fMap.remove(eldest.getKey());
+        CtfIterator elem = eldest.getValue().fIterator;
+        if (elem.isClosed()) {
+            /*
+             * In case the iterator streams have been closed, we need to
+             * replace it by a fresh new one to access the trace. We also
+             * report that as an error as it should not happen.
+             */
+            Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + eldest.getKey().getTrace()); //$NON-NLS-1$
+
+            elem.dispose();
+            elem = (CtfIterator) fTrace.createIterator();
         }
+        return elem;
     }
 
     /**
@@ -211,14 +410,17 @@ public class CtfIteratorManager {
     public void dispose() {
         fAccessLock.lock();
         try {
-            for (CtfIterator iterator : fMap.values()) {
+            for (Assignment assignment : fMap.values()) {
+                assignment.fIterator.dispose();
+            }
+            for (CtfIterator iterator : fIdle) {
                 iterator.dispose();
             }
             fMap.clear();
-            fRandomAccess.clear();
+            fIdle.clear();
 
         } finally {
             fAccessLock.unlock();
         }
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -13,6 +13,9 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -36,6 +39,11 @@ public class CtfTmfContext implements ITmfContext {
 
     private final CtfTmfTrace fTrace;
 
+    private long fFilterStart = Long.MIN_VALUE;
+    private long fFilterEnd = Long.MAX_VALUE;
+    private @Nullable Set<Integer> fFilterCpus = null;
+    private @Nullable Set<String> fFilterEvents = null;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -78,8 +86,12 @@ public class CtfTmfContext implements ITmfContext {
                 fCurLocation = ctfLocation;
             } else {
                 CtfIterator iterator = getIterator();
-                iterator.seek(ctfLocation.getLocationInfo());
-                fCurLocation = iterator.getLocation();
+                try {
+                    iterator.seek(ctfLocation.getLocationInfo());
+                    fCurLocation = iterator.getLocation();
+                } finally {
+                    releaseIterator();
+                }
             }
         } else {
             fCurLocation = null;
@@ -118,7 +130,11 @@ public class CtfTmfContext implements ITmfContext {
      * @return The event or null
      */
     public synchronized CtfTmfEvent getCurrentEvent() {
-        return getIterator().getCurrentEvent();
+        try {
+            return getIterator().getCurrentEvent();
+        } finally {
+            releaseIterator();
+        }
     }
 
     /**
@@ -129,21 +145,25 @@ public class CtfTmfContext implements ITmfContext {
     public synchronized boolean advance() {
         final CtfLocationInfo curLocationData = fCurLocation.getLocationInfo();
         CtfIterator iterator = getIterator();
-        boolean retVal = iterator.advance();
-        CtfTmfEvent currentEvent = iterator.getCurrentEvent();
+        try {
+            boolean retVal = iterator.advance();
+            CtfTmfEvent currentEvent = iterator.getCurrentEvent();
 
-        if (currentEvent != null) {
-            final long timestampValue = iterator.getCurrentTimestamp();
-            if (curLocationData.getTimestamp() == timestampValue) {
-                fCurLocation = new CtfLocation(timestampValue, curLocationData.getIndex() + 1);
+            if (currentEvent != null) {
+                final long timestampValue = iterator.getCurrentTimestamp();
+                if (curLocationData.getTimestamp() == timestampValue) {
+                    fCurLocation = new CtfLocation(timestampValue, curLocationData.getIndex() + 1);
+                } else {
+                    fCurLocation = new CtfLocation(timestampValue, 0L);
+                }
             } else {
-                fCurLocation = new CtfLocation(timestampValue, 0L);
+                fCurLocation = new CtfLocation(CtfLocation.INVALID_LOCATION);
             }
-        } else {
-            fCurLocation = new CtfLocation(CtfLocation.INVALID_LOCATION);
-        }
 
-        return retVal;
+            return retVal;
+        } finally {
+            releaseIterator();
+        }
     }
 
     @Override
@@ -160,9 +180,13 @@ public class CtfTmfContext implements ITmfContext {
      */
     public synchronized boolean seek(final long timestamp) {
         CtfIterator iterator = getIterator();
-        boolean ret = iterator.seek(timestamp);
-        fCurLocation = iterator.getLocation();
-        return ret;
+        try {
+            boolean ret = iterator.seek(timestamp);
+            fCurLocation = iterator.getLocation();
+            return ret;
+        } finally {
+            releaseIterator();
+        }
     }
 
     /**
@@ -174,7 +198,107 @@ public class CtfTmfContext implements ITmfContext {
      */
     public synchronized boolean seek(final CtfLocationInfo location) {
         fCurLocation = new CtfLocation(location);
-        return getIterator().seek(location);
+        try {
+            return getIterator().seek(location);
+        } finally {
+            releaseIterator();
+        }
+    }
+
+    /**
+     * Restrict the packets read through this context to the ones that
+     * intersect a time range and, optionally, that were recorded on some CPUs.
+     * The other packets are skipped without being decoded, events outside of
+     * the range may still be returned if they are in the same packet as
+     * events inside of it.
+     *
+     * @param startTime
+     *            the start of the range in nanoseconds, or Long.MIN_VALUE
+     * @param endTime
+     *            the end of the range in nanoseconds, or Long.MAX_VALUE
+     * @param cpus
+     *            the CPUs to read, or null to read all of them
+     * @since 2.1
+     */
+    public synchronized void setPacketFilter(long startTime, long endTime, @Nullable Set<Integer> cpus) {
+        fFilterStart = startTime;
+        fFilterEnd = endTime;
+        fFilterCpus = cpus;
+        CtfIterator iterator = getIterator();
+        try {
+            iterator.setPacketFilter(startTime, endTime, cpus);
+            if (fCurLocation != null && !fCurLocation.getLocationInfo().equals(CtfLocation.INVALID_LOCATION)) {
+                /* Re-position the streams with the new filter */
+                iterator.seek(fCurLocation.getLocationInfo());
+            }
+        } finally {
+            releaseIterator();
+        }
+    }
+
+    /**
+     * Restrict the events read through this context to the ones of some event
+     * types. The other events are skipped by the stream readers, they are not
+     * counted in the rank of the context.
+     *
+     * @param eventNames
+     *            the names of the event types to read, or null to read all
+     *            the events
+     * @since 2.1
+     */
+    public synchronized void setEventFilter(@Nullable Set<String> eventNames) {
+        fFilterEvents = eventNames;
+        CtfIterator iterator = getIterator();
+        try {
+            iterator.setEventFilter(eventNames);
+            if (fCurLocation != null && !fCurLocation.getLocationInfo().equals(CtfLocation.INVALID_LOCATION)) {
+                /* Re-position the streams with the new filter */
+                iterator.seek(fCurLocation.getLocationInfo());
+            }
+        } finally {
+            releaseIterator();
+        }
+    }
+
+    /**
+     * Get the event types of the event filter
+     *
+     * @return the names of the event types to read, null if all the events
+     *         are read
+     * @since 2.1
+     */
+    public @Nullable Set<String> getFilterEvents() {
+        return fFilterEvents;
+    }
+
+    /**
+     * Get the start of the packet filter range
+     *
+     * @return the start time in nanoseconds, Long.MIN_VALUE if unbounded
+     * @since 2.1
+     */
+    public long getFilterStart() {
+        return fFilterStart;
+    }
+
+    /**
+     * Get the end of the packet filter range
+     *
+     * @return the end time in nanoseconds, Long.MAX_VALUE if unbounded
+     * @since 2.1
+     */
+    public long getFilterEnd() {
+        return fFilterEnd;
+    }
+
+    /**
+     * Get the CPUs of the packet filter
+     *
+     * @return the CPUs to read, null if all of them are read
+     * @since 2.1
+     */
+    public @Nullable Set<Integer> getFilterCpus() {
+        return fFilterCpus;
     }
 
     // -------------------------------------------
@@ -183,11 +307,20 @@ public class CtfTmfContext implements ITmfContext {
 
     /**
      * Get iterator, called every time to get an iterator, no local copy is
-     * stored so that there is no need to "update"
+     * stored so that there is no need to "update". The iterator is reserved
+     * to this context until {@link #releaseIterator()} is called.
      *
      * @return an iterator
      */
     private CtfIterator getIterator() {
         return (CtfIterator) fTrace.createIteratorFromContext(this);
     }
+
+    /**
+     * Let the iterator obtained with {@link #getIterator()} be taken over by
+     * another context.
+     */
+    private void releaseIterator() {
+        fTrace.releaseIteratorOfContext(this);
+    }
 }
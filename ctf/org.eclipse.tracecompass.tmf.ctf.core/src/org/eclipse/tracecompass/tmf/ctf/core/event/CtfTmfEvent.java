@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -29,6 +29,7 @@ import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.tmf.core.event.ITmfCustomAttributes;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -84,7 +85,7 @@ public class CtfTmfEvent extends TmfEvent
     private transient @Nullable ITmfEventField fContent;
 
     /** Lazy-loaded field for the type, overriding TmfEvent's field */
-    private transient @Nullable CtfTmfEventType fEventType;
+    private transient volatile @Nullable CtfTmfEventType fEventType;
 
     private final @Nullable ICTFStream fStream;
     private final Map<String, Object> fPacketAttributes;
@@ -146,6 +147,61 @@ public class CtfTmfEvent extends TmfEvent
         fPacketAttributes = eventDefinition.getPacketAttributes();
     }
 
+    /**
+     * Constructor with a primitive timestamp, used by
+     * {@link CtfTmfEventFactory#createEvent}. The timestamp object is only
+     * created if {@link #getTimestamp()} is called.
+     *
+     * Only subclasses should call this. It is imperative that the subclass also
+     * has a constructor with the EXACT same parameter signature, because the
+     * factory will look for a constructor with the same arguments.
+     *
+     * @param trace
+     *            The trace to which this event belongs
+     * @param rank
+     *            The rank of the event
+     * @param timestampNanos
+     *            The timestamp, in nanoseconds
+     * @param channel
+     *            The CTF channel of this event
+     * @param cpu
+     *            The event's CPU
+     * @param declaration
+     *            The event declaration
+     * @param eventDefinition
+     *            The event definition
+     * @since 2.1
+     */
+    protected CtfTmfEvent(CtfTmfTrace trace,
+            long rank,
+            long timestampNanos,
+            String channel,
+            int cpu,
+            IEventDeclaration declaration,
+            IEventDefinition eventDefinition) {
+        super(trace,
+                rank,
+                timestampNanos,
+                /*
+                 * Event type. We don't use TmfEvent's field here, we
+                 * re-implement getType().
+                 */
+                null,
+                /*
+                 * Content handled with a lazy-loaded field re-implemented in
+                 * getContent().
+                 */
+                null);
+
+        fEventDeclaration = declaration;
+        fSourceCpu = cpu;
+        fEventName = checkNotNull(declaration.getName());
+        fEvent = eventDefinition;
+        fChannel = channel;
+        fStream = fEvent.getDeclaration().getStream();
+        fPacketAttributes = eventDefinition.getPacketAttributes();
+    }
+
     /**
      * Inner constructor to create "null" events. Don't use this directly in
      * normal usage, use {@link CtfTmfEventFactory#getNullEvent(CtfTmfTrace)} to
@@ -253,16 +309,23 @@ public class CtfTmfEvent extends TmfEvent
     }
 
     @Override
-    public synchronized ITmfEventType getType() {
+    public ITmfEventType getType() {
         CtfTmfEventType type = fEventType;
         if (type == null) {
-            type = new CtfTmfEventType(fEventName, getContent());
-
-            /*
-             * Register the event type in the owning trace, but only if there is
-             * one
-             */
-            getTrace().registerEventType(type);
+            IEventDeclaration declaration = fEventDeclaration;
+            if (declaration != null) {
+                /* The type of the declaration, its fields match the slots */
+                type = getTrace().getEventType(declaration);
+            } else {
+                synchronized (this) {
+                    type = new CtfTmfEventType(fEventName, getContent());
+                    /*
+                     * Register the event type in the owning trace, but only if
+                     * there is one
+                     */
+                    getTrace().registerEventType(type);
+                }
+            }
             fEventType = type;
         }
         return type;
@@ -284,6 +347,55 @@ public class CtfTmfEvent extends TmfEvent
         return content;
     }
 
+    /**
+     * Read the integer fields directly from the event definition, without
+     * building the content. The slots of the type are the fields of the event
+     * followed by its context, as in the content.
+     *
+     * @since 2.1
+     */
+    @Override
+    public @Nullable Object getFieldValue(int slot) {
+        IDefinition definition = getFieldDefinition(slot);
+        if (definition instanceof IntegerDefinition) {
+            return ((IntegerDefinition) definition).getValue();
+        }
+        /* The other fields have the value of their content field */
+        return (definition == null) ? null : super.getFieldValue(slot);
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public long getLongField(int slot, long defaultValue) {
+        IDefinition definition = getFieldDefinition(slot);
+        if (definition instanceof IntegerDefinition) {
+            return ((IntegerDefinition) definition).getValue();
+        }
+        return super.getLongField(slot, defaultValue);
+    }
+
+    private @Nullable IDefinition getFieldDefinition(int slot) {
+        if (slot < 0) {
+            return null;
+        }
+        int index = slot;
+        ICompositeDefinition structFields = fEvent.getFields();
+        if (structFields != null) {
+            int nbFields = structFields.getFieldNames().size();
+            if (index < nbFields) {
+                return structFields.getDefinition(index);
+            }
+            index -= nbFields;
+        }
+        ICompositeDefinition structContext = fEvent.getContext();
+        if (structContext != null && index < structContext.getFieldNames().size()) {
+            return structContext.getDefinition(index);
+        }
+        return null;
+    }
+
     /**
      * Extract the field information from the structDefinition haze-inducing
      * mess, and put them into something ITmfEventField can cope with.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2012, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -22,10 +22,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -40,9 +40,11 @@ import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceWriter;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.ctf.core.trace.Metadata;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.indexer.CtfPacketIndexer;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIteratorManager;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -52,6 +54,9 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequestHint;
+import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
@@ -61,7 +66,6 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -144,6 +148,8 @@ public class CtfTmfTrace extends TmfTrace
 
     private final Map<@NonNull String, @NonNull CtfTmfEventType> fContainedEventTypes = Collections.synchronizedMap(new HashMap<>());
 
+    private final Map<@NonNull IEventDeclaration, @NonNull CtfTmfEventType> fDeclarationTypes = new ConcurrentHashMap<>();
+
     private final CtfIteratorManager fIteratorManager = new CtfIteratorManager(this);
 
     private final @NonNull CtfTmfEventFactory fEventFactory;
@@ -222,42 +228,11 @@ public class CtfTmfTrace extends TmfTrace
              * register a trace to that type in the TmfEventTypeManager
              */
             try (CtfIterator iter = fIteratorManager.getIterator(ctx)) {
-                Set<@NonNull ITmfEventField> streamContextNames = new HashSet<>();
                 for (IEventDeclaration ied : iter.getEventDeclarations()) {
-                    CtfTmfEventType ctfTmfEventType = fContainedEventTypes.get(ied.getName());
-                    if (ctfTmfEventType == null) {
-                        List<ITmfEventField> content = new ArrayList<>();
-
-                        /* Should only return null the first time */
-                        final StructDeclaration fields = ied.getFields();
-                        if (fields != null) {
-                            for (String fieldName : fields.getFieldsList()) {
-                                content.add(new TmfEventField(checkNotNull(fieldName), null, null));
-                            }
-                        }
-
-                        /* Add stream contexts */
-                        final StructDeclaration streamContexts = ied.getStream().getEventContextDecl();
-                        if (streamContextNames.isEmpty()) {
-                            if (streamContexts != null) {
-                                for (String fieldName : streamContexts.getFieldsList()) {
-                                    streamContextNames.add(new TmfEventField(checkNotNull(CtfConstants.CONTEXT_FIELD_PREFIX + fieldName), null, null));
-                                }
-                            }
-                        }
-                        content.addAll(streamContextNames);
-
-                        if (!content.isEmpty()) {
-                            ITmfEventField contentTree = new TmfEventField(
-                                    ITmfEventField.ROOT_FIELD_ID,
-                                    null,
-                                    content.toArray(new ITmfEventField[content.size()]));
-
-                            ctfTmfEventType = new CtfTmfEventType(checkNotNull(ied.getName()), contentTree);
-                            fContainedEventTypes.put(ctfTmfEventType.getName(), ctfTmfEventType);
-                        }
-                    }
+                    getEventType(checkNotNull(ied));
                 }
+            } finally {
+                fIteratorManager.releaseIterator(ctx);
             }
             ctx.dispose();
         } catch (final CTFException e) {
@@ -406,6 +381,71 @@ public class CtfTmfTrace extends TmfTrace
         return context;
     }
 
+    /**
+     * Bounded requests only read the packets that intersect their time range,
+     * the packets past the end of the range are not decoded. This is only done
+     * when no timestamp transform is applied to the trace, as the request
+     * range is expressed in transformed time.
+     *
+     * @since 2.1
+     */
+    @Override
+    public synchronized ITmfContext armRequest(final ITmfEventRequest request) {
+        ITmfContext context = super.armRequest(request);
+        if (context instanceof CtfTmfContext && context.getLocation() != null) {
+            ITmfTimestamp end = request.getRange().getEndTime();
+            if (!TmfTimestamp.BIG_CRUNCH.equals(end) && hasDefaultTransform()) {
+                CtfTmfContext ctfContext = (CtfTmfContext) context;
+                long filterEnd = Math.min(ctfContext.getFilterEnd(), end.toNanos());
+                ctfContext.setPacketFilter(ctfContext.getFilterStart(), filterEnd, ctfContext.getFilterCpus());
+            }
+        }
+        return context;
+    }
+
+    /**
+     * The events of the other event types are skipped by the stream readers
+     * before their TMF event is built, and the streams that do not declare any
+     * of the event types are not read. The packets that were not recorded on
+     * one of the CPUs of the hint, or that are outside of its time range, are
+     * skipped using the packet index.
+     *
+     * @since 2.1
+     */
+    @Override
+    protected boolean applyRequestHint(ITmfContext context, TmfEventRequestHint hint) {
+        if (!(context instanceof CtfTmfContext) || context.getLocation() == null) {
+            return false;
+        }
+        CtfTmfContext ctfContext = (CtfTmfContext) context;
+        long start = Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        if (hasDefaultTransform()) {
+            start = hint.getStartTime();
+            end = hint.getEndTime();
+        }
+        boolean applied = false;
+        Set<Integer> cpus = hint.getCpus();
+        if (start != Long.MIN_VALUE || end != Long.MAX_VALUE || cpus != null) {
+            ctfContext.setPacketFilter(start, end, cpus);
+            applied = true;
+        }
+        Set<String> eventTypes = hint.getEventTypes();
+        if (eventTypes != null) {
+            ctfContext.setEventFilter(eventTypes);
+            applied = true;
+        }
+        return applied;
+    }
+
+    /**
+     * Check if no timestamp transform is applied to the trace, the time
+     * ranges of the requests can then be compared with the packet index.
+     */
+    private boolean hasDefaultTransform() {
+        return getTimestampTransform().equals(TimestampTransformFactory.getDefaultTransform());
+    }
+
     /**
      * Method readNextEvent.
      *
@@ -415,7 +455,7 @@ public class CtfTmfTrace extends TmfTrace
      * @see org.eclipse.tracecompass.tmf.core.trace.ITmfTrace#getNext(ITmfContext)
      */
     @Override
-    public synchronized CtfTmfEvent getNext(final ITmfContext context) {
+    public CtfTmfEvent getNext(final ITmfContext context) {
         if (fTrace == null) {
             return null;
         }
@@ -544,6 +584,63 @@ public class CtfTmfTrace extends TmfTrace
         fContainedEventTypes.put(eventType.getName(), eventType);
     }
 
+    /**
+     * Get the event type of an event declaration, registering it the first
+     * time. The fields of the type are in the order of the content of the
+     * events: the fields of the event, then the context of the stream, then
+     * the context of the event.
+     *
+     * @param declaration
+     *            the event declaration
+     * @return the event type
+     * @since 2.1
+     */
+    public CtfTmfEventType getEventType(@NonNull IEventDeclaration declaration) {
+        CtfTmfEventType type = fDeclarationTypes.get(declaration);
+        if (type == null) {
+            type = fDeclarationTypes.computeIfAbsent(declaration, CtfTmfTrace::createEventType);
+            fContainedEventTypes.putIfAbsent(type.getName(), type);
+        }
+        return type;
+    }
+
+    private static @NonNull CtfTmfEventType createEventType(IEventDeclaration declaration) {
+        List<@NonNull String> names = new ArrayList<>();
+        final StructDeclaration fields = declaration.getFields();
+        if (fields != null) {
+            for (String name : fields.getFieldsList()) {
+                names.add(name);
+            }
+        }
+        /* The event context overwrites the stream context fields it repeats */
+        List<@NonNull String> contextNames = new ArrayList<>();
+        final ICTFStream stream = declaration.getStream();
+        final StructDeclaration streamContext = (stream == null) ? null : stream.getEventContextDecl();
+        if (streamContext != null) {
+            for (String name : streamContext.getFieldsList()) {
+                contextNames.add(name);
+            }
+        }
+        final StructDeclaration eventContext = declaration.getContext();
+        if (eventContext != null) {
+            for (String name : eventContext.getFieldsList()) {
+                if (!contextNames.contains(name)) {
+                    contextNames.add(name);
+                }
+            }
+        }
+        for (String name : contextNames) {
+            names.add(CtfConstants.CONTEXT_FIELD_PREFIX + name);
+        }
+
+        ITmfEventField[] content = new ITmfEventField[names.size()];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = new TmfEventField(checkNotNull(names.get(i)), null, null);
+        }
+        ITmfEventField contentTree = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, content);
+        return new CtfTmfEventType(checkNotNull(declaration.getName()), contentTree);
+    }
+
     // -------------------------------------------
     // Parser
     // -------------------------------------------
@@ -613,7 +710,9 @@ public class CtfTmfTrace extends TmfTrace
     }
 
     /**
-     * Create the 'CtfIterator' object from a CtfTmfContext.
+     * Create the 'CtfIterator' object from a CtfTmfContext. The iterator is
+     * reserved to the context until {@link #releaseIteratorOfContext} is
+     * called.
      *
      * @param context
      *            The iterator will initially be pointing to this context
@@ -624,6 +723,19 @@ public class CtfTmfTrace extends TmfTrace
         return fIteratorManager.getIterator(context);
     }
 
+    /**
+     * Release the iterator obtained with {@link #createIteratorFromContext},
+     * once the operation of the context on it is done. Until then, the
+     * iterator is not taken over by other contexts.
+     *
+     * @param context
+     *            The context that used the iterator
+     * @since 2.1
+     */
+    public void releaseIteratorOfContext(CtfTmfContext context) {
+        fIteratorManager.releaseIterator(context);
+    }
+
     /**
      * Dispose an iterator that was create with
      * {@link #createIteratorFromContext}
@@ -637,6 +749,35 @@ public class CtfTmfTrace extends TmfTrace
         fIteratorManager.removeIterator(context);
     }
 
+    /**
+     * Only half of the iterators that are kept open for the trace, so that
+     * the other contexts of the trace keep theirs.
+     *
+     * @since 2.1
+     */
+    @Override
+    public int getMaxConcurrentContexts() {
+        CTFTrace trace = fTrace;
+        if (trace == null) {
+            return 1;
+        }
+        return Math.max(1, CtfIteratorManager.computeCapacity(trace) / 2);
+    }
+
+    /**
+     * Get the statistics of the cache of iterators of this trace: the number
+     * of lookups of contexts that already had an iterator ("hits"), that
+     * needed one ("misses"), and among those the ones that got the iterator of
+     * a disposed context ("reuses") or took the one of another context
+     * ("evictions").
+     *
+     * @return the statistics, by name
+     * @since 2.1
+     */
+    public Map<String, Long> getIteratorStatistics() {
+        return fIteratorManager.getStatistics();
+    }
+
     // ------------------------------------------------------------------------
     // Timestamp transformation functions
     // ------------------------------------------------------------------------
@@ -666,7 +807,7 @@ public class CtfTmfTrace extends TmfTrace
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        return new TmfBTreeTraceIndexer(this, interval);
+        return new CtfPacketIndexer(this, interval);
     }
 
     @Override
@@ -732,6 +873,38 @@ public class CtfTmfTrace extends TmfTrace
         return (int) (size / REDUCTION_FACTOR / CTF_AVG_EVENT_SIZE);
     }
 
+    /**
+     * Write the part of this trace that is within a time range as a new CTF
+     * trace. The packets of the streams are copied without being decoded, only
+     * the last packet of each stream is rewritten without its events after the
+     * end of the range. The first packet of each stream is kept whole, so the
+     * new trace can start a bit before the start of the range.
+     *
+     * @param startTime
+     *            the start of the range, in nanoseconds of the trace clock,
+     *            before any timestamp transform
+     * @param endTime
+     *            the end of the range, in nanoseconds of the trace clock,
+     *            before any timestamp transform
+     * @param destination
+     *            the directory of the new trace, it must not exist
+     * @throws TmfTraceException
+     *             if the trace cannot be read or the new trace cannot be
+     *             written
+     * @since 2.1
+     */
+    public void trim(long startTime, long endTime, String destination) throws TmfTraceException {
+        CTFTrace trace = fTrace;
+        if (trace == null) {
+            throw new TmfTraceException("Cannot trim disposed trace " + getName()); //$NON-NLS-1$
+        }
+        try {
+            new CTFTraceWriter(trace).copyPackets(startTime, endTime, destination, true);
+        } catch (CTFException e) {
+            throw new TmfTraceException(e.getMessage(), e);
+        }
+    }
+
     /**
      * @return the number of events divided a reduction factor. Is monotonic.
      * @since 2.1
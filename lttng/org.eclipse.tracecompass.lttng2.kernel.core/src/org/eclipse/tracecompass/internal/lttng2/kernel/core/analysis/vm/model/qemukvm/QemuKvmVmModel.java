@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 École Polytechnique de Montréal
+ * Copyright (c) 2014, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -212,7 +212,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
         }
 
         final ITmfEventField content = event.getContent();
-        final long ts = event.getTimestamp().toNanos();
+        final long ts = event.getTimestampNanos();
         final String hostId = event.getTrace().getHostId();
 
         final Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
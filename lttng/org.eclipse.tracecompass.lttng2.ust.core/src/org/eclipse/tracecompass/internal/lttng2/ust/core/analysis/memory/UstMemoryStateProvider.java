@@ -196,7 +196,7 @@ public class UstMemoryStateProvider extends AbstractTmfStateProvider {
 
     private void setMem(ITmfEvent event, Long ptr, Long size) {
         ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
-        long ts = event.getTimestamp().toNanos();
+        long ts = event.getTimestampNanos();
         Long tid = getVtid(event);
 
         Long memoryDiff = size;
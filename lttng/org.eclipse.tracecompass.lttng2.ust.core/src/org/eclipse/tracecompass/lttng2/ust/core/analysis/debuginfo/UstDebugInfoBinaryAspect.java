@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 EfficiOS Inc., Alexandre Montplaisir
+ * Copyright (c) 2015, 2016 EfficiOS Inc., Alexandre Montplaisir
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -64,7 +64,7 @@ public class UstDebugInfoBinaryAspect implements ITmfEventAspect<BinaryCallsite>
         }
         Long vpid = (Long) vpidField.getValue();
         Long ip = (Long) ipField.getValue();
-        long ts = event.getTimestamp().toNanos();
+        long ts = event.getTimestampNanos();
 
         return getBinaryCallsite(trace, vpid.intValue(), ts, ip.longValue());
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 EfficiOS Inc., Alexandre Montplaisir
+ * Copyright (c) 2015, 2016 EfficiOS Inc., Alexandre Montplaisir
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -61,6 +61,30 @@ public class LttngUstEvent extends CtfTmfEvent implements ITmfSourceLookup {
         super(trace, rank, timestamp, channel, cpu, declaration, eventDefinition);
     }
 
+    /**
+     * Constructor with a primitive timestamp
+     *
+     * @param trace
+     *            The trace to which this event belongs
+     * @param rank
+     *            The rank of the event
+     * @param timestampNanos
+     *            The timestamp, in nanoseconds
+     * @param channel
+     *            The CTF channel of this event
+     * @param cpu
+     *            The event's CPU
+     * @param declaration
+     *            The event declaration
+     * @param eventDefinition
+     *            The event definition
+     * @since 2.1
+     */
+    protected LttngUstEvent(CtfTmfTrace trace, long rank, long timestampNanos,
+            String channel, int cpu, IEventDeclaration declaration, IEventDefinition eventDefinition) {
+        super(trace, rank, timestampNanos, channel, cpu, declaration, eventDefinition);
+    }
+
     @Override
     public @Nullable ITmfCallsite getCallsite() {
         return UstDebugInfoSourceAspect.INSTANCE.resolve(this);
@@ -1,5 +1,5 @@
 /**********************************************************************
- * Copyright (c) 2015 Ericsson and others
+ * Copyright (c) 2015, 2016 Ericsson and others
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -47,7 +47,6 @@ public class LttngUstEventFactory extends CtfTmfEventFactory {
         /* Prepare what to pass to CtfTmfEvent's constructor */
         final IEventDeclaration eventDecl = eventDef.getDeclaration();
         final long ts = eventDef.getTimestamp();
-        final ITmfTimestamp timestamp = trace.createTimestamp(trace.timestampCyclesToNanos(ts));
 
         int sourceCPU = eventDef.getCPU();
 
@@ -55,13 +54,18 @@ public class LttngUstEventFactory extends CtfTmfEventFactory {
 
         /* Handle the special case of lost events */
         if (eventDecl.getName().equals(CTFStrings.LOST_EVENT_NAME)) {
+            final ITmfTimestamp timestamp = trace.createTimestamp(trace.timestampCyclesToNanos(ts));
             return createLostEvent(trace, eventDef, eventDecl, ts, timestamp, sourceCPU, reference);
         }
 
-        /* Handle standard event types */
+        /*
+         * Handle standard event types. The timestamp object is only created if
+         * it is requested, see CtfTmfTrace#createTimestamp for the value.
+         */
+        final long timestampNanos = trace.getTimestampTransform().transform(trace.timestampCyclesToNanos(ts));
         return new LttngUstEvent(trace,
                 ITmfContext.UNKNOWN_RANK,
-                timestamp,
+                timestampNanos,
                 reference, // filename
                 sourceCPU,
                 eventDecl,
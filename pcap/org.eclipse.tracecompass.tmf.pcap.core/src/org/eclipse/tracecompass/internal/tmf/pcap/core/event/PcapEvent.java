@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -91,6 +91,42 @@ public class PcapEvent extends TmfEvent {
         fReference = reference;
     }
 
+    /**
+     * Constructor with a primitive timestamp, which is only made into a
+     * timestamp object if it is requested.
+     *
+     * @param trace
+     *            the parent trace
+     * @param rank
+     *            the event rank (in the trace)
+     * @param timestampNanos
+     *            the event timestamp, in nanoseconds
+     * @param source
+     *            the event source
+     * @param type
+     *            the event type
+     * @param content
+     *            the event content (payload)
+     * @param reference
+     *            the event reference
+     * @param packet
+     *            The packet contained in this event
+     */
+    public PcapEvent(ITmfTrace trace,
+            long rank,
+            long timestampNanos,
+            String source,
+            TmfEventType type,
+            ITmfEventField content,
+            String reference,
+            Packet packet) {
+
+        super(trace, rank, timestampNanos, type, content);
+        fPacket = packet;
+        fSource = source;
+        fReference = reference;
+    }
+
     /**
      * Return this event's source.
      *
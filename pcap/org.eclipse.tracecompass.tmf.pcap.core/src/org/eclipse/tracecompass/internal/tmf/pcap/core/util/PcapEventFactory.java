@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -68,15 +68,16 @@ public final class PcapEventFactory {
         long rank = pcapPacket.getIndex();
         long timestamp = pcapPacket.getTimestamp();
         PcapTimestampScale scale = pcapPacket.getTimestampScale();
-        ITmfTimestamp tmfTimestamp;
+        /* Nanosecond timestamps are kept as primitives in the event */
+        ITmfTimestamp tmfTimestamp = null;
+        long ns = 0;
         switch (scale) {
         case MICROSECOND:
             long us = trace.getTimestampTransform().transform(timestamp * 1000) / 1000;
             tmfTimestamp = TmfTimestamp.fromMicros(us);
             break;
         case NANOSECOND:
-            long ns = trace.getTimestampTransform().transform(timestamp);
-            tmfTimestamp = TmfTimestamp.fromNanos(ns);
+            ns = trace.getTimestampTransform().transform(timestamp);
             break;
         default:
             throw new IllegalArgumentException("The timestamp precision is not valid!"); //$NON-NLS-1$
@@ -97,6 +98,9 @@ public final class PcapEventFactory {
         if (eventType == null) {
             eventType = new TmfEventType();
         }
+        if (tmfTimestamp == null) {
+            return new PcapEvent(trace, rank, ns, dataLink, eventType, field, fileName, packet);
+        }
         return new PcapEvent(trace, rank, tmfTimestamp, dataLink, eventType, field, fileName, packet);
 
     }
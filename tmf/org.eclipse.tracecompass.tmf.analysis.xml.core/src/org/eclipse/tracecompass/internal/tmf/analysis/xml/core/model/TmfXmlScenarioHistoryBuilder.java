@@ -167,7 +167,7 @@ public class TmfXmlScenarioHistoryBuilder {
      */
     public ITmfStateValue getStoredFieldValue(IXmlStateSystemContainer container, String attributeName, final TmfXmlScenarioInfo info, ITmfEvent event) {
         ITmfStateSystemBuilder ss = (ITmfStateSystemBuilder) container.getStateSystem();
-        long ts = event.getTimestamp().toNanos();
+        long ts = event.getTimestampNanos();
         ITmfStateInterval state = null;
         try {
             int attributeQuark = getQuarkRelativeAndAdd(ss, info.getQuark(), TmfXmlStrings.STORED_FIELDS, attributeName);
@@ -345,7 +345,7 @@ public class TmfXmlScenarioHistoryBuilder {
 
     private static long getTimestamp(@Nullable ITmfEvent event, @Nullable ITmfStateSystemBuilder ss) {
         if (event != null) {
-            return event.getTimestamp().toNanos();
+            return event.getTimestampNanos();
         }
         if (ss != null) {
             return ss.getCurrentEndTime();
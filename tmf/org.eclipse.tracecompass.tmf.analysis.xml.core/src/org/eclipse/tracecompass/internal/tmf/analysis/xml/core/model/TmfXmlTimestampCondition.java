@@ -195,7 +195,7 @@ public class TmfXmlTimestampCondition implements ITmfXmlCondition {
             end = Math.min(ss.getCurrentEndTime(), end);
             begin = Math.min(begin, end);
 
-            long ts = event.getTimestamp().toNanos();
+            long ts = event.getTimestampNanos();
             switch (fType) {
             case IN:
                 return intersects(begin, end, ts);
@@ -269,7 +269,7 @@ public class TmfXmlTimestampCondition implements ITmfXmlCondition {
                 return false;
             }
             boolean success;
-            long ts = event.getTimestamp().toNanos();
+            long ts = event.getTimestampNanos();
             long referenceTimestamps = ((XmlPatternStateProvider) fContainer).getHistoryBuilder().getSpecificStateStartTime(fContainer, fReferenceState, scenarioInfo, event);
             if (!compareSign(ts, referenceTimestamps) || ts < referenceTimestamps) {
                 throw new IllegalArgumentException("Timestamp is inferior to reference time"); //$NON-NLS-1$
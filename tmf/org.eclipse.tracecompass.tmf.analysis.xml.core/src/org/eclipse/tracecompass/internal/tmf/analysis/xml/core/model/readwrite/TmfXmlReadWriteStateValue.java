@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 École Polytechnique de Montréal
+ * Copyright (c) 2014, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -310,7 +310,7 @@ public class TmfXmlReadWriteStateValue extends TmfXmlStateValue {
                 }
             }
 
-            final long ts = event.getTimestamp().toNanos();
+            final long ts = event.getTimestampNanos();
             @Nullable ITmfStateInterval stackTopInterval = StateSystemUtils.querySingleStackTop(ss, ts, quarkQuery);
             final ITmfStateValue value = stackTopInterval != null ? stackTopInterval.getStateValue() : null;
             return value != null ? value : TmfStateValue.nullValue();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -138,6 +138,49 @@ public class TmfEventProviderTest {
         }
     }
 
+    /**
+     * Test getting the plain events in batches
+     */
+    @Test
+    public void testGetPlainEventsInBatches() {
+        final int NB_EVENTS = 1000;
+        final Vector<ITmfEvent> requestedEvents = new Vector<>();
+        final int[] nbBatches = new int[1];
+
+        ITmfEventProvider[] eventProviders = TmfProviderManager.getProviders(ITmfEvent.class,
+                TmfEventProviderStub.class);
+        ITmfEventProvider provider = eventProviders[0];
+
+        TmfTimeRange range = new TmfTimeRange(TmfTimestamp.BIG_BANG, TmfTimestamp.BIG_CRUNCH);
+        final TmfEventRequest request = new TmfEventRequest(ITmfEvent.class,
+                range, 0, NB_EVENTS, ExecutionType.FOREGROUND) {
+            @Override
+            public void handleData(ITmfEvent[] events, int count) {
+                nbBatches[0]++;
+                for (int i = 0; i < count; i++) {
+                    requestedEvents.add(events[i]);
+                }
+                super.handleData(events, count);
+            }
+        };
+
+        provider.sendRequest(request);
+        try {
+            request.waitForCompletion();
+            assertEquals("nbEvents", NB_EVENTS, requestedEvents.size());
+            assertEquals("nbRead", NB_EVENTS, request.getNbRead());
+            assertTrue("nbBatches", nbBatches[0] < NB_EVENTS);
+            assertTrue("isCompleted", request.isCompleted());
+            assertFalse("isCancelled", request.isCancelled());
+
+            for (int i = 0; i < NB_EVENTS; i++) {
+                assertEquals("Distinct events", i + 1, requestedEvents.get(i).getTimestamp().getValue());
+            }
+        } catch (InterruptedException e) {
+            fail();
+        }
+    }
+
     /**
      * Test canceling requests.
      */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -135,6 +135,34 @@ public class TmfEventTest {
         trace.dispose();
     }
 
+    @Test
+    public void testTimestampNanosConstructor() {
+        final ITmfEvent event = new TmfEvent(fTrace, 0, 1234500L, fType, fContent1);
+        assertEquals("getTimestampNanos", 1234500L, event.getTimestampNanos());
+        assertEquals("getTimestamp", TmfTimestamp.fromNanos(1234500L), event.getTimestamp());
+        assertEquals("getTimestamp", 0, fTimestamp1.compareTo(event.getTimestamp()));
+        assertEquals("getTimestampNanos", fTimestamp1.toNanos(), fEvent1.getTimestampNanos());
+        assertEquals("equals", new TmfEvent(fTrace, 0, TmfTimestamp.fromNanos(1234500L), fType, fContent1), event);
+    }
+
+    @Test
+    public void testFieldSlots() {
+        final int slot1 = fType.getFieldSlot(fLabel1);
+        final int slot2 = fType.getFieldSlot(fLabel2);
+        assertEquals("getFieldSlot", 0, slot1);
+        assertEquals("getFieldSlot", 1, slot2);
+        assertEquals("getFieldSlot", -1, fType.getFieldSlot("NoSuchField"));
+
+        assertEquals("getFieldValue", fValue1a, fEvent1.getFieldValue(slot1));
+        assertEquals("getFieldValue", fValue2b, fEvent2.getFieldValue(slot2));
+        assertNull("getFieldValue", fEvent1.getFieldValue(-1));
+        assertNull("getFieldValue", fEvent1.getFieldValue(2));
+
+        assertEquals("getLongField", 10, fEvent1.getLongField(slot2, 0));
+        assertEquals("getLongField", -4, fEvent2.getLongField(slot2, 0));
+        assertEquals("getLongField", 0, fEvent1.getLongField(slot1, 0));
+    }
+
     @Test
     public void testTmfEventCopy() {
         final ITmfEvent event = new TmfEvent(fEvent1);
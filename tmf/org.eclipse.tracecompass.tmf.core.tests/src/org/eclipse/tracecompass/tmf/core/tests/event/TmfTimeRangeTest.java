@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -214,6 +214,22 @@ public class TmfTimeRangeTest {
         assertFalse("contains (high value)", range.contains(TmfTimestamp.fromSeconds(12351)));
     }
 
+    @Test
+    public void testContainsNanos() {
+        final long second = 1000000000L;
+        final TmfTimeRange range = new TmfTimeRange(TmfTimestamp.fromSeconds(12345), TmfTimestamp.fromSeconds(12350));
+
+        assertTrue("contains (lower bound)", range.contains(12345 * second));
+        assertTrue("contains (higher bound)", range.contains(12350 * second));
+        assertTrue("contains (within bounds)", range.contains(12346 * second));
+
+        assertFalse("contains (low value)", range.contains(12345 * second - 1));
+        assertFalse("contains (high value)", range.contains(12350 * second + 1));
+
+        assertTrue("contains (eternity)", TmfTimeRange.ETERNITY.contains(Long.MIN_VALUE));
+        assertTrue("contains (eternity)", TmfTimeRange.ETERNITY.contains(Long.MAX_VALUE));
+    }
+
     @Test
     public void testContainsRange() {
         final ITmfTimestamp ts1 = TmfTimestamp.fromSeconds(10);
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.function.Predicate;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterCompiler;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterCompiler} class. The compiled predicates
+ * must give the same results as the filter trees they are compiled from.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterCompilerTest {
+
+    // ------------------------------------------------------------------------
+    // Variables
+    // ------------------------------------------------------------------------
+
+    private static final String FIELD = "field";
+    private static final String[] VALUES = { "1", "5", "11", "05", "abc", "ABCD", "x5y", "" };
+
+    private static ITmfEvent[] createEvents() {
+        ITmfEvent[] events = new ITmfEvent[VALUES.length + 1];
+        for (int i = 0; i < VALUES.length; i++) {
+            ITmfEventField[] fields = new ITmfEventField[] { new TmfEventField(FIELD, VALUES[i], null) };
+            ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+            events[i] = new TmfEvent(TmfFilterTreeNodeTestBase.TRACE, i, TmfTimestamp.fromNanos(i), TmfFilterTreeNodeTestBase.EVENT_TYPE, content);
+        }
+        /* An event without the field */
+        ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, null);
+        events[VALUES.length] = new TmfEvent(TmfFilterTreeNodeTestBase.TRACE, VALUES.length, TmfTimestamp.fromNanos(VALUES.length), TmfFilterTreeNodeTestBase.EVENT_TYPE, content);
+        return events;
+    }
+
+    private final ITmfEvent[] fEvents = createEvents();
+
+    @AfterClass
+    public static void disposeTrace() {
+        TmfFilterTreeNodeTestBase.TRACE.dispose();
+    }
+
+    private void assertSameResults(ITmfFilterTreeNode filter) {
+        Predicate<ITmfEvent> predicate = TmfFilterCompiler.compile(filter);
+        for (ITmfEvent event : fEvents) {
+            assertEquals(filter.toString() + " on " + event.getContent(), filter.matches(event), predicate.test(event));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testCompare() {
+        for (Type type : Type.values()) {
+            for (int result = -1; result <= 1; result++) {
+                for (boolean not : new boolean[] { false, true }) {
+                    TmfFilterCompareNode filter = new TmfFilterCompareNode(null);
+                    if (type == Type.TIMESTAMP) {
+                        filter.setEventAspect(TmfBaseAspects.getTimestampAspect());
+                        filter.setValue("0.000000002");
+                    } else {
+                        filter.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+                        filter.setValue("5");
+                    }
+                    filter.setType(type);
+                    filter.setResult(result);
+                    filter.setNot(not);
+                    assertSameResults(filter);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEquals() {
+        for (String value : new String[] { "5", "05", "abc" }) {
+            for (boolean ignoreCase : new boolean[] { false, true }) {
+                for (boolean not : new boolean[] { false, true }) {
+                    TmfFilterEqualsNode filter = new TmfFilterEqualsNode(null);
+                    filter.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+                    filter.setValue(value);
+                    filter.setIgnoreCase(ignoreCase);
+                    filter.setNot(not);
+                    assertSameResults(filter);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testContains() {
+        for (boolean ignoreCase : new boolean[] { false, true }) {
+            for (boolean not : new boolean[] { false, true }) {
+                TmfFilterContainsNode filter = new TmfFilterContainsNode(null);
+                filter.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+                filter.setValue("bC");
+                filter.setIgnoreCase(ignoreCase);
+                filter.setNot(not);
+                assertSameResults(filter);
+            }
+        }
+    }
+
+    @Test
+    public void testMatches() {
+        for (boolean not : new boolean[] { false, true }) {
+            TmfFilterMatchesNode filter = new TmfFilterMatchesNode(null);
+            filter.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+            filter.setRegex(".*5.*");
+            filter.setNot(not);
+            assertSameResults(filter);
+        }
+    }
+
+    @Test
+    public void testAndOr() {
+        for (boolean not : new boolean[] { false, true }) {
+            TmfFilterRootNode root = new TmfFilterRootNode();
+            TmfFilterOrNode or = new TmfFilterOrNode(root);
+            or.setNot(not);
+            TmfFilterAndNode and = new TmfFilterAndNode(or);
+            TmfFilterContainsNode contains = new TmfFilterContainsNode(and);
+            contains.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+            contains.setValue("5");
+            TmfFilterCompareNode compare = new TmfFilterCompareNode(and);
+            compare.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+            compare.setType(Type.NUM);
+            compare.setValue("5");
+            compare.setResult(0);
+            TmfFilterMatchesNode matches = new TmfFilterMatchesNode(or);
+            matches.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+            matches.setRegex("[a-z]+");
+            assertSameResults(root);
+            assertSameResults(or);
+        }
+    }
+
+    @Test
+    public void testUnknownNode() {
+        TmfFilterAndNode and = new TmfFilterAndNode(null);
+        and.addChild(TmfFilterTreeNodeTestBase.TRUE_NODE);
+        and.addChild(TmfFilterTreeNodeTestBase.FALSE_NODE);
+        assertSameResults(and);
+        and.setNot(true);
+        assertSameResults(and);
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.net.URL;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.filter.TmfParallelSearch;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
+import org.eclipse.tracecompass.tmf.core.tests.TmfCoreTestPlugin;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfParallelSearch} class. The results must be
+ * the same as the ones of a sequential read of the trace.
+ */
+@SuppressWarnings("javadoc")
+public class TmfParallelSearchTest {
+
+    // ------------------------------------------------------------------------
+    // Variables
+    // ------------------------------------------------------------------------
+
+    private static final TmfTestTrace TEST_TRACE = TmfTestTrace.A_TEST_10K;
+    private static final int NB_EVENTS = 10000;
+    /* Small cache size, to have many chunks */
+    private static final int CACHE_SIZE = 100;
+
+    /* The events of the stub trace have the timestamps 1 to 10000 */
+    private static final Predicate<ITmfEvent> MULTIPLE_OF_7 = event -> event.getTimestamp().getValue() % 7 == 0;
+
+    private TmfTraceStub fTrace;
+
+    // ------------------------------------------------------------------------
+    // Housekeeping
+    // ------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+        final URL location = FileLocator.find(TmfCoreTestPlugin.getDefault().getBundle(), new Path(TEST_TRACE.getFullPath()), null);
+        final File test = new File(FileLocator.toFileURL(location).toURI());
+        fTrace = new TmfTraceStub(test.toURI().getPath(), CACHE_SIZE, false, null);
+        TmfSignalManager.deregister(fTrace);
+        fTrace.indexTrace(true);
+    }
+
+    @After
+    public void tearDown() {
+        fTrace.dispose();
+    }
+
+    private long[] sequentialSearch(Predicate<ITmfEvent> predicate, long startRank, long endRank) {
+        LongStream.Builder ranks = LongStream.builder();
+        ITmfContext context = fTrace.seekEvent(startRank);
+        for (long rank = startRank; rank < endRank; rank++) {
+            ITmfEvent event = fTrace.getNext(context);
+            if (predicate.test(event)) {
+                ranks.add(rank);
+            }
+        }
+        context.dispose();
+        return ranks.build().toArray();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testFindAll() {
+        TmfParallelSearch search = new TmfParallelSearch(fTrace, MULTIPLE_OF_7);
+        assertArrayEquals(sequentialSearch(MULTIPLE_OF_7, 0, NB_EVENTS), search.findAll(0, NB_EVENTS, null));
+        /* Ranges that do not start or end at a checkpoint */
+        assertArrayEquals(sequentialSearch(MULTIPLE_OF_7, 150, 4321), search.findAll(150, 4321, null));
+        assertArrayEquals(sequentialSearch(MULTIPLE_OF_7, 42, 57), search.findAll(42, 57, null));
+        /* A range past the end of the trace is truncated */
+        assertArrayEquals(sequentialSearch(MULTIPLE_OF_7, 9000, NB_EVENTS), search.findAll(9000, Long.MAX_VALUE, null));
+        assertEquals(0, search.findAll(500, 500, null).length);
+    }
+
+    @Test
+    public void testFindNext() {
+        TmfParallelSearch search = new TmfParallelSearch(fTrace, MULTIPLE_OF_7);
+        /* Rank 5 has the timestamp 6, rank 6 the timestamp 7 */
+        assertEquals(6, search.findNext(0, NB_EVENTS, null));
+        assertEquals(6, search.findNext(6, NB_EVENTS, null));
+        assertEquals(13, search.findNext(7, NB_EVENTS, null));
+        assertEquals(-1, search.findNext(7, 13, null));
+        assertEquals(6, search.findNext(0, Long.MAX_VALUE, null));
+
+        Predicate<ITmfEvent> last = event -> event.getTimestamp().getValue() == NB_EVENTS;
+        assertEquals(NB_EVENTS - 1, new TmfParallelSearch(fTrace, last).findNext(0, NB_EVENTS, null));
+    }
+
+    @Test
+    public void testFindPrevious() {
+        TmfParallelSearch search = new TmfParallelSearch(fTrace, MULTIPLE_OF_7);
+        assertEquals(9995, search.findPrevious(0, NB_EVENTS, null));
+        assertEquals(9995, search.findPrevious(0, 9996, null));
+        assertEquals(9988, search.findPrevious(0, 9995, null));
+        assertEquals(-1, search.findPrevious(7, 13, null));
+
+        Predicate<ITmfEvent> first = event -> event.getTimestamp().getValue() == 1;
+        assertEquals(0, new TmfParallelSearch(fTrace, first).findPrevious(0, NB_EVENTS, null));
+    }
+
+    @Test
+    public void testCancel() {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        TmfParallelSearch search = new TmfParallelSearch(fTrace, MULTIPLE_OF_7);
+        assertEquals(-1, search.findNext(0, NB_EVENTS, monitor));
+        assertEquals(0, search.findAll(0, NB_EVENTS, monitor).length);
+    }
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTraceDefinition.OutputColumn;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTraceDefinition.Tag;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTrace;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.Cardinality;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.InputData;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.InputLine;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.junit.Test;
+
+/**
+ * Test the input lines of custom text traces whose columns are split by a
+ * delimiter or have fixed widths. The columns must be the same as the groups
+ * of the equivalent regex.
+ */
+@SuppressWarnings("javadoc")
+public class CustomTxtColumnTokenizingTest {
+
+    private static final String TRACE_DIRECTORY = TmfTraceManager.getTemporaryDirPath() + File.separator + "dummyTokenizedTrace";
+    private static final String[] LINES = {
+            "",
+            "a",
+            "a|b",
+            "a|b|c",
+            "a|b|c|d|e",
+            "||",
+            " 12 | foo bar |baz ",
+            "no delimiter at all"
+    };
+
+    private static InputLine createInputLine(int nbColumns) {
+        List<InputData> columns = new ArrayList<>();
+        for (int i = 0; i < nbColumns; i++) {
+            columns.add(new InputData("col" + i, CustomTraceDefinition.ACTION_SET));
+        }
+        return new InputLine(Cardinality.ZERO_OR_MORE, "", columns);
+    }
+
+    private static void assertSameGroups(InputLine input, String line) {
+        Matcher matcher = input.getPattern().matcher(line);
+        MatchResult match = input.match(line);
+        if (!matcher.matches()) {
+            assertNull(line, match);
+            return;
+        }
+        assertNotNull(line, match);
+        assertEquals(line, matcher.groupCount(), match.groupCount());
+        for (int i = 0; i <= matcher.groupCount(); i++) {
+            assertEquals(line, matcher.group(i), match.group(i));
+            assertEquals(line, matcher.start(i), match.start(i));
+            assertEquals(line, matcher.end(i), match.end(i));
+        }
+    }
+
+    @Test
+    public void testDelimiter() {
+        for (int nbColumns = 0; nbColumns <= 4; nbColumns++) {
+            InputLine input = createInputLine(nbColumns);
+            input.setDelimiter("|");
+            assertEquals("|", input.getDelimiter());
+            for (String line : LINES) {
+                assertSameGroups(input, line);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiCharacterDelimiter() {
+        InputLine input = createInputLine(3);
+        input.setDelimiter(" :: ");
+        for (String line : new String[] { "a :: b :: c", "a :: b", "a ::  :: b :: c", " :: :: " }) {
+            assertSameGroups(input, line);
+        }
+    }
+
+    @Test
+    public void testDelimiterFollowsColumns() {
+        InputLine input = createInputLine(2);
+        input.setDelimiter(",");
+        assertEquals(2, input.match("a,b,c").groupCount());
+        input.addColumn(new InputData("col2", CustomTraceDefinition.ACTION_SET));
+        assertEquals(3, input.match("a,b,c").groupCount());
+        assertSameGroups(input, "a,b,c");
+    }
+
+    @Test
+    public void testReuse() {
+        InputLine input = createInputLine(3);
+        input.setDelimiter("|");
+        MatchResult first = input.match("a|b|c");
+        assertNotNull(first);
+        MatchResult second = input.match("dd|ee|ff", first);
+        assertSame(first, second);
+        assertSameGroups(input, "dd|ee|ff");
+        assertEquals("ee", second.group(2));
+        assertNull(input.match("no delimiter", second));
+        assertTrue(input.matches("x|y|z"));
+        assertFalse(input.matches("x|y"));
+
+        /* A smaller match result is not reused */
+        InputLine wider = createInputLine(4);
+        wider.setDelimiter("|");
+        MatchResult third = wider.match("a|b|c|d", input.match("a|b|c"));
+        assertNotNull(third);
+        assertEquals("d", third.group(4));
+    }
+
+    @Test
+    public void testColumnWidths() {
+        InputLine input = createInputLine(3);
+        input.setColumnWidths(new int[] { 2, 0, 3 });
+        assertArrayEquals(new int[] { 2, 0, 3 }, input.getColumnWidths());
+        for (String line : new String[] { "", "abcd", "abcde", "abcdefgh", "ab cd ef gh" }) {
+            assertSameGroups(input, line);
+        }
+    }
+
+    @Test
+    public void testSetRegex() {
+        InputLine input = createInputLine(2);
+        input.setDelimiter(",");
+        input.setRegex("(\\d+) (.*)");
+        assertNull(input.getDelimiter());
+        assertNull(input.match("a,b"));
+        assertEquals("2", input.match("2 b").group(1));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        new File(TRACE_DIRECTORY).mkdir();
+        File file = new File(TRACE_DIRECTORY + File.separator + "definitions.xml");
+        try {
+            List<InputLine> inputs = new ArrayList<>();
+            InputLine delimited = createInputLine(3);
+            delimited.setDelimiter("\t");
+            inputs.add(delimited);
+            InputLine fixedWidth = createInputLine(2);
+            fixedWidth.setColumnWidths(new int[] { 5 });
+            inputs.add(fixedWidth);
+            CustomTxtTraceDefinition definition = new CustomTxtTraceDefinition("Test", "tokenized", inputs, new ArrayList<OutputColumn>(), "");
+            definition.save(file.getPath());
+
+            CustomTxtTraceDefinition[] definitions = CustomTxtTraceDefinition.loadAll(file.getPath());
+            assertEquals(1, definitions.length);
+            List<InputLine> loaded = definitions[0].inputs;
+            assertEquals(2, loaded.size());
+            assertEquals("\t", loaded.get(0).getDelimiter());
+            assertEquals(delimited.getRegex(), loaded.get(0).getRegex());
+            assertArrayEquals(new int[] { 5 }, loaded.get(1).getColumnWidths());
+            assertEquals(fixedWidth.getRegex(), loaded.get(1).getRegex());
+        } finally {
+            file.delete();
+            new File(TRACE_DIRECTORY).delete();
+        }
+    }
+
+    @Test
+    public void testReadTrace() throws Exception {
+        new File(TRACE_DIRECTORY).mkdir();
+        File file = new File(TRACE_DIRECTORY + File.separator + "test.csv");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < 10; i++) {
+                writer.write(i + ";type" + (i % 2) + "; message " + i + "; with; semicolons\n");
+            }
+        }
+        List<InputData> columns = new ArrayList<>(Arrays.asList(
+                new InputData(Tag.TIMESTAMP, CustomTraceDefinition.ACTION_SET),
+                new InputData(Tag.EVENT_TYPE, CustomTraceDefinition.ACTION_SET),
+                new InputData(Tag.MESSAGE, CustomTraceDefinition.ACTION_SET)));
+        columns.get(0).format = "T";
+        InputLine input = new InputLine(Cardinality.ONE, "", columns);
+        input.setDelimiter(";");
+        List<InputLine> inputs = new ArrayList<>();
+        inputs.add(input);
+        List<OutputColumn> outputs = new ArrayList<>();
+        outputs.add(new OutputColumn(Tag.MESSAGE, "Message"));
+        CustomTxtTraceDefinition definition = new CustomTxtTraceDefinition("Test", "csv", inputs, outputs, "T");
+        CustomTxtTrace trace = new CustomTxtTrace(null, definition, file.getPath(), 100);
+        try {
+            ITmfContext context = trace.seekEvent(0);
+            for (int i = 0; i < 10; i++) {
+                ITmfEvent event = trace.getNext(context);
+                assertNotNull(event);
+                assertEquals(i, event.getTimestamp().toNanos() / 1000000000L);
+                assertEquals("type" + (i % 2), event.getName());
+                assertEquals("message " + i + "; with; semicolons", event.getContent().getField("Message").getValue());
+            }
+            assertNull(trace.getNext(context));
+            context.dispose();
+        } finally {
+            trace.dispose();
+            file.delete();
+            new File(TRACE_DIRECTORY).delete();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlEvent;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTrace;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Test that the events read by streaming the records of a custom XML trace
+ * are the same as the ones extracted from the DOM of the records.
+ */
+@SuppressWarnings("javadoc")
+public class CustomXmlTraceStreamingTest {
+
+    private static final String TRACE_DIRECTORY = TmfTraceManager.getTemporaryDirPath() + File.separator + "dummyStreamingTrace";
+    private static final String TRACE_PATH = TRACE_DIRECTORY + File.separator + "test.xml";
+    private static final String DEFINITION_PATH = "testfiles" + File.separator + "xml" + File.separator + "testDefinition.xml";
+
+    private static final String[] MESSAGE_RECORDS = {
+            "<element time=\"01/01/2016 00:00:00:001\">message</element>",
+            "<element time=\"01/01/2016 00:00:00:002\"/>",
+            "<element time=\"01/01/2016 00:00:00:003\"></element>",
+            "<element time=\"01/01/2016 00:00:00:004\">text <a>1</a><b/> <c> <d>x</d> tail </c><!-- comment --><e></e></element>",
+            "<element time=\"01/01/2016 00:00:00:005\">\n  <a>one &amp; two</a>\n  <a><b>2</b><b>3</b></a>\n</element>",
+            "<element time=\"01/01/2016 00:00:00:006\"><ns:a xmlns:ns=\"urn:test\">ns</ns:a><f> </f><g><!-- only --></g></element>"
+    };
+
+    private static final String[] FIELD_RECORDS = {
+            "<event name=\"first\" timestamp=\"1\"><field name=\"a\" value=\"1\"/><field name=\"b\" value=\"2\"/></event>",
+            "<event name=\"second\" timestamp=\"2\"><fieldName value=\"c\"/><other><field name=\"x\" value=\"0\"/></other><fieldValue value=\"3\"/></event>",
+            "<event timestamp=\"3\"><field name=\"d\"/><field value=\"4\"/></event>"
+    };
+
+    private static Element parseRecord(String record) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(record.getBytes(StandardCharsets.UTF_8)))
+                .getDocumentElement();
+    }
+
+    private static void assertSameEvent(String record, ITmfEvent expected, ITmfEvent actual) {
+        assertEquals(record, expected.getName(), actual.getName());
+        assertEquals(record, expected.getTimestamp(), actual.getTimestamp());
+        ITmfEventField expectedContent = expected.getContent();
+        ITmfEventField actualContent = actual.getContent();
+        assertEquals(record, expectedContent.getFieldNames(), actualContent.getFieldNames());
+        for (String name : expectedContent.getFieldNames()) {
+            assertEquals(record + ' ' + name, expectedContent.getField(name).getValue(), actualContent.getField(name).getValue());
+        }
+    }
+
+    private static void testRecords(int definitionIndex, String root, String[] records) throws Exception {
+        new File(TRACE_DIRECTORY).mkdir();
+        File file = new File(TRACE_PATH);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("<" + root + ">\n");
+            for (String record : records) {
+                writer.write(record);
+                writer.write('\n');
+            }
+            writer.write("</" + root + ">\n");
+        }
+        CustomXmlTraceDefinition definition = CustomXmlTraceDefinition.loadAll(DEFINITION_PATH)[definitionIndex];
+        CustomXmlTrace trace = new CustomXmlTrace(null, definition, file.getPath(), 100);
+        try {
+            ITmfContext context = trace.seekEvent(0);
+            for (String record : records) {
+                ITmfEvent event = trace.getNext(context);
+                assertNotNull(record, event);
+                CustomXmlEvent expected = trace.extractEvent(parseRecord(record), trace.getRecordInputElement(definition.rootInputElement));
+                assertSameEvent(record, expected, event);
+            }
+            assertNull(trace.getNext(context));
+            context.dispose();
+        } finally {
+            trace.dispose();
+            file.delete();
+            new File(TRACE_DIRECTORY).delete();
+        }
+    }
+
+    @Test
+    public void testElementContent() throws Exception {
+        testRecords(0, "trace", MESSAGE_RECORDS);
+    }
+
+    @Test
+    public void testAttributesAndChildren() throws Exception {
+        testRecords(2, "trace", FIELD_RECORDS);
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -24,14 +24,18 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.IllformedLocaleException;
 import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
 import org.eclipse.tracecompass.internal.tmf.core.component.TmfProviderManager;
 import org.eclipse.tracecompass.internal.tmf.core.request.TmfCoalescedEventRequest;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignal;
@@ -239,6 +243,61 @@ public class TmfCoalescedEventRequestTest {
         assertEquals("addRequest", 2147483647, coalescedRequest.getNbRequested());
     }
 
+    // ------------------------------------------------------------------------
+    // attach
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testAttach() {
+        fTrace = setupTrace(TEST_TRACE.getFullPath());
+        try {
+            TmfCoalescedEventRequest request = new TmfCoalescedEventRequest(ITmfEvent.class, range1, 0, ITmfEventRequest.ALL_DATA, ExecutionType.FOREGROUND, 0);
+            TmfEventRequest subRequest1 = new TmfEventRequestStub(ITmfEvent.class, range1, 0, ITmfEventRequest.ALL_DATA, 200);
+            subRequest1.setProviderFilter(event -> true);
+            request.addRequest(subRequest1);
+            request.start();
+            for (int i = 0; i < 5; i++) {
+                request.handleData(new TmfEvent(fTrace, i, TmfTimestamp.fromNanos(i), null, null));
+            }
+
+            // The events of this request were not dispatched yet
+            TmfEventRequest subRequest2 = new TmfEventRequestStub(ITmfEvent.class, range1, 10, 5, 200);
+            subRequest2.setProviderFilter(event -> true);
+            assertTrue("attach", request.attach(subRequest2));
+
+            // Some events of this request were already dispatched
+            TmfEventRequest subRequest3 = new TmfEventRequestStub(ITmfEvent.class, range1, 2, 5, 200);
+            subRequest3.setProviderFilter(event -> true);
+            assertFalse("attach", request.attach(subRequest3));
+
+            for (int i = 5; i < 20; i++) {
+                request.handleData(new TmfEvent(fTrace, i, TmfTimestamp.fromNanos(i), null, null));
+            }
+            request.done();
+
+            assertEquals("nbRead", 20, subRequest1.getNbRead());
+            assertEquals("nbRead", 5, subRequest2.getNbRead());
+            assertTrue("isCompleted", subRequest2.isCompleted());
+            assertFalse("attach", request.attach(subRequest3));
+        } finally {
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    @Test
+    public void testCompletionListener() {
+        final CountDownLatch completed = new CountDownLatch(1);
+        TmfCoalescedEventRequest request = new TmfCoalescedEventRequest(ITmfEvent.class, range1, 0, 100, ExecutionType.BACKGROUND, 0);
+        request.addRequest(new TmfEventRequestStub(ITmfEvent.class, range1, 0, 100, 200));
+        request.setCompletionListener(() -> completed.countDown());
+        request.start();
+        assertEquals("listener", 1, completed.getCount());
+        request.cancel();
+        assertEquals("listener", 0, completed.getCount());
+        assertFalse("attach", request.attach(new TmfEventRequestStub(ITmfEvent.class, range1, 0, 100, 200)));
+    }
+
     // ------------------------------------------------------------------------
     // done
     // ------------------------------------------------------------------------
@@ -580,4 +639,150 @@ public class TmfCoalescedEventRequestTest {
         fTrace = null;
     }
 
+    @Test
+    public void testLateBackgroundRequest() throws InterruptedException {
+
+        fTrace = setupTrace(TEST_TRACE.getFullPath());
+        final int nbEvents = 10000;
+        final CountDownLatch started = new CountDownLatch(1);
+
+        requestedEvents1 = new Vector<>();
+        request1 = new TmfEventRequest(ITmfEvent.class, range1, 0,
+                ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                requestedEvents1.add(event);
+                if (getNbRead() == 100) {
+                    started.countDown();
+                }
+            }
+        };
+        requestedEvents2 = new Vector<>();
+        request2 = new TmfEventRequest(ITmfEvent.class, range1, 0,
+                ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                requestedEvents2.add(event);
+            }
+        };
+
+        try {
+            fTrace.sendRequest(request1);
+            started.await();
+            fTrace.sendRequest(request2);
+
+            request1.waitForCompletion();
+            request2.waitForCompletion();
+
+            // The late request is not attached, it reads all the events itself
+            assertEquals("Request1: nbEvents", nbEvents, requestedEvents1.size());
+            assertEquals("Request2: nbEvents", nbEvents, requestedEvents2.size());
+            assertFalse("Request2: isCancelled", request2.isCancelled());
+            for (int i = 0; i < nbEvents; i++) {
+                assertEquals("Distinct events", i + 1, requestedEvents2.get(i).getTimestamp().getValue());
+            }
+        } finally {
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    @Test
+    public void testBatchDelivery() throws InterruptedException {
+
+        fTrace = setupTrace(TEST_TRACE.getFullPath());
+        final int nbEvents = 10000;
+        final int[] maxBatch = new int[2];
+
+        request1 = new TmfEventRequest(ITmfEvent.class, range1, 0,
+                ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(ITmfEvent[] events, int count) {
+                maxBatch[0] = Math.max(maxBatch[0], count);
+                super.handleData(events, count);
+            }
+        };
+        request2 = new TmfEventRequest(ITmfEvent.class, range1, 0,
+                50, ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(ITmfEvent[] events, int count) {
+                maxBatch[1] = Math.max(maxBatch[1], count);
+                super.handleData(events, count);
+            }
+        };
+        TmfCoalescedEventRequest coalesced = new TmfCoalescedEventRequest(ITmfEvent.class, range1, 0,
+                ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND, 0);
+        coalesced.addRequest(request1);
+        coalesced.addRequest(request2);
+
+        Thread reader = new Thread(new TmfEventThread(fTrace, coalesced));
+        try {
+            reader.start();
+            request1.waitForCompletion();
+            request2.waitForCompletion();
+
+            // The sub-requests get whole batches, cut at their own count
+            assertEquals("Request1: nbEvents", nbEvents, request1.getNbRead());
+            assertEquals("Request2: nbEvents", 50, request2.getNbRead());
+            assertTrue("Request1: batches", maxBatch[0] > 1);
+            assertTrue("Request2: batches", maxBatch[1] > 1);
+        } finally {
+            reader.join(10000);
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    @Test
+    public void testCancelWithBlockedSubRequest() throws InterruptedException {
+
+        fTrace = setupTrace(TEST_TRACE.getFullPath());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        request1 = new TmfEventRequest(ITmfEvent.class, range1, 0,
+                ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        request2 = new TmfEventRequest(ITmfEvent.class, range1, 0,
+                ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND);
+        final TmfCoalescedEventRequest coalesced = new TmfCoalescedEventRequest(ITmfEvent.class, range1, 0,
+                ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND, 0);
+        coalesced.addRequest(request1);
+        coalesced.addRequest(request2);
+
+        Thread reader = new Thread(new TmfEventThread(fTrace, coalesced));
+        Thread canceller = new Thread(() -> coalesced.cancel());
+        try {
+            reader.start();
+            blocked.await();
+
+            // The cancel does not wait for the blocked sub-request
+            canceller.start();
+            canceller.join(10000);
+            assertFalse("Cancel returned", canceller.isAlive());
+            assertTrue("Request1: isCancelled", request1.isCancelled());
+            assertTrue("Request2: isCancelled", request2.isCancelled());
+
+            release.countDown();
+            reader.join(10000);
+            assertFalse("Reader ended", reader.isAlive());
+        } finally {
+            release.countDown();
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
 }
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequestHint;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfEventRequestHint} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfEventRequestHintTest {
+
+    // ------------------------------------------------------------------------
+    // Variables
+    // ------------------------------------------------------------------------
+
+    private static final TmfCpuAspect CPU_ASPECT = new TmfCpuAspect() {
+        @Override
+        public @Nullable Integer resolve(ITmfEvent event) {
+            return null;
+        }
+    };
+
+    private static TmfFilterEqualsNode eventType(ITmfFilterTreeNode parent, String name) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(parent);
+        node.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        node.setValue(name);
+        return node;
+    }
+
+    private static TmfFilterEqualsNode cpu(ITmfFilterTreeNode parent, String cpu) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(parent);
+        node.setEventAspect(CPU_ASPECT);
+        node.setValue(cpu);
+        return node;
+    }
+
+    private static TmfFilterCompareNode time(ITmfFilterTreeNode parent, String value, int result) {
+        TmfFilterCompareNode node = new TmfFilterCompareNode(parent);
+        node.setEventAspect(TmfBaseAspects.getTimestampAspect());
+        node.setType(Type.TIMESTAMP);
+        node.setValue(value);
+        node.setResult(result);
+        return node;
+    }
+
+    // ------------------------------------------------------------------------
+    // Filter analysis
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testFromFilterAnd() {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterAndNode and = new TmfFilterAndNode(root);
+        eventType(and, "sched_switch");
+        cpu(and, "2");
+        time(and, "1.000000000", 1);
+        time(and, "2.000000000", -1);
+        TmfEventRequestHint hint = TmfEventRequestHint.fromFilter(root);
+        assertEquals(Collections.singleton("sched_switch"), hint.getEventTypes());
+        assertEquals(Collections.singleton(2), hint.getCpus());
+        assertEquals(1000000000L, hint.getStartTime());
+        assertEquals(2000000000L, hint.getEndTime());
+    }
+
+    @Test
+    public void testFromFilterOr() {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        eventType(or, "sched_switch");
+        eventType(or, "sched_wakeup");
+        TmfEventRequestHint hint = TmfEventRequestHint.fromFilter(root);
+        assertEquals(new HashSet<>(Arrays.asList("sched_switch", "sched_wakeup")), hint.getEventTypes());
+        assertNull(hint.getCpus());
+
+        /* A branch of the OR that does not constrain the event types */
+        cpu(or, "0");
+        hint = TmfEventRequestHint.fromFilter(root);
+        assertNull(hint.getEventTypes());
+        assertNull(hint.getCpus());
+    }
+
+    @Test
+    public void testFromFilterUnconstrained() {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        or.setNot(true);
+        eventType(or, "sched_switch");
+        assertTrue(TmfEventRequestHint.fromFilter(root).isUnconstrained());
+
+        TmfFilterEqualsNode ignoreCase = eventType(null, "sched_switch");
+        ignoreCase.setIgnoreCase(true);
+        assertTrue(TmfEventRequestHint.fromFilter(ignoreCase).isUnconstrained());
+
+        TmfFilterEqualsNode not = eventType(null, "sched_switch");
+        not.setNot(true);
+        assertTrue(TmfEventRequestHint.fromFilter(not).isUnconstrained());
+
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(null);
+        matches.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        matches.setRegex("sched_.*");
+        assertTrue(TmfEventRequestHint.fromFilter(matches).isUnconstrained());
+
+        assertTrue(TmfEventRequestHint.fromFilter(cpu(null, "0x1")).isUnconstrained());
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testUnionIntersection() {
+        TmfEventRequestHint hint1 = new TmfEventRequestHint(Collections.singleton("a"), null, 10, 20);
+        TmfEventRequestHint hint2 = new TmfEventRequestHint(Collections.singleton("b"), Collections.singleton(1), 15, 30);
+
+        TmfEventRequestHint union = hint1.union(hint2);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), union.getEventTypes());
+        assertNull(union.getCpus());
+        assertEquals(10, union.getStartTime());
+        assertEquals(30, union.getEndTime());
+        assertTrue(union.covers(hint1));
+        assertTrue(union.covers(hint2));
+        assertFalse(hint1.covers(union));
+
+        TmfEventRequestHint intersection = hint1.intersection(hint2);
+        assertEquals(Collections.emptySet(), intersection.getEventTypes());
+        assertEquals(Collections.singleton(1), intersection.getCpus());
+        assertEquals(15, intersection.getStartTime());
+        assertEquals(20, intersection.getEndTime());
+
+        assertSame(TmfEventRequestHint.NONE, hint1.union(TmfEventRequestHint.NONE));
+        assertSame(hint1, hint1.intersection(TmfEventRequestHint.NONE));
+        assertTrue(TmfEventRequestHint.NONE.covers(hint1));
+    }
+
+    @Test
+    public void testApplicableHint() {
+        TmfEventRequestHint hint = new TmfEventRequestHint(Collections.singleton("a"), null, Long.MIN_VALUE, Long.MAX_VALUE);
+        TmfEventRequest all = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ExecutionType.FOREGROUND) {
+        };
+        assertSame(TmfEventRequestHint.NONE, all.getHint());
+        all.setHint(hint);
+        assertSame(hint, TmfEventRequestHint.getApplicableHint(all));
+
+        TmfEventRequest counted = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, 100, ExecutionType.FOREGROUND) {
+        };
+        counted.setHint(hint);
+        assertSame(TmfEventRequestHint.NONE, TmfEventRequestHint.getApplicableHint(counted));
+
+        TmfEventRequest ranked = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 10, ITmfEventRequest.ALL_DATA, ExecutionType.FOREGROUND) {
+        };
+        ranked.setHint(hint);
+        assertSame(TmfEventRequestHint.NONE, TmfEventRequestHint.getApplicableHint(ranked));
+    }
+}
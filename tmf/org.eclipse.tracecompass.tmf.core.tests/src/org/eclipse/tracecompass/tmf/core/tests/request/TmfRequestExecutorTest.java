@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.tests.stubs.component.TmfEventProviderStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the TmfRequestExecutor class.
+ */
+public class TmfRequestExecutorTest {
+
+    private TmfEventProviderStub fProvider;
+    private TmfRequestExecutor fExecutor;
+
+    /**
+     * Initialization
+     *
+     * @throws IOException
+     *             If we can't find the test trace
+     */
+    @Before
+    public void setUp() throws IOException {
+        fProvider = new TmfEventProviderStub();
+    }
+
+    /**
+     * Clean-up
+     */
+    @After
+    public void tearDown() {
+        if (fExecutor != null) {
+            fExecutor.stop();
+        }
+        fProvider.dispose();
+    }
+
+    /**
+     * Test that two requests run at the same time when there are two slots
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testConcurrentRequests() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(2);
+        fExecutor.init();
+        final CountDownLatch started = new CountDownLatch(2);
+        final boolean[] concurrent = new boolean[2];
+        List<TmfEventRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final int id = i;
+            TmfEventRequest request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, 1, ExecutionType.BACKGROUND) {
+                @Override
+                public void handleData(ITmfEvent event) {
+                    super.handleData(event);
+                    started.countDown();
+                    try {
+                        concurrent[id] = started.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        concurrent[id] = false;
+                    }
+                }
+            };
+            requests.add(request);
+            fExecutor.execute(new TmfEventThread(fProvider, request));
+        }
+        for (TmfEventRequest request : requests) {
+            request.waitForCompletion();
+        }
+        assertTrue(concurrent[0]);
+        assertTrue(concurrent[1]);
+    }
+
+    /**
+     * Test that the requests waiting for a slot are not dropped
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testManyQueuedRequests() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1);
+        fExecutor.init();
+        List<TmfEventRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ExecutionType type = (i % 2 == 0) ? ExecutionType.FOREGROUND : ExecutionType.BACKGROUND;
+            TmfEventRequest request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, 100, type) {
+            };
+            requests.add(request);
+            fExecutor.execute(new TmfEventThread(fProvider, request));
+        }
+        for (TmfEventRequest request : requests) {
+            request.waitForCompletion();
+            assertFalse(request.isCancelled());
+        }
+    }
+}
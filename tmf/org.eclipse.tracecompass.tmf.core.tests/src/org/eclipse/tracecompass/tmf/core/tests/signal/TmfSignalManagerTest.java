@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -312,6 +312,47 @@ public class TmfSignalManagerTest {
         }
     }
 
+    /**
+     * Test registerAsync(). The sender is not blocked by the handler of the
+     * asynchronous listener, and the signals that are superseded while they
+     * wait for the listener are dropped.
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testAsyncListener() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        TestAsyncSignalHandler asyncReceiver = new TestAsyncSignalHandler(blocked, release, done);
+        TestSignalHandler syncReceiver = new TestSignalHandler(false, null);
+
+        try {
+            signalSender.sendSignal(new TestSupersedingSignal(signalSender, 0));
+            blocked.await();
+
+            /* The asynchronous listener is still handling the first signal */
+            for (int i = 1; i <= 3; i++) {
+                signalSender.sendSignal(new TestSupersedingSignal(signalSender, i));
+            }
+            signalSender.sendSignal(new TestSignal1(signalSender));
+            assertEquals(1, syncReceiver.receivedSignals.size());
+
+            release.countDown();
+            done.await();
+
+            assertEquals(3, asyncReceiver.receivedSignals.size());
+            assertEquals(0, ((TestSupersedingSignal) asyncReceiver.receivedSignals.get(0)).value);
+            assertEquals(3, ((TestSupersedingSignal) asyncReceiver.receivedSignals.get(1)).value);
+            assertEquals(TestSignal1.class, asyncReceiver.receivedSignals.get(2).getClass());
+        } finally {
+            release.countDown();
+            asyncReceiver.dispose();
+            syncReceiver.dispose();
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Helper classes
     // ------------------------------------------------------------------------
@@ -476,6 +517,55 @@ public class TmfSignalManagerTest {
         }
     }
 
+    /**
+     * Asynchronous signal handler, whose first handler blocks until it is
+     * released.
+     */
+    public class TestAsyncSignalHandler extends AbstractBaseSignalHandler {
+
+        private final CountDownLatch blocked;
+        private final CountDownLatch release;
+        private final CountDownLatch done;
+
+        private TestAsyncSignalHandler(CountDownLatch blocked, CountDownLatch release, CountDownLatch done) {
+            super("TestAsyncSignalHandler", false);
+            this.blocked = blocked;
+            this.release = release;
+            this.done = done;
+            TmfSignalManager.deregister(this);
+            TmfSignalManager.registerAsync(this);
+        }
+
+        /**
+         * Receive a signal of type TestSupersedingSignal.
+         *
+         * @param signal
+         *            Signal received
+         * @throws InterruptedException
+         *             if the handler is interrupted
+         */
+        @TmfSignalHandler
+        public void receiveSuperseding(final TestSupersedingSignal signal) throws InterruptedException {
+            receivedSignals.add(signal);
+            if (signal.value == 0) {
+                blocked.countDown();
+                release.await();
+            }
+        }
+
+        /**
+         * Receive a signal of type TestSignal1.
+         *
+         * @param signal
+         *            Signal received
+         */
+        @TmfSignalHandler
+        public void receiveSignal1(final TestSignal1 signal) {
+            receivedSignals.add(signal);
+            done.countDown();
+        }
+    }
+
     /**
      * Base signal handler for start and end sync signals.
      */
@@ -555,4 +645,22 @@ public class TmfSignalManagerTest {
             super(source);
         }
     }
+
+    /**
+     * Test Signal object, superseded by the next one
+     */
+    private class TestSupersedingSignal extends TmfSignal {
+
+        private final int value;
+
+        public TestSupersedingSignal(Object source, int value) {
+            super(source);
+            this.value = value;
+        }
+
+        @Override
+        public boolean supersedes(TmfSignal signal) {
+            return signal instanceof TestSupersedingSignal;
+        }
+    }
 }
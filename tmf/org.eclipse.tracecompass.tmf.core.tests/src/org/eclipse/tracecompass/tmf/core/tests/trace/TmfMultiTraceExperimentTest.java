@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -671,6 +671,39 @@ public class TmfMultiTraceExperimentTest {
         assertNull("Event", event);
     }
 
+    @Test
+    public void testConcurrentGetNext() throws InterruptedException {
+        final int nbThreads = 4;
+        final long[] nbRead = new long[nbThreads];
+        final long[] lastValue = new long[nbThreads];
+        Thread[] threads = new Thread[nbThreads];
+        for (int i = 0; i < nbThreads; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                ITmfContext context = fExperiment.seekEvent(0);
+                ITmfEvent event = fExperiment.getNext(context);
+                while (event != null) {
+                    long value = event.getTimestamp().getValue();
+                    if (value != lastValue[index] + 1) {
+                        /* Out of order, stop here */
+                        return;
+                    }
+                    lastValue[index] = value;
+                    nbRead[index]++;
+                    event = fExperiment.getNext(context);
+                }
+                context.dispose();
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < nbThreads; i++) {
+            assertEquals("Events read by thread " + i, NB_EVENTS, nbRead[i]);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // processRequest
     // ------------------------------------------------------------------------
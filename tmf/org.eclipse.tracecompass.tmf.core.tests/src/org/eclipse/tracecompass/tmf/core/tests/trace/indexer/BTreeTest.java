@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -99,4 +99,64 @@ public class BTreeTest extends AbstractCheckpointCollectionTest {
             assertEquals(checkpoint, treeVisitor.getCheckpoint());
         }
     }
+
+    /**
+     * Test that the checkpoints can still be inserted one by one once they
+     * stop arriving in order, and that they can be found before and after
+     * re-opening the file
+     */
+    @Test
+    public void testInsertOutOfOrder() {
+        int half = CHECKPOINTS_INSERT_NUM / 2;
+        for (int i = 0; i < half; i++) {
+            fBTree.insert(new TmfCheckpoint(TmfTimestamp.fromSeconds(i), new TmfLongLocation(i), i));
+        }
+        for (int i = CHECKPOINTS_INSERT_NUM - 1; i >= half; i--) {
+            fBTree.insert(new TmfCheckpoint(TmfTimestamp.fromSeconds(i), new TmfLongLocation(i), i));
+        }
+        assertEquals(CHECKPOINTS_INSERT_NUM, fBTree.size());
+
+        for (int i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            assertEquals(i, fBTree.binarySearch(new TmfCheckpoint(TmfTimestamp.fromSeconds(i), new TmfLongLocation(i), 0)));
+        }
+
+        fBTree.dispose();
+        fBTree = createCollection();
+        for (int i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            assertEquals(i, fBTree.binarySearch(new TmfCheckpoint(TmfTimestamp.fromSeconds(i), new TmfLongLocation(i), 0)));
+        }
+    }
+
+    /**
+     * Test that a finished tree, searched in the mapped file, gives the same
+     * results as the visitor, and that it can still be inserted into
+     */
+    @Test
+    public void testBinarySearchFinished() {
+        for (long i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            fBTree.insert(new TmfCheckpoint(TmfTimestamp.fromSeconds(2 * i), new TmfLongLocation(2 * i), i));
+        }
+        fBTree.setNbEvents(CHECKPOINTS_INSERT_NUM);
+
+        for (long i = -1; i <= 2 * CHECKPOINTS_INSERT_NUM; i += 7) {
+            assertSameSearch(new TmfCheckpoint(TmfTimestamp.fromSeconds(i), null, 0));
+            /* Time stamps of other scales are compared without being normalized */
+            assertSameSearch(new TmfCheckpoint(TmfTimestamp.fromMillis(i * 1000), null, 0));
+            assertSameSearch(new TmfCheckpoint(TmfTimestamp.fromNanos(i * 1000000000L + 1), null, 0));
+            assertSameSearch(new TmfCheckpoint(TmfTimestamp.create(i, 3), null, 0));
+        }
+        assertSameSearch(new TmfCheckpoint(TmfTimestamp.BIG_BANG, null, 0));
+        assertSameSearch(new TmfCheckpoint(TmfTimestamp.BIG_CRUNCH, null, 0));
+        assertSameSearch(new TmfCheckpoint(TmfTimestamp.fromNanos(Long.MAX_VALUE), null, 0));
+
+        fBTree.insert(new TmfCheckpoint(TmfTimestamp.fromSeconds(-1), new TmfLongLocation(-1L), CHECKPOINTS_INSERT_NUM));
+        assertEquals(CHECKPOINTS_INSERT_NUM, fBTree.binarySearch(new TmfCheckpoint(TmfTimestamp.fromSeconds(-1), new TmfLongLocation(-1L), 0)));
+        assertEquals(CHECKPOINTS_INSERT_NUM + 1, fBTree.size());
+    }
+
+    private void assertSameSearch(ITmfCheckpoint checkpoint) {
+        BTreeCheckpointVisitor treeVisitor = new BTreeCheckpointVisitor(checkpoint);
+        fBTree.accept(treeVisitor);
+        assertEquals(treeVisitor.getCheckpointRank(), fBTree.binarySearch(checkpoint));
+    }
 }
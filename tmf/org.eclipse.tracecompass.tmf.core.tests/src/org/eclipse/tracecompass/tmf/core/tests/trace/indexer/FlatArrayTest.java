@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,6 +13,7 @@
 package org.eclipse.tracecompass.tmf.core.tests.trace.indexer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
 
@@ -84,4 +85,26 @@ public class FlatArrayTest extends AbstractCheckpointCollectionTest {
         }
     }
 
+    /**
+     * Test getting checkpoints from a finished array, read in the mapped
+     * file, and inserting after it is finished
+     */
+    @Test
+    public void testGetFinished() {
+        for (long i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            fFlatArray.insert(new TmfCheckpoint(TmfTimestamp.fromSeconds(i), new TmfLongLocation(i), i));
+        }
+        fFlatArray.setNbEvents(CHECKPOINTS_INSERT_NUM);
+
+        for (long i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            ITmfCheckpoint found = fFlatArray.get(i);
+            assertEquals(new TmfCheckpoint(TmfTimestamp.fromSeconds(i), new TmfLongLocation(i), i), found);
+            assertEquals(i, found.getCheckpointRank());
+        }
+        assertNull(fFlatArray.get(CHECKPOINTS_INSERT_NUM));
+
+        fFlatArray.insert(new TmfCheckpoint(TmfTimestamp.fromSeconds(CHECKPOINTS_INSERT_NUM), new TmfLongLocation(CHECKPOINTS_INSERT_NUM), CHECKPOINTS_INSERT_NUM));
+        assertEquals(CHECKPOINTS_INSERT_NUM, fFlatArray.get(CHECKPOINTS_INSERT_NUM).getCheckpointRank());
+    }
+
 }
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfTextLineIndexer;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTrace;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfTextLineIndexer} class. The file is scanned in
+ * small chunks, so that events and lines straddle the chunk boundaries.
+ */
+@SuppressWarnings("javadoc")
+public class TmfTextLineIndexerTest {
+
+    private static final String TRACE_DIRECTORY = TmfTraceManager.getTemporaryDirPath() + File.separator + "dummyLineTrace";
+    private static final String TRACE_PATH = TRACE_DIRECTORY + File.separator + "test.txt";
+    private static final String DEFINITION_PATH = "testfiles" + File.separator + "txt" + File.separator + "testTxtDefinition.xml";
+    private static final String TIMESTAMP_FORMAT = "dd/MM/yyyy HH:mm:ss:SSS";
+    private static final long MILLISECOND_TO_NANOSECOND = 1000000;
+
+    private static final int NB_EVENTS = 10000;
+    private static final int BLOCK_SIZE = 100;
+    private static final int CHUNK_SIZE = 4096;
+    /* Longer than what is mapped past the end of a chunk */
+    private static final int LONG_LINE_LENGTH = 100000;
+
+    private CustomTxtTrace fTrace;
+
+    private static class LineIndexedTrace extends CustomTxtTrace {
+        public LineIndexedTrace(CustomTxtTraceDefinition definition, String path, int cacheSize) throws TmfTraceException {
+            super(null, definition, path, cacheSize);
+        }
+
+        @Override
+        protected ITmfTraceIndexer createIndexer(int interval) {
+            Pattern pattern = getFirstLines().get(0).getPattern();
+            return new TmfTextLineIndexer(this, interval, line -> pattern.matcher(line).matches(), CHUNK_SIZE);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        new File(TRACE_DIRECTORY).mkdir();
+        SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_FORMAT);
+        char[] longLine = new char[LONG_LINE_LENGTH];
+        Arrays.fill(longLine, 'x');
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(TRACE_PATH))) {
+            writer.write("header line\n");
+            for (int i = 0; i < NB_EVENTS; i++) {
+                /* Some events end their lines with CR-LF */
+                String eol = (i % 7 == 0) ? "\r\n" : "\n";
+                writer.write(format.format(new Date(i)) + " hello world" + eol);
+                for (int j = 0; j < i % 3; j++) {
+                    writer.write("extra line" + eol);
+                }
+                if (i == NB_EVENTS / 2) {
+                    writer.write(longLine);
+                    writer.write(eol);
+                }
+            }
+        }
+        CustomTxtTraceDefinition definition = CustomTxtTraceDefinition.loadAll(DEFINITION_PATH)[0];
+        fTrace = new LineIndexedTrace(definition, TRACE_PATH, BLOCK_SIZE);
+        fTrace.indexTrace(true);
+    }
+
+    @After
+    public void tearDown() {
+        String directory = TmfTraceManager.getSupplementaryFileDir(fTrace);
+        fTrace.dispose();
+        File dir = new File(directory);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+        new File(TRACE_PATH).delete();
+        new File(TRACE_DIRECTORY).delete();
+    }
+
+    @Test
+    public void testTraceAttributes() {
+        assertEquals(NB_EVENTS, fTrace.getNbEvents());
+        assertEquals(0, fTrace.getStartTime().getValue());
+        assertEquals((NB_EVENTS - 1) * MILLISECOND_TO_NANOSECOND, fTrace.getEndTime().getValue());
+    }
+
+    @Test
+    public void testReadAll() {
+        ITmfContext context = fTrace.seekEvent(0);
+        for (int i = 0; i < NB_EVENTS; i++) {
+            ITmfEvent event = fTrace.getNext(context);
+            assertNotNull(event);
+            assertEquals(i * MILLISECOND_TO_NANOSECOND, event.getTimestamp().getValue());
+        }
+        context.dispose();
+    }
+
+    @Test
+    public void testSeekRank() {
+        for (int rank = 0; rank < NB_EVENTS; rank += 37) {
+            ITmfContext context = fTrace.seekEvent(rank);
+            assertEquals(rank, context.getRank());
+            ITmfEvent event = fTrace.getNext(context);
+            assertNotNull(event);
+            assertEquals(rank * MILLISECOND_TO_NANOSECOND, event.getTimestamp().getValue());
+            context.dispose();
+        }
+        assertFalse(fTrace.getIndexer().isIndexing());
+    }
+}
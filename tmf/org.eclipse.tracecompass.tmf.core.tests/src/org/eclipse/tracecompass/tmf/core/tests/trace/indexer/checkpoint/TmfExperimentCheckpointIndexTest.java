@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -32,6 +32,7 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -134,6 +135,33 @@ public class TmfExperimentCheckpointIndexTest {
         }
     }
 
+    @Test
+    public void testParallelIndexing() {
+        TmfExperiment experiment = new TmfExperiment(ITmfEvent.class, EXPERIMENT, fTestTraces, BLOCK_SIZE, null);
+        try {
+            experiment.indexTrace(true);
+            assertEquals("getNbEvents",    NB_EVENTS, experiment.getNbEvents());
+            assertEquals("getStartTime",   1,         experiment.getStartTime().getValue());
+            assertEquals("getEndTime",     NB_EVENTS, experiment.getEndTime().getValue());
+
+            // Seek on ranks around and between the merged checkpoints
+            for (long rank = 0; rank < NB_EVENTS; rank += BLOCK_SIZE / 3) {
+                ITmfContext context = experiment.seekEvent(rank);
+                assertEquals("Context rank", rank, context.getRank());
+                ITmfEvent event = experiment.getNext(context);
+                assertEquals("Event timestamp", rank + 1, event.getTimestamp().getValue());
+                context.dispose();
+            }
+
+            // Seek on timestamps
+            ITmfContext context = experiment.seekEvent(TmfTimestamp.create(NB_EVENTS / 2, -3));
+            assertEquals("Context rank", NB_EVENTS / 2 - 1, context.getRank());
+            context.dispose();
+        } finally {
+            experiment.dispose();
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Streaming
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,6 +15,8 @@ package org.eclipse.tracecompass.internal.tmf.core;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
@@ -76,6 +78,9 @@ public final class TmfCoreTracer {
     // Trace log file
     private static BufferedWriter fTraceFile;
 
+    // Time at which the requests were sent, to report their queueing delay
+    private static final Map<Integer, Long> fRequestSendTimes = new ConcurrentHashMap<>();
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -149,6 +154,7 @@ public final class TmfCoreTracer {
      * Close the trace log file
      */
     public static synchronized void stop() {
+        fRequestSendTimes.clear();
         if (fTraceFile != null) {
             try {
                 fTraceFile.close();
@@ -296,6 +302,41 @@ public final class TmfCoreTracer {
         }
     }
 
+    /**
+     * Trace the sending of a request to a provider. The time is kept to report
+     * how long the request waited before it started.
+     *
+     * @param requestId
+     *            The request ID of the request being traced
+     * @param msg
+     *            The message to record for this request
+     */
+    public static void traceRequestSent(int requestId, String msg) {
+        if (fRequestClassEnabled) {
+            fRequestSendTimes.putIfAbsent(requestId, System.nanoTime());
+            traceRequest(requestId, msg);
+        }
+    }
+
+    /**
+     * Trace the start of a request, with the time it waited since it was sent
+     * to its provider.
+     *
+     * @param requestId
+     *            The request ID of the request being traced
+     */
+    public static void traceRequestStarted(int requestId) {
+        if (fRequestClassEnabled) {
+            Long sendTime = fRequestSendTimes.remove(requestId);
+            if (sendTime == null) {
+                traceRequest(requestId, "STARTED");
+            } else {
+                long delay = (System.nanoTime() - sendTime) / 1000;
+                traceRequest(requestId, "STARTED after " + delay + " us in queue");
+            }
+        }
+    }
+
     /**
      * Trace an event happening in an indexer.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,6 +14,7 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.component;
 
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
@@ -34,6 +35,13 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
  */
 public class TmfEventThread implements Runnable {
 
+    // ------------------------------------------------------------------------
+    // Constants
+    // ------------------------------------------------------------------------
+
+    /** Maximum number of events read and handled at once */
+    private static final int BATCH_SIZE = 128;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -180,15 +188,50 @@ public class TmfEventThread implements Runnable {
         }
 
         try {
-            // Get the ordered events
-            ITmfEvent event = fProvider.getNext(context);
-            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
+            Class<? extends ITmfEvent> dataType = fRequest.getDataType();
+            boolean filterType = (dataType != ITmfEvent.class);
+            ITmfEvent[] batch = new ITmfEvent[BATCH_SIZE];
 
-            while (event != null && !fProvider.isCompleted(fRequest, event, nbRead)) {
+            while (nbRead < nbRequested && !fRequest.isCompleted()) {
 
-                TmfCoreTracer.traceEvent(fProvider, fRequest, event);
-                if (fRequest.getDataType().isInstance(event)) {
-                    fRequest.handleData(event);
+                // To avoid an unnecessary read passed the last event requested
+                int max = Math.min(BATCH_SIZE, nbRequested - nbRead);
+
+                // Get the ordered events
+                int nbEvents = fProvider.getNext(context, batch, max);
+                if (nbRead == 0) {
+                    TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
+                }
+
+                // Keep the events up to the end of the request
+                int count = 0;
+                while (count < nbEvents && !fProvider.isCompleted(fRequest, batch[count], nbRead + count)) {
+                    count++;
+                }
+                nbRead += count;
+
+                if (TmfCoreTracer.isEventTraced()) {
+                    for (int i = 0; i < count; i++) {
+                        TmfCoreTracer.traceEvent(fProvider, fRequest, batch[i]);
+                    }
+                }
+                int nbData = count;
+                if (filterType) {
+                    nbData = 0;
+                    for (int i = 0; i < count; i++) {
+                        if (dataType.isInstance(batch[i])) {
+                            batch[nbData++] = batch[i];
+                        }
+                    }
+                }
+                if (nbData > 0) {
+                    fRequest.handleData(batch, nbData);
+                }
+                Arrays.fill(batch, 0, nbEvents, null);
+
+                if (count < max) {
+                    // End of the trace or of the request
+                    break;
                 }
 
                 // Pause execution if requested
@@ -196,11 +239,6 @@ public class TmfEventThread implements Runnable {
                     CountDownLatch latch = fLatch;
                     latch.await();
                 }
-
-                // To avoid an unnecessary read passed the last event requested
-                if (++nbRead < nbRequested) {
-                    event = fProvider.getNext(context);
-                }
             }
 
             isCompleted = true;
@@ -9,6 +9,8 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
 
+import java.util.function.Supplier;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -21,6 +23,8 @@ import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
  */
 public class CustomExtraField extends TmfEventField {
 
+    private final @Nullable Supplier<String> fLazyValue;
+
     /**
      * Full constructor
      *
@@ -35,6 +39,21 @@ public class CustomExtraField extends TmfEventField {
      */
     public CustomExtraField(@NonNull String name, @Nullable Object value, ITmfEventField @Nullable [] fields) {
         super(name, value, fields);
+        fLazyValue = null;
+    }
+
+    /**
+     * Constructor of a field whose string value is only created when it is
+     * read
+     *
+     * @param name
+     *            the event field id
+     * @param value
+     *            the supplier of the event field value
+     */
+    public CustomExtraField(@NonNull String name, Supplier<String> value) {
+        super(name, null, null);
+        fLazyValue = value;
     }
 
     /**
@@ -45,6 +64,18 @@ public class CustomExtraField extends TmfEventField {
      */
     public CustomExtraField(final TmfEventField field) {
         super(field);
+        fLazyValue = (field instanceof CustomExtraField) ? ((CustomExtraField) field).fLazyValue : null;
+    }
+
+    @Override
+    public Object getValue() {
+        Supplier<String> lazyValue = fLazyValue;
+        return (lazyValue == null) ? super.getValue() : lazyValue.get();
+    }
+
+    @Override
+    public String toString() {
+        return (fLazyValue == null) ? super.toString() : getName() + '=' + getValue();
     }
 
 }
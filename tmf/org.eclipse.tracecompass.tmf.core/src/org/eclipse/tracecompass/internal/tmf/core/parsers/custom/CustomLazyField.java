@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
+
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+
+/**
+ * Field of a custom trace event whose string value is only created when it is
+ * read.
+ */
+public class CustomLazyField extends TmfEventField {
+
+    private final Supplier<String> fValue;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     *            the event field id
+     * @param value
+     *            the supplier of the event field value
+     */
+    public CustomLazyField(@NonNull String name, Supplier<String> value) {
+        super(name, null, null);
+        fValue = value;
+    }
+
+    @Override
+    public Object getValue() {
+        return fValue.get();
+    }
+
+    @Override
+    public String toString() {
+        return getName() + '=' + getValue();
+    }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
+
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Value of a column of a custom text trace, kept as offsets in its line. The
+ * string of the value is only created the first time it is read.
+ */
+public final class CustomLazyValue implements Supplier<String> {
+
+    private final String fLine;
+    private final int fStart;
+    private final int fEnd;
+    private @Nullable String fValue;
+
+    /**
+     * Constructor
+     *
+     * @param line
+     *            the line of the column
+     * @param start
+     *            the start of the value in the line, inclusive
+     * @param end
+     *            the end of the value in the line, exclusive
+     */
+    public CustomLazyValue(String line, int start, int end) {
+        fLine = line;
+        fStart = start;
+        fEnd = end;
+    }
+
+    @Override
+    public String get() {
+        /* Racy but idempotent, strings are immutable */
+        String value = fValue;
+        if (value == null) {
+            value = fLine.substring(fStart, fEnd);
+            fValue = value;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return get();
+    }
+}
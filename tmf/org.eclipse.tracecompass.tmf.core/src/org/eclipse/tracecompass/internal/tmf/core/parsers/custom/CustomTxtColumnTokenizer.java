@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Tokenizer of the lines of custom text traces whose columns are separated by
+ * a delimiter or have fixed widths.
+ * <p>
+ * The lines are split without regular expressions, but the result is the same
+ * as matching the regular expression returned by {@link #getRegex()}: the
+ * columns before the last one end at the next delimiter or have the given
+ * width, and the last column takes the rest of the line. The groups of the
+ * match result are kept as offsets in the line, and a string is only created
+ * when a group is accessed. A match result can be passed back to the tokenizer
+ * to be filled with the next line, so that reading a trace does not allocate
+ * one per line.
+ */
+public final class CustomTxtColumnTokenizer {
+
+    private final @Nullable String fDelimiter;
+    private final int @Nullable [] fWidths;
+    private final int fGroupCount;
+    private final int fMinLength;
+
+    private CustomTxtColumnTokenizer(@Nullable String delimiter, int @Nullable [] widths, int groupCount) {
+        fDelimiter = delimiter;
+        fWidths = widths;
+        fGroupCount = groupCount;
+        int minLength = 0;
+        if (widths != null) {
+            for (int width : widths) {
+                minLength += width;
+            }
+        } else if (delimiter != null) {
+            minLength = (groupCount - 1) * delimiter.length();
+        }
+        fMinLength = minLength;
+    }
+
+    /**
+     * Create a tokenizer of columns separated by a delimiter.
+     *
+     * @param delimiter
+     *            the non-empty delimiter
+     * @param nbColumns
+     *            the number of columns, the last one taking the rest of the
+     *            line
+     * @return the tokenizer
+     */
+    public static CustomTxtColumnTokenizer delimited(String delimiter, int nbColumns) {
+        if (delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Empty delimiter"); //$NON-NLS-1$
+        }
+        return new CustomTxtColumnTokenizer(delimiter, null, Math.max(1, nbColumns));
+    }
+
+    /**
+     * Create a tokenizer of columns of fixed widths.
+     *
+     * @param widths
+     *            the widths, in characters, of the columns before the last
+     *            one, which takes the rest of the line
+     * @return the tokenizer
+     */
+    public static CustomTxtColumnTokenizer fixedWidth(int[] widths) {
+        for (int width : widths) {
+            if (width < 0) {
+                throw new IllegalArgumentException("Negative width: " + width); //$NON-NLS-1$
+            }
+        }
+        return new CustomTxtColumnTokenizer(null, widths.clone(), widths.length + 1);
+    }
+
+    /**
+     * Get the number of groups of the match results, which is the number of
+     * columns.
+     *
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        return fGroupCount;
+    }
+
+    /**
+     * Get the regular expression that is equivalent to this tokenizer, for the
+     * users of the definition that need a pattern.
+     *
+     * @return the regular expression
+     */
+    public String getRegex() {
+        StringBuilder sb = new StringBuilder("(?s)"); //$NON-NLS-1$
+        int[] widths = fWidths;
+        String delimiter = fDelimiter;
+        if (widths != null) {
+            for (int width : widths) {
+                sb.append("(.{").append(width).append("})"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        } else if (delimiter != null) {
+            for (int i = 1; i < fGroupCount; i++) {
+                sb.append("(.*?)").append(Pattern.quote(delimiter)); //$NON-NLS-1$
+            }
+        }
+        return sb.append("(.*)").toString(); //$NON-NLS-1$
+    }
+
+    /**
+     * Split a line in columns.
+     *
+     * @param line
+     *            the line
+     * @return the match result whose groups are the columns, or null if the
+     *         line does not have all the columns
+     */
+    public @Nullable MatchResult match(String line) {
+        return match(line, null);
+    }
+
+    /**
+     * Split a line in columns, reusing a previous match result.
+     *
+     * @param line
+     *            the line
+     * @param reuse
+     *            a match result previously returned by a tokenizer, that is
+     *            not used anymore and is filled with this line, or null
+     * @return the match result whose groups are the columns, which is
+     *         {@code reuse} if it could be reused, or null if the line does
+     *         not have all the columns. The content of {@code reuse} is then
+     *         undefined.
+     */
+    public @Nullable MatchResult match(String line, @Nullable MatchResult reuse) {
+        int size = 2 * (fGroupCount + 1);
+        ColumnMatch match;
+        if (reuse instanceof ColumnMatch && ((ColumnMatch) reuse).fBounds.length >= size) {
+            match = (ColumnMatch) reuse;
+        } else {
+            match = new ColumnMatch(new int[size]);
+        }
+        if (!split(line, match.fBounds)) {
+            return null;
+        }
+        match.fLine = line;
+        match.fGroupCount = fGroupCount;
+        return match;
+    }
+
+    /**
+     * Check if a line has all the columns, without keeping them.
+     *
+     * @param line
+     *            the line
+     * @return true if the line has all the columns
+     */
+    public boolean matches(String line) {
+        return split(line, null);
+    }
+
+    private boolean split(String line, int @Nullable [] bounds) {
+        int length = line.length();
+        if (length < fMinLength) {
+            return false;
+        }
+        if (bounds != null) {
+            bounds[0] = 0;
+            bounds[1] = length;
+        }
+        int start = 0;
+        int[] widths = fWidths;
+        String delimiter = fDelimiter;
+        for (int group = 1; group < fGroupCount; group++) {
+            int end;
+            int next;
+            if (widths != null) {
+                end = start + widths[group - 1];
+                next = end;
+            } else if (delimiter != null) {
+                end = line.indexOf(delimiter, start);
+                if (end < 0) {
+                    return false;
+                }
+                next = end + delimiter.length();
+            } else {
+                return false;
+            }
+            if (bounds != null) {
+                bounds[2 * group] = start;
+                bounds[2 * group + 1] = end;
+            }
+            start = next;
+        }
+        if (bounds != null) {
+            bounds[2 * fGroupCount] = start;
+            bounds[2 * fGroupCount + 1] = length;
+        }
+        return true;
+    }
+
+    /**
+     * Match result whose groups are slices of the line
+     */
+    private static final class ColumnMatch implements MatchResult {
+
+        private String fLine = ""; //$NON-NLS-1$
+        /*
+         * The start and end of each group, group 0 being the whole line. It
+         * may be longer than needed when the match is reused.
+         */
+        private final int[] fBounds;
+        private int fGroupCount;
+
+        private ColumnMatch(int[] bounds) {
+            fBounds = bounds;
+        }
+
+        @Override
+        public int start() {
+            return 0;
+        }
+
+        @Override
+        public int start(int group) {
+            return fBounds[2 * checkGroup(group)];
+        }
+
+        @Override
+        public int end() {
+            return fLine.length();
+        }
+
+        @Override
+        public int end(int group) {
+            return fBounds[2 * checkGroup(group) + 1];
+        }
+
+        @Override
+        public String group() {
+            return fLine;
+        }
+
+        @Override
+        public String group(int group) {
+            return fLine.substring(start(group), end(group));
+        }
+
+        @Override
+        public int groupCount() {
+            return fGroupCount;
+        }
+
+        private int checkGroup(int group) {
+            if (group < 0 || group > groupCount()) {
+                throw new IndexOutOfBoundsException("No group " + group); //$NON-NLS-1$
+            }
+            return group;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomEventType;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTraceDefinition.Tag;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlEvent;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlInputAttribute;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlInputElement;
+
+/**
+ * Streaming parser of the record elements of custom XML traces.
+ * <p>
+ * The record is read as a stream of StAX events that is matched against the
+ * input elements of the definition, one frame per open element, so that no
+ * DOM is built. The values given to the event are the same as the ones of
+ * {@link org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTrace#extractEvent},
+ * and they are given in the same order: the value of an element, then its
+ * attributes, then its child elements.
+ */
+public final class CustomXmlRecordParser {
+
+    private static final XMLInputFactory FACTORY;
+
+    static {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        /* The element names are compared with their prefix, like in a DOM */
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        FACTORY = factory;
+    }
+
+    private static final String SEPARATOR = " | "; //$NON-NLS-1$
+
+    private final CustomXmlInputElement fRecordInputElement;
+
+    /**
+     * Constructor
+     *
+     * @param recordInputElement
+     *            the input element of the records
+     */
+    public CustomXmlRecordParser(CustomXmlInputElement recordInputElement) {
+        fRecordInputElement = recordInputElement;
+    }
+
+    /**
+     * Parse a record element and give its values to an event.
+     *
+     * @param reader
+     *            the reader of the record element, which must start at the
+     *            start tag of the record
+     * @param event
+     *            the event to fill
+     * @throws XMLStreamException
+     *             if the record is not well-formed. The input values of the
+     *             event are then left untouched.
+     */
+    public void parse(Reader reader, CustomXmlEvent event) throws XMLStreamException {
+        XMLStreamReader xmlReader = FACTORY.createXMLStreamReader(reader);
+        try {
+            Deque<Frame> frames = new ArrayDeque<>();
+            while (xmlReader.hasNext()) {
+                int eventType = xmlReader.next();
+                Frame parent = frames.peek();
+                if (parent != null && eventType != XMLStreamConstants.CHARACTERS && eventType != XMLStreamConstants.SPACE) {
+                    parent.endText();
+                }
+                switch (eventType) {
+                case XMLStreamConstants.START_ELEMENT:
+                    frames.push(startElement(xmlReader, parent, event));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    Frame frame = frames.pop();
+                    List<Input> inputs = frame.end();
+                    Frame grandParent = frames.peek();
+                    if (grandParent == null) {
+                        for (Input input : inputs) {
+                            event.parseInput(input.fValue, input.fTag, input.fName, input.fAction, input.fFormat);
+                        }
+                        return;
+                    }
+                    grandParent.endChild(frame, inputs);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    if (parent != null) {
+                        parent.text(xmlReader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    /* Child nodes that are not rendered */
+                    if (parent != null) {
+                        parent.fChildCount++;
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+            throw new XMLStreamException("Unexpected end of record"); //$NON-NLS-1$
+        } finally {
+            xmlReader.close();
+        }
+    }
+
+    /**
+     * Check that a record element is well-formed.
+     *
+     * @param reader
+     *            the reader of the record element
+     * @return true if the record is well-formed
+     */
+    public static boolean isWellFormed(Reader reader) {
+        try {
+            XMLStreamReader xmlReader = FACTORY.createXMLStreamReader(reader);
+            try {
+                int depth = 0;
+                while (xmlReader.hasNext()) {
+                    int eventType = xmlReader.next();
+                    if (eventType == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                    } else if (eventType == XMLStreamConstants.END_ELEMENT && --depth == 0) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                xmlReader.close();
+            }
+        } catch (XMLStreamException e) {
+            return false;
+        }
+    }
+
+    private Frame startElement(XMLStreamReader xmlReader, @Nullable Frame parent, CustomXmlEvent event) {
+        String name = qualifiedName(xmlReader.getPrefix(), xmlReader.getLocalName());
+        CustomXmlInputElement input = null;
+        if (parent == null) {
+            input = fRecordInputElement;
+        } else {
+            parent.fChildCount++;
+            CustomXmlInputElement parentInput = parent.fInput;
+            if (parentInput != null && parentInput.getChildElements() != null) {
+                for (CustomXmlInputElement child : parentInput.getChildElements()) {
+                    if (name.equals(child.getElementName())) {
+                        input = child;
+                        break;
+                    }
+                }
+            }
+        }
+        boolean render = (parent != null && parent.fRender) || (input != null && !input.getInputTag().equals(Tag.IGNORE));
+        Frame frame = new Frame(name, input, render);
+        if (input == null) {
+            return frame;
+        }
+        String eventType = input.getEventType();
+        if (eventType != null && event.getType() instanceof CustomEventType) {
+            ((CustomEventType) event.getType()).setName(eventType);
+        }
+        if (input.getAttributes() != null) {
+            for (CustomXmlInputAttribute attribute : input.getAttributes()) {
+                String value = ""; //$NON-NLS-1$
+                for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+                    if (attribute.getAttributeName().equals(qualifiedName(xmlReader.getAttributePrefix(i), xmlReader.getAttributeLocalName(i)))) {
+                        value = xmlReader.getAttributeValue(i);
+                        break;
+                    }
+                }
+                frame.fInputs.add(new Input(value, attribute.getInputTag(), attribute.getInputName(), attribute.getInputAction(), attribute.getInputFormat()));
+            }
+        }
+        return frame;
+    }
+
+    private static String qualifiedName(@Nullable String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        return prefix + ':' + localName;
+    }
+
+    /**
+     * An input value for the event, kept until the values that come before it
+     * are known
+     */
+    private static final class Input {
+        private final String fValue;
+        private final Tag fTag;
+        private final String fName;
+        private final int fAction;
+        private final String fFormat;
+
+        private Input(String value, Tag tag, String name, int action, String format) {
+            fValue = value;
+            fTag = tag;
+            fName = name;
+            fAction = action;
+            fFormat = format;
+        }
+    }
+
+    /**
+     * State of an open element
+     */
+    private static final class Frame {
+        private final String fName;
+        private final @Nullable CustomXmlInputElement fInput;
+        /* Whether the content is needed, by this element or an ancestor */
+        private final boolean fRender;
+        /* The inputs of the attributes and of the child elements, in order */
+        private final List<Input> fInputs = new ArrayList<>(0);
+        /* The rendering of the child nodes, see CustomXmlTrace#parseElement */
+        private final StringBuilder fContent = new StringBuilder();
+        private int fChildCount = 0;
+        private boolean fHasElement = false;
+        private @Nullable StringBuilder fText = null;
+        private @Nullable String fFirstText = null;
+
+        private Frame(String name, @Nullable CustomXmlInputElement input, boolean render) {
+            fName = name;
+            fInput = input;
+            fRender = render;
+        }
+
+        private void text(String text) {
+            StringBuilder sb = fText;
+            if (sb == null) {
+                fChildCount++;
+                sb = new StringBuilder();
+                fText = sb;
+            }
+            sb.append(text);
+        }
+
+        private void endText() {
+            StringBuilder sb = fText;
+            if (sb == null) {
+                return;
+            }
+            fText = null;
+            String text = sb.toString().trim();
+            if (fChildCount == 1) {
+                fFirstText = text;
+            }
+            if (fRender && !text.isEmpty()) {
+                fContent.append(text);
+            }
+        }
+
+        private void endChild(Frame child, List<Input> inputs) {
+            fInputs.addAll(inputs);
+            if (!fRender) {
+                return;
+            }
+            if (fHasElement) {
+                fContent.append(SEPARATOR);
+            }
+            fHasElement = true;
+            fContent.append(child.fName);
+            String firstText = child.fFirstText;
+            if (child.fChildCount == 0) {
+                return;
+            } else if (child.fChildCount == 1 && firstText != null) {
+                fContent.append(':').append(firstText);
+            } else {
+                fContent.append(" [ ").append(child.fContent).append(" ]"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        private List<Input> end() {
+            endText();
+            CustomXmlInputElement input = fInput;
+            if (input != null && !input.getInputTag().equals(Tag.IGNORE)) {
+                fInputs.add(0, new Input(fContent.toString(), input.getInputTag(), input.getInputName(), input.getInputAction(), input.getInputFormat()));
+            }
+            return fInputs;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,22 +15,34 @@
 package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequestHint;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 
 /**
  * The TMF coalesced event request
  *
+ * When it has more than one sub-request, the events are delivered to each of
+ * them on its own thread through a {@link TmfEventChannel}: the trace is read
+ * once and the sub-requests process the events in parallel. The events are
+ * delivered in batches, each sub-request gets the events of a read batch
+ * that are relevant to it with {@link ITmfEventRequest#handleData(ITmfEvent[], int)}.
+ *
  * @author Francois Chouinard
  */
 public class TmfCoalescedEventRequest extends TmfEventRequest {
@@ -40,7 +52,7 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
     // ------------------------------------------------------------------------
 
     /** The list of coalesced requests */
-    private final List<ITmfEventRequest> fRequests = new ArrayList<>();
+    private final List<ITmfEventRequest> fRequests = new CopyOnWriteArrayList<>();
 
     /**
      * We do not use super.fRange, because in the case of coalesced requests,
@@ -53,6 +65,60 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
      */
     private Map<String, Set<ITmfEventRequest>> fRequestsCache = new HashMap<>();
 
+    /**
+     * The channels of the sub-requests whose events are delivered on their
+     * own thread
+     */
+    private final Map<ITmfEventRequest, TmfEventChannel> fChannels = new HashMap<>();
+
+    /**
+     * Lock for the dispatching of the events and the channels. It is fair so
+     * that a request being attached does not wait for the whole read.
+     */
+    private final ReentrantLock fDispatchLock = new ReentrantLock(true);
+
+    /**
+     * The events of the batch being dispatched, per sub-request. The arrays
+     * are reused from one batch to the next.
+     */
+    private final Map<ITmfEventRequest, EventBatch> fBatches = new HashMap<>();
+
+    /** Notified when the request completes */
+    private volatile Runnable fCompletionListener = null;
+
+    /** Maximum time to wait for the dispatch lock when attaching a request */
+    private static final long ATTACH_TIMEOUT = 50;
+
+    private volatile boolean fDispatching = false;
+    private volatile boolean fChannelsClosed = false;
+
+    /** Rank of the next event to dispatch */
+    private long fNextRank;
+
+    /**
+     * Timestamp of the last event dispatched, in nanoseconds, or
+     * {@link Long#MIN_VALUE} if there is none
+     */
+    private long fLastTimestamp = Long.MIN_VALUE;
+
+    /** The events of a batch that are relevant to one sub-request */
+    private static final class EventBatch {
+        private ITmfEvent[] fEvents = new ITmfEvent[16];
+        private int fCount = 0;
+
+        public void add(ITmfEvent event) {
+            if (fCount == fEvents.length) {
+                fEvents = Arrays.copyOf(fEvents, fCount * 2);
+            }
+            fEvents[fCount++] = event;
+        }
+
+        public void clear() {
+            Arrays.fill(fEvents, 0, fCount, null);
+            fCount = 0;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -163,6 +229,10 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
     }
 
     private void merge(ITmfEventRequest request) {
+        /* The trace is read for the events of interest to any sub-request */
+        TmfEventRequestHint hint = TmfEventRequestHint.getApplicableHint(request);
+        setHint(fRequests.size() == 1 ? hint : getHint().union(hint));
+
         long start = request.getIndex();
         long end = Math.min(start + request.getNbRequested(), ITmfEventRequest.ALL_DATA);
 
@@ -189,6 +259,17 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         }
     }
 
+    /**
+     * Set the action to run when this request completes, successfully or not.
+     * The action runs on the thread that completes the request.
+     *
+     * @param listener
+     *            the action to run, or null for none
+     */
+    public void setCompletionListener(Runnable listener) {
+        fCompletionListener = listener;
+    }
+
     /**
      * @return The list of IDs of the sub-requests
      */
@@ -205,19 +286,177 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         return result.toString();
     }
 
+    /**
+     * Add a request to this one while it is running. The request is only
+     * added if none of its events was dispatched yet and its range is covered
+     * by this request: it then gets the events from the current position on.
+     * A request that would need the events read before to be read again for it
+     * is not added, so that the reading of the other sub-requests never waits
+     * for such a catch-up read.
+     *
+     * @param request
+     *            The request to add
+     * @return true if the request was added, false if it is not compatible or
+     *         if this request is not running
+     */
+    public boolean attach(ITmfEventRequest request) {
+        if (!isDispatching() ||
+                request.getExecType() != getExecType() ||
+                request.getDependencyLevel() != getDependencyLevel()) {
+            return false;
+        }
+        if (!TmfEventRequestHint.getApplicableHint(this).isUnconstrained()) {
+            /* Events are skipped, the ranks of the dispatched events are unknown */
+            return false;
+        }
+        /*
+         * Do not wait for long: the reader can be blocked on the full queue of
+         * the thread that is attaching the request.
+         */
+        try {
+            if (!fDispatchLock.tryLock(ATTACH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            if (!isDispatching()) {
+                return false;
+            }
+            /* Were events of the request already dispatched? */
+            if (!covers(request) || (fNextRank > request.getIndex() &&
+                    fLastTimestamp != Long.MIN_VALUE &&
+                    fLastTimestamp >= request.getRange().getStartTime().toNanos())) {
+                return false;
+            }
+            request.start();
+            fRequests.add(request);
+            fRequestsCache.clear();
+            if (!fChannels.isEmpty()) {
+                fChannels.put(request, TmfEventChannel.open(request));
+            }
+        } finally {
+            fDispatchLock.unlock();
+        }
+        if (TmfCoreTracer.isRequestTraced()) {
+            TmfCoreTracer.traceRequest(request.getRequestId(), "ATTACHED to " + getRequestId()); //$NON-NLS-1$
+        }
+        return true;
+    }
+
+    /**
+     * Check if events are being dispatched, without waiting for the request
+     * lock
+     *
+     * @return true if this request is started and not completing
+     */
+    public boolean isDispatching() {
+        return fDispatching && !fChannelsClosed;
+    }
+
+    /**
+     * Check if the request is completing, without waiting for the request
+     * lock. No request can be attached to it anymore.
+     *
+     * @return true if this request is being completed, cancelled or failed
+     */
+    public boolean isClosing() {
+        return fChannelsClosed;
+    }
+
+    /**
+     * Check if the ranks and the time range of a request are within those of
+     * this request
+     */
+    private boolean covers(ITmfEventRequest request) {
+        if (request.getIndex() < fIndex) {
+            return false;
+        }
+        if (fNbRequested != ITmfEventRequest.ALL_DATA &&
+                (request.getNbRequested() == ITmfEventRequest.ALL_DATA ||
+                request.getIndex() + request.getNbRequested() > fIndex + fNbRequested)) {
+            return false;
+        }
+        TmfTimeRange range = request.getRange();
+        return fRange.getStartTime().compareTo(range.getStartTime()) <= 0 &&
+                fRange.getEndTime().compareTo(range.getEndTime()) >= 0;
+    }
+
+    /**
+     * Close the channels. No more events are dispatched afterwards.
+     *
+     * @param discard
+     *            false to wait for the queued events to be delivered, true to
+     *            discard them without waiting
+     */
+    private void closeChannels(boolean discard) {
+        List<TmfEventChannel> channels;
+        fDispatchLock.lock();
+        try {
+            if (fChannelsClosed) {
+                return;
+            }
+            fChannelsClosed = true;
+            channels = new ArrayList<>(fChannels.values());
+            fBatches.clear();
+        } finally {
+            fDispatchLock.unlock();
+        }
+        for (TmfEventChannel channel : channels) {
+            if (discard) {
+                channel.discard();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ITmfEventRequest
     // ------------------------------------------------------------------------
 
+    @Override
+    public void handleData(ITmfEvent[] events, int count) {
+        /*
+         * Sort the whole batch out while holding the lock once, then hand each
+         * sub-request its share of the batch in one call.
+         */
+        fDispatchLock.lock();
+        try {
+            if (fChannelsClosed) {
+                /* Cancelled or failed, the consumers may be gone */
+                return;
+            }
+            for (int i = 0; i < count && !isCompleted(); i++) {
+                dispatch(events[i]);
+            }
+            deliverBatches();
+        } finally {
+            fDispatchLock.unlock();
+        }
+    }
+
     @Override
     public void handleData(ITmfEvent data) {
+        handleData(new ITmfEvent[] { data }, 1);
+    }
+
+    /**
+     * Add an event to the batches of the sub-requests it is relevant to. The
+     * completion and the number of events read of the sub-requests are checked
+     * by themselves, for each event of their batch.
+     */
+    private void dispatch(ITmfEvent data) {
         super.handleData(data);
 
         long index = getIndex() + getNbRead() - 1;
+        fNextRank = index + 1;
+        fLastTimestamp = data.getTimestampNanos();
 
         String traceName = data.getTrace().getName();
         Set<ITmfEventRequest> requests = fRequestsCache.get(traceName);
-
         if (requests == null) {
             // Populate requests cache
             requests = new HashSet<>();
@@ -231,18 +470,40 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
         // dispatch event to relevant requests
         for (ITmfEventRequest request : requests) {
-            long start = request.getIndex();
-            if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
-                ITmfTimestamp ts = data.getTimestamp();
-                if (request.getRange().contains(ts)) {
-                    if (request.getDataType().isInstance(data)) {
-                        request.handleData(data);
-                    }
+            if (index >= request.getIndex() &&
+                    request.getRange().contains(fLastTimestamp) &&
+                    request.getDataType().isInstance(data)) {
+                EventBatch batch = fBatches.get(request);
+                if (batch == null) {
+                    batch = new EventBatch();
+                    fBatches.put(request, batch);
                 }
+                batch.add(data);
             }
         }
     }
 
+    /**
+     * Deliver the batches of the sub-requests, either to their channel or
+     * directly
+     */
+    private void deliverBatches() {
+        for (Entry<ITmfEventRequest, EventBatch> entry : fBatches.entrySet()) {
+            EventBatch batch = entry.getValue();
+            if (batch.fCount == 0) {
+                continue;
+            }
+            ITmfEventRequest request = entry.getKey();
+            TmfEventChannel channel = fChannels.get(request);
+            if (channel != null) {
+                channel.put(Arrays.copyOf(batch.fEvents, batch.fCount));
+            } else if (!request.isCompleted()) {
+                request.handleData(batch.fEvents, batch.fCount);
+            }
+            batch.clear();
+        }
+    }
+
     @Override
     public synchronized void start() {
         for (ITmfEventRequest request : fRequests) {
@@ -250,11 +511,35 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
                 request.start();
             }
         }
+        fDispatchLock.lock();
+        try {
+            if (fRequests.size() > 1) {
+                for (ITmfEventRequest request : fRequests) {
+                    if (!request.isCompleted() && !fChannels.containsKey(request)) {
+                        fChannels.put(request, TmfEventChannel.open(request));
+                    }
+                }
+            }
+            fNextRank = getIndex();
+            fDispatching = true;
+        } finally {
+            fDispatchLock.unlock();
+        }
         super.start();
     }
 
+    @Override
+    public void handleCompleted() {
+        super.handleCompleted();
+        Runnable listener = fCompletionListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
     @Override
     public synchronized void done() {
+        closeChannels(false);
         for (ITmfEventRequest request : fRequests) {
             if (!request.isCompleted()) {
                 request.done();
@@ -265,19 +550,23 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     @Override
     public void fail(Exception e) {
+        /* Fail the sub-requests first so that their consumers stop delivering */
         for (ITmfEventRequest request : fRequests) {
             request.fail(e);
         }
+        closeChannels(true);
         super.fail(e);
     }
 
     @Override
     public void cancel() {
+        /* Cancel the sub-requests first so that their consumers stop delivering */
         for (ITmfEventRequest request : fRequests) {
             if (!request.isCompleted()) {
                 request.cancel();
             }
         }
+        closeChannels(true);
         super.cancel();
     }
 
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.request;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+
+/**
+ * Delivery of the events read for a coalesced request to one of its
+ * sub-requests, on a thread of its own. The reading thread only puts the
+ * batches of events in a bounded queue, so that a slow sub-request does not
+ * slow down the others, until its queue is full. Each batch is delivered as a
+ * whole with {@link ITmfEventRequest#handleData(ITmfEvent[], int)}.
+ */
+public class TmfEventChannel {
+
+    /** Maximum number of batches waiting to be delivered */
+    private static final int QUEUE_SIZE = 127;
+
+    private static final ExecutorService CONSUMERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "TMF Event Consumer"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Fake batch indicating there are no more events */
+    private static final ITmfEvent[] END_BATCH = new ITmfEvent[0];
+
+    private final ITmfEventRequest fRequest;
+    private final BlockingQueue<ITmfEvent[]> fQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final CountDownLatch fCompleted = new CountDownLatch(1);
+    private volatile boolean fDiscarded = false;
+
+    /**
+     * Create a channel to a request and start its consumer thread
+     *
+     * @param request
+     *            the request to which to deliver the events
+     * @return the channel
+     */
+    public static TmfEventChannel open(ITmfEventRequest request) {
+        TmfEventChannel channel = new TmfEventChannel(request);
+        CONSUMERS.execute(() -> channel.consume());
+        return channel;
+    }
+
+    private TmfEventChannel(ITmfEventRequest request) {
+        fRequest = request;
+    }
+
+    /**
+     * Queue a batch of events for the request. Blocks if the queue is full.
+     *
+     * @param events
+     *            the events, already filtered for the request. The array is
+     *            handed over to the channel and must not be reused.
+     */
+    public void put(ITmfEvent[] events) {
+        try {
+            fQueue.put(events);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Signal that there are no more events, and wait until the ones that are
+     * queued have been delivered.
+     */
+    public void close() {
+        put(END_BATCH);
+        try {
+            fCompleted.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Signal that there are no more events, without waiting. The events that
+     * are queued are dropped by the consumer thread, which then ends.
+     */
+    public void discard() {
+        fDiscarded = true;
+        fQueue.clear();
+        put(END_BATCH);
+    }
+
+    private void consume() {
+        try {
+            ITmfEvent[] events = fQueue.take();
+            while (events != END_BATCH) {
+                if (!fDiscarded) {
+                    deliver(events);
+                }
+                events = fQueue.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fCompleted.countDown();
+        }
+    }
+
+    private void deliver(ITmfEvent[] events) {
+        ITmfEventRequest request = fRequest;
+        if (request.isCompleted()) {
+            /* Keep draining the queue so that the reader is not blocked */
+            return;
+        }
+        try {
+            /* The request checks its completion and its count for each event */
+            request.handleData(events, events.length);
+        } catch (RuntimeException e) {
+            Activator.logError("Error handling " + request, e); //$NON-NLS-1$
+            request.fail(e);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -16,10 +16,12 @@ package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Queue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,16 +31,27 @@ import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 
 /**
- * The request scheduler works with 5 slots with a specific time. It has 4 slots
- * for foreground requests and 1 slot for background requests, and it passes
- * through all the slots (foreground first and background after).
+ * The request scheduler runs up to one request per processor at the same time.
+ * The other requests wait in a foreground and a background queue, which are
+ * not bounded.
  *
- * Example: if we have one foreground and one background request, the foreground
- * request will be executed four times more often than the background request.
+ * When a slot is free, the next request is taken from the queues with a 4 to 1
+ * weight in favor of the foreground requests: 4 foreground requests are
+ * started for every background request, if both are waiting.
+ *
+ * When requests are waiting and all the slots are taken, the running requests
+ * are time-sliced: every time slot, the request that has been running for the
+ * longest is suspended and put back at the end of its queue to let the next
+ * request run. A background request is always suspended first to let a
+ * foreground request run.
+ *
+ * Example: with one processor, if we have one foreground and one background
+ * request, the foreground request will be executed four times more often than
+ * the background request. With more processors, they both run at full speed.
  *
  * @author Francois Chouinard
  * @author Simon Delisle
- * @version 1.1
+ * @version 1.2
  */
 public class TmfRequestExecutor implements Executor {
 
@@ -53,30 +66,51 @@ public class TmfRequestExecutor implements Executor {
     // Attributes
     // ------------------------------------------------------------------------
 
-    // The request executor
+    /*
+     * The request executor. The suspended requests keep their thread, only the
+     * number of running requests is bounded.
+     */
     private final ExecutorService fExecutor = Executors.newCachedThreadPool();
     private final String fExecutorName;
 
+    // The maximum number of requests running at the same time
+    private final int fMaxActive;
+
     // The request queues
-    private final Queue<TmfEventThread> fForegroundTasks = new ArrayBlockingQueue<>(10);
-    private final Queue<TmfEventThread> fBackgroundTasks = new ArrayBlockingQueue<>(10);
+    private final Deque<TmfEventThread> fForegroundTasks = new ArrayDeque<>();
+    private final Deque<TmfEventThread> fBackgroundTasks = new ArrayDeque<>();
 
-    // The tasks
-    private TmfEventThread fActiveTask;
+    // The running tasks, in the order they were started or resumed
+    private final List<TmfEventThread> fActiveTasks = new ArrayList<>();
 
     private Timer fTimer;
     private TimerTask fTimerTask;
 
     private int fForegroundCycle = 0;
 
+    // Notified when a request completes and leaves a slot free
+    private volatile Runnable fSlotListener = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
 
     /**
-     * Default constructor
+     * Default constructor, running as many requests at the same time as there
+     * are processors
      */
     public TmfRequestExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxActive
+     *            the maximum number of requests running at the same time
+     */
+    public TmfRequestExecutor(int maxActive) {
+        fMaxActive = Math.max(1, maxActive);
         // We know the canonical name is not null because we use ExecutorService only
         String canonicalName = checkNotNull(fExecutor.getClass().getCanonicalName());
         fExecutorName = canonicalName.substring(canonicalName.lastIndexOf('.') + 1);
@@ -103,6 +137,36 @@ public class TmfRequestExecutor implements Executor {
         return fExecutor.isTerminated();
     }
 
+    /**
+     * @return the maximum number of requests running at the same time
+     */
+    public int getMaxActive() {
+        return fMaxActive;
+    }
+
+    /**
+     * @return true if a request executed now would start right away
+     */
+    public synchronized boolean hasFreeSlot() {
+        if (isShutdown() || hasTasks()) {
+            return false;
+        }
+        fActiveTasks.removeIf(task -> task.getThread().isCompleted());
+        return fActiveTasks.size() < fMaxActive;
+    }
+
+    /**
+     * Set the action to run when a request completes and no request is
+     * waiting for its slot. The action runs on the thread of the completed
+     * request, without holding the lock of the executor.
+     *
+     * @param listener
+     *            the action to run, or null for none
+     */
+    public void setSlotListener(Runnable listener) {
+        fSlotListener = listener;
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -137,7 +201,10 @@ public class TmfRequestExecutor implements Executor {
                 try {
                     command.run();
                 } finally {
-                    scheduleNext();
+                    Runnable listener = fSlotListener;
+                    if (taskCompleted(this) && listener != null) {
+                        listener.run();
+                    }
                 }
             }
         };
@@ -146,14 +213,13 @@ public class TmfRequestExecutor implements Executor {
         ExecutionType priority = thread.getExecType();
 
         if (priority == ExecutionType.FOREGROUND) {
-            if (!fForegroundTasks.offer(wrapper)) {
-                wrapper.cancel();
-            }
+            fForegroundTasks.offer(wrapper);
         } else {
-            if (!fBackgroundTasks.offer(wrapper)) {
-                wrapper.cancel();
-            }
+            fBackgroundTasks.offer(wrapper);
         }
+
+        // Start it right away if a slot is free
+        fillSlots();
     }
 
     /**
@@ -171,43 +237,32 @@ public class TmfRequestExecutor implements Executor {
     }
 
     /**
-     * Executes the next pending request, if applicable.
+     * Executes the next pending requests, if applicable. If requests are
+     * waiting and all the slots are taken, one running request is suspended to
+     * let the next one run.
      */
     protected synchronized void scheduleNext() {
-        if (!isShutdown()) {
-            if (fActiveTask == null) {
-                schedule();
-            } else if (fActiveTask.getExecType() == ExecutionType.FOREGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fForegroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
+        if (isShutdown()) {
+            return;
+        }
+        fActiveTasks.removeIf(task -> task.getThread().isCompleted());
+        fillSlots();
+        if (!hasTasks()) {
+            return;
+        }
 
-            } else if (fActiveTask.getExecType() == ExecutionType.BACKGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fBackgroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
-            }
+        TmfEventThread victim = selectVictim(peekNextType());
+        if (victim == null) {
+            return;
+        }
+        fActiveTasks.remove(victim);
+        victim.getThread().suspend();
+        if (victim.getExecType() == ExecutionType.FOREGROUND) {
+            fForegroundTasks.offer(victim);
+        } else {
+            fBackgroundTasks.offer(victim);
         }
+        startNext();
     }
 
     /**
@@ -222,15 +277,17 @@ public class TmfRequestExecutor implements Executor {
             fTimer.cancel();
         }
 
-        if (fActiveTask != null) {
-            fActiveTask.cancel();
+        for (TmfEventThread task : fActiveTasks) {
+            task.cancel();
         }
+        fActiveTasks.clear();
 
-        while ((fActiveTask = fForegroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        TmfEventThread task;
+        while ((task = fForegroundTasks.poll()) != null) {
+            cancelQueued(task);
         }
-        while ((fActiveTask = fBackgroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        while ((task = fBackgroundTasks.poll()) != null) {
+            cancelQueued(task);
         }
 
         fExecutor.shutdown();
@@ -243,51 +300,91 @@ public class TmfRequestExecutor implements Executor {
     // Helper methods
     // ------------------------------------------------------------------------
 
+    /**
+     * Free the slot of a task that completed and start the next one
+     *
+     * @return true if the slot is still free
+     */
+    private synchronized boolean taskCompleted(TmfEventThread task) {
+        fActiveTasks.remove(task);
+        if (isShutdown()) {
+            return false;
+        }
+        fillSlots();
+        return fActiveTasks.size() < fMaxActive;
+    }
+
+    /**
+     * Start the waiting tasks while there are free slots
+     */
+    private void fillSlots() {
+        while (fActiveTasks.size() < fMaxActive && hasTasks()) {
+            startNext();
+        }
+    }
+
     /**
      * Determine which type of request (foreground or background) we schedule
      * next
      */
-    private void schedule() {
-        if (!fForegroundTasks.isEmpty()) {
-            scheduleNextForeground();
-        } else {
-            scheduleNextBackground();
+    private ExecutionType peekNextType() {
+        if (!fForegroundTasks.isEmpty() && (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty())) {
+            return ExecutionType.FOREGROUND;
         }
+        return ExecutionType.BACKGROUND;
     }
 
     /**
-     * Schedule the next foreground request
+     * Select the running task to suspend to let a task of a given type run: a
+     * background task if there is one and a foreground task is waiting,
+     * otherwise the one that has been running for the longest.
      */
-    private void scheduleNextForeground() {
-        if (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty()) {
-            ++fForegroundCycle;
-            fActiveTask = fForegroundTasks.poll();
-            executefActiveTask();
-        } else {
-            fActiveTask = null;
-            scheduleNextBackground();
+    private TmfEventThread selectVictim(ExecutionType next) {
+        if (fActiveTasks.isEmpty()) {
+            return null;
+        }
+        if (next == ExecutionType.FOREGROUND) {
+            for (TmfEventThread task : fActiveTasks) {
+                if (task.getExecType() == ExecutionType.BACKGROUND) {
+                    return task;
+                }
+            }
         }
+        return fActiveTasks.get(0);
     }
 
     /**
-     * Schedule the next background request
+     * Start or resume the next task
      */
-    private void scheduleNextBackground() {
-        fForegroundCycle = 0;
-        if (!fBackgroundTasks.isEmpty()) {
-            fActiveTask = fBackgroundTasks.poll();
-            executefActiveTask();
+    private void startNext() {
+        TmfEventThread task;
+        if (peekNextType() == ExecutionType.FOREGROUND) {
+            ++fForegroundCycle;
+            task = fForegroundTasks.poll();
+        } else {
+            fForegroundCycle = 0;
+            task = fBackgroundTasks.poll();
+        }
+        if (task == null || task.getThread().isCompleted()) {
+            /* A task can complete right after it was suspended */
+            return;
+        }
+        fActiveTasks.add(task);
+        if (task.getThread().isPaused()) {
+            task.getThread().resume();
+        } else {
+            fExecutor.execute(task);
         }
     }
 
     /**
-     * Execute or resume the active task
+     * Cancel a task that is not running. A suspended task is resumed so that
+     * its thread sees the cancellation and ends.
      */
-    private void executefActiveTask() {
-        if (fActiveTask.getThread().isPaused()) {
-            fActiveTask.getThread().resume();
-        } else {
-            fExecutor.execute(fActiveTask);
+    private static void cancelQueued(TmfEventThread task) {
+        task.cancel();
+        if (task.getThread().isPaused()) {
+            task.getThread().resume();
         }
     }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,12 +15,14 @@
 package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 /**
  * The experiment context in TMF.
@@ -33,6 +35,12 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
  * <p>
  * The last trace refers to the trace from which the last event was "consumed"
  * at the experiment level.
+ * <p>
+ * The traces are merged with a tournament tree of losers over the timestamps
+ * of their next events, cached in nanoseconds, so that picking the next event
+ * only replays the matches on the path of the trace that was last read. The
+ * experiment location is only rebuilt from the locations of the traces when it
+ * is requested.
  */
 public final class TmfExperimentContext extends TmfContext {
 
@@ -45,14 +53,34 @@ public final class TmfExperimentContext extends TmfContext {
      */
     public static final int NO_TRACE = -1;
 
+    /** Key of the traces without a next event and of the padding leaves */
+    private static final long EXHAUSTED = Long.MAX_VALUE;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
 
     private final List<ITmfContext> fContexts;
-    private final List<ITmfEvent> fEvents;
+    private final ITmfEvent[] fEvents;
     private int fLastTraceRead;
 
+    /** Timestamps of the next events in nanoseconds, one leaf per trace */
+    private long[] fKeys;
+
+    /** Loser of the match played at each internal node, node 0 is unused */
+    private int[] fLosers;
+
+    /** Number of leaves in the tree, a power of two */
+    private int fLeaves;
+
+    private int fWinner;
+    private boolean fDirty = true;
+
+    /** Locations and ranks of the traces, when the location must be rebuilt */
+    private ITmfLocation @Nullable [] fTraceLocations;
+    private long @Nullable [] fTraceRanks;
+    private boolean fLocationDirty;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -67,14 +95,21 @@ public final class TmfExperimentContext extends TmfContext {
         super();
         fLastTraceRead = NO_TRACE;
         fContexts = new ArrayList<>(nbTraces);
-        fEvents = new ArrayList<>(nbTraces);
-
+        fEvents = new ITmfEvent[nbTraces];
 
         /* Initialize the arrays to the requested size */
         for (int i = 0; i < nbTraces; i++) {
             fContexts.add(null);
-            fEvents.add(null);
         }
+
+        int leaves = Integer.highestOneBit(Math.max(nbTraces, 1));
+        if (leaves < nbTraces) {
+            leaves <<= 1;
+        }
+        fLeaves = leaves;
+        fKeys = new long[leaves];
+        Arrays.fill(fKeys, EXHAUSTED);
+        fLosers = new int[leaves];
     }
 
     @Override
@@ -133,7 +168,7 @@ public final class TmfExperimentContext extends TmfContext {
      */
     @Nullable
     public ITmfEvent getEvent(int traceIndex) {
-        return fEvents.get(traceIndex);
+        return fEvents[traceIndex];
     }
 
     /**
@@ -144,8 +179,81 @@ public final class TmfExperimentContext extends TmfContext {
      * @param event
      *            The event at the context in the trace
      */
-    public void setEvent(int traceIndex, ITmfEvent event) {
-        fEvents.set(traceIndex, event);
+    public void setEvent(int traceIndex, @Nullable ITmfEvent event) {
+        fEvents[traceIndex] = event;
+        fKeys[traceIndex] = (event == null) ? EXHAUSTED : event.getTimestampNanos();
+        if (!fDirty && traceIndex == fWinner) {
+            replay(traceIndex);
+        } else {
+            fDirty = true;
+        }
+    }
+
+    /**
+     * Get the index of the trace whose next event comes first. Ties are
+     * resolved by trace index.
+     *
+     * @return The index of the trace, or {@link #NO_TRACE} if none of the
+     *         traces has a next event
+     */
+    public int getNextTrace() {
+        if (fEvents.length == 0) {
+            return NO_TRACE;
+        }
+        if (fDirty) {
+            build();
+        }
+        return (fEvents[fWinner] == null) ? NO_TRACE : fWinner;
+    }
+
+    /**
+     * Update the location and rank of a trace in the experiment location. The
+     * location is only rebuilt when it is requested, so updating it after
+     * every event costs no copy.
+     *
+     * @param traceIndex
+     *            The index of the trace in the experiment
+     * @param location
+     *            The new location of the trace
+     * @param rank
+     *            The new rank of the trace
+     */
+    public void updateLocation(int traceIndex, @Nullable ITmfLocation location, long rank) {
+        ITmfLocation[] locations = fTraceLocations;
+        long[] ranks = fTraceRanks;
+        if (locations == null || ranks == null) {
+            ITmfLocation current = super.getLocation();
+            if (!(current instanceof TmfExperimentLocation)) {
+                return;
+            }
+            TmfLocationArray locationArray = ((TmfExperimentLocation) current).getLocationInfo();
+            locations = locationArray.getLocations();
+            ranks = locationArray.getRanks();
+            fTraceLocations = locations;
+            fTraceRanks = ranks;
+        }
+        locations[traceIndex] = location;
+        ranks[traceIndex] = rank;
+        fLocationDirty = true;
+    }
+
+    @Override
+    public @Nullable ITmfLocation getLocation() {
+        ITmfLocation[] locations = fTraceLocations;
+        long[] ranks = fTraceRanks;
+        if (fLocationDirty && locations != null && ranks != null) {
+            fLocationDirty = false;
+            super.setLocation(new TmfExperimentLocation(new TmfLocationArray(locations, ranks)));
+        }
+        return super.getLocation();
+    }
+
+    @Override
+    public void setLocation(ITmfLocation location) {
+        fTraceLocations = null;
+        fTraceRanks = null;
+        fLocationDirty = false;
+        super.setLocation(location);
     }
 
     /**
@@ -168,6 +276,73 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = newIndex;
     }
 
+    // ------------------------------------------------------------------------
+    // Tournament
+    // ------------------------------------------------------------------------
+
+    /**
+     * Does the event of trace a come before the event of trace b? Timestamps
+     * that are equal in nanoseconds are compared exactly, then ties are
+     * resolved by trace index, as by a linear scan.
+     */
+    private boolean beats(int a, int b) {
+        long ka = fKeys[a];
+        long kb = fKeys[b];
+        if (ka != kb) {
+            return ka < kb;
+        }
+        ITmfEvent ea = (a < fEvents.length) ? fEvents[a] : null;
+        ITmfEvent eb = (b < fEvents.length) ? fEvents[b] : null;
+        if (ea == null || eb == null) {
+            return (eb == null) && (ea != null || a < b);
+        }
+        int cmp = ea.getTimestamp().compareTo(eb.getTimestamp());
+        if (cmp != 0) {
+            return cmp < 0;
+        }
+        return a < b;
+    }
+
+    /**
+     * Play all the matches, bottom-up
+     */
+    private void build() {
+        int leaves = fLeaves;
+        int[] winners = new int[leaves * 2];
+        for (int i = 0; i < leaves; i++) {
+            winners[leaves + i] = i;
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            int left = winners[2 * node];
+            int right = winners[2 * node + 1];
+            if (beats(left, right)) {
+                winners[node] = left;
+                fLosers[node] = right;
+            } else {
+                winners[node] = right;
+                fLosers[node] = left;
+            }
+        }
+        fWinner = (leaves == 1) ? 0 : winners[1];
+        fDirty = false;
+    }
+
+    /**
+     * Replay the matches from a leaf up to the root, after its key changed.
+     * The leaf must be the current winner.
+     */
+    private void replay(int leaf) {
+        int winner = leaf;
+        for (int node = (fLeaves + leaf) >>> 1; node > 0; node >>>= 1) {
+            int loser = fLosers[node];
+            if (beats(loser, winner)) {
+                fLosers[node] = winner;
+                winner = loser;
+            }
+        }
+        fWinner = winner;
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
@@ -186,6 +361,11 @@ public final class TmfExperimentContext extends TmfContext {
         if (this == other) {
             return true;
         }
+        /* Make sure the locations compared by the super class are up to date */
+        if (other instanceof TmfExperimentContext) {
+            ((TmfExperimentContext) other).getLocation();
+        }
+        getLocation();
         if (!super.equals(other)) {
             return false;
         }
@@ -212,9 +392,9 @@ public final class TmfExperimentContext extends TmfContext {
             sb.append("(" + fContexts.get(i).getLocation() + "," + fContexts.get(i).getRank() + ((i < fContexts.size() - 1) ? ")," : ")]\n"));
         }
         sb.append("\tfEvents=[");
-        for (int i = 0; i < fEvents.size(); i++) {
-            ITmfEvent event = fEvents.get(i);
-            sb.append(((event != null) ? fEvents.get(i).getTimestamp() : "(null)")  + ((i < fEvents.size() - 1) ? "," : "]\n"));
+        for (int i = 0; i < fEvents.length; i++) {
+            ITmfEvent event = fEvents[i];
+            sb.append(((event != null) ? event.getTimestamp() : "(null)")  + ((i < fEvents.length - 1) ? "," : "]\n"));
         }
         sb.append("\tfLastTraceRead=" + fLastTraceRead + "\n");
         sb.append("]");
@@ -0,0 +1,569 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * Indexer of experiments that indexes the traces in parallel.
+ * <p>
+ * The first time the whole experiment is indexed, every trace is indexed by
+ * its own indexer, which reuses the existing index of the trace if there is
+ * one. Each trace is then sampled through its index at every checkpoint
+ * interval, and the sampled timestamps of all the traces are merged and
+ * thinned to about one per interval of experiment ranks. Each trace is finally
+ * walked forward through the merged timestamps, to find the location and rank
+ * of its first event at or after each of them. The experiment
+ * checkpoints are assembled from these, without reading the traces through the
+ * experiment merge.
+ * <p>
+ * The checkpoints are then not at a fixed interval of experiment ranks, so the
+ * experiment rank of a checkpoint is taken from the ranks of its location.
+ * Events that are read after the initial indexing, for example when the
+ * experiment is streamed, add checkpoints at regular intervals after the last
+ * one.
+ */
+public class TmfExperimentIndexer extends TmfCheckpointIndexer {
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "TMF Experiment Indexer"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Checkpoint timestamps and end of one trace */
+    private static final class TraceSamples {
+        private final List<ITmfTimestamp> fTimestamps = new ArrayList<>();
+        private final List<Long> fRanks = new ArrayList<>();
+        private ITmfTimestamp fLastTimestamp = TmfTimestamp.BIG_BANG;
+        private ITmfLocation fEndLocation;
+        private long fNbEvents;
+    }
+
+    /** Locations and ranks of one trace at each of the merged checkpoints */
+    private static final class TracePositions {
+        private final ITmfLocation[] fLocations;
+        private final long[] fRanks;
+
+        public TracePositions(int nbCheckpoints) {
+            fLocations = new ITmfLocation[nbCheckpoints];
+            fRanks = new long[nbCheckpoints];
+        }
+    }
+
+    private final int fInterval;
+    private long fNextCheckpointRank;
+    private volatile boolean fParallelIndexing = false;
+    private boolean fDisposed = false;
+    private Job fJob = null;
+
+    /**
+     * Constructor
+     *
+     * @param experiment
+     *            the experiment to index
+     * @param interval
+     *            the checkpoints interval
+     */
+    public TmfExperimentIndexer(TmfExperiment experiment, int interval) {
+        super(experiment, interval);
+        fInterval = interval;
+        synchronized (fTraceIndex) {
+            fNextCheckpointRank = fTraceIndex.isEmpty() ? 0 : rankOf(fTraceIndex.get(fTraceIndex.size() - 1)) + interval;
+        }
+    }
+
+    @Override
+    protected ITmfCheckpointIndex createIndex(ITmfTrace trace) {
+        if (trace instanceof TmfExperiment && ((TmfExperiment) trace).getCheckpointSize() > 0) {
+            return new TmfBTreeTraceIndex(trace);
+        }
+        return super.createIndex(trace);
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (fTraceIndex) {
+            fDisposed = true;
+            if (fJob != null) {
+                fJob.cancel();
+            }
+        }
+        super.dispose();
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return fParallelIndexing || super.isIndexing();
+    }
+
+    // ------------------------------------------------------------------------
+    // Building the index
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void buildIndex(long offset, TmfTimeRange range, boolean waitForCompletion) {
+        List<ITmfTrace> traces = getParallelTraces(offset, range);
+        if (traces == null) {
+            super.buildIndex(offset, range, waitForCompletion);
+            return;
+        }
+
+        Job job;
+        synchronized (fTraceIndex) {
+            if (fDisposed || isIndexing()) {
+                return;
+            }
+            fParallelIndexing = true;
+            job = new Job("Indexing " + fTrace.getName() + "...") { //$NON-NLS-1$ //$NON-NLS-2$
+                @Override
+                protected IStatus run(IProgressMonitor monitor) {
+                    return indexInParallel(traces, range, monitor);
+                }
+            };
+            fJob = job;
+        }
+        TmfCoreTracer.traceIndexer("buildIndex in parallel. traces: " + traces.size()); //$NON-NLS-1$
+        job.schedule();
+        if (waitForCompletion) {
+            try {
+                job.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get the traces to index in parallel
+     *
+     * @return the traces, or null if the index must be built by reading the
+     *         experiment
+     */
+    private List<ITmfTrace> getParallelTraces(long offset, TmfTimeRange range) {
+        if (offset != 0 || !TmfTimestamp.BIG_CRUNCH.equals(range.getEndTime()) || fTrace.getStreamingInterval() != 0) {
+            return null;
+        }
+        synchronized (fTraceIndex) {
+            if (!fTraceIndex.isEmpty()) {
+                return null;
+            }
+        }
+        List<ITmfTrace> traces = new ArrayList<>(((TmfExperiment) fTrace).getTraces());
+        return (traces.size() > 1) ? traces : null;
+    }
+
+    private IStatus indexInParallel(List<ITmfTrace> traces, TmfTimeRange range, IProgressMonitor monitor) {
+        boolean done = false;
+        try {
+            /* Index each trace with its own indexer and sample its index */
+            List<Future<TraceSamples>> indexing = new ArrayList<>(traces.size());
+            for (ITmfTrace trace : traces) {
+                indexing.add(EXECUTOR.submit(() -> sampleTrace(trace, fInterval, monitor)));
+            }
+            List<TraceSamples> samples = new ArrayList<>(traces.size());
+            for (Future<TraceSamples> future : indexing) {
+                samples.add(future.get());
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+
+            /* Merge the checkpoint timestamps of all the traces */
+            ITmfTimestamp[] timestamps = mergeCheckpointTimestamps(samples, fInterval);
+
+            /* Find the position of each trace at every checkpoint */
+            List<Future<TracePositions>> seeks = new ArrayList<>(traces.size());
+            for (int i = 0; i < traces.size(); i++) {
+                ITmfTrace trace = traces.get(i);
+                TraceSamples traceSamples = samples.get(i);
+                seeks.add(EXECUTOR.submit(() -> findPositions(trace, traceSamples, timestamps, fInterval, monitor)));
+            }
+            List<TracePositions> positions = new ArrayList<>(traces.size());
+            for (Future<TracePositions> future : seeks) {
+                positions.add(future.get());
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+
+            done = insertCheckpoints(timestamps, samples, positions);
+            return Status.OK_STATUS;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.CANCEL_STATUS;
+        } catch (ExecutionException e) {
+            Activator.logError("Error indexing experiment " + fTrace.getName() + " in parallel", e.getCause()); //$NON-NLS-1$ //$NON-NLS-2$
+            return Status.OK_STATUS;
+        } finally {
+            boolean disposed;
+            synchronized (fTraceIndex) {
+                fParallelIndexing = false;
+                fJob = null;
+                disposed = fDisposed;
+            }
+            if (!done && !disposed && !monitor.isCanceled()) {
+                /* Fall back to reading the experiment */
+                super.buildIndex(0, range, false);
+            }
+        }
+    }
+
+    /**
+     * Index a trace, then seek it by rank to get the timestamps of its
+     * checkpoints. The samples are taken at the multiple of the checkpoint
+     * interval of the trace (its cache size) that is closest to the
+     * experiment interval without being smaller, so that every seek lands on
+     * a checkpoint of the trace and reads no event. The trace is read from its
+     * last sample to its end to find its number of events and its end
+     * location, which does not depend on the trace having been indexed
+     * completely.
+     */
+    private static TraceSamples sampleTrace(ITmfTrace trace, int interval, IProgressMonitor monitor) {
+        trace.indexTrace(true);
+        TraceSamples samples = new TraceSamples();
+        long step = interval;
+        int traceInterval = trace.getCacheSize();
+        if (traceInterval > 0) {
+            step = Math.max(1, (interval + traceInterval - 1) / traceInterval) * (long) traceInterval;
+        }
+        long rank = 0;
+        long lastRank = 0;
+        while (!monitor.isCanceled()) {
+            ITmfContext context = trace.seekEvent(rank);
+            try {
+                ITmfEvent event = trace.getNext(context);
+                if (event == null) {
+                    break;
+                }
+                samples.fTimestamps.add(event.getTimestamp());
+                samples.fRanks.add(rank);
+            } finally {
+                context.dispose();
+            }
+            lastRank = rank;
+            rank += step;
+        }
+
+        ITmfContext context = trace.seekEvent(lastRank);
+        try {
+            ITmfEvent event = trace.getNext(context);
+            while (event != null && !monitor.isCanceled()) {
+                samples.fLastTimestamp = event.getTimestamp();
+                event = trace.getNext(context);
+            }
+            samples.fEndLocation = context.getLocation();
+            samples.fNbEvents = context.getRank();
+        } finally {
+            context.dispose();
+        }
+        return samples;
+    }
+
+    /**
+     * Merge the sampled timestamps of the traces, keeping about one per
+     * interval of experiment ranks. The experiment rank of a timestamp is
+     * estimated from the ranks of the last samples of each trace.
+     */
+    private static ITmfTimestamp[] mergeCheckpointTimestamps(List<TraceSamples> samples, int interval) {
+        int nbTraces = samples.size();
+        int[] next = new int[nbTraces];
+        long[] ranks = new long[nbTraces];
+        List<ITmfTimestamp> timestamps = new ArrayList<>();
+        long lastRank = 0;
+        while (true) {
+            /* Take the smallest pending sample */
+            int trace = -1;
+            for (int i = 0; i < nbTraces; i++) {
+                TraceSamples traceSamples = samples.get(i);
+                if (next[i] < traceSamples.fTimestamps.size() && (trace < 0 ||
+                        traceSamples.fTimestamps.get(next[i]).compareTo(samples.get(trace).fTimestamps.get(next[trace])) < 0)) {
+                    trace = i;
+                }
+            }
+            if (trace < 0) {
+                break;
+            }
+            TraceSamples traceSamples = samples.get(trace);
+            ITmfTimestamp timestamp = traceSamples.fTimestamps.get(next[trace]);
+            ranks[trace] = traceSamples.fRanks.get(next[trace]);
+            next[trace]++;
+
+            long rank = 0;
+            for (long traceRank : ranks) {
+                rank += traceRank;
+            }
+            boolean first = timestamps.isEmpty();
+            if (first || (rank >= lastRank + interval && timestamps.get(timestamps.size() - 1).compareTo(timestamp) < 0)) {
+                timestamps.add(timestamp);
+                lastRank = rank;
+            }
+        }
+        return timestamps.toArray(new ITmfTimestamp[timestamps.size()]);
+    }
+
+    /**
+     * Find the location and rank of the first event of a trace at or after
+     * every timestamp. The events before that position are exactly the events
+     * of the trace that come before the timestamp in the experiment.
+     * <p>
+     * The timestamps are sorted, so a single context walks forward through the
+     * trace. It is only positioned again through the index of the trace when
+     * the samples show that the next timestamp is more than an interval of
+     * events ahead, so each event of the trace is read at most once.
+     */
+    private static TracePositions findPositions(ITmfTrace trace, TraceSamples samples, ITmfTimestamp[] timestamps, int interval, IProgressMonitor monitor) {
+        TracePositions positions = new TracePositions(timestamps.length);
+        ITmfContext context = null;
+        /* The next event of the context, not yet passed, and its position */
+        ITmfEvent next = null;
+        ITmfLocation location = null;
+        long rank = 0;
+        try {
+            for (int i = 0; i < timestamps.length && !monitor.isCanceled(); i++) {
+                ITmfTimestamp timestamp = timestamps[i];
+                if (timestamp.compareTo(samples.fLastTimestamp) > 0) {
+                    positions.fLocations[i] = samples.fEndLocation;
+                    positions.fRanks[i] = samples.fNbEvents;
+                    continue;
+                }
+                if (context == null || estimateRank(samples, timestamp) > rank + interval) {
+                    if (context != null) {
+                        context.dispose();
+                    }
+                    context = trace.seekEvent(timestamp);
+                    location = context.getLocation();
+                    rank = context.getRank();
+                    next = trace.getNext(context);
+                }
+                while (next != null && next.getTimestamp().compareTo(timestamp) < 0 && !monitor.isCanceled()) {
+                    location = context.getLocation();
+                    rank = context.getRank();
+                    next = trace.getNext(context);
+                }
+                if (next == null || location == null) {
+                    positions.fLocations[i] = samples.fEndLocation;
+                    positions.fRanks[i] = samples.fNbEvents;
+                } else {
+                    positions.fLocations[i] = location;
+                    positions.fRanks[i] = rank;
+                }
+            }
+        } finally {
+            if (context != null) {
+                context.dispose();
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Estimate the rank of the first event of a trace at a timestamp, from the
+     * rank of the last sample at or before it
+     */
+    private static long estimateRank(TraceSamples samples, ITmfTimestamp timestamp) {
+        int low = 0;
+        int high = samples.fTimestamps.size() - 1;
+        long rank = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (samples.fTimestamps.get(mid).compareTo(timestamp) <= 0) {
+                rank = samples.fRanks.get(mid);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Assemble the experiment checkpoints and publish the experiment range
+     *
+     * @return true if the checkpoints were inserted, false if the indexer was
+     *         disposed
+     */
+    private boolean insertCheckpoints(ITmfTimestamp[] timestamps, List<TraceSamples> samples, List<TracePositions> positions) {
+        int nbTraces = positions.size();
+        long nbEvents = 0;
+        ITmfTimestamp endTime = TmfTimestamp.BIG_BANG;
+        for (TraceSamples traceSamples : samples) {
+            nbEvents += traceSamples.fNbEvents;
+            if (traceSamples.fLastTimestamp.compareTo(endTime) > 0) {
+                endTime = traceSamples.fLastTimestamp;
+            }
+        }
+        if (nbEvents == 0 || timestamps.length == 0) {
+            return true;
+        }
+        TmfTimeRange range = new TmfTimeRange(timestamps[0], endTime);
+
+        synchronized (fTraceIndex) {
+            if (fDisposed) {
+                return false;
+            }
+            long lastRank = -1;
+            for (int i = 0; i < timestamps.length; i++) {
+                ITmfLocation[] locations = new ITmfLocation[nbTraces];
+                long[] ranks = new long[nbTraces];
+                long rank = 0;
+                for (int trace = 0; trace < nbTraces; trace++) {
+                    locations[trace] = positions.get(trace).fLocations[i];
+                    ranks[trace] = positions.get(trace).fRanks[i];
+                    rank += ranks[trace];
+                }
+                if (rank == lastRank || rank >= nbEvents) {
+                    continue;
+                }
+                lastRank = rank;
+                TmfCheckpoint checkpoint = new TmfCheckpoint(timestamps[i], new TmfExperimentLocation(new TmfLocationArray(locations, ranks)), fTraceIndex.size());
+                TmfCoreTracer.traceIndexer("Inserting merged checkpoint: " + checkpoint); //$NON-NLS-1$
+                fTraceIndex.insert(checkpoint);
+            }
+            fNextCheckpointRank = lastRank + fInterval;
+            fTraceIndex.setTimeRange(range);
+            fTraceIndex.setNbEvents(nbEvents);
+        }
+        TmfCoreTracer.traceIndexer("Merged index completed. nbEvents: " + nbEvents + " time range: " + range); //$NON-NLS-1$ //$NON-NLS-2$
+        fTrace.broadcast(new TmfTraceUpdatedSignal(this, fTrace, range, nbEvents));
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+    // Updating and using the index
+    // ------------------------------------------------------------------------
+
+    @Override
+    public synchronized void updateIndex(ITmfContext context, ITmfTimestamp timestamp) {
+        if (fParallelIndexing) {
+            return;
+        }
+        long rank = context.getRank();
+        if (rank == fNextCheckpointRank) {
+            synchronized (fTraceIndex) {
+                TmfCheckpoint checkpoint = new TmfCheckpoint(timestamp, context.getLocation(), fTraceIndex.size());
+                TmfCoreTracer.traceIndexer("Inserting checkpoint: " + checkpoint); //$NON-NLS-1$
+                fTraceIndex.insert(checkpoint);
+            }
+            fNextCheckpointRank = rank + fInterval;
+        }
+    }
+
+    @Override
+    public synchronized void updateIndex(ITmfContext context, ITmfEvent event) {
+        if (!fParallelIndexing && context.getRank() == fNextCheckpointRank) {
+            updateIndex(context, event.getTimestamp());
+        }
+    }
+
+    @Override
+    public synchronized ITmfContext seekIndex(ITmfTimestamp timestamp) {
+        if (timestamp == null) {
+            return fTrace.seekEvent(0);
+        }
+        long index;
+        synchronized (fTraceIndex) {
+            index = fTraceIndex.binarySearch(new TmfCheckpoint(timestamp, null, 0));
+        }
+        if (index < 0) {
+            index = Math.max(0, -(index + 2));
+        } else {
+            /*
+             * Use the previous checkpoint, to find the first event with the
+             * same timestamp before the checkpoint
+             */
+            index = Math.max(0, index - 1);
+        }
+        return restoreCheckpoint(index);
+    }
+
+    @Override
+    public ITmfContext seekIndex(long rank) {
+        if (rank < 0) {
+            return fTrace.seekEvent(0);
+        }
+        /* Find the last checkpoint at or before the rank */
+        long index = 0;
+        synchronized (fTraceIndex) {
+            long low = 0;
+            long high = fTraceIndex.size() - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                if (rankOf(fTraceIndex.get(mid)) <= rank) {
+                    index = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+        }
+        return restoreCheckpoint(index);
+    }
+
+    /**
+     * Position the experiment at a checkpoint. The rank of the context is set
+     * from the ranks of the location by the experiment.
+     */
+    private ITmfContext restoreCheckpoint(long index) {
+        ITmfLocation location = null;
+        synchronized (fTraceIndex) {
+            if (!fTraceIndex.isEmpty()) {
+                ITmfCheckpoint checkpoint = fTraceIndex.get(Math.min(index, fTraceIndex.size() - 1));
+                TmfCoreTracer.traceIndexer("Restored checkpoint: " + checkpoint); //$NON-NLS-1$
+                if (checkpoint != null) {
+                    location = checkpoint.getLocation();
+                }
+            }
+        }
+        return fTrace.seekEvent(location);
+    }
+
+    /**
+     * Get the experiment rank of a checkpoint, the sum of the ranks of the
+     * traces at its location
+     */
+    private static long rankOf(ITmfCheckpoint checkpoint) {
+        if (checkpoint == null || !(checkpoint.getLocation() instanceof TmfExperimentLocation)) {
+            return 0;
+        }
+        TmfLocationArray locationArray = ((TmfExperimentLocation) checkpoint.getLocation()).getLocationInfo();
+        long rank = 0;
+        for (int i = 0; i < locationArray.size(); i++) {
+            rank += locationArray.getRank(i);
+        }
+        return rank;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -18,7 +18,9 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.text.MessageFormat;
+import java.util.concurrent.locks.StampedLock;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
@@ -28,6 +30,18 @@ import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable
 
 /**
  * Common implementation of file-based checkpoint collection
+ * <p>
+ * Once the collection is finished, that is when it is restored from disk or
+ * when the indexer has gone through the whole trace, the file is read through
+ * a memory-mapped buffer so that searches do no system calls. The mapping is
+ * dropped as soon as the collection is modified again.
+ * <p>
+ * The collection is written by the indexer while the trace is being read
+ * through it, so the methods accessing the file or the nodes in memory are
+ * synchronized on the collection. Searches in the mapped buffer can instead be
+ * done without the lock, as optimistic reads that are validated with
+ * {@link #validateOptimisticRead(long)}: a modification of the collection
+ * invalidates the searches in progress.
  *
  * @author Marc-Andre Laperle
  */
@@ -37,6 +51,13 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
     private static final int VERSION = 3;
     private static final int SUB_VERSION_NONE = -1;
 
+    /**
+     * A mapped file cannot be deleted on Windows until it is garbage collected,
+     * so the file is read in memory instead. See
+     * http://bugs.java.com/view_bug.do?bug_id=4715154
+     */
+    private static final boolean IS_WIN32 = System.getProperty("os.name").startsWith("Windows"); //$NON-NLS-1$//$NON-NLS-2$
+
     /**
      * The base file header, can be extended
      */
@@ -177,6 +198,21 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
     // Cached values
     private FileChannel fFileChannel;
 
+    /**
+     * Whether the collection was modified since it was last finished
+     */
+    private boolean fModified;
+    /**
+     * Read-only view of the file, when the collection is finished
+     */
+    private volatile ByteBuffer fMappedBuffer;
+
+    /**
+     * Lock whose write lock is taken when the mapped buffer is dropped, to
+     * invalidate the optimistic reads
+     */
+    private final StampedLock fMappingLock = new StampedLock();
+
     /**
      * Constructs a checkpoint collection for a given trace from scratch or from
      * an existing file. When the checkpoint collection is created from scratch,
@@ -206,6 +242,7 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
         }
 
         fHeader = header;
+        fModified = isCreatedFromScratch();
     }
 
     /**
@@ -345,7 +382,7 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
      * @return the size of the checkpoint collection
      */
     @Override
-    public int size() {
+    public synchronized int size() {
         return fHeader.fSize;
     }
 
@@ -377,8 +414,10 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
      *            the number of events in the trace
      */
     @Override
-    public void setNbEvents(long nbEvents) {
+    public synchronized void setNbEvents(long nbEvents) {
         fHeader.fNbEvents = nbEvents;
+        /* The indexer sets the number of events when it is done with the trace */
+        finish();
     }
 
     /**
@@ -418,6 +457,103 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
         return fRandomAccessFile.getChannel();
     }
 
+    /**
+     * Mark the collection as modified. This should be called before writing to
+     * the file, the file is then no longer read through the mapped buffer.
+     */
+    protected void setModified() {
+        long stamp = fMappingLock.writeLock();
+        try {
+            fModified = true;
+            fMappedBuffer = null;
+        } finally {
+            fMappingLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finish the collection, after which it can be read through the mapped
+     * buffer until it is modified again. This should be extended to write the
+     * data still kept in memory to the file.
+     */
+    protected void finish() {
+        fModified = false;
+    }
+
+    /**
+     * Get the read-only view of the whole file, mapping it if needed. The
+     * buffer is shared by all the readers: it must only be read with absolute
+     * gets, or through a {@link ByteBuffer#duplicate()} to move its position.
+     *
+     * @return the view of the file, or null if the collection was modified
+     *         since it was last finished, in which case the file should be
+     *         read through {@link #getRandomAccessFile()}
+     */
+    protected synchronized ByteBuffer getMappedBuffer() {
+        ByteBuffer buffer = fMappedBuffer;
+        if (buffer != null) {
+            return buffer;
+        }
+        if (fModified || fRandomAccessFile == null) {
+            return null;
+        }
+        try {
+            long size = fFileChannel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            if (IS_WIN32) {
+                buffer = ByteBuffer.allocate((int) size);
+                int read = 0;
+                while (buffer.hasRemaining() && read >= 0) {
+                    read = fFileChannel.read(buffer, buffer.position());
+                }
+                buffer.clear();
+            } else {
+                buffer = fFileChannel.map(MapMode.READ_ONLY, 0, size);
+            }
+        } catch (IOException e) {
+            Activator.logError(MessageFormat.format(Messages.IOErrorMappingIndex, fFile), e);
+            return null;
+        }
+        fMappedBuffer = buffer;
+        return buffer;
+    }
+
+    /**
+     * Start a search in the mapped buffer without the lock of the collection.
+     * The mapped buffer and the fields read after this call are only
+     * consistent if {@link #validateOptimisticRead(long)} then succeeds.
+     *
+     * @return the stamp to validate, 0 if the collection is being modified
+     */
+    protected long startOptimisticRead() {
+        return fMappingLock.tryOptimisticRead();
+    }
+
+    /**
+     * Check that the collection was not modified since an optimistic read
+     * started
+     *
+     * @param stamp
+     *            the stamp returned by {@link #startOptimisticRead()}
+     * @return true if what was read since is consistent
+     */
+    protected boolean validateOptimisticRead(long stamp) {
+        return fMappingLock.validate(stamp);
+    }
+
+    /**
+     * Get the read-only view of the whole file if it is already mapped,
+     * without the lock of the collection. It must only be read with absolute
+     * gets, in an optimistic read.
+     *
+     * @return the view of the file, or null if it is not mapped
+     */
+    protected ByteBuffer peekMappedBuffer() {
+        return fMappedBuffer;
+    }
+
     /**
      * Get the file handle for the index
      *
@@ -440,7 +576,7 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
      * Dispose and delete the checkpoint collection
      */
     @Override
-    public void delete() {
+    public synchronized void delete() {
         dispose(true);
         if (fFile.exists()) {
             fFile.delete();
@@ -451,7 +587,7 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
      * Dispose the collection and its resources
      */
     @Override
-    public void dispose() {
+    public synchronized void dispose() {
         dispose(false);
     }
 
@@ -471,6 +607,9 @@ public abstract class AbstractFileCheckpointCollection implements ICheckpointCol
             }
             setCreatedFromScratch(true);
             fRandomAccessFile = null;
+            long stamp = fMappingLock.writeLock();
+            fMappedBuffer = null;
+            fMappingLock.unlockWrite(stamp);
             String headerTrace = fHeader == null ? "No header" : "nbEvents: " + fHeader.fNbEvents + " timerange:" + fHeader.fTimeRange; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
             TmfCoreTracer.traceIndexer(this.getClass().getSimpleName() + " disposed. " + headerTrace); //$NON-NLS-1$
         } catch (IOException e) {
@@ -17,15 +17,33 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 /**
  * A BTree made of BTreeNodes representing a series of ITmfCheckpoints ordered
  * by time stamps. {@link BTreeNodeCache } is used to improve performance by
  * caching some nodes in memory and the other nodes are kept on disk.
+ * <p>
+ * The checkpoints usually arrive in order when the index is built, so a new
+ * tree is bulk loaded from the bottom up: the nodes are filled from left to
+ * right and only the rightmost node of each level is kept in memory. The
+ * checkpoints are inserted one by one in the tree once one arrives out of
+ * order.
+ * <p>
+ * Each entry of a node starts with the time stamp and the rank of its
+ * checkpoint, so that a finished tree is searched in the mapped file without
+ * restoring the checkpoints, unless their time stamps are equal to the
+ * searched one. Such a search reads the shared mapped buffer in place, without
+ * taking the lock of the tree.
  *
  * @author Marc-Andre Laperle
  */
@@ -35,8 +53,13 @@ public class BTree extends AbstractFileCheckpointCollection {
      * Typical BTree file name
      */
     public static final String INDEX_FILE_NAME = "checkpoint_btree.idx"; //$NON-NLS-1$
-    private static final int SUB_VERSION = 4;
+    private static final int SUB_VERSION = 5;
     private static final boolean ALWAYS_CACHE_ROOT = true;
+    /**
+     * The size of the key before each entry: the time stamp value and scale,
+     * and the checkpoint rank
+     */
+    private static final int ENTRY_KEY_SIZE = LONG_SIZE + INT_SIZE + LONG_SIZE;
 
     private final int fMaxNumEntries;
     private final int fMaxNumChildren;
@@ -46,9 +69,17 @@ public class BTree extends AbstractFileCheckpointCollection {
 
     // Cached values
     private int nodeSize = -1;
+    private final int fEntrySize;
     private final ByteBuffer fNodeByteBuffer;
     private final BTreeNodeCache fNodeCache;
 
+    /**
+     * The rightmost node of each level while the tree is bulk loaded, from the
+     * leaves up, or null once the checkpoints are inserted one by one
+     */
+    private List<BTreeNode> fBulkNodes;
+    private ITmfCheckpoint fLastCheckpoint;
+
     private class BTreeHeader extends CheckpointCollectionFileHeader {
         private static final int SIZE = LONG_SIZE + INT_SIZE;
         private long fRoot;
@@ -106,7 +137,8 @@ public class BTree extends AbstractFileCheckpointCollection {
      * Constructs a BTree for a given trace from scratch or from an existing
      * file. The degree is used to calibrate the number of entries in each node
      * which can affect performance. When the BTree is created from scratch, it
-     * is populated by subsequent calls to {@link #insert}.
+     * is populated by subsequent calls to {@link #insert}, and it is bulk
+     * loaded as long as the checkpoints are inserted in order.
      *
      * @param degree
      *            the degree to use in the tree
@@ -122,11 +154,16 @@ public class BTree extends AbstractFileCheckpointCollection {
         fMaxNumChildren = 2 * degree;
         fMedianEntry = degree - 1;
 
+        fEntrySize = ENTRY_KEY_SIZE + getTrace().getCheckpointSize();
         fNodeByteBuffer = ByteBuffer.allocate(getNodeSize());
         fNodeByteBuffer.clear();
         fNodeCache = new BTreeNodeCache(this);
         BTreeNode rootNode = isCreatedFromScratch() ? allocateNode() : fNodeCache.getNode(fBTreeHeader.fRoot);
         setRootNode(rootNode);
+        if (isCreatedFromScratch()) {
+            fBulkNodes = new ArrayList<>();
+            fBulkNodes.add(rootNode);
+        }
     }
 
     /**
@@ -136,10 +173,73 @@ public class BTree extends AbstractFileCheckpointCollection {
      *            the checkpoint to insert
      */
     @Override
-    public void insert(ITmfCheckpoint checkpoint) {
+    public synchronized void insert(ITmfCheckpoint checkpoint) {
+        setModified();
+        if (fBulkNodes != null) {
+            int compare = fLastCheckpoint == null ? 1 : checkpoint.compareTo(fLastCheckpoint);
+            if (compare == 0) {
+                // Already there, no insert
+                return;
+            } else if (compare > 0) {
+                bulkInsert(checkpoint, 0, BTreeNode.NULL_CHILD);
+                fLastCheckpoint = checkpoint;
+                ++getHeader().fSize;
+                return;
+            }
+            finishBulkLoad();
+        }
         insert(checkpoint, fBTreeHeader.fRoot, null, 0);
     }
 
+    /**
+     * Append a checkpoint to the rightmost node of a level. When that node is
+     * full, it is written to disk and the checkpoint moves up to separate it
+     * from the next node of the level.
+     *
+     * @param checkpoint
+     *            the checkpoint, greater than all the checkpoints of the tree
+     * @param level
+     *            the level, 0 being the leaves
+     * @param leftChild
+     *            the offset of the child on the left of the checkpoint
+     */
+    private void bulkInsert(ITmfCheckpoint checkpoint, int level, long leftChild) {
+        if (level == fBulkNodes.size()) {
+            fBulkNodes.add(allocateNode());
+        }
+        BTreeNode node = fBulkNodes.get(level);
+        int numEntries = node.getNumEntries();
+        node.setChild(numEntries, leftChild);
+        if (numEntries < fMaxNumEntries) {
+            node.setEntry(numEntries, checkpoint);
+            return;
+        }
+        node.serializeOut();
+        fBulkNodes.set(level, allocateNode());
+        bulkInsert(checkpoint, level + 1, node.getOffset());
+    }
+
+    /**
+     * Link the rightmost nodes of the levels to their parent and write them to
+     * disk. The top one becomes the root.
+     */
+    private void finishBulkLoad() {
+        List<BTreeNode> nodes = fBulkNodes;
+        fBulkNodes = null;
+        fLastCheckpoint = null;
+        BTreeNode child = null;
+        for (BTreeNode node : nodes) {
+            if (child != null) {
+                node.setChild(node.getNumEntries(), child.getOffset());
+            }
+            node.serializeOut();
+            child = node;
+        }
+        if (child != null && child.getOffset() != fBTreeHeader.fRoot) {
+            setRootNode(child);
+        }
+    }
+
     private void setRootNode(BTreeNode newRootNode) {
         fBTreeHeader.fRoot = newRootNode.getOffset();
         if (ALWAYS_CACHE_ROOT) {
@@ -252,13 +352,55 @@ public class BTree extends AbstractFileCheckpointCollection {
     int getNodeSize() {
         if (nodeSize == -1) {
             nodeSize = INT_SIZE; // num entries
-            nodeSize += getTrace().getCheckpointSize() * fMaxNumEntries;
+            nodeSize += fEntrySize * fMaxNumEntries;
             nodeSize += LONG_SIZE * fMaxNumChildren;
         }
 
         return nodeSize;
     }
 
+    /**
+     * Get the size of an entry in a node, its key and its checkpoint
+     *
+     * @return the size of an entry
+     */
+    int getEntrySize() {
+        return fEntrySize;
+    }
+
+    /**
+     * Write an entry of a node
+     *
+     * @param bb
+     *            the buffer of the node
+     * @param position
+     *            the position of the entry in the buffer
+     * @param checkpoint
+     *            the checkpoint of the entry
+     */
+    void writeEntry(ByteBuffer bb, int position, ITmfCheckpoint checkpoint) {
+        bb.position(position);
+        TmfTimestamp.serialize(bb, checkpoint.getTimestamp());
+        bb.putLong(checkpoint.getCheckpointRank());
+        checkpoint.serialize(bb);
+    }
+
+    /**
+     * Read the checkpoint of an entry of a node
+     *
+     * @param bb
+     *            the buffer of the node
+     * @param position
+     *            the position of the entry in the buffer
+     * @return the checkpoint of the entry
+     */
+    ITmfCheckpoint readEntry(ByteBuffer bb, int position) {
+        bb.position(position + ENTRY_KEY_SIZE);
+        ITmfLocation location = getTrace().restoreLocation(bb);
+        ITmfTimestamp timeStamp = TmfTimestamp.create(bb);
+        return new TmfCheckpoint(timeStamp, location, bb);
+    }
+
     private BTreeNode allocateNode() {
         try {
             long offset = getRandomAccessFile().length();
@@ -273,28 +415,191 @@ public class BTree extends AbstractFileCheckpointCollection {
 
     @Override
     public long binarySearch(ITmfCheckpoint checkpoint) {
+        if (checkpoint.getTimestamp() != null) {
+            long stamp = startOptimisticRead();
+            ByteBuffer mappedBuffer = peekMappedBuffer();
+            if (stamp != 0 && mappedBuffer != null) {
+                try {
+                    long rank = binarySearch(mappedBuffer, fBTreeHeader.fRoot, checkpoint);
+                    if (validateOptimisticRead(stamp)) {
+                        return rank;
+                    }
+                } catch (RuntimeException e) {
+                    /* A modification of the file can make the search fail */
+                    if (validateOptimisticRead(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        return lockedBinarySearch(checkpoint);
+    }
+
+    private synchronized long lockedBinarySearch(ITmfCheckpoint checkpoint) {
+        ByteBuffer mappedBuffer = getMappedBuffer();
+        if (mappedBuffer != null && checkpoint.getTimestamp() != null) {
+            return binarySearch(mappedBuffer, fBTreeHeader.fRoot, checkpoint);
+        }
         BTreeCheckpointVisitor v = new BTreeCheckpointVisitor(checkpoint);
         accept(v);
         return v.getCheckpointRank();
     }
 
+    /**
+     * Search a checkpoint in the mapped file. This is the same search as
+     * {@link #accept(IBTreeVisitor)} with a {@link BTreeCheckpointVisitor},
+     * but the entries are compared in place, with absolute reads so that the
+     * mapped buffer can be shared.
+     */
+    private long binarySearch(ByteBuffer bb, long root, ITmfCheckpoint checkpoint) {
+        long rank = -1;
+        boolean exactFound = false;
+        long nodeOffset = root;
+        while (nodeOffset != BTreeNode.NULL_CHILD) {
+            int node = (int) nodeOffset;
+            int numEntries = bb.getInt(node + LONG_SIZE * fMaxNumChildren);
+
+            // Binary search to find first entry greater or equal.
+            int lower = 0;
+            int upper = Math.min(numEntries, fMaxNumEntries - 1);
+            while (lower < upper) {
+                int middle = (lower + upper) / 2;
+                int entry = getEntryPosition(node, middle);
+                int compare = compareEntry(bb, entry, checkpoint);
+                if (compare <= 0 && !exactFound) {
+                    rank = bb.getLong(entry + LONG_SIZE + INT_SIZE);
+                    exactFound = (compare == 0);
+                }
+                if (compare == 0) {
+                    return rank;
+                } else if (compare > 0) {
+                    upper = middle;
+                } else {
+                    lower = middle + 1;
+                }
+            }
+
+            // Start with first record greater or equal
+            int i = lower;
+            for (; i < numEntries; ++i) {
+                int entry = getEntryPosition(node, i);
+                int compare = compareEntry(bb, entry, checkpoint);
+                if (compare <= 0 && !exactFound) {
+                    rank = bb.getLong(entry + LONG_SIZE + INT_SIZE);
+                    exactFound = (compare == 0);
+                }
+                if (compare > 0) {
+                    // Start point is to the left.
+                    break;
+                } else if (compare == 0) {
+                    return rank;
+                }
+            }
+            nodeOffset = bb.getLong(node + LONG_SIZE * i);
+        }
+        return exactFound ? rank : -(rank + 1) - 1;
+    }
+
+    private int getEntryPosition(int node, int index) {
+        return node + LONG_SIZE * fMaxNumChildren + INT_SIZE + fEntrySize * index;
+    }
+
+    /**
+     * Compare the checkpoint of an entry to a searched checkpoint, like
+     * {@link ITmfCheckpoint#compareTo}. The time stamps are compared as raw
+     * values. The checkpoint of the entry is only restored if its time stamp
+     * is equal to the searched one and the searched location is not null.
+     */
+    private int compareEntry(ByteBuffer bb, int entry, ITmfCheckpoint checkpoint) {
+        ITmfTimestamp timestamp = checkpoint.getTimestamp();
+        long value = bb.getLong(entry);
+        int scale = bb.getInt(entry + LONG_SIZE);
+        int compare;
+        if (timestamp == TmfTimestamp.BIG_BANG) {
+            compare = 1;
+        } else if (timestamp == TmfTimestamp.BIG_CRUNCH) {
+            compare = -1;
+        } else if (scale == timestamp.getScale()) {
+            compare = Long.compare(value, timestamp.getValue());
+        } else if (scale > timestamp.getScale()) {
+            compare = compareScaled(value, scale - timestamp.getScale(), timestamp.getValue());
+        } else {
+            compare = -compareScaled(timestamp.getValue(), timestamp.getScale() - scale, value);
+        }
+        if (compare != 0) {
+            return compare;
+        }
+        if (checkpoint.getLocation() == null) {
+            // A null location is before any location
+            return 1;
+        }
+        /* The shared buffer is not moved, the entry is read from a view */
+        return readEntry(bb.duplicate(), entry).compareTo(checkpoint);
+    }
+
+    /**
+     * Compare a value of a larger scale with a value of a smaller scale,
+     * without creating time stamps. A value that does not fit in a long once
+     * scaled is larger or smaller than any long, as when a time stamp
+     * saturates.
+     *
+     * @param value
+     *            the value of the larger scale
+     * @param scaleDifference
+     *            the difference between the two scales, greater than 0
+     * @param other
+     *            the value of the smaller scale
+     * @return the comparison of value * 10^scaleDifference with other
+     */
+    private static int compareScaled(long value, int scaleDifference, long other) {
+        if (value == 0) {
+            return Long.compare(0, other);
+        }
+        long factor = 1;
+        for (int i = 0; i < scaleDifference; i++) {
+            if (factor > Long.MAX_VALUE / 10) {
+                return (value > 0) ? 1 : -1;
+            }
+            factor *= 10;
+        }
+        long limit = Long.MAX_VALUE / factor;
+        if (value > limit || value < -limit) {
+            return (value > 0) ? 1 : -1;
+        }
+        return Long.compare(value * factor, other);
+    }
+
     /**
      * Accept a visitor. This visitor is used to search through the whole tree.
      *
      * @param treeVisitor
      *            the visitor to accept
      */
-    public void accept(IBTreeVisitor treeVisitor) {
-        accept(fBTreeHeader.fRoot, treeVisitor);
+    public synchronized void accept(IBTreeVisitor treeVisitor) {
+        if (getRandomAccessFile() == null) {
+            return;
+        }
+        if (fBulkNodes != null) {
+            int top = fBulkNodes.size() - 1;
+            accept(fBulkNodes.get(top), top, treeVisitor);
+        } else {
+            accept(fBTreeHeader.fRoot, treeVisitor);
+        }
     }
 
     private void accept(long nodeOffset, IBTreeVisitor visitor) {
-
-        if (nodeOffset == BTreeNode.NULL_CHILD || getRandomAccessFile() == null) {
+        if (nodeOffset == BTreeNode.NULL_CHILD) {
             return;
         }
+        accept(fNodeCache.getNode(nodeOffset), -1, visitor);
+    }
 
-        BTreeNode node = fNodeCache.getNode(nodeOffset);
+    /**
+     * Accept a visitor on a node. The level is the one of the node while the
+     * tree is bulk loaded, or -1 if the node is not the rightmost one of its
+     * level.
+     */
+    private void accept(BTreeNode node, int level, IBTreeVisitor visitor) {
 
         // Binary search to find first entry greater or equal.
         int lower = 0;
@@ -331,16 +636,25 @@ public class BTree extends AbstractFileCheckpointCollection {
             int compare = visitor.compare(record);
             if (compare > 0) {
                 // Start point is to the left.
-                accept(node.getChild(i), visitor);
+                acceptChild(node, i, level, visitor);
                 return;
             } else if (compare == 0) {
                 return;
             }
         }
-        accept(node.getChild(i), visitor);
+        acceptChild(node, i, level, visitor);
         return;
     }
 
+    private void acceptChild(BTreeNode node, int index, int level, IBTreeVisitor visitor) {
+        if (level > 0 && index == node.getNumEntries()) {
+            // The last child is the rightmost node of the level below
+            accept(fBulkNodes.get(level - 1), level - 1, visitor);
+        } else {
+            accept(node.getChild(index), visitor);
+        }
+    }
+
     /**
      * Get the maximum number of entries in a node
      *
@@ -364,8 +678,23 @@ public class BTree extends AbstractFileCheckpointCollection {
     }
 
     @Override
-    public void dispose() {
+    protected synchronized void finish() {
+        if (getRandomAccessFile() == null) {
+            return;
+        }
+        if (fBulkNodes != null) {
+            finishBulkLoad();
+        }
+        fNodeCache.serialize();
+        super.finish();
+    }
+
+    @Override
+    public synchronized void dispose() {
         if (fNodeCache != null && getRandomAccessFile() != null) {
+            if (fBulkNodes != null) {
+                finishBulkLoad();
+            }
             fNodeCache.serialize();
         }
 
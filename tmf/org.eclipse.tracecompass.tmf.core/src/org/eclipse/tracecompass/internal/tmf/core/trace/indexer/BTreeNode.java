@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -18,11 +18,7 @@ import java.text.MessageFormat;
 import java.util.Arrays;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
-import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
-import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 /**
  * A node in the BTree. A node contains entries and pointers to other nodes.
@@ -94,12 +90,16 @@ class BTreeNode {
      */
     void serializeIn() {
         try {
-            fTree.getRandomAccessFile().seek(fFileOffset);
-
-            ByteBuffer bb;
-            bb = fTree.getNodeByteBuffer();
-            bb.clear();
-            fTree.getRandomAccessFile().read(bb.array());
+            ByteBuffer bb = fTree.getMappedBuffer();
+            if (bb != null) {
+                bb = bb.duplicate();
+                bb.position((int) fFileOffset);
+            } else {
+                fTree.getRandomAccessFile().seek(fFileOffset);
+                bb = fTree.getNodeByteBuffer();
+                bb.clear();
+                fTree.getRandomAccessFile().read(bb.array());
+            }
 
             for (int i = 0; i < fTree.getMaxNumChildren(); ++i) {
                 long offset = bb.getLong();
@@ -110,12 +110,9 @@ class BTreeNode {
             }
             fNumEntries = bb.getInt();
 
+            int entriesPosition = bb.position();
             for (int i = 0; i < fNumEntries; ++i) {
-
-                ITmfLocation location = fTree.getTrace().restoreLocation(bb);
-                ITmfTimestamp timeStamp = TmfTimestamp.create(bb);
-                TmfCheckpoint c = new TmfCheckpoint(timeStamp, location, bb);
-                fEntries[i] = c;
+                fEntries[i] = fTree.readEntry(bb, entriesPosition + i * fTree.getEntrySize());
             }
             fIsDirty = false;
 
@@ -139,9 +136,9 @@ class BTreeNode {
             }
             bb.putInt(fNumEntries);
 
+            int entriesPosition = bb.position();
             for (int i = 0; i < fNumEntries; ++i) {
-                ITmfCheckpoint key = fEntries[i];
-                key.serialize(bb);
+                fTree.writeEntry(bb, entriesPosition + i * fTree.getEntrySize(), fEntries[i]);
             }
 
             fTree.getRandomAccessFile().write(bb.array());
@@ -163,6 +160,15 @@ class BTreeNode {
         return fEntries[index];
     }
 
+    /**
+     * Get the number of entries in the node
+     *
+     * @return the number of entries
+     */
+    int getNumEntries() {
+        return fNumEntries;
+    }
+
     long getChild(int index) {
         long childOffset = fChildrenFileOffsets[index];
         if (childOffset < 0 && childOffset != NULL_CHILD) {
@@ -27,7 +27,8 @@ import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 /**
  * An array of checkpoints stored on disk. It is very efficient for searching
- * checkpoints by rank (O(1))
+ * checkpoints by rank (O(1)), and once it is finished the checkpoints are read
+ * from the mapped file without system calls.
  *
  * @author Marc-Andre Laperle
  */
@@ -66,8 +67,9 @@ public class FlatArray extends AbstractFileCheckpointCollection {
      *            the checkpoint to insert
      */
     @Override
-    public void insert(ITmfCheckpoint checkpoint) {
+    public synchronized void insert(ITmfCheckpoint checkpoint) {
         try {
+            setModified();
             CheckpointCollectionFileHeader header = getHeader();
             ++header.fSize;
             getRandomAccessFile().seek(getRandomAccessFile().length());
@@ -86,25 +88,38 @@ public class FlatArray extends AbstractFileCheckpointCollection {
      *            the rank to search
      * @return the checkpoint that has been found or null if not found
      */
-    public ITmfCheckpoint get(long rank) {
+    public synchronized ITmfCheckpoint get(long rank) {
         ITmfCheckpoint checkpoint = null;
         try {
             long pos = getHeader().getSize() + fCheckpointSize * rank;
             if (getRandomAccessFile() == null) {
                 return null;
             }
+            ByteBuffer mappedBuffer = getMappedBuffer();
+            if (mappedBuffer != null) {
+                if (rank < 0 || rank >= getHeader().fSize) {
+                    return null;
+                }
+                ByteBuffer buffer = mappedBuffer.duplicate();
+                buffer.position((int) pos);
+                return readCheckpoint(buffer);
+            }
             getRandomAccessFile().seek(pos);
             fByteBuffer.clear();
             getRandomAccessFile().read(fByteBuffer.array());
-            ITmfLocation location = getTrace().restoreLocation(fByteBuffer);
-            ITmfTimestamp timeStamp = TmfTimestamp.create(fByteBuffer);
-            checkpoint = new TmfCheckpoint(timeStamp, location, fByteBuffer);
+            checkpoint = readCheckpoint(fByteBuffer);
         } catch (IOException e) {
             Activator.logError(MessageFormat.format(Messages.FlatArray_IOErrorReading, getFile()), e);
         }
         return checkpoint;
     }
 
+    private ITmfCheckpoint readCheckpoint(ByteBuffer buffer) {
+        ITmfLocation location = getTrace().restoreLocation(buffer);
+        ITmfTimestamp timeStamp = TmfTimestamp.create(buffer);
+        return new TmfCheckpoint(timeStamp, location, buffer);
+    }
+
     /**
      * Search for a checkpoint and return the rank.
      *
@@ -114,7 +129,7 @@ public class FlatArray extends AbstractFileCheckpointCollection {
      *         contained in the index; otherwise, (-(insertion point) - 1).
      */
     @Override
-    public long binarySearch(ITmfCheckpoint checkpoint) {
+    public synchronized long binarySearch(ITmfCheckpoint checkpoint) {
         if (getHeader().fSize == 1) {
             return 0;
         }
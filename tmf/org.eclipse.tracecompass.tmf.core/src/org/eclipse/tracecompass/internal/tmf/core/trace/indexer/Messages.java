@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -41,6 +41,10 @@ public class Messages extends NLS {
      * I/O Error writing header from disk
      */
     public static String IOErrorWritingHeader;
+    /**
+     * I/O Error mapping the index in memory
+     */
+    public static String IOErrorMappingIndex;
     /**
      * I/O Error reading node from disk
      */
@@ -0,0 +1,425 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.indexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.Messages;
+import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfEventParser;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+
+/**
+ * Indexer of line-based text traces that locates the events without parsing
+ * them.
+ * <p>
+ * When the index is built from scratch, the trace file is memory-mapped and
+ * split in chunks that are scanned concurrently. The line starts are found by
+ * scanning the bytes a word at a time, and each line is tested with the first
+ * line predicate of the trace, which tells whether it starts an event. Only
+ * the events at the checkpoints, and the last one, are then parsed to get
+ * their timestamp. The time range of the trace is computed from these
+ * timestamps, which gives the exact range when the events are in time order.
+ * <p>
+ * The checkpoints are written in the B-tree index, and the regular indexing
+ * request then completes the index from the end of the scanned events, so an
+ * index that was restored from disk or that is updated as the file grows is
+ * handled as by {@link TmfBTreeTraceIndexer}.
+ * <p>
+ * The first line predicate is called concurrently with strings decoded as
+ * {@link org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile#getNextLine()}
+ * does, so it must be thread-safe and must not depend on the previous lines.
+ */
+public class TmfTextLineIndexer extends TmfBTreeTraceIndexer {
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "TMF Text Line Indexer"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Default size of the chunks of the file scanned by each task */
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /** Size mapped past the end of a chunk, to finish its last line */
+    private static final int LINE_OVERRUN = 64 * 1024;
+
+    /** Number of chunks scanned ahead of the one being consumed, per thread */
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final ITmfEventParser fParser;
+    private final int fInterval;
+    private final Predicate<String> fFirstLine;
+    private final int fChunkSize;
+    private volatile @Nullable Job fScanJob;
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace to index, which parses its events from a location
+     *            that is the offset of their first line
+     * @param interval
+     *            the checkpoints interval
+     * @param firstLine
+     *            the predicate that tells whether a line is the first line of
+     *            an event
+     */
+    public <T extends ITmfTrace & ITmfEventParser> TmfTextLineIndexer(T trace, int interval, Predicate<String> firstLine) {
+        this(trace, interval, firstLine, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor with a specific chunk size
+     *
+     * @param trace
+     *            the trace to index, which parses its events from a location
+     *            that is the offset of their first line
+     * @param interval
+     *            the checkpoints interval
+     * @param firstLine
+     *            the predicate that tells whether a line is the first line of
+     *            an event
+     * @param chunkSize
+     *            the size in bytes of the chunks of the file that are scanned
+     *            concurrently
+     */
+    public <T extends ITmfTrace & ITmfEventParser> TmfTextLineIndexer(T trace, int interval, Predicate<String> firstLine, int chunkSize) {
+        super(trace, interval);
+        fParser = trace;
+        fInterval = interval;
+        fFirstLine = firstLine;
+        fChunkSize = chunkSize;
+    }
+
+    @Override
+    public void dispose() {
+        Job job = fScanJob;
+        if (job != null) {
+            job.cancel();
+            /* Let the job discard its checkpoints before the index is disposed */
+            try {
+                job.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.dispose();
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return fScanJob != null || super.isIndexing();
+    }
+
+    @Override
+    public void buildIndex(long offset, TmfTimeRange range, boolean waitForCompletion) {
+        Job job = null;
+        synchronized (fTraceIndex) {
+            if (fScanJob != null) {
+                return;
+            }
+            /* An empty index may also be restored from a scan that was discarded */
+            if (offset == 0 && fTraceIndex.isEmpty() && fTraceIndex.getNbEvents() == 0 && !super.isIndexing()) {
+                job = new ScanJob(range, !waitForCompletion);
+                fScanJob = job;
+            }
+        }
+        if (job == null) {
+            super.buildIndex(offset, range, waitForCompletion);
+            return;
+        }
+        job.schedule();
+        if (waitForCompletion) {
+            try {
+                job.join();
+            } catch (InterruptedException e) {
+                return;
+            }
+            IStatus result = job.getResult();
+            if (result != null && result.isOK()) {
+                super.buildIndex(fTraceIndex.getNbEvents(), range, true);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Scanning
+    // ------------------------------------------------------------------------
+
+    private final class ScanJob extends Job {
+        private final TmfTimeRange fRange;
+        private final boolean fContinue;
+
+        private ScanJob(TmfTimeRange range, boolean continueIndexing) {
+            super(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName());
+            fRange = range;
+            fContinue = continueIndexing;
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            long nbEvents = 0;
+            boolean scanned = false;
+            try {
+                nbEvents = scan(SubMonitor.convert(monitor));
+                scanned = !monitor.isCanceled();
+            } catch (IOException | ExecutionException e) {
+                Activator.logError("Error scanning file: " + fTrace.getPath(), e); //$NON-NLS-1$
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                /* Same lock order as seekIndex(), the trace may be read meanwhile */
+                synchronized (TmfTextLineIndexer.this) {
+                    synchronized (fTraceIndex) {
+                        if (scanned) {
+                            /* This finishes the bulk load of the B-tree */
+                            fTraceIndex.setNbEvents(nbEvents);
+                        } else {
+                            discardIndex();
+                            nbEvents = 0;
+                        }
+                        fScanJob = null;
+                    }
+                }
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            /* Complete the index from the last scanned event */
+            if (fContinue) {
+                TmfTextLineIndexer.super.buildIndex(nbEvents, fRange, false);
+            }
+            return Status.OK_STATUS;
+        }
+    }
+
+    /**
+     * Scan the file, insert the checkpoints and update the trace attributes.
+     * The index is only finished by the caller once the scan succeeds. When
+     * it fails or is cancelled, the checkpoints inserted so far are discarded
+     * and the regular indexing starts from the beginning of the trace.
+     *
+     * @return the number of events found
+     */
+    private long scan(SubMonitor monitor) throws IOException, InterruptedException, ExecutionException {
+        long nbEvents = 0;
+        ITmfTimestamp startTime = null;
+        ITmfTimestamp endTime = null;
+        long lastOffset = -1;
+        Deque<Future<int[]>> pending = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(fTrace.getPath()), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            monitor.beginTask("", (int) ((fileSize + fChunkSize - 1) / fChunkSize)); //$NON-NLS-1$
+            int maxPending = Runtime.getRuntime().availableProcessors() * CHUNKS_AHEAD_PER_THREAD;
+            long nextChunk = 0;
+            long chunkStart = 0;
+            try {
+                while (true) {
+                    while (pending.size() < maxPending && nextChunk < fileSize) {
+                        long start = nextChunk;
+                        long end = Math.min(fileSize, start + fChunkSize);
+                        pending.add(EXECUTOR.submit(() -> scanChunk(channel, fileSize, start, end)));
+                        nextChunk = end;
+                    }
+                    Future<int[]> future = pending.poll();
+                    if (future == null || monitor.isCanceled()) {
+                        break;
+                    }
+                    int[] offsets = future.get();
+
+                    /* The events of this chunk that are at a checkpoint */
+                    for (long i = (fInterval - nbEvents % fInterval) % fInterval; i < offsets.length; i += fInterval) {
+                        long rank = nbEvents + i;
+                        ITmfTimestamp timestamp = insertCheckpoint(rank, chunkStart + offsets[(int) i]);
+                        startTime = (startTime == null || startTime.compareTo(timestamp) > 0) ? timestamp : startTime;
+                        endTime = (endTime == null || endTime.compareTo(timestamp) < 0) ? timestamp : endTime;
+                    }
+                    if (offsets.length > 0) {
+                        lastOffset = chunkStart + offsets[offsets.length - 1];
+                    }
+                    nbEvents += offsets.length;
+                    chunkStart = Math.min(fileSize, chunkStart + fChunkSize);
+                    monitor.worked(1);
+                }
+            } finally {
+                for (Future<int[]> future : pending) {
+                    future.cancel(false);
+                }
+            }
+        }
+        if (monitor.isCanceled() || nbEvents == 0) {
+            return 0;
+        }
+
+        ITmfEvent lastEvent = fParser.parseEvent(new TmfContext(new TmfLongLocation(lastOffset), nbEvents - 1));
+        if (lastEvent != null && (endTime == null || endTime.compareTo(lastEvent.getTimestamp()) < 0)) {
+            endTime = lastEvent.getTimestamp();
+        }
+        if (startTime != null && endTime != null) {
+            TmfCoreTracer.traceIndexer("Scanned text trace. nbEvents: " + nbEvents + " time range: " + startTime + '-' + endTime); //$NON-NLS-1$ //$NON-NLS-2$
+            fTrace.broadcast(new TmfTraceUpdatedSignal(this, fTrace, new TmfTimeRange(startTime, endTime), nbEvents));
+        }
+        return nbEvents;
+    }
+
+    /**
+     * Discard the checkpoints of an incomplete scan, so that the index is not
+     * finished or saved with them.
+     */
+    private void discardIndex() {
+        if (fTraceIndex instanceof TmfBTreeTraceIndex) {
+            ((TmfBTreeTraceIndex) fTraceIndex).clear();
+        }
+    }
+
+    private ITmfTimestamp insertCheckpoint(long rank, long offset) throws IOException {
+        TmfLongLocation location = new TmfLongLocation(offset);
+        ITmfEvent event = fParser.parseEvent(new TmfContext(location, rank));
+        if (event == null) {
+            throw new IOException("No event at offset " + offset); //$NON-NLS-1$
+        }
+        ITmfTimestamp timestamp = event.getTimestamp();
+        long position = rank / fInterval;
+        /* Same as updateIndex(), the trace may be read while it is scanned */
+        synchronized (this) {
+            if (fTraceIndex.size() == position) {
+                fTraceIndex.insert(new TmfCheckpoint(timestamp, location, position));
+            }
+        }
+        return timestamp;
+    }
+
+    /**
+     * Find the events that start in a chunk of the file.
+     *
+     * @return the offsets of the first lines of the events, relative to the
+     *         start of the chunk
+     */
+    private int[] scanChunk(FileChannel channel, long fileSize, long chunkStart, long chunkEnd) throws IOException {
+        int[] offsets = new int[1024];
+        int count = 0;
+        byte[] bytes = new byte[256];
+
+        /* Map from the previous byte, to know whether a line starts at the chunk start */
+        long mapStart = Math.max(0, chunkStart - 1);
+        ByteBuffer buffer = map(channel, mapStart, Math.min(fileSize, chunkEnd + LINE_OVERRUN) - mapStart);
+        int pos = 0;
+        if (chunkStart > 0) {
+            int newline = indexOfNewline(buffer, 0);
+            if (newline < 0) {
+                return new int[0];
+            }
+            pos = newline + 1;
+        }
+
+        while (mapStart + pos < chunkEnd) {
+            int newline = indexOfNewline(buffer, pos);
+            long mapEnd = mapStart + buffer.limit();
+            if (newline < 0 && mapEnd < fileSize) {
+                /* The line goes past the mapped region, map a larger one from its start */
+                long length = mapEnd - mapStart;
+                if (length == Integer.MAX_VALUE) {
+                    throw new IOException("Line too long at offset " + (mapStart + pos)); //$NON-NLS-1$
+                }
+                mapStart += pos;
+                buffer = map(channel, mapStart, Math.min(fileSize - mapStart, Math.min(Integer.MAX_VALUE, 2 * length)));
+                pos = 0;
+                continue;
+            }
+            int lineEnd = (newline < 0) ? buffer.limit() : newline;
+            int length = lineEnd - pos;
+            if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+                length--;
+            }
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            buffer.position(pos);
+            buffer.get(bytes, 0, length);
+            if (fFirstLine.test(new String(bytes, 0, length, StandardCharsets.UTF_8))) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, 2 * count);
+                }
+                offsets[count++] = (int) (mapStart + pos - chunkStart);
+            }
+            if (newline < 0) {
+                break;
+            }
+            pos = newline + 1;
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Find the next line feed in a buffer, eight bytes at a time. The bytes of
+     * a word that are line feeds become zero when xor-ed with a word of line
+     * feeds, and the lowest zero byte of a word is the lowest byte whose high
+     * bit is set after subtracting one from each byte.
+     *
+     * @return the index of the line feed, or -1 if there is none
+     */
+    private static int indexOfNewline(ByteBuffer buffer, int from) {
+        int limit = buffer.limit();
+        int i = from;
+        for (; i <= limit - Long.BYTES; i += Long.BYTES) {
+            long word = buffer.getLong(i) ^ NEWLINES;
+            long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
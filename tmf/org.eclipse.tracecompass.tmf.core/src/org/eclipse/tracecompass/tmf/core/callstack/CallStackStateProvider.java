@@ -121,7 +121,7 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
         /* Check if the event is a function entry */
         ITmfStateValue functionEntryName = functionEntry(event);
         if (functionEntryName != null) {
-            long timestamp = event.getTimestamp().toNanos();
+            long timestamp = event.getTimestampNanos();
 
             String processName = getProcessName(event);
             int processId = getProcessId(event);
@@ -148,7 +148,7 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
         /* Check if the event is a function exit */
         ITmfStateValue functionExitState = functionExit(event);
         if (functionExitState != null) {
-            long timestamp = event.getTimestamp().toNanos();
+            long timestamp = event.getTimestampNanos();
             String processName = getProcessName(event);
             if (processName == null) {
                 int processId = getProcessId(event);
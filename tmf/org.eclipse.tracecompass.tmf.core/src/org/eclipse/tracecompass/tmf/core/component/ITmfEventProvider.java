@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -66,6 +66,31 @@ public interface ITmfEventProvider extends ITmfComponent {
      */
     ITmfEvent getNext(ITmfContext context);
 
+    /**
+     * Read the next events based on the context supplied, into an array. The
+     * context will be updated for the subsequent read.
+     *
+     * @param context
+     *            the trace read context (updated)
+     * @param events
+     *            the array to fill, from index 0
+     * @param max
+     *            the maximum number of events to read
+     * @return the number of events read, 0 if there are no more events
+     * @since 2.2
+     */
+    default int getNext(ITmfContext context, ITmfEvent[] events, int max) {
+        int count = 0;
+        while (count < max) {
+            ITmfEvent event = getNext(context);
+            if (event == null) {
+                break;
+            }
+            events[count++] = event;
+        }
+        return count;
+    }
+
     /**
      * Gets the parent event provider.
      *
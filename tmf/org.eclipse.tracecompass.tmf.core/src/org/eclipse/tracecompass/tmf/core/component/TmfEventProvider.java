@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -22,8 +22,10 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
@@ -39,7 +41,6 @@ import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.signal.TmfEndSynchSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfStartSynchSignal;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 
 /**
@@ -60,8 +61,24 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
     /** Default amount of events per request "chunk" */
     public static final int DEFAULT_BLOCK_SIZE = 50000;
 
-    /** Delay for coalescing background requests (in milli-seconds) */
-    private static final long DELAY = 1000;
+    /**
+     * System property holding the maximum delay for coalescing background
+     * requests, in microseconds
+     */
+    private static final String COALESCING_DELAY_PROPERTY = "org.eclipse.tracecompass.tmf.core.coalescingDelay"; //$NON-NLS-1$
+
+    /** Default maximum delay for coalescing background requests (in microseconds) */
+    private static final long DEFAULT_COALESCING_DELAY = 100000;
+
+    /** Maximum delay for coalescing background requests (in microseconds) */
+    private static final long COALESCING_DELAY = Math.max(0, Long.getLong(COALESCING_DELAY_PROPERTY, DEFAULT_COALESCING_DELAY));
+
+    /** Timer firing the background requests held for coalescing */
+    private static final ScheduledExecutorService COALESCING_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "TMF Request Coalescing"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // ------------------------------------------------------------------------
     // Attributes
@@ -70,6 +87,9 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
     /** List of coalesced requests */
     private final List<TmfCoalescedEventRequest> fPendingCoalescedRequests = new LinkedList<>();
 
+    /** List of coalesced requests that were queued and may be running */
+    private final List<TmfCoalescedEventRequest> fRunningCoalescedRequests = new LinkedList<>();
+
     /** The type of event handled by this provider */
     private Class<? extends ITmfEvent> fType;
 
@@ -81,10 +101,11 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
 
     private int fRequestPendingCounter = 0;
 
-    private Timer fTimer;
+    /** Whether the provider is initialized and not disposed */
+    private boolean fIsActive;
 
-    /** Current timer task */
-    @NonNull private TimerTask fCurrentTask = new TimerTask() { @Override public void run() {} };
+    /** Pending firing of the held background requests */
+    private ScheduledFuture<?> fFireTask;
 
     private boolean fIsTimerEnabled;
 
@@ -108,6 +129,7 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
         super();
         setTimerEnabled(true);
         fExecutor = new TmfRequestExecutor();
+        fExecutor.setSlotListener(() -> fireHeldRequests());
     }
 
     /**
@@ -139,7 +161,7 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
         fSignalDepth = 0;
 
         synchronized (fLock) {
-             fTimer = new Timer();
+            fIsActive = true;
         }
 
         TmfProviderManager.register(fType, this);
@@ -150,10 +172,11 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
         TmfProviderManager.deregister(fType, this);
         fExecutor.stop();
         synchronized (fLock) {
-            if (fTimer != null) {
-                fTimer.cancel();
+            if (fFireTask != null) {
+                fFireTask.cancel(false);
+                fFireTask = null;
             }
-            fTimer = null;
+            fIsActive = false;
         }
 
         synchronized (fChildren) {
@@ -184,10 +207,14 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
 
     @Override
     public void sendRequest(final ITmfEventRequest request) {
+        if (attachToRunningRequest(request)) {
+            return;
+        }
+
         synchronized (fLock) {
 
             if (TmfCoreTracer.isRequestTraced()) {
-                TmfCoreTracer.traceRequest(request.getRequestId(), "SENT to provider " + getName()); //$NON-NLS-1$
+                TmfCoreTracer.traceRequestSent(request.getRequestId(), "SENT to provider " + getName()); //$NON-NLS-1$
             }
 
             if (request.getProviderFilter() == null) {
@@ -208,9 +235,10 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
             }
 
             /*
-             * Dispatch request in case timer is not running.
+             * Dispatch request in case the provider is not initialized or was
+             * disposed.
              */
-            if (fTimer == null) {
+            if (!fIsActive) {
                 queueRequest(request);
                 return;
             }
@@ -218,18 +246,81 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
             coalesceEventRequest(request);
 
             if (fIsTimerEnabled) {
-                fCurrentTask.cancel();
-                fCurrentTask = new TimerTask() {
-                    @Override
-                    public void run() {
-                        synchronized (fLock) {
-                            fireRequest(true);
-                        }
-                    }
-                };
-                fTimer.schedule(fCurrentTask, DELAY);
+                if (fRequestPendingCounter == 0 && fExecutor.hasFreeSlot()) {
+                    /*
+                     * The request would start right away, do not delay it.
+                     * Requests sent later can still join it while it runs.
+                     */
+                    fireRequest(true);
+                } else if (fFireTask == null) {
+                    /*
+                     * Hold the request until a slot is freed, at most for the
+                     * coalescing delay. The delay is not extended by the
+                     * requests that arrive meanwhile.
+                     */
+                    fFireTask = COALESCING_TIMER.schedule(() -> fireHeldRequests(), COALESCING_DELAY, TimeUnit.MICROSECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fire the background requests held for coalescing, when the coalescing
+     * delay expires or when a slot of the executor is freed.
+     */
+    private void fireHeldRequests() {
+        synchronized (fLock) {
+            if (fFireTask == null) {
+                return;
+            }
+            fFireTask.cancel(false);
+            fFireTask = null;
+            fireRequest(true);
+        }
+    }
+
+    /**
+     * Add a background request to a coalesced request that is already
+     * running, instead of reading the trace again for it. A foreground request
+     * is not attached, since it would then wait on the dispatching of the
+     * running request instead of being scheduled first.
+     *
+     * @return true if the request was attached to a running request
+     */
+    private boolean attachToRunningRequest(ITmfEventRequest request) {
+        if (fParent != null || request.getExecType() != ExecutionType.BACKGROUND) {
+            return false;
+        }
+        ITmfFilter filter = request.getProviderFilter();
+        if (filter != null && filter != this) {
+            return false;
+        }
+        List<TmfCoalescedEventRequest> running;
+        synchronized (fLock) {
+            /* Do not wait on the requests that are completing */
+            Iterator<TmfCoalescedEventRequest> iter = fRunningCoalescedRequests.iterator();
+            while (iter.hasNext()) {
+                TmfCoalescedEventRequest coalescedRequest = iter.next();
+                if (coalescedRequest.isClosing()) {
+                    iter.remove();
+                }
+            }
+            running = new ArrayList<>(fRunningCoalescedRequests);
+        }
+        if (running.isEmpty()) {
+            return false;
+        }
+        /* Attaching waits for the dispatching of the current event */
+        request.setProviderFilter(this);
+        for (TmfCoalescedEventRequest coalescedRequest : running) {
+            if (coalescedRequest.attach(request)) {
+                return true;
             }
         }
+        if (filter == null) {
+            request.setProviderFilter(null);
+        }
+        return false;
     }
 
     private void fireRequest(boolean isTimeout) {
@@ -410,6 +501,21 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
 
         TmfEventThread thread = new TmfEventThread(this, request);
 
+        if (request instanceof TmfCoalescedEventRequest) {
+            final TmfCoalescedEventRequest coalescedRequest = (TmfCoalescedEventRequest) request;
+            /* Do not keep the request once it is completed */
+            coalescedRequest.setCompletionListener(() -> {
+                synchronized (fLock) {
+                    fRunningCoalescedRequests.remove(coalescedRequest);
+                }
+            });
+            synchronized (fLock) {
+                if (!coalescedRequest.isClosing()) {
+                    fRunningCoalescedRequests.add(coalescedRequest);
+                }
+            }
+        }
+
         if (TmfCoreTracer.isRequestTraced()) {
             TmfCoreTracer.traceRequest(request.getRequestId(), "QUEUED"); //$NON-NLS-1$
         }
@@ -442,8 +548,8 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
     public boolean isCompleted(ITmfEventRequest request, ITmfEvent event, int nbRead) {
         boolean requestCompleted = isCompleted2(request, nbRead);
         if (!requestCompleted) {
-            ITmfTimestamp endTime = request.getRange().getEndTime();
-            return event.getTimestamp().compareTo(endTime) > 0;
+            long endTime = request.getRange().getEndTime().toNanos();
+            return event.getTimestampNanos() > endTime;
         }
         return requestCompleted;
     }
@@ -619,6 +725,9 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
      */
     private void  clearPendingRequests() {
         fPendingCoalescedRequests.clear();
+        synchronized (fLock) {
+            fRunningCoalescedRequests.clear();
+        }
     }
 
     /**
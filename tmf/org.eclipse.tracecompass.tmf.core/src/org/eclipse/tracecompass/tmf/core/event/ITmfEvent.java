@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,9 +14,12 @@ package org.eclipse.tracecompass.tmf.core.event;
 
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
+import com.google.common.collect.Iterables;
+
 /**
  * The generic event structure in TMF. In its canonical form, an event has:
  * <ul>
@@ -55,6 +58,19 @@ public interface ITmfEvent extends IAdaptable {
      */
     @NonNull ITmfTimestamp getTimestamp();
 
+    /**
+     * Gets the event timestamp in nanoseconds. This is the same value as
+     * {@code getTimestamp().toNanos()}, but the event implementations that
+     * store a primitive timestamp return it without creating the timestamp
+     * object, so this should be preferred to compare and sort events.
+     *
+     * @return the event timestamp, in nanoseconds
+     * @since 2.2
+     */
+    default long getTimestampNanos() {
+        return getTimestamp().toNanos();
+    }
+
     /**
      * @return the event type
      */
@@ -72,4 +88,50 @@ public interface ITmfEvent extends IAdaptable {
      * @since 1.0
      */
     @NonNull String getName();
+
+    /**
+     * Gets the value of a top-level field of the content, from its slot in
+     * the event type. Implementations can read the value without building the
+     * content of the event.
+     *
+     * @param slot
+     *            the slot of the field, from
+     *            {@link ITmfEventType#getFieldSlot(String)} of the type of
+     *            this event
+     * @return the value of the field, or null if there is no such field
+     * @since 2.2
+     */
+    default @Nullable Object getFieldValue(int slot) {
+        ITmfEventType type = getType();
+        ITmfEventField content = getContent();
+        if (slot < 0 || type == null || content == null) {
+            return null;
+        }
+        String name = Iterables.get(type.getFieldNames(), slot, null);
+        if (name == null) {
+            return null;
+        }
+        ITmfEventField field = content.getField(name);
+        return (field == null) ? null : field.getValue();
+    }
+
+    /**
+     * Gets the value of a numerical top-level field of the content, from its
+     * slot in the event type, without boxing it when the implementation
+     * allows it.
+     *
+     * @param slot
+     *            the slot of the field, from
+     *            {@link ITmfEventType#getFieldSlot(String)} of the type of
+     *            this event
+     * @param defaultValue
+     *            the value to return if there is no such field or if it is
+     *            not a number
+     * @return the value of the field
+     * @since 2.2
+     */
+    default long getLongField(int slot, long defaultValue) {
+        Object value = getFieldValue(slot);
+        return (value instanceof Number) ? ((Number) value).longValue() : defaultValue;
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -57,4 +57,28 @@ public interface ITmfEventType {
      * @return the event field names (labels)
      */
     Collection<String> getFieldNames();
+
+    /**
+     * Get the slot of a top-level field of the events of this type, which is
+     * its position in {@link #getFieldNames()}. The slot can be resolved once
+     * for the type, and then be used to read the field of each event of this
+     * type with {@link ITmfEvent#getFieldValue(int)} or
+     * {@link ITmfEvent#getLongField(int, long)}.
+     *
+     * @param name
+     *            the name of the field
+     * @return the slot of the field, or -1 if the events of this type have no
+     *         such field
+     * @since 2.2
+     */
+    default int getFieldSlot(String name) {
+        int slot = 0;
+        for (String fieldName : getFieldNames()) {
+            if (fieldName.equals(name)) {
+                return slot;
+            }
+            slot++;
+        }
+        return -1;
+    }
 }
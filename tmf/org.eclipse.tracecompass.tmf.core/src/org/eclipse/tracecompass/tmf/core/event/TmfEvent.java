@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -17,6 +17,7 @@ import java.util.Objects;
 
 import org.eclipse.core.runtime.PlatformObject;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
@@ -40,7 +41,10 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
 
     private final ITmfTrace fTrace;
     private final long fRank;
-    private final @NonNull ITmfTimestamp fTimestamp;
+    /* Created lazily if the event was built from a primitive timestamp */
+    private @Nullable ITmfTimestamp fTimestamp;
+    private final long fTimestampNanos;
+    private final boolean fHasTimestampNanos;
     private final ITmfEventType fType;
     private final ITmfEventField fContent;
 
@@ -88,6 +92,40 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
         } else {
             fTimestamp = TmfTimestamp.ZERO;
         }
+        fTimestampNanos = 0;
+        fHasTimestampNanos = false;
+        fType = type;
+        fContent = content;
+    }
+
+    /**
+     * Constructor with a primitive timestamp. The timestamp object is only
+     * created if {@link #getTimestamp()} is called, and
+     * {@link #getTimestampNanos()} returns the value directly.
+     *
+     * @param trace
+     *            the parent trace
+     * @param rank
+     *            the event rank (in the trace). You can use
+     *            {@link ITmfContext#UNKNOWN_RANK} as default value
+     * @param timestampNanos
+     *            the event timestamp, in nanoseconds
+     * @param type
+     *            the event type
+     * @param content
+     *            the event content (payload)
+     * @since 2.2
+     */
+    public TmfEvent(final ITmfTrace trace,
+            final long rank,
+            final long timestampNanos,
+            final ITmfEventType type,
+            final ITmfEventField content) {
+        fTrace = trace;
+        fRank = rank;
+        fTimestamp = null;
+        fTimestampNanos = timestampNanos;
+        fHasTimestampNanos = true;
         fType = type;
         fContent = content;
     }
@@ -101,6 +139,8 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
         fTrace = event.getTrace();
         fRank = event.getRank();
         fTimestamp = event.getTimestamp();
+        fTimestampNanos = 0;
+        fHasTimestampNanos = false;
         fType = event.getType();
         fContent = event.getContent();
     }
@@ -125,7 +165,23 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
 
     @Override
     public ITmfTimestamp getTimestamp() {
-        return fTimestamp;
+        ITmfTimestamp timestamp = fTimestamp;
+        if (timestamp == null) {
+            timestamp = TmfTimestamp.fromNanos(fTimestampNanos);
+            fTimestamp = timestamp;
+        }
+        return timestamp;
+    }
+
+    /**
+     * @since 2.2
+     */
+    @Override
+    public long getTimestampNanos() {
+        if (fHasTimestampNanos) {
+            return fTimestampNanos;
+        }
+        return getTimestamp().toNanos();
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,8 +15,12 @@ package org.eclipse.tracecompass.tmf.core.event;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMap;
 
 /**
  * A basic implementation of ITmfEventType.
@@ -36,6 +40,9 @@ public class TmfEventType implements ITmfEventType {
     private final @NonNull String fTypeId;
     private final ITmfEventField fRootField;
 
+    /* The slots of the field names, built on the first lookup */
+    private @Nullable Map<String, Integer> fFieldSlots;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -87,6 +94,25 @@ public class TmfEventType implements ITmfEventType {
         return (fRootField != null) ? fRootField.getFieldNames() : Collections.EMPTY_SET;
     }
 
+    /**
+     * @since 2.2
+     */
+    @Override
+    public int getFieldSlot(String name) {
+        Map<String, Integer> slots = fFieldSlots;
+        if (slots == null) {
+            ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+            int slot = 0;
+            for (String fieldName : getFieldNames()) {
+                builder.put(fieldName, slot++);
+            }
+            slots = builder.build();
+            fFieldSlots = slots;
+        }
+        Integer slot = slots.get(name);
+        return (slot == null) ? -1 : slot;
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
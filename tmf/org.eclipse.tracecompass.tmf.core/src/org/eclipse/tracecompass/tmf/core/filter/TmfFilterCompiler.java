@@ -0,0 +1,514 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.filter;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAspectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Compiler of filter trees into predicates.
+ * <p>
+ * The nodes of a filter tree evaluate their condition from scratch for every
+ * event: they resolve their event aspect, convert its value to a string and
+ * parse their constant again when needed. The compiled predicate gives the
+ * same results, but:
+ * <ul>
+ * <li>the constants are parsed once, and the comparisons are specialized by
+ * type, numbers and timestamps being compared without going through strings
+ * when the value of the aspect allows it;</li>
+ * <li>an aspect used by several conditions is resolved only once per
+ * event;</li>
+ * <li>nested AND and OR nodes are flattened and their children are evaluated
+ * cheapest first, so the expensive conditions, like regular expressions, are
+ * only evaluated when they can change the result.</li>
+ * </ul>
+ * Nodes of other classes, including subclasses of the standard nodes, are
+ * evaluated by calling their {@link ITmfFilter#matches(ITmfEvent)} method.
+ * <p>
+ * The predicate is a snapshot of the tree: it must be compiled again if the
+ * tree is modified.
+ *
+ * @since 2.2
+ */
+public final class TmfFilterCompiler {
+
+    private static final Object UNRESOLVED = new Object();
+    private static final Object[] NO_VALUES = new Object[0];
+
+    /* Evaluation cost estimates, used to order the children of AND and OR */
+    private static final int COST_TRACE_TYPE = 1;
+    private static final int COST_NUMBER = 2;
+    private static final int COST_STRING = 4;
+    private static final int COST_CONTAINS = 6;
+    private static final int COST_REGEX = 10;
+    private static final int COST_OPAQUE = 20;
+
+    @FunctionalInterface
+    private interface Evaluator {
+        boolean test(ITmfEvent event, Object[] values);
+    }
+
+    private static final class Compiled {
+        private final Evaluator fEvaluator;
+        private final int fCost;
+
+        public Compiled(Evaluator evaluator, int cost) {
+            fEvaluator = evaluator;
+            fCost = cost;
+        }
+    }
+
+    /** Resolution of an event aspect, shared if the aspect is used more than once */
+    private static final class Resolver {
+        private final ITmfEventAspect<?> fAspect;
+        private final int fSlot;
+
+        public Resolver(ITmfEventAspect<?> aspect, int slot) {
+            fAspect = aspect;
+            fSlot = slot;
+        }
+
+        public Object resolve(ITmfEvent event, Object[] values) {
+            if (fSlot < 0) {
+                return fAspect.resolve(event);
+            }
+            Object value = values[fSlot];
+            if (value == UNRESOLVED) {
+                value = fAspect.resolve(event);
+                values[fSlot] = value;
+            }
+            return value;
+        }
+    }
+
+    private final Map<ITmfEventAspect<?>, Integer> fUsages = new HashMap<>();
+    private final Map<ITmfEventAspect<?>, Resolver> fResolvers = new HashMap<>();
+    private int fNbSlots = 0;
+
+    private TmfFilterCompiler() {
+    }
+
+    /**
+     * Compile a filter into a predicate
+     *
+     * @param filter
+     *            the filter, usually a filter tree
+     * @return a predicate that accepts the same events as the filter
+     */
+    public static Predicate<ITmfEvent> compile(ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode)) {
+            return event -> filter.matches(event);
+        }
+        TmfFilterCompiler compiler = new TmfFilterCompiler();
+        ITmfFilterTreeNode node = (ITmfFilterTreeNode) filter;
+        compiler.countUsages(node);
+        Evaluator evaluator = compiler.compileNode(node).fEvaluator;
+        int nbSlots = compiler.fNbSlots;
+        if (nbSlots == 0) {
+            return event -> evaluator.test(event, NO_VALUES);
+        }
+        return event -> {
+            Object[] values = new Object[nbSlots];
+            Arrays.fill(values, UNRESOLVED);
+            return evaluator.test(event, values);
+        };
+    }
+
+    // ------------------------------------------------------------------------
+    // Aspects
+    // ------------------------------------------------------------------------
+
+    private void countUsages(ITmfFilterTreeNode node) {
+        if (node instanceof TmfFilterAspectNode && isCompiled(node)) {
+            ITmfEventAspect<?> aspect = ((TmfFilterAspectNode) node).getEventAspect();
+            if (aspect != null) {
+                fUsages.merge(aspect, 1, Integer::sum);
+            }
+            return;
+        }
+        if (isCompiled(node)) {
+            for (ITmfFilterTreeNode child : node.getChildren()) {
+                countUsages(child);
+            }
+        }
+    }
+
+    private Resolver getResolver(ITmfEventAspect<?> aspect) {
+        Resolver resolver = fResolvers.get(aspect);
+        if (resolver == null) {
+            Integer usages = fUsages.get(aspect);
+            int slot = (usages != null && usages > 1) ? fNbSlots++ : -1;
+            resolver = new Resolver(aspect, slot);
+            fResolvers.put(aspect, resolver);
+        }
+        return resolver;
+    }
+
+    // ------------------------------------------------------------------------
+    // Nodes
+    // ------------------------------------------------------------------------
+
+    private static boolean isCompiled(ITmfFilterTreeNode node) {
+        Class<?> nodeClass = node.getClass();
+        return nodeClass == TmfFilterRootNode.class ||
+                nodeClass == TmfFilterNode.class ||
+                nodeClass == TmfFilterAndNode.class ||
+                nodeClass == TmfFilterOrNode.class ||
+                nodeClass == TmfFilterTraceTypeNode.class ||
+                nodeClass == TmfFilterCompareNode.class ||
+                nodeClass == TmfFilterEqualsNode.class ||
+                nodeClass == TmfFilterContainsNode.class ||
+                nodeClass == TmfFilterMatchesNode.class;
+    }
+
+    private Compiled compileNode(ITmfFilterTreeNode node) {
+        if (!isCompiled(node)) {
+            return new Compiled((event, values) -> node.matches(event), COST_OPAQUE);
+        }
+        if (node instanceof TmfFilterRootNode) {
+            return compileAll(flatten(node, TmfFilterAndNode.class), false);
+        }
+        if (node instanceof TmfFilterNode) {
+            return compileAny(flatten(node, TmfFilterOrNode.class), false);
+        }
+        if (node instanceof TmfFilterAndNode) {
+            return compileAll(flatten(node, TmfFilterAndNode.class), ((TmfFilterAndNode) node).isNot());
+        }
+        if (node instanceof TmfFilterOrNode) {
+            return compileAny(flatten(node, TmfFilterOrNode.class), ((TmfFilterOrNode) node).isNot());
+        }
+        if (node instanceof TmfFilterTraceTypeNode) {
+            return compileTraceType((TmfFilterTraceTypeNode) node);
+        }
+        if (node instanceof TmfFilterCompareNode) {
+            return compileCompare((TmfFilterCompareNode) node);
+        }
+        if (node instanceof TmfFilterEqualsNode) {
+            return compileEquals((TmfFilterEqualsNode) node);
+        }
+        if (node instanceof TmfFilterContainsNode) {
+            return compileContains((TmfFilterContainsNode) node);
+        }
+        return compileMatches((TmfFilterMatchesNode) node);
+    }
+
+    /**
+     * Get the children of a node, replacing the children that are nodes of
+     * the same operation without negation by their own children
+     */
+    private static List<ITmfFilterTreeNode> flatten(ITmfFilterTreeNode node, Class<?> operation) {
+        List<ITmfFilterTreeNode> children = new ArrayList<>();
+        for (ITmfFilterTreeNode child : node.getChildren()) {
+            if (child.getClass() == operation && !isNot(child)) {
+                children.addAll(flatten(child, operation));
+            } else {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private static boolean isNot(ITmfFilterTreeNode node) {
+        if (node instanceof TmfFilterAndNode) {
+            return ((TmfFilterAndNode) node).isNot();
+        }
+        return (node instanceof TmfFilterOrNode) && ((TmfFilterOrNode) node).isNot();
+    }
+
+    private Compiled[] compileChildren(List<ITmfFilterTreeNode> nodes) {
+        Compiled[] children = new Compiled[nodes.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = compileNode(nodes.get(i));
+        }
+        Arrays.sort(children, Comparator.comparingInt((Compiled child) -> child.fCost));
+        return children;
+    }
+
+    private static int totalCost(Compiled[] children) {
+        int cost = 0;
+        for (Compiled child : children) {
+            cost += child.fCost;
+        }
+        return cost;
+    }
+
+    private Compiled compileAll(List<ITmfFilterTreeNode> nodes, boolean not) {
+        Compiled[] children = compileChildren(nodes);
+        Evaluator[] evaluators = Arrays.stream(children).map(child -> child.fEvaluator).toArray(Evaluator[]::new);
+        return new Compiled((event, values) -> {
+            for (Evaluator evaluator : evaluators) {
+                if (!evaluator.test(event, values)) {
+                    return not;
+                }
+            }
+            return !not;
+        }, totalCost(children));
+    }
+
+    private Compiled compileAny(List<ITmfFilterTreeNode> nodes, boolean not) {
+        Compiled[] children = compileChildren(nodes);
+        Evaluator[] evaluators = Arrays.stream(children).map(child -> child.fEvaluator).toArray(Evaluator[]::new);
+        /* Like TmfFilterOrNode, no match is false even with the negation */
+        return new Compiled((event, values) -> {
+            for (Evaluator evaluator : evaluators) {
+                if (evaluator.test(event, values)) {
+                    return !not;
+                }
+            }
+            return false;
+        }, totalCost(children));
+    }
+
+    private Compiled compileTraceType(TmfFilterTraceTypeNode node) {
+        Class<? extends ITmfTrace> traceClass = node.getTraceClass();
+        String traceTypeId = node.getTraceTypeId();
+        Compiled children = compileAll(Arrays.asList(node.getChildren()), false);
+        Evaluator evaluator = children.fEvaluator;
+        return new Compiled((event, values) -> {
+            ITmfTrace trace = event.getTrace();
+            if (!trace.getClass().equals(traceClass)) {
+                return false;
+            }
+            if (traceTypeId != null && !traceTypeId.equals(trace.getTraceTypeId())) {
+                return false;
+            }
+            return evaluator.test(event, values);
+        }, COST_TRACE_TYPE + children.fCost);
+    }
+
+    private Compiled compileCompare(TmfFilterCompareNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        String constant = node.getValue();
+        if (aspect == null || constant == null) {
+            return new Compiled((event, values) -> false, 0);
+        }
+        Resolver resolver = getResolver(aspect);
+        boolean not = node.isNot();
+        int result = node.getResult();
+        switch (node.getType()) {
+        case NUM:
+            return compileNumberCompare(resolver, toNumber(constant), result, not);
+        case TIMESTAMP:
+            return compileTimestampCompare(resolver, constant, result, not);
+        case ALPHA:
+        default:
+            return new Compiled((event, values) -> {
+                Object value = resolver.resolve(event, values);
+                if (value == null) {
+                    return false;
+                }
+                return ((int) Math.signum(value.toString().compareTo(constant)) == result) ^ not;
+            }, COST_STRING);
+        }
+    }
+
+    private static Compiled compileNumberCompare(Resolver resolver, Number constant, int result, boolean not) {
+        if (constant == null) {
+            return new Compiled((event, values) -> false, 0);
+        }
+        if (constant instanceof Double) {
+            double doubleConstant = constant.doubleValue();
+            return new Compiled((event, values) -> {
+                Number number = toNumber(resolver.resolve(event, values));
+                if (number == null) {
+                    return false;
+                }
+                return (Double.compare(number.doubleValue(), doubleConstant) == result) ^ not;
+            }, COST_NUMBER);
+        }
+        long longConstant = constant.longValue();
+        double doubleConstant = constant.doubleValue();
+        return new Compiled((event, values) -> {
+            Number number = toNumber(resolver.resolve(event, values));
+            if (number == null) {
+                return false;
+            }
+            if (number instanceof Double || number instanceof Float) {
+                return (Double.compare(number.doubleValue(), doubleConstant) == result) ^ not;
+            }
+            return (Long.compare(number.longValue(), longConstant) == result) ^ not;
+        }, COST_NUMBER);
+    }
+
+    private static Compiled compileTimestampCompare(Resolver resolver, String constant, int result, boolean not) {
+        TmfTimestampFormat format = new TmfTimestampFormat("T.SSSSSSSSS"); //$NON-NLS-1$
+        ITmfTimestamp timestampConstant = toTimestamp(constant, format);
+        if (constant.isEmpty() || timestampConstant == null) {
+            return new Compiled((event, values) -> false, 0);
+        }
+        return new Compiled((event, values) -> {
+            ITmfTimestamp timestamp = toTimestamp(resolver.resolve(event, values), format);
+            if (timestamp == null) {
+                return false;
+            }
+            return ((int) Math.signum(timestamp.compareTo(timestampConstant)) == result) ^ not;
+        }, COST_NUMBER);
+    }
+
+    private Compiled compileEquals(TmfFilterEqualsNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        boolean not = node.isNot();
+        String constant = node.getValue();
+        if (aspect == null) {
+            return new Compiled((event, values) -> not, 0);
+        }
+        Resolver resolver = getResolver(aspect);
+        boolean ignoreCase = node.isIgnoreCase();
+        Long longConstant = toCanonicalLong(constant);
+        return new Compiled((event, values) -> {
+            Object value = resolver.resolve(event, values);
+            if (value == null) {
+                return not;
+            }
+            if (longConstant != null && (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                /* Same as comparing the decimal string of the value */
+                return (((Number) value).longValue() == longConstant) ^ not;
+            }
+            String string = value.toString();
+            return (ignoreCase ? string.equalsIgnoreCase(constant) : string.equals(constant)) ^ not;
+        }, (longConstant != null) ? COST_NUMBER : COST_STRING);
+    }
+
+    private Compiled compileContains(TmfFilterContainsNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        boolean not = node.isNot();
+        String constant = node.getValue();
+        if (aspect == null || constant == null) {
+            return new Compiled((event, values) -> not, 0);
+        }
+        Resolver resolver = getResolver(aspect);
+        if (node.isIgnoreCase()) {
+            String upperCaseConstant = constant.toUpperCase();
+            return new Compiled((event, values) -> {
+                Object value = resolver.resolve(event, values);
+                if (value == null) {
+                    return not;
+                }
+                return value.toString().toUpperCase().contains(upperCaseConstant) ^ not;
+            }, COST_CONTAINS);
+        }
+        return new Compiled((event, values) -> {
+            Object value = resolver.resolve(event, values);
+            if (value == null) {
+                return not;
+            }
+            return value.toString().contains(constant) ^ not;
+        }, COST_CONTAINS);
+    }
+
+    private Compiled compileMatches(TmfFilterMatchesNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        boolean not = node.isNot();
+        Pattern pattern = null;
+        if (node.getRegex() != null) {
+            try {
+                pattern = Pattern.compile(node.getRegex(), Pattern.DOTALL);
+            } catch (PatternSyntaxException e) {
+                pattern = null;
+            }
+        }
+        if (aspect == null || pattern == null) {
+            return new Compiled((event, values) -> not, 0);
+        }
+        Resolver resolver = getResolver(aspect);
+        Pattern compiledPattern = pattern;
+        return new Compiled((event, values) -> {
+            Object value = resolver.resolve(event, values);
+            if (value == null) {
+                return not;
+            }
+            return compiledPattern.matcher(value.toString()).find() ^ not;
+        }, COST_REGEX);
+    }
+
+    // ------------------------------------------------------------------------
+    // Conversions, as done by the filter nodes
+    // ------------------------------------------------------------------------
+
+    private static Number toNumber(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        try {
+            return Long.decode(value.toString());
+        } catch (NumberFormatException e) {
+        }
+        try {
+            return NumberFormat.getInstance().parse(value.toString());
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    private static ITmfTimestamp toTimestamp(Object value, TmfTimestampFormat format) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof ITmfTimestamp) {
+            return (ITmfTimestamp) value;
+        }
+        try {
+            synchronized (format) {
+                return TmfTimestamp.fromNanos(format.parseValue(value.toString()));
+            }
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    /**
+     * Get the value of a string that is the decimal representation of a long,
+     * exactly as Long.toString() would produce it.
+     *
+     * @return the long value, or null if the string is not such a
+     *         representation
+     */
+    private static Long toCanonicalLong(String string) {
+        if (string == null) {
+            return null;
+        }
+        try {
+            long value = Long.parseLong(string);
+            return Long.toString(value).equals(string) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.filter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Search of the events of a trace that match a predicate, done in parallel.
+ * <p>
+ * The range of ranks to search is split in chunks at the multiples of the
+ * cache size of the trace, and the chunks are scanned concurrently on a
+ * fork/join pool. Each chunk is read with its own context, obtained by seeking
+ * its first rank. With the default indexer, whose checkpoint interval is the
+ * cache size, the chunk boundaries are checkpoints and the seek reads no
+ * event. Other indexers may place their checkpoints elsewhere, the seek then
+ * also reads the events between the checkpoint before the chunk and its first
+ * rank.
+ * <p>
+ * The chunks are consumed in order, a bounded number of them being scanned
+ * ahead, so the results are in rank order and a search for the next (or
+ * previous) match stops scanning as soon as the nearest chunk that contains a
+ * match is known. No more chunks are scanned at once than the trace can read
+ * concurrently, see {@link ITmfTrace#getMaxConcurrentContexts()}.
+ * <p>
+ * A forward search goes on past the number of events known when it starts, as
+ * long as the trace has events, so it covers the events that are indexed
+ * meanwhile; those chunks are scanned one at a time. A backward search starts
+ * at the last event known when it starts.
+ * <p>
+ * How much of the work is actually done in parallel depends on the trace: the
+ * predicate is always evaluated concurrently, but a trace that serializes its
+ * {@link ITmfTrace#getNext(ITmfContext)} calls reads its chunks one at a
+ * time.
+ *
+ * @since 2.2
+ */
+public final class TmfParallelSearch {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("TMF Parallel Search"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    /** Number of chunks scanned ahead of the one being consumed, per worker */
+    private static final int CHUNKS_AHEAD_PER_WORKER = 2;
+
+    /** Number of events read between two checks for cancellation */
+    private static final int CANCEL_CHECK_INTERVAL = 1000;
+
+    private static final long[] NO_RANKS = new long[0];
+
+    private enum Mode {
+        /** Keep the first match of a chunk */
+        FIRST,
+        /** Keep the last match of a chunk */
+        LAST,
+        /** Keep all the matches of a chunk */
+        ALL
+    }
+
+    private final ITmfTrace fTrace;
+    private final Predicate<ITmfEvent> fPredicate;
+    private final long fChunkSize;
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace to search
+     * @param predicate
+     *            The predicate that the events must match. It is evaluated
+     *            concurrently, so it must be thread-safe.
+     */
+    public TmfParallelSearch(ITmfTrace trace, Predicate<ITmfEvent> predicate) {
+        fTrace = trace;
+        fPredicate = predicate;
+        fChunkSize = Math.max(1, trace.getCacheSize());
+    }
+
+    /**
+     * Constructor for a search with a filter. The filter is compiled with
+     * {@link TmfFilterCompiler#compile(ITmfFilter)}.
+     *
+     * @param trace
+     *            The trace to search
+     * @param filter
+     *            The filter that the events must match
+     */
+    public TmfParallelSearch(ITmfTrace trace, ITmfFilter filter) {
+        this(trace, TmfFilterCompiler.compile(filter));
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Find the first matching event in a range of ranks.
+     *
+     * @param startRank
+     *            The first rank of the range, inclusive
+     * @param endRank
+     *            The last rank of the range, exclusive
+     * @param monitor
+     *            The progress monitor used to cancel the search, can be null
+     * @return The rank of the first matching event, or -1 if there is none or
+     *         the search was cancelled
+     */
+    public long findNext(long startRank, long endRank, @Nullable IProgressMonitor monitor) {
+        long[] ranks = search(startRank, endRank, Mode.FIRST, monitor);
+        return (ranks.length == 0) ? -1 : ranks[0];
+    }
+
+    /**
+     * Find the last matching event in a range of ranks.
+     *
+     * @param startRank
+     *            The first rank of the range, inclusive
+     * @param endRank
+     *            The last rank of the range, exclusive. The events that are
+     *            not indexed yet are not searched.
+     * @param monitor
+     *            The progress monitor used to cancel the search, can be null
+     * @return The rank of the last matching event, or -1 if there is none or
+     *         the search was cancelled
+     */
+    public long findPrevious(long startRank, long endRank, @Nullable IProgressMonitor monitor) {
+        long[] ranks = search(startRank, endRank, Mode.LAST, monitor);
+        return (ranks.length == 0) ? -1 : ranks[0];
+    }
+
+    /**
+     * Find all the matching events in a range of ranks.
+     *
+     * @param startRank
+     *            The first rank of the range, inclusive
+     * @param endRank
+     *            The last rank of the range, exclusive
+     * @param monitor
+     *            The progress monitor used to cancel the search, can be null
+     * @return The ranks of the matching events, in increasing order. If the
+     *         search was cancelled, only the ranks found up to that point are
+     *         returned.
+     */
+    public long[] findAll(long startRank, long endRank, @Nullable IProgressMonitor monitor) {
+        return search(startRank, endRank, Mode.ALL, monitor);
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private long[] search(long startRank, long endRank, Mode mode, @Nullable IProgressMonitor monitor) {
+        boolean backward = (mode == Mode.LAST);
+        long start = Math.max(0, startRank);
+        long end = backward ? Math.min(endRank, fTrace.getNbEvents()) : endRank;
+        if (start >= end) {
+            return NO_RANKS;
+        }
+        IProgressMonitor mon = (monitor == null) ? new NullProgressMonitor() : monitor;
+        AtomicBoolean stop = new AtomicBoolean();
+        /* The rank at which a chunk found the end of the trace */
+        AtomicLong traceEnd = new AtomicLong(Long.MAX_VALUE);
+        int maxPending = Math.max(1, Math.min(POOL.getParallelism() * CHUNKS_AHEAD_PER_WORKER, fTrace.getMaxConcurrentContexts()));
+        Deque<ForkJoinTask<long[]>> pending = new ArrayDeque<>();
+        LongStream.Builder results = LongStream.builder();
+
+        /* The chunk boundaries are the multiples of the cache size */
+        long next = backward ? end : start;
+        try {
+            while (true) {
+                while (pending.size() < maxPending && (backward ? next > start : next < end && next < traceEnd.get())) {
+                    if (!backward && next >= fTrace.getNbEvents() && !pending.isEmpty()) {
+                        /* Past the indexed events, wait to know if there are more */
+                        break;
+                    }
+                    long chunkStart;
+                    long chunkEnd;
+                    if (backward) {
+                        chunkEnd = next;
+                        chunkStart = Math.max(start, ((next - 1) / fChunkSize) * fChunkSize);
+                        next = chunkStart;
+                    } else {
+                        chunkStart = next;
+                        chunkEnd = Math.min(end, (next / fChunkSize + 1) * fChunkSize);
+                        next = chunkEnd;
+                    }
+                    pending.add(POOL.submit(() -> scanChunk(chunkStart, chunkEnd, mode, stop, traceEnd, mon)));
+                }
+                ForkJoinTask<long[]> task = pending.poll();
+                if (task == null || mon.isCanceled()) {
+                    break;
+                }
+                long[] ranks = task.join();
+                if (mon.isCanceled()) {
+                    break;
+                }
+                for (long rank : ranks) {
+                    results.add(rank);
+                }
+                if (mode != Mode.ALL && ranks.length > 0) {
+                    break;
+                }
+            }
+        } finally {
+            stop.set(true);
+            for (ForkJoinTask<long[]> task : pending) {
+                task.cancel(false);
+            }
+        }
+        if (mode != Mode.ALL && mon.isCanceled()) {
+            return NO_RANKS;
+        }
+        return results.build().toArray();
+    }
+
+    private long[] scanChunk(long chunkStart, long chunkEnd, Mode mode, AtomicBoolean stop, AtomicLong traceEnd, IProgressMonitor monitor) {
+        LongStream.Builder ranks = null;
+        long last = -1;
+        ITmfContext context = fTrace.seekEvent(chunkStart);
+        try {
+            for (long rank = chunkStart; rank < chunkEnd; rank++) {
+                if ((rank - chunkStart) % CANCEL_CHECK_INTERVAL == 0 && (stop.get() || monitor.isCanceled())) {
+                    break;
+                }
+                ITmfEvent event = fTrace.getNext(context);
+                if (event == null) {
+                    traceEnd.accumulateAndGet(rank, Math::min);
+                    break;
+                }
+                if (!fPredicate.test(event)) {
+                    continue;
+                }
+                if (mode == Mode.FIRST) {
+                    return new long[] { rank };
+                }
+                last = rank;
+                if (mode == Mode.ALL) {
+                    if (ranks == null) {
+                        ranks = LongStream.builder();
+                    }
+                    ranks.add(rank);
+                }
+            }
+        } finally {
+            context.dispose();
+        }
+        if (mode == Mode.LAST) {
+            return (last == -1) ? NO_RANKS : new long[] { last };
+        }
+        return (ranks == null) ? NO_RANKS : ranks.build().toArray();
+    }
+}
@@ -21,9 +21,12 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomExtraField;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomLazyField;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
@@ -243,6 +246,20 @@ public class CustomEvent extends TmfEvent {
         return nullToEmptyString(checkNotNull(Iterables.get(fields, index)).getValue());
     }
 
+    /**
+     * Remove a value of the payload data whose string is only created when
+     * its field is read. Such a value has a null entry in {@link #fData}, to
+     * keep the order of the fields.
+     *
+     * @param key
+     *            the key of the value, as in {@link #fData}
+     * @return the supplier of the value, or null if the value is not lazy
+     * @since 2.2
+     */
+    protected @Nullable Supplier<String> removeLazyData(Object key) {
+        return null;
+    }
+
     private void processData() {
         // Remove the values as they are processed, so we can process the extra values at the end
         String timestampString = fData.remove(Tag.TIMESTAMP);
@@ -277,7 +294,13 @@ public class CustomEvent extends TmfEvent {
                 }
             } else if (outputColumn.tag.equals(Tag.OTHER) || outputColumn.tag.equals(Tag.MESSAGE)) {
                 Object key = (outputColumn.tag.equals(Tag.OTHER) ? outputColumn.name : outputColumn.tag);
-                fieldMap.put(outputColumn.name, new TmfEventField(outputColumn.name, nullToEmptyString(fData.remove(key)), null));
+                String value = fData.remove(key);
+                Supplier<String> lazyValue = (value == null) ? removeLazyData(key) : null;
+                if (lazyValue != null) {
+                    fieldMap.put(outputColumn.name, new CustomLazyField(outputColumn.name, lazyValue));
+                } else {
+                    fieldMap.put(outputColumn.name, new TmfEventField(outputColumn.name, nullToEmptyString(value), null));
+                }
             }
         }
         // This event contains extra values, we process them now
@@ -285,7 +308,12 @@ public class CustomEvent extends TmfEvent {
             String fieldName = nullToEmptyString(entry.getKey().toString());
             // Ignore extra fields if a field of same name is already set
             if (!fieldMap.containsKey(fieldName)) {
-                fieldMap.put(fieldName, new CustomExtraField(fieldName, nullToEmptyString(entry.getValue()), null));
+                Supplier<String> lazyValue = (entry.getValue() == null) ? removeLazyData(entry.getKey()) : null;
+                if (lazyValue != null) {
+                    fieldMap.put(fieldName, new CustomExtraField(fieldName, lazyValue));
+                } else {
+                    fieldMap.put(fieldName, new CustomExtraField(fieldName, nullToEmptyString(entry.getValue()), null));
+                }
             }
         }
         setContent(new CustomEventContent(customEventContent.getName(), customEventContent.getValue(), fieldMap.values().toArray(new ITmfEventField[fieldMap.size()])));
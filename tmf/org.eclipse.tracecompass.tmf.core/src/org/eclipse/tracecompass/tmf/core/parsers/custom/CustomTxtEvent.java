@@ -12,9 +12,15 @@
 
 package org.eclipse.tracecompass.tmf.core.parsers.custom;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomLazyValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
@@ -33,6 +39,12 @@ public class CustomTxtEvent extends CustomEvent {
 
     private String fLastExtraFieldName = null;
 
+    /**
+     * The values of the payload data that are kept as offsets in their line,
+     * until their field is read
+     */
+    private @Nullable Map<Object, CustomLazyValue> fLazyData = null;
+
     /**
      * Constructor
      *
@@ -78,81 +90,144 @@ public class CustomTxtEvent extends CustomEvent {
     }
 
     /**
-     * Process an entry in the trace file
+     * Process an entry in the trace file.
+     * <p>
+     * The values of the columns that are set are kept as offsets in the line,
+     * their strings are only created when their field is read. The timestamp
+     * and the event type, which are needed right away, and the appended values
+     * are extracted immediately. The match result is not kept, so it can be
+     * reused for the next line.
      *
      * @param input
      *            The input line to read
-     * @param matcher
-     *            The regex matcher to use
+     * @param match
+     *            The match result of the line, from the regex matcher or from
+     *            the tokenizing of its columns
+     * @since 2.2
      */
-    public void processGroups(InputLine input, Matcher matcher) {
+    public void processGroups(InputLine input, MatchResult match) {
         if (input.eventType != null) {
             fData.put(Tag.EVENT_TYPE, input.eventType);
         }
         if (input.columns == null) {
             return;
         }
+        String line = match.group();
+        int offset = match.start();
         for (int i = 0; i < input.columns.size(); i++) {
             InputData column = input.columns.get(i);
-            if (i < matcher.groupCount() && matcher.group(i + 1) != null) {
-                String value = matcher.group(i + 1).trim();
-                if (value.length() == 0) {
-                    continue;
+            if (i >= match.groupCount() || match.start(i + 1) < 0) {
+                continue;
+            }
+            /* Trim the value, as String.trim() does */
+            int start = match.start(i + 1) - offset;
+            int end = match.end(i + 1) - offset;
+            while (start < end && line.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && line.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                continue;
+            }
+            Object key = (column.tag.equals(Tag.OTHER) ? column.name : column.tag);
+            if (key.equals(Tag.EXTRA_FIELD_NAME)) {
+                // If tag extra field name, save the extra field name for
+                // the next extra field value and add the field to the map
+                String value = line.substring(start, end);
+                fLastExtraFieldName = value;
+                if (!fData.containsKey(value)) {
+                    fData.put(value, null);
                 }
-                Object key = (column.tag.equals(Tag.OTHER) ? column.name : column.tag);
-                if (key.equals(Tag.EXTRA_FIELD_NAME)) {
-                    // If tag extra field name, save the extra field name for
-                    // the next extra field value and add the field to the map
-                    fLastExtraFieldName = value;
-                    if (!fData.containsKey(value)) {
-                        fData.put(value, null);
-                    }
+                continue;
+            } else if (key.equals(Tag.EXTRA_FIELD_VALUE)) {
+                // If tag extra field value, use the extra field name as key
+                if (fLastExtraFieldName == null) {
                     continue;
-                } else if (key.equals(Tag.EXTRA_FIELD_VALUE)) {
-                    // If tag extra field value, use the extra field name as key
-                    if (fLastExtraFieldName == null) {
-                        continue;
-                    }
-                    key = fLastExtraFieldName;
                 }
-                if (column.action == CustomTraceDefinition.ACTION_SET) {
-                    fData.put(key, value);
+                key = fLastExtraFieldName;
+            }
+            if (column.action == CustomTraceDefinition.ACTION_SET) {
+                if (key.equals(Tag.TIMESTAMP) || key.equals(Tag.EVENT_TYPE)) {
+                    putData(key, line.substring(start, end));
                     if (key.equals(Tag.TIMESTAMP)) {
                         fData.put(Key.TIMESTAMP_INPUT_FORMAT, column.format);
                     }
-                } else if (column.action == CustomTraceDefinition.ACTION_APPEND) {
-                    String s = fData.get(key);
-                    if (s != null) {
-                        fData.put(key, s + value);
+                } else {
+                    putLazyData(key, new CustomLazyValue(line, start, end));
+                }
+            } else if (column.action == CustomTraceDefinition.ACTION_APPEND) {
+                String value = line.substring(start, end);
+                String s = getData(key);
+                if (s != null) {
+                    putData(key, s + value);
+                } else {
+                    putData(key, value);
+                }
+                if (key.equals(Tag.TIMESTAMP)) {
+                    String timeStampInputFormat = fData.get(Key.TIMESTAMP_INPUT_FORMAT);
+                    if (timeStampInputFormat != null) {
+                        fData.put(Key.TIMESTAMP_INPUT_FORMAT, timeStampInputFormat + column.format);
                     } else {
-                        fData.put(key, value);
-                    }
-                    if (key.equals(Tag.TIMESTAMP)) {
-                        String timeStampInputFormat = fData.get(Key.TIMESTAMP_INPUT_FORMAT);
-                        if (timeStampInputFormat != null) {
-                            fData.put(Key.TIMESTAMP_INPUT_FORMAT, timeStampInputFormat + column.format);
-                        } else {
-                            fData.put(Key.TIMESTAMP_INPUT_FORMAT, column.format);
-                        }
+                        fData.put(Key.TIMESTAMP_INPUT_FORMAT, column.format);
                     }
-                } else if (column.action == CustomTraceDefinition.ACTION_APPEND_WITH_SEPARATOR) {
-                    String s = fData.get(key);
-                    if (s != null) {
-                        fData.put(key, s + CustomTraceDefinition.SEPARATOR + value);
+                }
+            } else if (column.action == CustomTraceDefinition.ACTION_APPEND_WITH_SEPARATOR) {
+                String value = line.substring(start, end);
+                String s = getData(key);
+                if (s != null) {
+                    putData(key, s + CustomTraceDefinition.SEPARATOR + value);
+                } else {
+                    putData(key, value);
+                }
+                if (key.equals(Tag.TIMESTAMP)) {
+                    String timeStampInputFormat = fData.get(Key.TIMESTAMP_INPUT_FORMAT);
+                    if (timeStampInputFormat != null) {
+                        fData.put(Key.TIMESTAMP_INPUT_FORMAT, timeStampInputFormat + " | " + column.format); //$NON-NLS-1$
                     } else {
-                        fData.put(key, value);
-                    }
-                    if (key.equals(Tag.TIMESTAMP)) {
-                        String timeStampInputFormat = fData.get(Key.TIMESTAMP_INPUT_FORMAT);
-                        if (timeStampInputFormat != null) {
-                            fData.put(Key.TIMESTAMP_INPUT_FORMAT, timeStampInputFormat + " | " + column.format); //$NON-NLS-1$
-                        } else {
-                            fData.put(Key.TIMESTAMP_INPUT_FORMAT, column.format);
-                        }
+                        fData.put(Key.TIMESTAMP_INPUT_FORMAT, column.format);
                     }
                 }
             }
         }
     }
 
+    @Override
+    protected @Nullable Supplier<String> removeLazyData(Object key) {
+        Map<Object, CustomLazyValue> lazyData = fLazyData;
+        return (lazyData == null) ? null : lazyData.remove(key);
+    }
+
+    /**
+     * Get the current value of the payload data, extracting it from its line
+     * if it is lazy
+     */
+    private @Nullable String getData(Object key) {
+        String value = fData.get(key);
+        if (value == null) {
+            Supplier<String> lazyValue = removeLazyData(key);
+            if (lazyValue != null) {
+                value = lazyValue.get();
+            }
+        }
+        return value;
+    }
+
+    private void putData(Object key, String value) {
+        removeLazyData(key);
+        fData.put(key, value);
+    }
+
+    private void putLazyData(Object key, CustomLazyValue value) {
+        Map<Object, CustomLazyValue> lazyData = fLazyData;
+        if (lazyData == null) {
+            lazyData = new HashMap<>();
+            fLazyData = lazyData;
+        }
+        lazyData.put(key, value);
+        /* The null entry keeps the order of the fields */
+        fData.put(key, null);
+    }
+
 }
@@ -19,11 +19,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
+import java.util.regex.PatternSyntaxException;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -32,6 +35,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomEventAspects;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfTextLineIndexer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
@@ -70,6 +74,8 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     private final ITmfEventField fRootField;
     private BufferedRandomAccessFile fFile;
     private final @NonNull String fTraceTypeId;
+    /** Match result of the last line that was not a first line, reused for the next one */
+    private MatchResult fLineMatch;
 
     private static final char SEPARATOR = ':';
     private static final String CUSTOM_TXT_TRACE_TYPE_PREFIX = "custom.txt.trace" + SEPARATOR; //$NON-NLS-1$
@@ -169,10 +175,11 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
             String line = fFile.getNextLine();
             while (line != null) {
                 for (final InputLine input : getFirstLines()) {
-                    final Matcher matcher = input.getPattern().matcher(line);
-                    if (matcher.matches()) {
+                    final MatchResult match = input.match(line);
+                    if (match != null) {
                         context.setLocation(new TmfLongLocation(rawPos));
-                        context.firstLineMatcher = matcher;
+                        context.firstLineMatcher = (match instanceof Matcher) ? (Matcher) match : null;
+                        context.firstLineMatch = match;
                         context.firstLine = line;
                         context.nextLineLocation = fFile.getFilePointer();
                         context.inputLine = input;
@@ -288,10 +295,11 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                 boolean processed = false;
                 if (currentInput == null) {
                     for (final InputLine input : getFirstLines()) {
-                        final Matcher matcher = input.getPattern().matcher(line);
-                        if (matcher.matches()) {
+                        final MatchResult match = input.match(line, context.firstLineMatch);
+                        if (match != null) {
                             context.setLocation(new TmfLongLocation(rawPos));
-                            context.firstLineMatcher = matcher;
+                            context.firstLineMatcher = (match instanceof Matcher) ? (Matcher) match : null;
+                            context.firstLineMatch = match;
                             context.firstLine = line;
                             context.nextLineLocation = fFile.getFilePointer();
                             context.inputLine = input;
@@ -303,10 +311,11 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                         final List<InputLine> nextInputs = currentInput.getNextInputs(countMap);
                         if (nextInputs.size() == 0 || nextInputs.get(nextInputs.size() - 1).getMinCount() == 0) {
                             for (final InputLine input : getFirstLines()) {
-                                final Matcher matcher = input.getPattern().matcher(line);
-                                if (matcher.matches()) {
+                                final MatchResult match = input.match(line, context.firstLineMatch);
+                                if (match != null) {
                                     context.setLocation(new TmfLongLocation(rawPos));
-                                    context.firstLineMatcher = matcher;
+                                    context.firstLineMatcher = (match instanceof Matcher) ? (Matcher) match : null;
+                                    context.firstLineMatch = match;
                                     context.firstLine = line;
                                     context.nextLineLocation = fFile.getFilePointer();
                                     context.inputLine = input;
@@ -315,9 +324,10 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                             }
                         }
                         for (final InputLine input : nextInputs) {
-                            final Matcher matcher = input.getPattern().matcher(line);
-                            if (matcher.matches()) {
-                                event.processGroups(input, matcher);
+                            final MatchResult match = input.match(line, fLineMatch);
+                            if (match != null) {
+                                fLineMatch = match;
+                                event.processGroups(input, match);
                                 currentInput = input;
                                 if (countMap.get(currentInput) == null) {
                                     countMap.put(currentInput, 1);
@@ -357,9 +367,10 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                         }
                     }
                     if (!processed && currentInput != null) {
-                        final Matcher matcher = currentInput.getPattern().matcher(line);
-                        if (matcher.matches()) {
-                            event.processGroups(currentInput, matcher);
+                        final MatchResult match = currentInput.match(line, fLineMatch);
+                        if (match != null) {
+                            fLineMatch = match;
+                            event.processGroups(currentInput, match);
                             countMap.put(currentInput, checkNotNull(countMap.get(currentInput)) + 1);
                             if (currentInput.childrenInputs != null && currentInput.childrenInputs.size() > 0) {
                                 currentInput = currentInput.childrenInputs.get(0);
@@ -417,7 +428,7 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     public CustomTxtEvent parseFirstLine(final CustomTxtTraceContext context) {
         CustomTxtEventType eventType = new CustomTxtEventType(checkNotNull(fDefinition.definitionName), fRootField);
         final CustomTxtEvent event = new CustomTxtEvent(fDefinition, this, TmfTimestamp.ZERO, eventType);
-        event.processGroups(context.inputLine, context.firstLineMatcher);
+        event.processGroups(context.inputLine, context.firstLineMatch);
         event.setContent(new CustomEventContent(event, new StringBuffer(context.firstLine)));
         return event;
     }
@@ -460,9 +471,9 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
             while ((line != null) && (lineCount++ < MAX_LINES)) {
                 for (InputLine inputLine : fDefinition.inputs) {
-                    Matcher matcher = inputLine.getPattern().matcher(line);
-                    if (matcher.matches()) {
-                        int groupCount = matcher.groupCount();
+                    MatchResult match = inputLine.match(line);
+                    if (match != null) {
+                        int groupCount = match.groupCount();
                         matches += (1.0 + groupCount / ((double) groupCount + 1));
                         break;
                     }
@@ -498,7 +509,43 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        return new TmfBTreeTraceIndexer(this, interval);
+        /*
+         * An event starts at each line that matches a first line only if the
+         * lines that follow a first line are all optional, otherwise their
+         * minimum counts decide where the events end.
+         */
+        List<InputLine> firstLines = new ArrayList<>(getFirstLines());
+        try {
+            for (InputLine input : firstLines) {
+                if (!hasOnlyOptionalLines(input.childrenInputs)) {
+                    return new TmfBTreeTraceIndexer(this, interval);
+                }
+                /* Surface a regex that does not parse */
+                input.getPattern();
+            }
+        } catch (PatternSyntaxException e) {
+            return new TmfBTreeTraceIndexer(this, interval);
+        }
+        return new TmfTextLineIndexer(this, interval, line -> {
+            for (InputLine input : firstLines) {
+                if (input.matches(line)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private static boolean hasOnlyOptionalLines(List<InputLine> inputs) {
+        if (inputs == null) {
+            return true;
+        }
+        for (InputLine input : inputs) {
+            if (input.getMinCount() > 0 || !hasOnlyOptionalLines(input.childrenInputs)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2014 Ericsson
+ * Copyright (c) 2010, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,6 +13,7 @@
 package org.eclipse.tracecompass.tmf.core.parsers.custom;
 
 import java.util.Objects;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 
 import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.InputLine;
@@ -26,9 +27,20 @@ import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
  */
 public class CustomTxtTraceContext extends TmfContext {
 
-    /** Regex matcher for the first line of the trace */
+    /**
+     * Regex matcher for the first line of the trace, or null if the first
+     * line was tokenized without a regex
+     */
     public Matcher firstLineMatcher;
 
+    /**
+     * Match result for the first line of the trace, from the regex matcher or
+     * from the tokenizing of its columns
+     *
+     * @since 2.2
+     */
+    public MatchResult firstLineMatch;
+
     /** First line of the text file */
     public String firstLine;
 
@@ -56,6 +68,7 @@ public class CustomTxtTraceContext extends TmfContext {
         int result = super.hashCode();
         result = prime * result + ((firstLine == null) ? 0 : firstLine.hashCode());
         result = prime * result + ((firstLineMatcher == null) ? 0 : firstLineMatcher.hashCode());
+        result = prime * result + ((firstLineMatch == null) ? 0 : firstLineMatch.hashCode());
         result = prime * result + ((inputLine == null) ? 0 : inputLine.hashCode());
         result = prime * result + (int) (nextLineLocation ^ (nextLineLocation >>> 32));
         return result;
@@ -79,6 +92,9 @@ public class CustomTxtTraceContext extends TmfContext {
         if (!Objects.equals(firstLineMatcher, other.firstLineMatcher)) {
             return false;
         }
+        if (!Objects.equals(firstLineMatch, other.firstLineMatch)) {
+            return false;
+        }
         if (!Objects.equals(inputLine, other.inputLine)) {
             return false;
         }
@@ -27,6 +27,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -43,7 +45,9 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomTxtColumnTokenizer;
 import org.eclipse.tracecompass.tmf.core.project.model.TmfTraceType;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -110,6 +114,8 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
     private static final String MIN_ATTRIBUTE = Messages.CustomTxtTraceDefinition_min;
     private static final String MAX_ATTRIBUTE = Messages.CustomTxtTraceDefinition_max;
     private static final String REGEX_ELEMENT = Messages.CustomTxtTraceDefinition_regEx;
+    private static final String DELIMITER_ELEMENT = Messages.CustomTxtTraceDefinition_delimiter;
+    private static final String COLUMN_WIDTHS_ELEMENT = Messages.CustomTxtTraceDefinition_columnWidths;
     private static final String EVENT_TYPE_ELEMENT = Messages.CustomTxtTraceDefinition_eventType;
     private static final String INPUT_DATA_ELEMENT = Messages.CustomTxtTraceDefinition_inputData;
     private static final String ACTION_ATTRIBUTE = Messages.CustomTxtTraceDefinition_action;
@@ -175,6 +181,9 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
 
         private String regex;
         private Pattern pattern;
+        private @Nullable String delimiter;
+        private int @Nullable [] columnWidths;
+        private @Nullable CustomTxtColumnTokenizer tokenizer;
 
         /**
          * Default (empty) constructor.
@@ -207,14 +216,23 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
         public void setRegex(String regex) {
             this.regex = regex;
             this.pattern = null;
+            this.delimiter = null;
+            this.columnWidths = null;
+            this.tokenizer = null;
         }
 
         /**
-         * Get the current regex
+         * Get the current regex. If the columns of this line are split by a
+         * delimiter or have fixed widths, this is the regex that is equivalent
+         * to the tokenizing.
          *
          * @return The current regex
          */
         public String getRegex() {
+            CustomTxtColumnTokenizer columnTokenizer = getTokenizer();
+            if (columnTokenizer != null) {
+                return columnTokenizer.getRegex();
+            }
             return regex;
         }
 
@@ -226,12 +244,152 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
          *             If the regex does not parse correctly
          */
         public Pattern getPattern() throws PatternSyntaxException {
-            if (pattern == null) {
-                pattern = Pattern.compile(regex);
+            String currentRegex = getRegex();
+            if (pattern == null || !pattern.pattern().equals(currentRegex)) {
+                pattern = Pattern.compile(currentRegex);
             }
             return pattern;
         }
 
+        /**
+         * Set the delimiter that separates the columns of this line. The line
+         * is then split without a regex, in as many groups as the line has
+         * input data columns, the last group taking the rest of the line.
+         *
+         * @param delimiter
+         *            The non-empty delimiter, or null to use the regex
+         * @since 2.2
+         */
+        public void setDelimiter(@Nullable String delimiter) {
+            if (delimiter != null && delimiter.isEmpty()) {
+                throw new IllegalArgumentException("Empty delimiter"); //$NON-NLS-1$
+            }
+            this.delimiter = delimiter;
+            this.columnWidths = null;
+            this.tokenizer = null;
+        }
+
+        /**
+         * Get the delimiter that separates the columns of this line
+         *
+         * @return The delimiter, or null if the line is not split by a
+         *         delimiter
+         * @since 2.2
+         */
+        public @Nullable String getDelimiter() {
+            return delimiter;
+        }
+
+        /**
+         * Set the widths of the columns of this line. The line is then split
+         * without a regex, in one group per width followed by a last group
+         * that takes the rest of the line.
+         *
+         * @param widths
+         *            The widths, in characters, or null to use the regex
+         * @since 2.2
+         */
+        public void setColumnWidths(int @Nullable [] widths) {
+            this.columnWidths = (widths == null) ? null : widths.clone();
+            this.delimiter = null;
+            this.tokenizer = (widths == null) ? null : CustomTxtColumnTokenizer.fixedWidth(widths);
+        }
+
+        /**
+         * Get the widths of the columns of this line
+         *
+         * @return The widths, or null if the columns do not have fixed widths
+         * @since 2.2
+         */
+        public int @Nullable [] getColumnWidths() {
+            int[] widths = columnWidths;
+            return (widths == null) ? null : widths.clone();
+        }
+
+        /**
+         * Match a line of the trace against this input line. If the columns
+         * are split by a delimiter or have fixed widths, the line is
+         * tokenized without a regex, otherwise the whole line must match the
+         * regex.
+         *
+         * @param line
+         *            The line of the trace
+         * @return The match result whose groups are the columns, or null if
+         *         the line does not match
+         * @throws PatternSyntaxException
+         *             If the regex does not parse correctly
+         * @since 2.2
+         */
+        public @Nullable MatchResult match(String line) throws PatternSyntaxException {
+            return match(line, null);
+        }
+
+        /**
+         * Match a line of the trace against this input line, reusing the
+         * match result of a previous line. The match result is reused if it
+         * comes from the tokenizing of the columns of an input line, or from
+         * the regex of this input line.
+         *
+         * @param line
+         *            The line of the trace
+         * @param reuse
+         *            A match result returned by this method that is not used
+         *            anymore, or null. Its content is undefined after the
+         *            call.
+         * @return The match result whose groups are the columns, possibly
+         *         {@code reuse}, or null if the line does not match
+         * @throws PatternSyntaxException
+         *             If the regex does not parse correctly
+         * @since 2.2
+         */
+        public @Nullable MatchResult match(String line, @Nullable MatchResult reuse) throws PatternSyntaxException {
+            CustomTxtColumnTokenizer columnTokenizer = getTokenizer();
+            if (columnTokenizer != null) {
+                return columnTokenizer.match(line, reuse);
+            }
+            Pattern linePattern = getPattern();
+            Matcher matcher;
+            if (reuse instanceof Matcher && ((Matcher) reuse).pattern() == linePattern) {
+                matcher = ((Matcher) reuse).reset(line);
+            } else {
+                matcher = linePattern.matcher(line);
+            }
+            return matcher.matches() ? matcher : null;
+        }
+
+        /**
+         * Check if a line of the trace matches this input line, without
+         * keeping its columns.
+         *
+         * @param line
+         *            The line of the trace
+         * @return true if the line matches
+         * @throws PatternSyntaxException
+         *             If the regex does not parse correctly
+         * @since 2.2
+         */
+        public boolean matches(String line) throws PatternSyntaxException {
+            CustomTxtColumnTokenizer columnTokenizer = getTokenizer();
+            if (columnTokenizer != null) {
+                return columnTokenizer.matches(line);
+            }
+            return getPattern().matcher(line).matches();
+        }
+
+        private @Nullable CustomTxtColumnTokenizer getTokenizer() {
+            CustomTxtColumnTokenizer columnTokenizer = tokenizer;
+            String currentDelimiter = delimiter;
+            if (currentDelimiter != null) {
+                /* The number of groups follows the number of columns */
+                int nbColumns = (columns == null) ? 0 : columns.size();
+                if (columnTokenizer == null || columnTokenizer.getGroupCount() != Math.max(1, nbColumns)) {
+                    columnTokenizer = CustomTxtColumnTokenizer.delimited(currentDelimiter, nbColumns);
+                    tokenizer = columnTokenizer;
+                }
+            }
+            return columnTokenizer;
+        }
+
         /**
          * Add a child line to this line.
          *
@@ -359,7 +517,7 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
 
         @Override
         public String toString() {
-            return regex + " " + cardinality; //$NON-NLS-1$
+            return getRegex() + " " + cardinality; //$NON-NLS-1$
         }
     }
 
@@ -590,7 +748,28 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
 
         Element regexElement = doc.createElement(REGEX_ELEMENT);
         inputLineElement.appendChild(regexElement);
-        regexElement.appendChild(doc.createTextNode(inputLine.regex));
+        regexElement.appendChild(doc.createTextNode(inputLine.getRegex()));
+
+        String delimiter = inputLine.delimiter;
+        if (delimiter != null) {
+            Element delimiterElement = doc.createElement(DELIMITER_ELEMENT);
+            inputLineElement.appendChild(delimiterElement);
+            delimiterElement.appendChild(doc.createTextNode(delimiter));
+        }
+
+        int[] columnWidths = inputLine.columnWidths;
+        if (columnWidths != null) {
+            Element columnWidthsElement = doc.createElement(COLUMN_WIDTHS_ELEMENT);
+            inputLineElement.appendChild(columnWidthsElement);
+            StringBuilder sb = new StringBuilder();
+            for (int width : columnWidths) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(width);
+            }
+            columnWidthsElement.appendChild(doc.createTextNode(sb.toString()));
+        }
 
         if (inputLine.eventType != null) {
             Element eventTypeElement = doc.createElement(EVENT_TYPE_ELEMENT);
@@ -862,6 +1041,25 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
             } else if (nodeName.equals(REGEX_ELEMENT)) {
                 Element regexElement = (Element) node;
                 inputLine.regex = regexElement.getTextContent();
+            } else if (nodeName.equals(DELIMITER_ELEMENT)) {
+                Element delimiterElement = (Element) node;
+                String delimiter = delimiterElement.getTextContent();
+                if (delimiter.isEmpty()) {
+                    return null;
+                }
+                inputLine.delimiter = delimiter;
+            } else if (nodeName.equals(COLUMN_WIDTHS_ELEMENT)) {
+                Element columnWidthsElement = (Element) node;
+                try {
+                    int[] widths = Arrays.stream(columnWidthsElement.getTextContent().split(",")) //$NON-NLS-1$
+                            .map(String::trim)
+                            .filter(width -> !width.isEmpty())
+                            .mapToInt(Integer::parseInt)
+                            .toArray();
+                    inputLine.setColumnWidths(widths);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
             } else if (nodeName.equals(EVENT_TYPE_ELEMENT)) {
                 Element eventTypeElement = (Element) node;
                 inputLine.eventType = eventTypeElement.getTextContent();
@@ -15,15 +15,13 @@ package org.eclipse.tracecompass.tmf.core.parsers.custom;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.StringReader;
 import java.nio.ByteBuffer;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -32,6 +30,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomEventAspects;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordParser;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
@@ -53,15 +52,9 @@ import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.ErrorHandler;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.SAXParseException;
 
 /**
  * Trace object for custom XML trace parsers.
@@ -78,6 +71,7 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     private final CustomXmlTraceDefinition fDefinition;
     private final ITmfEventField fRootField;
     private final CustomXmlInputElement fRecordInputElement;
+    private final CustomXmlRecordParser fRecordParser;
     private BufferedRandomAccessFile fFile;
     private final @NonNull String fTraceTypeId;
 
@@ -96,6 +90,7 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         fDefinition = definition;
         fRootField = CustomEventType.getRootField(definition);
         fRecordInputElement = getRecordInputElement(fDefinition.rootInputElement);
+        fRecordParser = new CustomXmlRecordParser(fRecordInputElement);
         fTraceTypeId = buildTraceTypeId(definition.categoryName, definition.definitionName);
         setCacheSize(DEFAULT_CACHE_SIZE);
     }
@@ -279,9 +274,13 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
             }
             final StringBuffer elementBuffer = new StringBuffer("<"); //$NON-NLS-1$
             readElement(elementBuffer, fFile);
-            final Element element = parseElementBuffer(elementBuffer);
 
-            event = extractEvent(element, fRecordInputElement);
+            event = createEvent();
+            try {
+                fRecordParser.parse(new StringReader(elementBuffer.toString()), event);
+            } catch (final XMLStreamException e) {
+                Activator.logError("Error parsing element buffer. File: " + getPath(), e); //$NON-NLS-1$
+            }
             ((StringBuffer) event.getContentValue()).append(elementBuffer);
 
             long rawPos = fFile.getFilePointer();
@@ -303,50 +302,6 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return event;
     }
 
-    private Element parseElementBuffer(final StringBuffer elementBuffer) {
-        try {
-            final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder db = dbf.newDocumentBuilder();
-
-            // The following allows xml parsing without access to the dtd
-            final EntityResolver resolver = new EntityResolver() {
-                @Override
-                public InputSource resolveEntity(final String publicId, final String systemId) {
-                    final String empty = ""; //$NON-NLS-1$
-                    final ByteArrayInputStream bais = new ByteArrayInputStream(empty.getBytes());
-                    return new InputSource(bais);
-                }
-            };
-            db.setEntityResolver(resolver);
-
-            // The following catches xml parsing exceptions
-            db.setErrorHandler(new ErrorHandler() {
-                @Override
-                public void error(final SAXParseException saxparseexception) throws SAXException {
-                }
-
-                @Override
-                public void warning(final SAXParseException saxparseexception) throws SAXException {
-                }
-
-                @Override
-                public void fatalError(final SAXParseException saxparseexception) throws SAXException {
-                    throw saxparseexception;
-                }
-            });
-
-            final Document doc = db.parse(new ByteArrayInputStream(elementBuffer.toString().getBytes()));
-            return doc.getDocumentElement();
-        } catch (final ParserConfigurationException e) {
-            Activator.logError("Error parsing element buffer. File:" + getPath(), e); //$NON-NLS-1$
-        } catch (final SAXException e) {
-            Activator.logError("Error parsing element buffer. File:" + getPath(), e); //$NON-NLS-1$
-        } catch (final IOException e) {
-            Activator.logError("Error parsing element buffer. File: " + getPath(), e); //$NON-NLS-1$
-        }
-        return null;
-    }
-
     private static int indexOfElement(String elementName, String line, int fromIndex) {
         final String recordElementStart = '<' + elementName;
         int index = line.indexOf(recordElementStart, fromIndex);
@@ -511,10 +466,15 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
      * @return The extracted event
      */
     public CustomXmlEvent extractEvent(final Element element, final CustomXmlInputElement inputElement) {
+        final CustomXmlEvent event = createEvent();
+        parseElement(element, event, inputElement);
+        return event;
+    }
+
+    private CustomXmlEvent createEvent() {
         CustomXmlEventType eventType = new CustomXmlEventType(checkNotNull(fDefinition.definitionName), fRootField);
         final CustomXmlEvent event = new CustomXmlEvent(fDefinition, this, TmfTimestamp.ZERO, eventType);
         event.setContent(new CustomEventContent(event, new StringBuffer()));
-        parseElement(element, event, inputElement);
         return event;
     }
 
@@ -588,8 +548,7 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                     rafile.seek(rawPos + idx + 1); // +1 is for the <
                     final StringBuffer elementBuffer = new StringBuffer("<"); //$NON-NLS-1$
                     readElement(elementBuffer, rafile);
-                    final Element element = parseElementBuffer(elementBuffer);
-                    if (element != null) {
+                    if (CustomXmlRecordParser.isWellFormed(new StringReader(elementBuffer.toString()))) {
                         rafile.close();
                         return new TraceValidationStatus(CONFIDENCE, Activator.PLUGIN_ID);
                     }
@@ -38,8 +38,12 @@ public class Messages extends NLS {
     public static String CustomTxtTraceDefinition_action;
     public static String CustomTxtTraceDefinition_cardinality;
     public static String CustomTxtTraceDefinition_category;
+    /** @since 2.2*/
+    public static String CustomTxtTraceDefinition_columnWidths;
     public static String CustomTxtTraceDefinition_definition;
     public static String CustomTxtTraceDefinition_definitionRootElement;
+    /** @since 2.2*/
+    public static String CustomTxtTraceDefinition_delimiter;
     /** @since 2.1 */
     public static String CustomTxtTraceDefinition_eventType;
     public static String CustomTxtTraceDefinition_format;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -114,6 +114,19 @@ public interface ITmfEventRequest {
      */
     void setProviderFilter(ITmfFilter filter);
 
+    /**
+     * Get the constraints that the events of interest to this request
+     * satisfy. The event provider may use them to skip the other events, the
+     * request must still expect events that do not satisfy them.
+     *
+     * @return the hint of the request, {@link TmfEventRequestHint#NONE} by
+     *         default
+     * @since 2.2
+     */
+    default TmfEventRequestHint getHint() {
+        return TmfEventRequestHint.NONE;
+    }
+
     // ------------------------------------------------------------------------
     // Request state predicates
     // ------------------------------------------------------------------------
@@ -156,6 +169,26 @@ public interface ITmfEventRequest {
      */
     void handleData(@NonNull ITmfEvent event);
 
+    /**
+     * Process a batch of events. The default implementation passes them one
+     * at a time to {@link #handleData(ITmfEvent)}, until the request is
+     * completed or has read the number of events it requested. Overriding
+     * implementations must check both for each event, a batch can go past
+     * either. The array is reused by the caller, the events it contains can
+     * be kept but not the array itself.
+     *
+     * @param events
+     *            The trace events to process, from index 0
+     * @param count
+     *            The number of events in the array
+     * @since 2.2
+     */
+    default void handleData(@NonNull ITmfEvent[] events, int count) {
+        for (int i = 0; i < count && !isCompleted() && getNbRead() < getNbRequested(); i++) {
+            handleData(events[i]);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Request notifications
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -102,6 +102,8 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
 
     private ITmfFilter fEventFilter;
 
+    private TmfEventRequestHint fHint = TmfEventRequestHint.NONE;
+
     private int fDependencyLevel;
 
     private @Nullable Throwable fFailureCause;
@@ -288,6 +290,27 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
         fEventFilter = provider;
     }
 
+    /**
+     * @since 2.2
+     */
+    @Override
+    public TmfEventRequestHint getHint() {
+        return fHint;
+    }
+
+    /**
+     * Set the constraints that the events of interest to this request
+     * satisfy, before the request is sent. It is only used if the request is
+     * for all the events of its time range.
+     *
+     * @param hint
+     *            the hint, {@link TmfEventRequestHint#NONE} for no constraint
+     * @since 2.2
+     */
+    public void setHint(TmfEventRequestHint hint) {
+        fHint = hint;
+    }
+
     /** @since 2.0 */
     @Override
     public int getDependencyLevel() {
@@ -334,7 +357,7 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
     @Override
     public void handleStarted() {
         if (TmfCoreTracer.isRequestTraced()) {
-            TmfCoreTracer.traceRequest(getRequestId(), "STARTED"); //$NON-NLS-1$
+            TmfCoreTracer.traceRequestStarted(getRequestId());
         }
     }
 
@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.request;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
+
+/**
+ * Constraints that all the events of interest to a request satisfy, that an
+ * event provider can use to skip the other events early, for example without
+ * building them or without reading the parts of the trace that cannot contain
+ * them.
+ * <p>
+ * A hint is only an optimization: the provider is free to ignore it, and the
+ * request must still expect events that do not satisfy it. Hints are only
+ * applied to the requests of all the events of a time range, the ranks of the
+ * events are unknown when events are skipped.
+ * <p>
+ * A hint restricts the names of the event types, the CPUs and the time range
+ * of the events. It can be extracted from a filter with
+ * {@link #fromFilter(ITmfFilter)}.
+ *
+ * @since 2.2
+ */
+public final class TmfEventRequestHint {
+
+    /** The hint that does not constrain the events */
+    public static final TmfEventRequestHint NONE = new TmfEventRequestHint(null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private static final String TIMESTAMP_PATTERN = "T.SSSSSSSSS"; //$NON-NLS-1$
+
+    private final @Nullable Set<String> fEventTypes;
+    private final @Nullable Set<Integer> fCpus;
+    private final long fStartTime;
+    private final long fEndTime;
+
+    /**
+     * Constructor
+     *
+     * @param eventTypes
+     *            the names of the event types of interest, or null for all of
+     *            them
+     * @param cpus
+     *            the CPUs of interest, or null for all of them
+     * @param startTime
+     *            the start of the time range of interest in nanoseconds, or
+     *            Long.MIN_VALUE
+     * @param endTime
+     *            the end of the time range of interest in nanoseconds, or
+     *            Long.MAX_VALUE
+     */
+    public TmfEventRequestHint(@Nullable Set<String> eventTypes, @Nullable Set<Integer> cpus, long startTime, long endTime) {
+        fEventTypes = (eventTypes == null) ? null : Collections.unmodifiableSet(new HashSet<>(eventTypes));
+        fCpus = (cpus == null) ? null : Collections.unmodifiableSet(new HashSet<>(cpus));
+        fStartTime = startTime;
+        fEndTime = endTime;
+    }
+
+    /**
+     * Get the hint of a request that the event provider can apply. Events can
+     * only be skipped for the requests of all the events of a time range, the
+     * hint of the requests that count their events or that start at a given
+     * rank does not apply.
+     *
+     * @param request
+     *            the request
+     * @return the hint of the request, or {@link #NONE} if it does not apply
+     */
+    public static TmfEventRequestHint getApplicableHint(ITmfEventRequest request) {
+        if (request.getIndex() != 0 || request.getNbRequested() != ITmfEventRequest.ALL_DATA) {
+            return NONE;
+        }
+        return request.getHint();
+    }
+
+    // ------------------------------------------------------------------------
+    // Accessors
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the names of the event types of interest
+     *
+     * @return the event type names, or null if all of them are of interest
+     */
+    public @Nullable Set<String> getEventTypes() {
+        return fEventTypes;
+    }
+
+    /**
+     * Get the CPUs of interest
+     *
+     * @return the CPUs, or null if all of them are of interest
+     */
+    public @Nullable Set<Integer> getCpus() {
+        return fCpus;
+    }
+
+    /**
+     * Get the start of the time range of interest
+     *
+     * @return the start time in nanoseconds, Long.MIN_VALUE if unbounded
+     */
+    public long getStartTime() {
+        return fStartTime;
+    }
+
+    /**
+     * Get the end of the time range of interest
+     *
+     * @return the end time in nanoseconds, Long.MAX_VALUE if unbounded
+     */
+    public long getEndTime() {
+        return fEndTime;
+    }
+
+    /**
+     * Check if this hint constrains the events at all
+     *
+     * @return true if all the events are of interest
+     */
+    public boolean isUnconstrained() {
+        return fEventTypes == null && fCpus == null && fStartTime == Long.MIN_VALUE && fEndTime == Long.MAX_VALUE;
+    }
+
+    /**
+     * Check if an event satisfies the event type and time constraints of this
+     * hint. The CPU of an event is specific to its trace type, it is not
+     * checked.
+     *
+     * @param event
+     *            the event
+     * @return false if the event is not of interest
+     */
+    public boolean accepts(ITmfEvent event) {
+        long time = event.getTimestampNanos();
+        if (time < fStartTime || time > fEndTime) {
+            return false;
+        }
+        Set<String> eventTypes = fEventTypes;
+        return eventTypes == null || eventTypes.contains(event.getName());
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Check if all the events of interest to another hint are also of
+     * interest to this one, so that a provider reading with this hint returns
+     * all the events that one needs.
+     *
+     * @param other
+     *            the other hint
+     * @return true if this hint is less or equally constraining
+     */
+    public boolean covers(TmfEventRequestHint other) {
+        return contains(fEventTypes, other.fEventTypes) &&
+                contains(fCpus, other.fCpus) &&
+                fStartTime <= other.fStartTime &&
+                fEndTime >= other.fEndTime;
+    }
+
+    /**
+     * Get the hint of the events of interest to this hint or to another one,
+     * used when requests are coalesced.
+     *
+     * @param other
+     *            the other hint
+     * @return the union of the two hints
+     */
+    public TmfEventRequestHint union(TmfEventRequestHint other) {
+        if (covers(other)) {
+            return this;
+        }
+        if (other.covers(this)) {
+            return other;
+        }
+        return new TmfEventRequestHint(union(fEventTypes, other.fEventTypes), union(fCpus, other.fCpus),
+                Math.min(fStartTime, other.fStartTime), Math.max(fEndTime, other.fEndTime));
+    }
+
+    /**
+     * Get the hint of the events of interest to both this hint and another
+     * one.
+     *
+     * @param other
+     *            the other hint
+     * @return the intersection of the two hints
+     */
+    public TmfEventRequestHint intersection(TmfEventRequestHint other) {
+        if (covers(other)) {
+            return other;
+        }
+        if (other.covers(this)) {
+            return this;
+        }
+        return new TmfEventRequestHint(intersection(fEventTypes, other.fEventTypes), intersection(fCpus, other.fCpus),
+                Math.max(fStartTime, other.fStartTime), Math.min(fEndTime, other.fEndTime));
+    }
+
+    private static <T> boolean contains(@Nullable Set<T> set, @Nullable Set<T> subset) {
+        return set == null || (subset != null && set.containsAll(subset));
+    }
+
+    private static <T> @Nullable Set<T> union(@Nullable Set<T> set1, @Nullable Set<T> set2) {
+        if (set1 == null || set2 == null) {
+            return null;
+        }
+        Set<T> union = new HashSet<>(set1);
+        union.addAll(set2);
+        return union;
+    }
+
+    private static <T> @Nullable Set<T> intersection(@Nullable Set<T> set1, @Nullable Set<T> set2) {
+        if (set1 == null) {
+            return set2;
+        }
+        if (set2 == null) {
+            return set1;
+        }
+        Set<T> intersection = new HashSet<>(set1);
+        intersection.retainAll(set2);
+        return intersection;
+    }
+
+    // ------------------------------------------------------------------------
+    // Filter analysis
+    // ------------------------------------------------------------------------
+
+    /**
+     * Extract the constraints that the events matching a filter satisfy.
+     * <p>
+     * The event types are constrained by the conditions that test the event
+     * type for equality, the CPUs by the ones that test the CPU for equality,
+     * and the time range by the comparisons of the timestamp. The conditions
+     * of an AND node all constrain the events, the conditions of an OR node
+     * are combined. Negated nodes, nodes of other types and conditions on
+     * other aspects do not constrain the events.
+     *
+     * @param filter
+     *            the filter
+     * @return the hint, {@link #NONE} if the filter does not constrain the
+     *         events in a way that can be extracted
+     */
+    public static TmfEventRequestHint fromFilter(ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode)) {
+            return NONE;
+        }
+        return analyze((ITmfFilterTreeNode) filter);
+    }
+
+    private static TmfEventRequestHint analyze(ITmfFilterTreeNode node) {
+        /* Subclasses may override matches(), only the exact classes are known */
+        Class<?> nodeClass = node.getClass();
+        if (nodeClass == TmfFilterRootNode.class || nodeClass == TmfFilterTraceTypeNode.class ||
+                (nodeClass == TmfFilterAndNode.class && !((TmfFilterAndNode) node).isNot())) {
+            /* The trace type of a trace type node is not part of the hint */
+            TmfEventRequestHint hint = NONE;
+            for (ITmfFilterTreeNode child : node.getChildren()) {
+                hint = hint.intersection(analyze(child));
+            }
+            return hint;
+        }
+        if (nodeClass == TmfFilterNode.class || (nodeClass == TmfFilterOrNode.class && !((TmfFilterOrNode) node).isNot())) {
+            ITmfFilterTreeNode[] children = node.getChildren();
+            if (children.length == 0) {
+                return NONE;
+            }
+            TmfEventRequestHint hint = analyze(children[0]);
+            for (int i = 1; i < children.length && !hint.isUnconstrained(); i++) {
+                hint = hint.union(analyze(children[i]));
+            }
+            return hint;
+        }
+        if (nodeClass == TmfFilterEqualsNode.class) {
+            return analyzeEquals((TmfFilterEqualsNode) node);
+        }
+        if (nodeClass == TmfFilterCompareNode.class) {
+            return analyzeCompare((TmfFilterCompareNode) node);
+        }
+        return NONE;
+    }
+
+    private static TmfEventRequestHint analyzeEquals(TmfFilterEqualsNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        String value = node.getValue();
+        if (node.isNot() || value == null) {
+            return NONE;
+        }
+        if (TmfBaseAspects.getEventTypeAspect().equals(aspect) && !node.isIgnoreCase()) {
+            return new TmfEventRequestHint(Collections.singleton(value), null, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        if (aspect instanceof TmfCpuAspect) {
+            Integer cpu = toCpu(value);
+            if (cpu != null) {
+                return new TmfEventRequestHint(null, Collections.singleton(cpu), Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        }
+        return NONE;
+    }
+
+    private static TmfEventRequestHint analyzeCompare(TmfFilterCompareNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        String value = node.getValue();
+        if (node.isNot() || value == null) {
+            return NONE;
+        }
+        if (node.getType() == TmfFilterCompareNode.Type.NUM && node.getResult() == 0 && aspect instanceof TmfCpuAspect) {
+            Integer cpu = toCpu(value);
+            if (cpu != null) {
+                return new TmfEventRequestHint(null, Collections.singleton(cpu), Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        }
+        if (node.getType() == TmfFilterCompareNode.Type.TIMESTAMP && TmfBaseAspects.getTimestampAspect().equals(aspect)) {
+            long time;
+            try {
+                time = new TmfTimestampFormat(TIMESTAMP_PATTERN).parseValue(value);
+            } catch (ParseException e) {
+                return NONE;
+            }
+            switch (node.getResult()) {
+            case -1:
+                return new TmfEventRequestHint(null, null, Long.MIN_VALUE, time);
+            case 0:
+                return new TmfEventRequestHint(null, null, time, time);
+            case 1:
+                return new TmfEventRequestHint(null, null, time, Long.MAX_VALUE);
+            default:
+                return NONE;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Get the CPU number of a value that is its canonical representation, as
+     * the aspect value would be compared to it.
+     */
+    private static @Nullable Integer toCpu(String value) {
+        try {
+            int cpu = Integer.parseInt(value);
+            return Integer.toString(cpu).equals(value) ? cpu : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Object
+    // ------------------------------------------------------------------------
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fEventTypes, fCpus, fStartTime, fEndTime);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TmfEventRequestHint)) {
+            return false;
+        }
+        TmfEventRequestHint other = (TmfEventRequestHint) obj;
+        return Objects.equals(fEventTypes, other.fEventTypes) &&
+                Objects.equals(fCpus, other.fCpus) &&
+                fStartTime == other.fStartTime &&
+                fEndTime == other.fEndTime;
+    }
+
+    @Override
+    @SuppressWarnings("nls")
+    public String toString() {
+        return "TmfEventRequestHint [fEventTypes=" + fEventTypes + ", fCpus=" + fCpus +
+                ", fStartTime=" + fStartTime + ", fEndTime=" + fEndTime + "]";
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -80,6 +80,16 @@ public class TmfSelectionRangeUpdatedSignal extends TmfSignal {
         return fEndTime;
     }
 
+    /**
+     * A new selection replaces the previous one.
+     *
+     * @since 2.2
+     */
+    @Override
+    public boolean supersedes(TmfSignal signal) {
+        return signal.getClass() == getClass();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -70,4 +70,18 @@ public abstract class TmfSignal {
         return fReference;
     }
 
+    /**
+     * Check if this signal makes an older signal obsolete. The listeners
+     * registered with {@link TmfSignalManager#registerAsync(Object)} that did
+     * not handle the older signal yet only receive this one.
+     *
+     * @param signal
+     *            The older signal
+     * @return True if the older signal does not need to be handled anymore
+     * @since 2.2
+     */
+    public boolean supersedes(TmfSignal signal) {
+        return false;
+    }
+
 }
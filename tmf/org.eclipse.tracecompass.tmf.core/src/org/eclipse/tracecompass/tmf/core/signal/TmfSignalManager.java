@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,9 +13,14 @@
 
 package org.eclipse.tracecompass.tmf.core.signal;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +34,10 @@ import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
  * This class manages the set of signal listeners and the signals they are
  * interested in. When a signal is broadcasted, the appropriate listeners
  * signal handlers are invoked.
+ * <p>
+ * The handlers are invoked in the thread that dispatches the signal, except
+ * for the listeners registered with {@link #registerAsync(Object)}, which
+ * receive the signals in order on their own serial executor.
  *
  * @version 1.0
  * @author Francois Chouinard
@@ -39,12 +48,28 @@ public class TmfSignalManager {
     // Note: listeners could be restricted to ITmfComponents but there is no
     // harm in letting anyone use this since it is not tied to anything but
     // the signal data type.
-    private static Map<Object, Method[]> fListeners = new HashMap<>();
-    private static Map<Object, Method[]> fVIPListeners = new HashMap<>();
+    // The maps are replaced, never modified, so that signals can be sent
+    // without holding the registration lock.
+    private static volatile Map<Object, Listener> fListeners = Collections.emptyMap();
+    private static volatile Map<Object, Listener> fVIPListeners = Collections.emptyMap();
+
+    // The signal handlers of each listener class
+    private static final ClassValue<SignalHandler[]> fHandlers = new ClassValue<SignalHandler[]>() {
+        @Override
+        protected SignalHandler[] computeValue(Class<?> type) {
+            return getSignalHandlers(type);
+        }
+    };
+
+    // The lock that serializes the signals dispatched in the callers' threads
+    private static final Object fDispatchLock = new Object();
 
     // The signal executor for asynchronous signals
     private static final ExecutorService fExecutor = Executors.newSingleThreadExecutor();
 
+    // The executor on which the asynchronous listeners handle their signals
+    private static final ExecutorService fListenerExecutor = Executors.newCachedThreadPool();
+
     // If requested, add universal signal tracer
     // TODO: Temporary solution: should be enabled/disabled dynamically
     private static boolean fTraceIsActive = false;
@@ -67,9 +92,9 @@ public class TmfSignalManager {
      */
     public static synchronized void register(Object listener) {
         deregister(listener); // make sure that listener is only registered once
-        Method[] methods = getSignalHandlerMethods(listener);
-        if (methods.length > 0) {
-            fListeners.put(listener, methods);
+        SignalHandler[] handlers = fHandlers.get(listener.getClass());
+        if (handlers.length > 0) {
+            fListeners = put(fListeners, listener, new Listener(listener, handlers));
         }
     }
 
@@ -83,9 +108,31 @@ public class TmfSignalManager {
      */
     public static synchronized void registerVIP(Object listener) {
         deregister(listener); // make sure that listener is only registered once
-        Method[] methods = getSignalHandlerMethods(listener);
-        if (methods.length > 0) {
-            fVIPListeners.put(listener, methods);
+        SignalHandler[] handlers = fHandlers.get(listener.getClass());
+        if (handlers.length > 0) {
+            fVIPListeners = put(fVIPListeners, listener, new Listener(listener, handlers));
+        }
+    }
+
+    /**
+     * Register an object to the signal manager as an asynchronous listener.
+     * Its handler methods are called one at a time, in the order of the
+     * signals, but on an executor of the listener rather than in the thread
+     * that dispatches the signal, so that a slow handler does not delay the
+     * sender and the other listeners.
+     * <p>
+     * A signal that is still waiting to be handled by the listener is dropped
+     * if a newer signal {@link TmfSignal#supersedes supersedes} it.
+     *
+     * @param listener
+     *            The object that will be notified of new signals
+     * @since 2.2
+     */
+    public static synchronized void registerAsync(Object listener) {
+        deregister(listener); // make sure that listener is only registered once
+        SignalHandler[] handlers = fHandlers.get(listener.getClass());
+        if (handlers.length > 0) {
+            fListeners = put(fListeners, listener, new AsyncListener(listener, handlers));
         }
     }
 
@@ -97,26 +144,45 @@ public class TmfSignalManager {
      *            The object to de-register
      */
     public static synchronized void deregister(Object listener) {
-        fVIPListeners.remove(listener);
-        fListeners.remove(listener);
+        fVIPListeners = remove(fVIPListeners, listener);
+        fListeners = remove(fListeners, listener);
+    }
+
+    private static Map<Object, Listener> put(Map<Object, Listener> listeners, Object listener, Listener entry) {
+        Map<Object, Listener> copy = new HashMap<>(listeners);
+        copy.put(listener, entry);
+        return copy;
+    }
+
+    private static Map<Object, Listener> remove(Map<Object, Listener> listeners, Object listener) {
+        if (!listeners.containsKey(listener)) {
+            return listeners;
+        }
+        Map<Object, Listener> copy = new HashMap<>(listeners);
+        Listener entry = copy.remove(listener);
+        if (entry != null) {
+            entry.close();
+        }
+        return copy;
     }
 
     /**
-     * Returns the list of signal handlers in the listener. Signal handler name
-     * is irrelevant; only the annotation (@TmfSignalHandler) is important.
-     *
-     * @param listener
-     * @return
+     * Returns the list of signal handlers of a listener class. Signal handler
+     * name is irrelevant; only the annotation (@TmfSignalHandler) is
+     * important. The method handles are only looked up once per class.
      */
-    private static Method[] getSignalHandlerMethods(Object listener) {
-        List<Method> handlers = new ArrayList<>();
-        Method[] methods = listener.getClass().getMethods();
+    private static SignalHandler[] getSignalHandlers(Class<?> listenerClass) {
+        List<SignalHandler> handlers = new ArrayList<>();
+        Method[] methods = listenerClass.getMethods();
         for (Method method : methods) {
             if (method.isAnnotationPresent(TmfSignalHandler.class)) {
-                handlers.add(method);
+                SignalHandler handler = SignalHandler.create(method);
+                if (handler != null) {
+                    handlers.add(handler);
+                }
             }
         }
-        return handlers.toArray(new Method[handlers.size()]);
+        return handlers.toArray(new SignalHandler[handlers.size()]);
     }
 
     static int fSignalId = 0;
@@ -133,15 +199,20 @@ public class TmfSignalManager {
      * For synchronization purposes, the signal is bracketed by two synch
      * signals.
      *
+     * The asynchronous listeners are only given the signal, and handle it
+     * later on their own executor.
+     *
      * @param signal
      *            the signal to dispatch
      */
-    public static synchronized void dispatchSignal(TmfSignal signal) {
-        int signalId = fSignalId++;
-        sendSignal(new TmfStartSynchSignal(signalId));
-        signal.setReference(signalId);
-        sendSignal(signal);
-        sendSignal(new TmfEndSynchSignal(signalId));
+    public static void dispatchSignal(TmfSignal signal) {
+        synchronized (fDispatchLock) {
+            int signalId = fSignalId++;
+            sendSignal(new TmfStartSynchSignal(signalId));
+            signal.setReference(signalId);
+            sendSignal(signal);
+            sendSignal(new TmfEndSynchSignal(signalId));
+        }
     }
 
     /**
@@ -171,6 +242,7 @@ public class TmfSignalManager {
      */
     public static void dispose() {
         fExecutor.shutdown();
+        fListenerExecutor.shutdown();
     }
 
     private static void sendSignal(TmfSignal signal) {
@@ -178,51 +250,175 @@ public class TmfSignalManager {
         sendSignal(fListeners, signal);
     }
 
-    private static void sendSignal(Map<Object, Method[]> listeners, TmfSignal signal) {
+    private static void sendSignal(Map<Object, Listener> listeners, TmfSignal signal) {
 
         if (TmfCoreTracer.isSignalTraced()) {
             TmfCoreTracer.traceSignal(signal, "(start)"); //$NON-NLS-1$
         }
 
-        // Build the list of listener methods that are registered for this signal
-        Class<?> signalClass = signal.getClass();
-        Map<Object, List<Method>> targets = new HashMap<>();
-        targets.clear();
-        for (Map.Entry<Object, Method[]> entry : listeners.entrySet()) {
-            List<Method> matchingMethods = new ArrayList<>();
-            for (Method method : entry.getValue()) {
-                if (method.getParameterTypes()[0].isAssignableFrom(signalClass)) {
-                    matchingMethods.add(method);
+        for (Listener listener : listeners.values()) {
+            listener.send(signal);
+        }
+
+        if (TmfCoreTracer.isSignalTraced()) {
+            TmfCoreTracer.traceSignal(signal, "(end)"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * A signal handler method, with its method handle
+     */
+    private static final class SignalHandler {
+
+        private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class, TmfSignal.class);
+
+        private final Method fMethod;
+        private final Class<?> fSignalClass;
+        private final MethodHandle fHandle;
+
+        private SignalHandler(Method method, MethodHandle handle) {
+            fMethod = method;
+            fSignalClass = method.getParameterTypes()[0];
+            fHandle = handle;
+        }
+
+        private static SignalHandler create(Method method) {
+            if (method.getParameterTypes().length != 1) {
+                Activator.logError("Signal handler " + method + " must have one parameter"); //$NON-NLS-1$ //$NON-NLS-2$
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            try {
+                MethodHandle handle;
+                try {
+                    handle = lookup.unreflect(method);
+                } catch (IllegalAccessException e) {
+                    /* A public method of a class that is not public */
+                    method.setAccessible(true);
+                    handle = lookup.unreflect(method);
                 }
+                return new SignalHandler(method, handle.asType(HANDLER_TYPE));
+            } catch (IllegalAccessException | SecurityException e) {
+                Activator.logError("Cannot access signal handler " + method, e); //$NON-NLS-1$
+                return null;
             }
-            if (!matchingMethods.isEmpty()) {
-                targets.put(entry.getKey(), matchingMethods);
+        }
+
+        private boolean accepts(TmfSignal signal) {
+            return fSignalClass.isInstance(signal);
+        }
+
+        private void invoke(Object listener, TmfSignal signal) {
+            long start = TmfCoreTracer.isSignalTraced() ? System.nanoTime() : 0;
+            try {
+                fHandle.invokeExact(listener, signal);
+            } catch (Throwable e) {
+                Activator.logError("Exception handling signal " + signal + " in method " + fMethod, e); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (TmfCoreTracer.isSignalTraced()) {
+                long latency = System.nanoTime() - start;
+                String hash = String.format("%1$08X", listener.hashCode()); //$NON-NLS-1$
+                String target = "[" + hash + "] " + listener.getClass().getSimpleName() + ":" + fMethod.getName() //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        + " (" + latency + " ns)"; //$NON-NLS-1$ //$NON-NLS-2$
+                TmfCoreTracer.traceSignal(signal, target);
             }
         }
+    }
 
-        // Call the signal handlers
-        for (Map.Entry<Object, List<Method>> entry : targets.entrySet()) {
-            for (Method method : entry.getValue()) {
-                try {
-                    method.invoke(entry.getKey(), new Object[] { signal });
-                    if (TmfCoreTracer.isSignalTraced()) {
-                        Object key = entry.getKey();
-                        String hash = String.format("%1$08X", entry.getKey().hashCode()); //$NON-NLS-1$
-                        String target = "[" + hash + "] " + key.getClass().getSimpleName() + ":" + method.getName();   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
-                        TmfCoreTracer.traceSignal(signal, target);
+    /**
+     * A registered listener, which handles the signals in the thread that
+     * sends them
+     */
+    private static class Listener {
+
+        private final Object fListener;
+        private final SignalHandler[] fSignalHandlers;
+        private volatile boolean fRegistered = true;
+
+        private Listener(Object listener, SignalHandler[] handlers) {
+            fListener = listener;
+            fSignalHandlers = handlers;
+        }
+
+        protected void send(TmfSignal signal) {
+            handle(signal);
+        }
+
+        protected final void handle(TmfSignal signal) {
+            for (SignalHandler handler : fSignalHandlers) {
+                /* A handler can de-register the listener */
+                if (!fRegistered) {
+                    return;
+                }
+                if (handler.accepts(signal)) {
+                    handler.invoke(fListener, signal);
+                }
+            }
+        }
+
+        protected final boolean accepts(TmfSignal signal) {
+            for (SignalHandler handler : fSignalHandlers) {
+                if (handler.accepts(signal)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        protected void close() {
+            fRegistered = false;
+        }
+    }
+
+    /**
+     * A registered listener that handles its signals in order on the shared
+     * listener executor, one at a time
+     */
+    private static final class AsyncListener extends Listener {
+
+        private final Deque<TmfSignal> fQueue = new ArrayDeque<>();
+        private boolean fScheduled = false;
+
+        private AsyncListener(Object listener, SignalHandler[] handlers) {
+            super(listener, handlers);
+        }
+
+        @Override
+        protected void send(TmfSignal signal) {
+            if (!accepts(signal)) {
+                return;
+            }
+            synchronized (this) {
+                fQueue.removeIf(queued -> signal.supersedes(queued));
+                fQueue.add(signal);
+                if (fScheduled || fListenerExecutor.isShutdown()) {
+                    return;
+                }
+                fScheduled = true;
+            }
+            fListenerExecutor.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                TmfSignal signal;
+                synchronized (this) {
+                    signal = fQueue.poll();
+                    if (signal == null) {
+                        fScheduled = false;
+                        return;
                     }
-                } catch (IllegalArgumentException e) {
-                    Activator.logError("Exception handling signal " + signal + " in method " + method, e); //$NON-NLS-1$ //$NON-NLS-2$
-                } catch (IllegalAccessException e) {
-                    Activator.logError("Exception handling signal " + signal + " in method " + method, e); //$NON-NLS-1$ //$NON-NLS-2$
-                } catch (InvocationTargetException e) {
-                    Activator.logError("Exception handling signal " + signal + " in method " + method, e); //$NON-NLS-1$ //$NON-NLS-2$
                 }
+                handle(signal);
             }
         }
 
-        if (TmfCoreTracer.isSignalTraced()) {
-            TmfCoreTracer.traceSignal(signal, "(end)"); //$NON-NLS-1$
+        @Override
+        protected void close() {
+            super.close();
+            synchronized (this) {
+                fQueue.clear();
+            }
         }
     }
 
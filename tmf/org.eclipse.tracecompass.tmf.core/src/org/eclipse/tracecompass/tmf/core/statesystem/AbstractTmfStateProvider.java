@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -135,6 +135,21 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
         fEventsQueue.put(curEvent);
     }
 
+    /**
+     * @since 2.2
+     */
+    @Override
+    public void processEvents(ITmfEvent[] events, int count) {
+        /* Make sure the target state system has been assigned */
+        if (!fStateSystemAssigned) {
+            Activator.logError("Cannot process event without a target state system"); //$NON-NLS-1$
+            return;
+        }
+
+        /* Insert the whole batch into the events queue */
+        fEventsQueue.putAll(events, count);
+    }
+
     /**
      * Block the caller until the events queue is empty.
      */
@@ -209,7 +224,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
                     continue;
                 }
                 currentEvent = event;
-                fSafeTime = event.getTimestamp().toNanos() - 1;
+                fSafeTime = event.getTimestampNanos() - 1;
                 eventHandle(event);
                 event = fEventsQueue.take();
             }
@@ -221,7 +236,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
         private void closeStateSystem() {
             ITmfEvent event = currentEvent;
             final long endTime = (event == null) ? 0 :
-                    event.getTimestamp().toNanos();
+                    event.getTimestampNanos();
 
             if (fSS != null) {
                 fSS.closeHistory(endTime);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  * Copyright (c) 2010, 2011 École Polytechnique de Montréal
  * Copyright (c) 2010, 2011 Alexandre Montplaisir <alexandre.montplaisir@gmail.com>
  *
@@ -98,6 +98,23 @@ public interface ITmfStateProvider {
      */
     void processEvent(ITmfEvent event);
 
+    /**
+     * Send a batch of events to this input plugin for processing. The default
+     * implementation calls {@link #processEvent} for each of them. The array
+     * may be reused by the caller after this method returns.
+     *
+     * @param events
+     *            The events to process, from index 0
+     * @param count
+     *            The number of events in the array
+     * @since 2.2
+     */
+    default void processEvents(ITmfEvent[] events, int count) {
+        for (int i = 0; i < count; i++) {
+            processEvent(events[i]);
+        }
+    }
+
     /**
      * Provide a non-initialized copy of this state input plugin. You will need
      * to call {@link #assignTargetStateSystem} on it to assign its target.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,6 +15,7 @@ package org.eclipse.tracecompass.tmf.core.statesystem;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -481,6 +482,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     private class StateSystemEventRequest extends TmfEventRequest {
         private final ITmfStateProvider sci;
         private final ITmfTrace trace;
+        private ITmfEvent[] fBatch = new ITmfEvent[0];
 
         public StateSystemEventRequest(ITmfStateProvider sp, TmfTimeRange timeRange, int index) {
             super(ITmfEvent.class,
@@ -497,19 +499,45 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         @Override
         public void handleData(final ITmfEvent event) {
             super.handleData(event);
-            if (event.getTrace() == trace) {
+            if (isFromTrace(event)) {
                 sci.processEvent(event);
-            } else if (trace instanceof TmfExperiment) {
+            }
+        }
+
+        @Override
+        public void handleData(ITmfEvent[] events, int count) {
+            if (fBatch.length < count) {
+                fBatch = new ITmfEvent[count];
+            }
+            ITmfEvent[] batch = fBatch;
+            int nbEvents = 0;
+            for (int i = 0; i < count && !isCompleted() && getNbRead() < getNbRequested(); i++) {
+                ITmfEvent event = events[i];
+                super.handleData(event);
+                if (isFromTrace(event)) {
+                    batch[nbEvents++] = event;
+                }
+            }
+            sci.processEvents(batch, nbEvents);
+            Arrays.fill(batch, 0, nbEvents, null);
+        }
+
+        private boolean isFromTrace(ITmfEvent event) {
+            if (event.getTrace() == trace) {
+                return true;
+            }
+            if (trace instanceof TmfExperiment) {
                 /*
                  * If the request is for an experiment, check if the event is
                  * from one of the child trace
                  */
                 for (ITmfTrace childTrace : ((TmfExperiment) trace).getTraces()) {
                     if (childTrace == event.getTrace()) {
-                        sci.processEvent(event);
+                        return true;
                     }
                 }
             }
+            return false;
         }
 
         @Override
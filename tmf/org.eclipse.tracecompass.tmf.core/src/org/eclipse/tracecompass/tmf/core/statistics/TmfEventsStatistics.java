@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -268,7 +268,7 @@ public class TmfEventsStatistics implements ITmfStatistics {
         public void handleData(ITmfEvent event) {
             super.handleData(event);
             if (event.getTrace() == trace) {
-                long ts = event.getTimestamp().toNanos();
+                long ts = event.getTimestampNanos();
                 Long key = results.floorKey(ts);
                 if (key != null) {
                     incrementValue(key);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -96,6 +96,21 @@ public class TmfTimeRange {
         return (fStartTime.compareTo(ts) <= 0) && (fEndTime.compareTo(ts) >= 0);
     }
 
+    /**
+     * Check if a timestamp in nanoseconds is within the time range. This avoids
+     * creating a timestamp object for the primitive timestamps of the events,
+     * see {@link org.eclipse.tracecompass.tmf.core.event.ITmfEvent#getTimestampNanos()}.
+     *
+     * @param nanos
+     *            The timestamp to check, in nanoseconds
+     * @return True if [startTime] <= [nanos] <= [endTime], at the nanosecond
+     *         precision
+     * @since 2.2
+     */
+    public boolean contains(final long nanos) {
+        return (fStartTime.toNanos() <= nanos) && (fEndTime.toNanos() >= nanos);
+    }
+
     /**
      * Check if the time range is within the time range
      *
@@ -190,6 +205,11 @@ public class TmfTimeRange {
             return true;
         }
 
+        @Override
+        public boolean contains(long nanos) {
+            return true;
+        }
+
         @Override
         public boolean contains(TmfTimeRange range) {
             return true;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2009, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -226,6 +226,18 @@ public interface ITmfTrace extends ITmfEventProvider {
      */
     int getCacheSize();
 
+    /**
+     * Get the number of contexts of this trace that can be read concurrently
+     * without slowing each other down, for instance because the trace keeps a
+     * limited number of file handles for its contexts.
+     *
+     * @return the number of contexts that can be read in parallel
+     * @since 2.2
+     */
+    default int getMaxConcurrentContexts() {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Index the trace. Depending on the trace type, this could be done at the
      * constructor or initTrace phase too, so this could be implemented as a
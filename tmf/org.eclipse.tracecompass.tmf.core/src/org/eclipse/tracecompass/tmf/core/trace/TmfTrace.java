@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2009, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -44,6 +44,7 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequestHint;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
@@ -521,10 +522,11 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
         ITmfContext context = fIndexer.seekIndex(timestamp);
 
         // And locate the requested event context
+        long target = timestamp.toNanos();
         ITmfLocation previousLocation = context.getLocation();
         long previousRank = context.getRank();
         ITmfEvent event = getNext(context);
-        while (event != null && event.getTimestamp().compareTo(timestamp) < 0) {
+        while (event != null && event.getTimestampNanos() < target) {
             previousLocation = context.getLocation();
             previousRank = context.getRank();
             event = getNext(context);
@@ -559,6 +561,24 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
         return event;
     }
 
+    /**
+     * Read the events of a batch while holding the trace lock once.
+     *
+     * @since 2.2
+     */
+    @Override
+    public synchronized int getNext(ITmfContext context, ITmfEvent[] events, int max) {
+        int count = 0;
+        while (count < max) {
+            ITmfEvent event = getNext(context);
+            if (event == null) {
+                break;
+            }
+            events[count++] = event;
+        }
+        return count;
+    }
+
     /**
      * Update the trace attributes
      *
@@ -579,16 +599,24 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
      * @since 1.1
      */
     protected synchronized void updateAttributes(final ITmfContext context, final @NonNull ITmfEvent event) {
-        ITmfTimestamp timestamp = event.getTimestamp();
-        ITmfTimestamp endTime = timestamp;
         if (event instanceof ITmfLostEvent) {
-            endTime = ((ITmfLostEvent) event).getTimeRange().getEndTime();
-        }
-        if (fStartTime.equals(TmfTimestamp.BIG_BANG) || (fStartTime.compareTo(timestamp) > 0)) {
-            fStartTime = timestamp;
-        }
-        if (fEndTime.equals(TmfTimestamp.BIG_CRUNCH) || (fEndTime.compareTo(endTime) < 0)) {
-            fEndTime = endTime;
+            ITmfTimestamp timestamp = event.getTimestamp();
+            ITmfTimestamp endTime = ((ITmfLostEvent) event).getTimeRange().getEndTime();
+            if (fStartTime.equals(TmfTimestamp.BIG_BANG) || (fStartTime.compareTo(timestamp) > 0)) {
+                fStartTime = timestamp;
+            }
+            if (fEndTime.equals(TmfTimestamp.BIG_CRUNCH) || (fEndTime.compareTo(endTime) < 0)) {
+                fEndTime = endTime;
+            }
+        } else {
+            /* The timestamp object is only needed when a bound changes */
+            long nanos = event.getTimestampNanos();
+            if (fStartTime.equals(TmfTimestamp.BIG_BANG) || (fStartTime.toNanos() > nanos)) {
+                fStartTime = event.getTimestamp();
+            }
+            if (fEndTime.equals(TmfTimestamp.BIG_CRUNCH) || (fEndTime.toNanos() < nanos)) {
+                fEndTime = event.getTimestamp();
+            }
         }
         if (context.hasValidRank()) {
             long rank = context.getRank();
@@ -596,7 +624,7 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
                 fNbEvents = rank + 1;
             }
             if (fIndexer != null) {
-                fIndexer.updateIndex(context, timestamp);
+                fIndexer.updateIndex(context, event);
             }
         }
     }
@@ -610,14 +638,37 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
         if (executorIsShutdown()) {
             return null;
         }
+        final ITmfContext context;
         if (!TmfTimestamp.BIG_BANG.equals(request.getRange().getStartTime())
                 && (request.getIndex() == 0)) {
-            final ITmfContext context = seekEvent(request.getRange().getStartTime());
+            context = seekEvent(request.getRange().getStartTime());
             request.setStartIndex((int) context.getRank());
-            return context;
-
+        } else {
+            context = seekEvent(request.getIndex());
+        }
+        TmfEventRequestHint hint = TmfEventRequestHint.getApplicableHint(request);
+        if (context != null && !hint.isUnconstrained() && applyRequestHint(context, hint)) {
+            context.setRank(ITmfContext.UNKNOWN_RANK);
         }
-        return seekEvent(request.getIndex());
+        return context;
+    }
+
+    /**
+     * Restrict the events read through the context of a request to the ones
+     * that may satisfy the hint of the request. Trace types that can skip
+     * events cheaply, for example without building them, should override
+     * this method. The default implementation does nothing.
+     *
+     * @param context
+     *            the context of the request, positioned at its first event
+     * @param hint
+     *            the hint of the request
+     * @return true if events may be skipped, the rank of the context is then
+     *         unknown
+     * @since 2.2
+     */
+    protected boolean applyRequestHint(ITmfContext context, TmfEventRequestHint hint) {
+        return false;
     }
 
     // ------------------------------------------------------------------------
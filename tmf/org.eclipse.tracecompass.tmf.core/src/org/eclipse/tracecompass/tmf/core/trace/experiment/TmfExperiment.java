@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2009, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -42,6 +42,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransform;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext;
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentIndexer;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentLocation;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfLocationArray;
 import org.eclipse.tracecompass.tmf.core.TmfCommonConstants;
@@ -66,7 +67,6 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 import com.google.common.collect.HashMultimap;
@@ -176,12 +176,13 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         initExperiment(type, path, traces, indexPageSize, resource);
     }
 
+    /**
+     * Create the experiment indexer. The traces are indexed in parallel and
+     * their indexes merged, see {@link TmfExperimentIndexer}.
+     */
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        if (getCheckpointSize() > 0) {
-            return new TmfBTreeTraceIndexer(this, interval);
-        }
-        return super.createIndexer(interval);
+        return new TmfExperimentIndexer(this, interval);
     }
 
     /**
@@ -468,8 +469,13 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         return event;
     }
 
+    /**
+     * Read the next event of the experiment. The merge state is kept in the
+     * experiment context, so contexts can be read concurrently without holding
+     * the experiment lock.
+     */
     @Override
-    public synchronized ITmfEvent getNext(ITmfContext context) {
+    public ITmfEvent getNext(ITmfContext context) {
 
         // Validate the context
         if (!(context instanceof TmfExperimentContext)) {
@@ -494,20 +500,8 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
             expContext.setLastTrace(TmfExperimentContext.NO_TRACE);
         }
 
-        // Scan the candidate events and identify the "next" trace to read from
-        int trace = TmfExperimentContext.NO_TRACE;
-        ITmfTimestamp timestamp = TmfTimestamp.BIG_CRUNCH;
-        for (int i = 0; i < length; i++) {
-            final ITmfEvent event = expContext.getEvent(i);
-
-            if (event != null) {
-                final ITmfTimestamp otherTS = event.getTimestamp();
-                if (otherTS.compareTo(timestamp) < 0) {
-                    trace = i;
-                    timestamp = otherTS;
-                }
-            }
-        }
+        // Identify the "next" trace to read from
+        int trace = expContext.getNextTrace();
 
         ITmfEvent event = null;
         if (trace != TmfExperimentContext.NO_TRACE) {
@@ -521,20 +515,33 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
                     throw new IllegalStateException();
                 }
 
-                // Update the experiment location
-                ITmfLocation location = expContext.getLocation();
-                if (location instanceof TmfExperimentLocation) {
-                    TmfLocationArray locationArray = new TmfLocationArray(
-                            ((TmfExperimentLocation) location).getLocationInfo(),
-                            trace, traceContext.getLocation(), traceContext.getRank());
-                    expContext.setLocation(new TmfExperimentLocation(locationArray));
-                }
+                // Update the experiment location, it is rebuilt when needed
+                expContext.updateLocation(trace, traceContext.getLocation(), traceContext.getRank());
             }
         }
 
         return event;
     }
 
+    /**
+     * Read the events of a batch without holding the experiment lock, see
+     * {@link #getNext(ITmfContext)}.
+     *
+     * @since 2.2
+     */
+    @Override
+    public int getNext(ITmfContext context, ITmfEvent[] events, int max) {
+        int count = 0;
+        while (count < max) {
+            ITmfEvent event = getNext(context);
+            if (event == null) {
+                break;
+            }
+            events[count++] = event;
+        }
+        return count;
+    }
+
     @Override
     public ITmfTimestamp getInitialRangeOffset() {
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -86,6 +86,19 @@ public interface ITmfTraceIndexer {
      */
     void updateIndex(ITmfContext context, ITmfTimestamp timestamp);
 
+    /**
+     * Adds an entry to the trace index. Indexers that only keep some of the
+     * entries can override this to avoid creating the timestamp objects of the
+     * other events.
+     *
+     * @param context The trace context to save
+     * @param event The event matching this context
+     * @since 2.2
+     */
+    default void updateIndex(ITmfContext context, ITmfEvent event) {
+        updateIndex(context, event.getTimestamp());
+    }
+
     /**
      * Returns the context of the checkpoint immediately preceding the requested
      * timestamp (or at the timestamp if it coincides with a checkpoint).
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -32,8 +32,9 @@ import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint
  */
 public class TmfBTreeTraceIndex implements ITmfCheckpointIndex {
 
-    private final BTree fCheckpoints;
-    private final FlatArray fCheckpointRanks;
+    private final ITmfTrace fTrace;
+    private volatile BTree fCheckpoints;
+    private volatile FlatArray fCheckpointRanks;
 
     private static final int BTREE_DEGREE = 15;
 
@@ -43,6 +44,7 @@ public class TmfBTreeTraceIndex implements ITmfCheckpointIndex {
      * @param trace the trace
      */
     public TmfBTreeTraceIndex(ITmfTrace trace) {
+        fTrace = trace;
         BTree bTree = createBTree(trace);
         FlatArray flatArray = createFlatArray(trace);
 
@@ -71,6 +73,20 @@ public class TmfBTreeTraceIndex implements ITmfCheckpointIndex {
         return new File(directory + fileName);
     }
 
+    /**
+     * Delete the checkpoints and start again with an index created from
+     * scratch. This is for an indexer that could not complete the index it was
+     * building, so that an incomplete index is never restored.
+     *
+     * @since 2.2
+     */
+    public void clear() {
+        fCheckpoints.delete();
+        fCheckpointRanks.delete();
+        fCheckpoints = createBTree(fTrace);
+        fCheckpointRanks = createFlatArray(fTrace);
+    }
+
     @Override
     public void dispose() {
         fCheckpoints.dispose();
@@ -116,6 +132,7 @@ public class TmfBTreeTraceIndex implements ITmfCheckpointIndex {
     @Override
     public void setNbEvents(long nbEvents) {
         fCheckpoints.setNbEvents(nbEvents);
+        fCheckpointRanks.setNbEvents(nbEvents);
     }
 
     @Override
@@ -262,6 +262,19 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         }
     }
 
+    /**
+     * Only the events at the checkpoint ranks have their timestamp object
+     * created.
+     *
+     * @since 2.2
+     */
+    @Override
+    public synchronized void updateIndex(final ITmfContext context, final ITmfEvent event) {
+        if ((context.getRank() % fCheckpointInterval) == 0) {
+            updateIndex(context, event.getTimestamp());
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ITmfTraceIndexer - seekIndex
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -47,6 +47,27 @@ public abstract class TextTraceEvent extends TmfEvent {
         super(parentTrace, ITmfContext.UNKNOWN_RANK, timestamp, type, content);
     }
 
+    /**
+     * Constructor with a primitive timestamp, which is only made into a
+     * timestamp object if it is requested.
+     *
+     * @param parentTrace
+     *            The parent trace
+     * @param timestampNanos
+     *            The event timestamp, in nanoseconds
+     * @param type
+     *            The event type
+     * @param content
+     *            The event content (payload)
+     * @since 2.2
+     */
+    public TextTraceEvent(TextTrace<? extends TextTraceEvent> parentTrace,
+            final long timestampNanos,
+            final ITmfEventType type,
+            final TextTraceEventContent content) {
+        super(parentTrace, ITmfContext.UNKNOWN_RANK, timestampNanos, type, content);
+    }
+
     /**
      * Copy constructor
      *
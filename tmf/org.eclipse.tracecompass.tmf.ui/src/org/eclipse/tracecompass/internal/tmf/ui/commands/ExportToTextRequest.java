@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Kalray, Ericsson
+ * Copyright (c) 2013, 2016 Kalray, Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -22,6 +22,7 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequestHint;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.ui.viewers.events.columns.TmfEventTableColumn;
 
@@ -49,6 +50,10 @@ public class ExportToTextRequest extends TmfEventRequest {
         this.fWriter = w;
         this.fFilter = filter;
         this.fColumns = columns;
+        if (filter != null) {
+            /* Let the trace skip the events that cannot match */
+            setHint(TmfEventRequestHint.fromFilter(filter));
+        }
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -110,6 +110,30 @@ public class TmfEventsCache {
             return event.getTimestamp();
         }
 
+        /**
+         * @since 2.2
+         */
+        @Override
+        public long getTimestampNanos() {
+            return event.getTimestampNanos();
+        }
+
+        /**
+         * @since 2.2
+         */
+        @Override
+        public Object getFieldValue(int slot) {
+            return event.getFieldValue(slot);
+        }
+
+        /**
+         * @since 2.2
+         */
+        @Override
+        public long getLongField(int slot, long defaultValue) {
+            return event.getLongField(slot, defaultValue);
+        }
+
         @Override
         public ITmfEventType getType() {
             return event.getType();
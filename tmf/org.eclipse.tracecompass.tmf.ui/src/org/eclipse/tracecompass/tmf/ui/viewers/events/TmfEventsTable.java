@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -140,6 +141,8 @@ import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfCallsite;
 import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfModelLookup;
 import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfSourceLookup;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterCompiler;
+import org.eclipse.tracecompass.tmf.core.filter.TmfParallelSearch;
 import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
@@ -2176,6 +2179,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
      */
     protected class FilterThread extends Thread {
         private final ITmfFilterTreeNode filter;
+        private final Predicate<ITmfEvent> predicate;
         private TmfCollapseFilter collapseFilter = null;
         private TmfEventRequest request;
         private boolean refreshBusy = false;
@@ -2191,6 +2195,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         public FilterThread(final ITmfFilterTreeNode filter) {
             super("Filter Thread"); //$NON-NLS-1$
             this.filter = filter;
+            this.predicate = TmfFilterCompiler.compile(filter);
         }
 
         @Override
@@ -2214,7 +2219,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                         return;
                     }
                     boolean refresh = false;
-                    if (filter.matches(event)) {
+                    if (predicate.test(event)) {
                         if (collapseFilter == null || collapseFilter.matches(event)) {
                             final long rank = fFilterCheckCount;
                             final int index = (int) fFilterMatchCount;
@@ -2387,7 +2392,6 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         private int direction;
         private long rank;
         private long foundRank = -1;
-        private TmfEventRequest request;
         private ITmfTimestamp foundTimestamp = null;
 
         /**
@@ -2463,67 +2467,41 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     }
                 }
             }
-            final int startRank = (int) rank;
-            boolean wrapped = false;
-            while (!monitor.isCanceled() && (foundRank == -1)) {
-                int nbRequested = (direction == Direction.FORWARD ? Integer.MAX_VALUE : Math.min((int) rank + 1, trace.getCacheSize()));
-                if (direction == Direction.BACKWARD) {
-                    rank = Math.max(0, rank - trace.getCacheSize() + 1);
+            if (foundRank == -1) {
+                Predicate<ITmfEvent> predicate = TmfFilterCompiler.compile(searchFilter);
+                if (eventFilter != null) {
+                    predicate = predicate.and(TmfFilterCompiler.compile(eventFilter));
                 }
-                request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
-                        (int) rank, nbRequested, ExecutionType.BACKGROUND) {
-                    long currentRank = rank;
-
-                    @Override
-                    public void handleData(final ITmfEvent event) {
-                        super.handleData(event);
-                        if (searchFilter.matches(event) && ((eventFilter == null) || eventFilter.matches(event))) {
-                            foundRank = currentRank;
-                            foundTimestamp = event.getTimestamp();
-                            if (direction == Direction.FORWARD) {
-                                done();
-                                return;
-                            }
-                        }
-                        currentRank++;
+                TmfParallelSearch search = new TmfParallelSearch(trace, predicate);
+                long nbEvents = trace.getNbEvents();
+                if (direction == Direction.FORWARD) {
+                    /* Read to the end, the trace may still be indexing */
+                    foundRank = search.findNext(rank, Long.MAX_VALUE, monitor);
+                    if (foundRank == -1 && rank > 0 && !monitor.isCanceled()) {
+                        /* Wrap around to the start of the trace */
+                        foundRank = search.findNext(0, rank, monitor);
                     }
-                };
-                ((ITmfEventProvider) trace).sendRequest(request);
-                try {
-                    request.waitForCompletion();
-                    if (request.isCancelled()) {
-                        return Status.OK_STATUS;
+                } else {
+                    foundRank = search.findPrevious(0, rank + 1, monitor);
+                    if (foundRank == -1 && rank + 1 < nbEvents && !monitor.isCanceled()) {
+                        /* Wrap around to the end of the trace */
+                        foundRank = search.findPrevious(rank + 1, nbEvents, monitor);
                     }
-                } catch (final InterruptedException e) {
+                }
+                if (monitor.isCanceled()) {
+                    return Status.OK_STATUS;
+                }
+                if (foundRank == -1) {
                     synchronized (fSearchSyncObj) {
                         fSearchThread = null;
                     }
                     return Status.OK_STATUS;
                 }
-                if (foundRank == -1) {
-                    if (direction == Direction.FORWARD) {
-                        if (rank == 0) {
-                            synchronized (fSearchSyncObj) {
-                                fSearchThread = null;
-                            }
-                            return Status.OK_STATUS;
-                        }
-                        nbRequested = (int) rank;
-                        rank = 0;
-                        wrapped = true;
-                    } else {
-                        rank--;
-                        if (rank < 0) {
-                            rank = (int) trace.getNbEvents() - 1;
-                            wrapped = true;
-                        }
-                        if ((rank <= startRank) && wrapped) {
-                            synchronized (fSearchSyncObj) {
-                                fSearchThread = null;
-                            }
-                            return Status.OK_STATUS;
-                        }
-                    }
+                ITmfContext context = trace.seekEvent(foundRank);
+                ITmfEvent event = trace.getNext(context);
+                context.dispose();
+                if (event != null) {
+                    foundTimestamp = event.getTimestamp();
                 }
             }
             int index = (int) foundRank;
@@ -2563,9 +2541,6 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
 
         @Override
         protected void canceling() {
-            if (request != null) {
-                request.cancel();
-            }
             synchronized (fSearchSyncObj) {
                 fSearchThread = null;
             }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -96,7 +96,7 @@ public class HistogramRequest extends TmfEventRequest {
                     fHistogram.countLostEvent(lostEvents.getTimeRange(), lostEvents.getNbLostEvents(), fFullRange);
 
                 } else { /* handle lost event */
-                    long timestamp = event.getTimestamp().toNanos();
+                    long timestamp = event.getTimestampNanos();
                     fHistogram.countEvent(getNbRead(), timestamp, event.getTrace());
                 }
             }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2014 Ericsson
+ * Copyright (c) 2010, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -58,7 +58,7 @@ public class TimeChartEvent implements ITimeEvent {
     public TimeChartEvent(TimeChartAnalysisEntry parentEntry, ITmfEvent event,
             long rank, TimeChartDecorationProvider decorationProvider) {
         fParentEntry = parentEntry;
-        fTime = event.getTimestamp().toNanos();
+        fTime = event.getTimestampNanos();
         fDuration = 0;
         fFirstRank = fLastRank = rank;
         fRankRangeList = new RankRangeList(rank);
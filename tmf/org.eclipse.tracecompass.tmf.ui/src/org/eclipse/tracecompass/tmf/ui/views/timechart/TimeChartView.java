@@ -522,7 +522,7 @@ public class TimeChartView extends TmfView implements ITimeGraphRangeListener, I
                         if (event == null) {
                             break;
                         }
-                        long eventTime = event.getTimestamp().toNanos();
+                        long eventTime = event.getTimestampNanos();
                         if (eventTime >= timeChartEvent.getTime() && eventTime <= timeChartEvent.getTime() + timeChartEvent.getDuration()) {
                             priority = Math.min(priority, ColorSettingsManager.getColorSettingPriority(event));
                         }